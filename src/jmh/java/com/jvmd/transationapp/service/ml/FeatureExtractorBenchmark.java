@@ -0,0 +1,128 @@
+package com.jvmd.transationapp.service.ml;
+
+import com.jvmd.transationapp.model.Transactions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feature extraction into a reused batch array versus the previous per-transaction extraction,
+ * which allocated a fresh vector and lower-cased every categorical value. Run with the GC profiler
+ * ({@code ./gradlew jmh}, configured in build.gradle) and compare {@code gc.alloc.rate.norm}: the
+ * batch extraction allocates 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeatureExtractorBenchmark {
+    private static final String[] TYPES = {"PAYMENT", "transfer", "Withdrawal", "DEPOSIT"};
+    private static final String[] CATEGORIES = {"grocery", "Online", "TRAVEL", "retail", "gas"};
+    private static final String[] DEVICES = {"mobile", "POS", "Atm", "online"};
+    private static final String[] CHANNELS = {"card", "ACH", "wire_transfer", "Cash"};
+    private static final int TRANSACTIONS = 1024;
+    private static final int BATCH = 32;
+
+    private Transactions[] transactions;
+    private float[] batch;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        transactions = new Transactions[TRANSACTIONS];
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transactions transaction = new Transactions();
+            transaction.setAmount(BigDecimal.valueOf(random.nextInt(2_000_000), 2));
+            transaction.setTimestamp(LocalDateTime.of(2025, 1, 1 + random.nextInt(28), random.nextInt(24), 0));
+            transaction.setFrom("ACC" + random.nextInt(100_000));
+            transaction.setTo("ACC" + random.nextInt(100_000));
+            transaction.setType(TYPES[random.nextInt(TYPES.length)]);
+            transaction.setMerchantCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            transaction.setDeviceUsed(DEVICES[random.nextInt(DEVICES.length)]);
+            transaction.setPaymentChannel(CHANNELS[random.nextInt(CHANNELS.length)]);
+            transaction.setLocation("City" + random.nextInt(500));
+            transaction.setIpAddress(random.nextBoolean() ? "10.0.0." + random.nextInt(255) : "85.12.3." + random.nextInt(255));
+            transaction.setTimeSinceLastTransaction(random.nextDouble());
+            transaction.setSpendingDeviationScore(random.nextDouble());
+            transaction.setVelocityScore(random.nextDouble() * 60);
+            transaction.setGeoAnomalyScore(random.nextDouble());
+            transaction.getFrom().hashCode();
+            transaction.getTo().hashCode();
+            transaction.getLocation().hashCode();
+            transaction.getIpAddress().hashCode();
+            transactions[i] = transaction;
+        }
+        batch = new float[BATCH * MLInferenceService.INPUT_SIZE];
+    }
+
+    @Benchmark
+    public float[] batchExtraction() {
+        int row = next & (BATCH - 1);
+        FeatureExtractor.extract(nextTransaction(), batch, row * MLInferenceService.INPUT_SIZE);
+        return batch;
+    }
+
+    @Benchmark
+    public float[] allocatingExtraction() {
+        return allocating(nextTransaction());
+    }
+
+    private Transactions nextTransaction() {
+        next = (next + 1) & (TRANSACTIONS - 1);
+        return transactions[next];
+    }
+
+    private static float[] allocating(Transactions t) {
+        return new float[]{
+                Math.min(1.0f, t.getAmount().floatValue() / 10_000f),
+                t.getTimestamp().getHour() / 24.0f,
+                (t.getTimestamp().getDayOfWeek().getValue() - 1) / 6.0f,
+                Math.abs(t.getFrom().hashCode() % 1000) / 1000.0f,
+                Math.abs(t.getTo().hashCode() % 1000) / 1000.0f,
+                switch (t.getType().toLowerCase()) {
+                    case "withdrawal" -> 0.25f;
+                    case "deposit" -> 0.5f;
+                    case "transfer" -> 0.75f;
+                    case "payment" -> 1.0f;
+                    default -> 0.5f;
+                },
+                switch (t.getMerchantCategory().toLowerCase()) {
+                    case "online" -> 0.2f;
+                    case "grocery" -> 0.3f;
+                    case "travel" -> 0.6f;
+                    case "gas" -> 0.7f;
+                    case "retail" -> 0.8f;
+                    default -> 0.5f;
+                },
+                switch (t.getDeviceUsed().toLowerCase()) {
+                    case "mobile" -> 0.25f;
+                    case "atm" -> 0.5f;
+                    case "pos" -> 0.75f;
+                    case "online" -> 1.0f;
+                    default -> 0.5f;
+                },
+                Math.abs(t.getLocation().hashCode() % 1000) / 1000.0f,
+                t.getTimeSinceLastTransaction().floatValue(),
+                t.getSpendingDeviationScore().floatValue(),
+                Math.min(1.0f, t.getVelocityScore().floatValue() / 50.0f),
+                t.getGeoAnomalyScore().floatValue(),
+                switch (t.getPaymentChannel().toLowerCase()) {
+                    case "card" -> 0.25f;
+                    case "ach" -> 0.5f;
+                    case "wire_transfer" -> 0.75f;
+                    case "cash" -> 1.0f;
+                    default -> 0.5f;
+                },
+                t.getIpAddress().startsWith("10.") ? 0.1f : Math.abs(t.getIpAddress().hashCode() % 100) / 200.0f
+        };
+    }
+}
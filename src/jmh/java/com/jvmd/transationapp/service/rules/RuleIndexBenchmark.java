@@ -0,0 +1,112 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.model.Transactions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating every rule of a plan against a transaction versus evaluating only the candidates the
+ * {@link RuleIndex} returns. Rules are a mix of amount thresholds, type/amount composites and
+ * nighttime composites, the shapes the default rule set is made of.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RuleIndexBenchmark {
+    private static final String[] TYPES = {"PAYMENT", "TRANSFER", "WITHDRAWAL", "DEPOSIT"};
+    private static final int TRANSACTIONS = 1024;
+
+    @Param({"20", "100", "500"})
+    private int ruleCount;
+
+    private List<CompiledRule> plan;
+    private RuleIndex index;
+    private Transactions[] transactions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        plan = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            Rule rule = new Rule();
+            rule.setId((long) i);
+            rule.setName("rule-" + i);
+            rule.setType(RuleType.COMPOSITE);
+            plan.add(CompiledRule.of(rule, randomMatcher(random)));
+        }
+        index = RuleIndex.build(0, plan);
+        transactions = new Transactions[TRANSACTIONS];
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transactions transaction = new Transactions();
+            transaction.setType(TYPES[random.nextInt(TYPES.length)]);
+            transaction.setAmount(BigDecimal.valueOf(random.nextInt(5) == 0 ? random.nextInt(200_000) : random.nextInt(5_000)));
+            transaction.setTimestamp(LocalDateTime.of(2025, 1, 1, random.nextInt(24), random.nextInt(60)));
+            transactions[i] = transaction;
+        }
+    }
+
+    @Benchmark
+    public int linearScan() {
+        Transactions transaction = nextTransaction();
+        int triggered = 0;
+        for (CompiledRule rule : plan) {
+            if (rule.matcher().matches(transaction)) {
+                triggered++;
+            }
+        }
+        return triggered;
+    }
+
+    @Benchmark
+    public int indexed() {
+        Transactions transaction = nextTransaction();
+        int triggered = 0;
+        for (CompiledRule rule : index.candidates(transaction)) {
+            if (rule.matcher().matches(transaction)) {
+                triggered++;
+            }
+        }
+        return triggered;
+    }
+
+    private Transactions nextTransaction() {
+        next = (next + 1) & (TRANSACTIONS - 1);
+        return transactions[next];
+    }
+
+    private static RuleMatcher randomMatcher(Random random) {
+        BigDecimal amount = BigDecimal.valueOf(1_000L * (1 + random.nextInt(100)));
+        return switch (random.nextInt(3)) {
+            case 0 -> new ThresholdRuleEvaluator.ThresholdMatcher(ThresholdRuleEvaluator.ThresholdField.AMOUNT,
+                    ComparisonOperator.GT, amount, amount.doubleValue());
+            case 1 -> new CompositeRuleEvaluator.CompositeMatcher(CompositeRuleEvaluator.CompositeOperator.AND,
+                    new RuleMatcher[]{
+                            new CompositeRuleEvaluator.TypeCondition(TYPES[random.nextInt(TYPES.length)]),
+                            new CompositeRuleEvaluator.AmountCondition(ComparisonOperator.GTE, amount)
+                    });
+            default -> new CompositeRuleEvaluator.CompositeMatcher(CompositeRuleEvaluator.CompositeOperator.AND,
+                    new RuleMatcher[]{
+                            new CompositeRuleEvaluator.AmountCondition(ComparisonOperator.GT, amount),
+                            new CompositeRuleEvaluator.NighttimeCondition(22, 6)
+                    });
+        };
+    }
+}
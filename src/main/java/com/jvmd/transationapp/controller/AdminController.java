@@ -159,14 +159,54 @@ public class AdminController {
         return "rule-form";
     }
 
+    /**
+     * The form carries the editable fields only: they are copied onto the stored rule, so fields the
+     * form does not show, such as the shadow flag, keep their value. An invalid rule is not saved and
+     * the form is shown again with the reason.
+     */
     @PostMapping("/rules")
-    public String saveRule(@ModelAttribute Rule rule) {
-        boolean isNew = rule.getId() == null;
+    public String saveRule(@ModelAttribute Rule form, Model model) {
+        boolean isNew = form.getId() == null;
+        Rule rule;
+        String oldValue = null;
+        if (isNew) {
+            rule = new Rule();
+            rule.setCreatedBy("admin");
+        } else {
+            Optional<Rule> ruleOpt = ruleRepository.findById(form.getId());
+            if (ruleOpt.isEmpty()) {
+                return "redirect:/admin/rules";
+            }
+            rule = ruleOpt.get();
+            try {
+                oldValue = objectMapper.writeValueAsString(rule);
+            } catch (Exception e) {
+                log.error("Error serializing rule", e);
+            }
+            rule.setModifiedBy("admin");
+        }
+        rule.setName(form.getName());
+        rule.setDescription(form.getDescription());
+        rule.setType(form.getType());
+        rule.setConfiguration(form.getConfiguration());
+        rule.setEnabled(form.getEnabled() != null ? form.getEnabled() : rule.getEnabled());
+        rule.setPriority(form.getPriority() != null ? form.getPriority() : rule.getPriority());
+        rule.setSeverity(form.getSeverity() != null ? form.getSeverity() : rule.getSeverity());
+        try {
+            ruleEngine.compileRule(rule);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected invalid rule configuration: name={}, reason={}", rule.getName(), e.getMessage());
+            model.addAttribute("rule", form);
+            model.addAttribute("ruleTypes", RuleType.values());
+            model.addAttribute("error", e.getMessage());
+            return "rule-form";
+        }
         Rule savedRule = ruleRepository.save(rule);
         RuleChangeHistory history = new RuleChangeHistory();
         history.setRuleId(savedRule.getId());
         history.setAction(isNew ? "CREATE" : "UPDATE");
         history.setChangedBy("admin");
+        history.setOldValue(oldValue);
         try {
             history.setNewValue(objectMapper.writeValueAsString(savedRule));
         } catch (Exception e) {
@@ -6,6 +6,10 @@ import com.jvmd.transationapp.model.*;
 import com.jvmd.transationapp.repository.*;
 import com.jvmd.transationapp.service.LLMService;
 import com.jvmd.transationapp.service.MetricsService;
+import com.jvmd.transationapp.service.QueueService;
+import com.jvmd.transationapp.service.backtest.BacktestService;
+import com.jvmd.transationapp.service.ml.ChallengerScorer;
+import com.jvmd.transationapp.service.ml.MLInferenceService;
 import com.jvmd.transationapp.service.rules.RuleEngine;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +25,9 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
@@ -36,6 +43,10 @@ public class AdminRestController {
     private final RuleEngine ruleEngine;
     private final MetricsService metricsService;
     private final LLMService llmService;
+    private final QueueService queueService;
+    private final BacktestService backtestService;
+    private final MLInferenceService mlInferenceService;
+    private final ChallengerScorer challengerScorer;
     private final ObjectMapper objectMapper;
 
     @GetMapping("/dashboard/stats")
@@ -221,7 +232,11 @@ public class AdminRestController {
         rule.setEnabled(request.getEnabled() != null ? request.getEnabled() : true);
         rule.setPriority(request.getPriority() != null ? request.getPriority() : 0);
         rule.setSeverity(request.getSeverity() != null ? request.getSeverity() : 1);
+        rule.setShadow(Boolean.TRUE.equals(request.getShadow()));
         rule.setCreatedBy("admin");
+        if (!isValidRule(rule)) {
+            return ResponseEntity.badRequest().build();
+        }
         
         Rule savedRule = ruleRepository.save(rule);
         
@@ -268,7 +283,11 @@ public class AdminRestController {
         rule.setEnabled(request.getEnabled() != null ? request.getEnabled() : true);
         rule.setPriority(request.getPriority() != null ? request.getPriority() : 0);
         rule.setSeverity(request.getSeverity() != null ? request.getSeverity() : 1);
+        rule.setShadow(Boolean.TRUE.equals(request.getShadow()));
         rule.setModifiedBy("admin");
+        if (!isValidRule(rule)) {
+            return ResponseEntity.badRequest().build();
+        }
         
         Rule savedRule = ruleRepository.save(rule);
         
@@ -358,6 +377,134 @@ public class AdminRestController {
         return ResponseEntity.ok(types);
     }
 
+    @GetMapping("/rules/plan")
+    public ResponseEntity<RulePlanResponse> getRulePlan() {
+        return ResponseEntity.ok(ruleEngine.describePlan());
+    }
+
+    @GetMapping("/rules/shadow")
+    public ResponseEntity<List<ShadowRuleStatsResponse>> getShadowRuleStats() {
+        return ResponseEntity.ok(ruleEngine.describeShadowRules());
+    }
+
+    @PostMapping("/backtests")
+    public ResponseEntity<BacktestResponse> startBacktest(@Valid @RequestBody BacktestRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(backtestService.start(request));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected backtest: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("Backtest not started: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @GetMapping("/backtests")
+    public ResponseEntity<List<BacktestResponse>> getBacktests() {
+        return ResponseEntity.ok(backtestService.list());
+    }
+
+    @GetMapping("/backtests/{id}")
+    public ResponseEntity<BacktestResponse> getBacktest(@PathVariable String id) {
+        return backtestService.get(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/backtests/{id}/cancel")
+    public ResponseEntity<BacktestResponse> cancelBacktest(@PathVariable String id) {
+        return backtestService.cancel(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/ml/models")
+    public ResponseEntity<ModelRegistryResponse> getModels() {
+        return ResponseEntity.ok(mlInferenceService.describeModels());
+    }
+
+    @PostMapping("/ml/models/{version}/activate")
+    public ResponseEntity<ModelRegistryResponse> activateModel(@PathVariable String version) {
+        return changeModel(() -> mlInferenceService.activate(version));
+    }
+
+    @PostMapping("/ml/models/rollback")
+    public ResponseEntity<ModelRegistryResponse> rollbackModel() {
+        return changeModel(mlInferenceService::rollback);
+    }
+
+    @GetMapping("/ml/challenger")
+    public ResponseEntity<ChallengerStatsResponse> getChallenger() {
+        return ResponseEntity.ok(challengerScorer.describe());
+    }
+
+    @PostMapping("/ml/challenger/{version}")
+    public ResponseEntity<ChallengerStatsResponse> setChallenger(@PathVariable String version) {
+        try {
+            challengerScorer.activate(version).get();
+            return ResponseEntity.ok(challengerScorer.describe());
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected challenger model: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (ExecutionException e) {
+            log.error("Challenger model failed to load: {}", e.getCause().getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @DeleteMapping("/ml/challenger")
+    public ResponseEntity<ChallengerStatsResponse> clearChallenger() {
+        challengerScorer.clear();
+        return ResponseEntity.ok(challengerScorer.describe());
+    }
+
+    private ResponseEntity<ModelRegistryResponse> changeModel(Supplier<CompletableFuture<Void>> change) {
+        try {
+            change.get().get();
+            return ResponseEntity.ok(mlInferenceService.describeModels());
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected model change: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("Model change not possible: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ExecutionException e) {
+            log.error("Model change failed, previous model stays active: {}", e.getCause().getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/queue/stats")
+    public ResponseEntity<QueueStatsResponse> getQueueStats() {
+        return ResponseEntity.ok(queueService.getStats());
+    }
+
+    @GetMapping("/queue/pending")
+    public ResponseEntity<List<PendingEntryResponse>> getPendingQueueEntries(
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(queueService.getPendingEntries(Math.max(1, Math.min(limit, 1000))));
+    }
+
+    @GetMapping("/queue/dead-letters")
+    public ResponseEntity<List<DeadLetterResponse>> getDeadLetters(
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(queueService.getDeadLetters(Math.max(1, Math.min(limit, 1000))));
+    }
+
+    @PostMapping("/queue/dead-letters/redrive")
+    public ResponseEntity<Map<String, Integer>> redriveDeadLetters(
+            @RequestParam(defaultValue = "100") int limit) {
+        int redriven = queueService.redriveDeadLetters(Math.max(1, Math.min(limit, 10000)));
+        return ResponseEntity.ok(Map.of("redriven", redriven));
+    }
+
     @GetMapping("/statuses")
     public ResponseEntity<List<String>> getStatuses() {
         List<String> statuses = Arrays.stream(EStatus.values())
@@ -366,6 +513,16 @@ public class AdminRestController {
         return ResponseEntity.ok(statuses);
     }
 
+    private boolean isValidRule(Rule rule) {
+        try {
+            ruleEngine.compileRule(rule);
+            return true;
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected invalid rule configuration: name={}, reason={}", rule.getName(), e.getMessage());
+            return false;
+        }
+    }
+
     private TransactionResponse convertToTransactionResponse(Transactions transaction) {
         return TransactionResponse.builder()
                 .id(transaction.getId())
@@ -418,6 +575,7 @@ public class AdminRestController {
                 .timestamp(transaction.getTimestamp())
                 .status(transaction.getStatus())
                 .mlScore(transaction.getMlScore())
+                .mlChallengerScore(transaction.getMlChallengerScore())
                 .alertReasons(alertReasons)
                 .processingHistory(processingHistory)
                 .createdAt(transaction.getCreatedAt())
@@ -448,6 +606,7 @@ public class AdminRestController {
                 .enabled(rule.getEnabled())
                 .priority(rule.getPriority())
                 .severity(rule.getSeverity())
+                .shadow(Boolean.TRUE.equals(rule.getShadow()))
                 .createdBy(rule.getCreatedBy())
                 .modifiedBy(rule.getModifiedBy())
                 .createdAt(rule.getCreatedAt())
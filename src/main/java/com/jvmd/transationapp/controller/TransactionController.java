@@ -49,7 +49,7 @@ public class TransactionController {
             transaction.setLocation(request.getLocation());
             transaction = transactionRepository.save(transaction);
             log.info("Transaction saved: id={}, correlationId={}", transaction.getId(), correlationId);
-            queueService.enqueue(transaction.getId(), correlationId);
+            queueService.enqueue(transaction);
             log.info("Transaction enqueued for processing: id={}, correlationId={}",
                     transaction.getId(), correlationId);
             TransactionResponse response = TransactionResponse.builder()
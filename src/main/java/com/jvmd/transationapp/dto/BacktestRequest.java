@@ -0,0 +1,32 @@
+package com.jvmd.transationapp.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Candidate rule set for a backtest: stored rules by id (enabled or not) plus unsaved rules. When
+ * both are empty the enabled rules are replayed, shadow rules included.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BacktestRequest {
+    @NotNull(message = "Start is required")
+    private LocalDateTime start;
+
+    @NotNull(message = "End is required")
+    private LocalDateTime end;
+
+    private List<Long> ruleIds;
+
+    @Valid
+    private List<RuleRequest> rules;
+}
@@ -0,0 +1,63 @@
+package com.jvmd.transationapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BacktestResponse {
+    private String id;
+    private String status;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+    private long estimatedTransactions;
+    private long processedTransactions;
+    private double progress;
+    private long alerts;
+    private long labeledFraud;
+    private long truePositives;
+    private long falsePositives;
+    private long falseNegatives;
+    private double precision;
+    private double recall;
+    private List<RuleEntry> rules;
+    private List<DayEntry> days;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RuleEntry {
+        private Long ruleId;
+        private String name;
+        private String type;
+        private long evaluations;
+        private long hits;
+        private long truePositives;
+        private double precision;
+        private long errors;
+        private double averageLatencyMicros;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DayEntry {
+        private LocalDate day;
+        private long transactions;
+        private long alerts;
+        private long labeledFraud;
+    }
+}
@@ -0,0 +1,36 @@
+package com.jvmd.transationapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChallengerStatsResponse {
+    private String version;
+    private String engine;
+    private LocalDateTime loadedAt;
+    private long scored;
+    private long dropped;
+    private long failed;
+    private int queued;
+    private double averageLatencyMicros;
+    private double maxLatencyMicros;
+    private double championMean;
+    private double challengerMean;
+    private double meanAbsoluteDifference;
+    private double maxAbsoluteDifference;
+    private long bothAlerted;
+    private long bothCleared;
+    private long championOnly;
+    private long challengerOnly;
+    private double agreementRate;
+    private List<Long> championHistogram;
+    private List<Long> challengerHistogram;
+}
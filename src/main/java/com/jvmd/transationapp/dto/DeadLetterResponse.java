@@ -0,0 +1,22 @@
+package com.jvmd.transationapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterResponse {
+    private UUID transactionId;
+    private String partitionKey;
+    private String correlationId;
+    private Long enqueuedAt;
+    private Integer retryCount;
+    private String failureReason;
+    private Long failedAt;
+}
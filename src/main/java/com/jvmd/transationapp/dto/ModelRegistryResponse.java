@@ -0,0 +1,36 @@
+package com.jvmd.transationapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModelRegistryResponse {
+    private String activeVersion;
+    private String previousVersion;
+    private String loadedVersion;
+    private String engine;
+    private LocalDateTime loadedAt;
+    private List<VersionEntry> versions;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VersionEntry {
+        private String version;
+        private boolean active;
+        private boolean loaded;
+        private boolean params;
+        private boolean weights;
+        private long sizeBytes;
+        private LocalDateTime modifiedAt;
+    }
+}
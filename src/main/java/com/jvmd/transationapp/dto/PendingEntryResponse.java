@@ -0,0 +1,20 @@
+package com.jvmd.transationapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingEntryResponse {
+    private String id;
+    private UUID transactionId;
+    private String consumer;
+    private Long idleMs;
+    private Long deliveryCount;
+}
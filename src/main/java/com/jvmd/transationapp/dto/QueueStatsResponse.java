@@ -0,0 +1,21 @@
+package com.jvmd.transationapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueStatsResponse {
+    private String backend;
+    private int partitions;
+    private long queueSize;
+    private long pending;
+    private long consumers;
+    private long lag;
+    private long retryScheduled;
+    private long deadLetters;
+}
@@ -0,0 +1,43 @@
+package com.jvmd.transationapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RulePlanResponse {
+    private long ruleSetVersion;
+    private boolean costBased;
+    private LocalDateTime plannedAt;
+    private List<RuleEntry> rules;
+    private long evaluations;
+    private long shortCircuits;
+    private long skippedRuleEvaluations;
+    private double estimatedSavedMs;
+    private boolean indexed;
+    private long indexSkippedRuleEvaluations;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RuleEntry {
+        private int position;
+        private Long ruleId;
+        private String name;
+        private String type;
+        private int priority;
+        private int severity;
+        private long evaluations;
+        private double averageCostMicros;
+        private double triggerRate;
+        private String guard;
+    }
+}
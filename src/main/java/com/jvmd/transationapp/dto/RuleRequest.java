@@ -27,4 +27,5 @@ public class RuleRequest {
     private Boolean enabled = true;
     private Integer priority = 0;
     private Integer severity = 1;
+    private Boolean shadow;
 }
@@ -21,6 +21,7 @@ public class RuleResponse {
     private Boolean enabled;
     private Integer priority;
     private Integer severity;
+    private Boolean shadow;
     private String createdBy;
     private String modifiedBy;
     private LocalDateTime createdAt;
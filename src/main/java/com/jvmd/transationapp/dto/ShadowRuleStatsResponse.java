@@ -0,0 +1,28 @@
+package com.jvmd.transationapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShadowRuleStatsResponse {
+    private Long ruleId;
+    private String name;
+    private String type;
+    private int severity;
+    private long evaluations;
+    private long hits;
+    private double hitRate;
+    private long errors;
+    private double averageLatencyMicros;
+    private double maxLatencyMicros;
+    private long overlappingHits;
+    private long newAlerts;
+    private Map<String, Long> overlapByRule;
+}
@@ -26,6 +26,7 @@ public class TransactionDetailsResponse {
     private LocalDateTime timestamp;
     private EStatus status;
     private Double mlScore;
+    private Double mlChallengerScore;
     private List<String> alertReasons;
     private List<Map<String, Object>> processingHistory;
     private LocalDateTime createdAt;
@@ -31,6 +31,8 @@ public class Rule {
     @Column(nullable = false)
     private Integer severity = 1;  
     @Column
+    private Boolean shadow = false;
+    @Column
     private String createdBy;
     @Column
     private String modifiedBy;
@@ -40,8 +42,8 @@ public class Rule {
     @UpdateTimestamp
     @Column(nullable = false)
     private LocalDateTime updatedAt;
-    @Column
+    @Column(updatable = false)
     private Integer executionCount = 0;
-    @Column
+    @Column(updatable = false)
     private Integer alertCount = 0;
 }
@@ -3,5 +3,6 @@ public enum RuleType {
     THRESHOLD,   
     PATTERN,     
     COMPOSITE,   
-    ML_RULE      
+    ML_RULE,     
+    EXPRESSION   
 }
@@ -9,7 +9,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_from_timestamp", columnList = "account_from, timestamp, amount"),
+        @Index(name = "idx_transactions_to_timestamp", columnList = "account_to, timestamp, amount"),
+        @Index(name = "idx_transactions_timestamp", columnList = "timestamp")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
@@ -34,6 +38,8 @@ public class Transactions {
     private EStatus status = EStatus.PROCESSING;
     @Column
     private Double mlScore;
+    @Column(insertable = false, updatable = false)
+    private Double mlChallengerScore;
     @Column(columnDefinition = "TEXT")
     private String alertReasons;  
     @Column(columnDefinition = "TEXT")
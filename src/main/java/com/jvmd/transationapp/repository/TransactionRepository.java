@@ -4,24 +4,84 @@ import com.jvmd.transationapp.model.Transactions;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 @Repository
 public interface TransactionRepository extends JpaRepository<Transactions, UUID> {
+    String APPEND_HISTORY = "CASE WHEN processing_history IS NULL OR processing_history = '' " +
+            "THEN CAST(:steps AS text) " +
+            "ELSE CAST(CAST(processing_history AS jsonb) || CAST(:steps AS jsonb) AS text) END";
+    /**
+     * Shared by {@link #updateProcessingResult} and the batched write in TransactionProcessingService.
+     */
+    String UPDATE_PROCESSING_RESULT = "UPDATE transactions SET status = :status, " +
+            "ml_score = COALESCE(CAST(:mlScore AS double precision), ml_score), " +
+            "alert_reasons = COALESCE(CAST(:alertReasons AS text), alert_reasons), " +
+            "processing_history = " + APPEND_HISTORY + ", updated_at = :updatedAt WHERE id = :id";
+    String WINDOW_COUNT = "SELECT COUNT(*) AS total, " +
+            "COUNT(*) FILTER (WHERE amount <= CAST(:maxAmount AS numeric)) AS small FROM transactions ";
     Optional<Transactions> findByCorrelationId(String correlationId);
     boolean existsByCorrelationId(String correlationId);
     Page<Transactions> findByStatus(EStatus status, Pageable pageable);
     List<Transactions> findByFromAndTimestampBetween(String from, LocalDateTime start, LocalDateTime end);
     List<Transactions> findByToAndTimestampBetween(String to, LocalDateTime start, LocalDateTime end);
+    /**
+     * Timestamps and amounts only, so the (account_from, timestamp, amount) index serves them without
+     * reading rows.
+     */
+    List<WindowEntry> findWindowEntriesByFromAndTimestampBetween(String from, LocalDateTime start,
+                                                                     LocalDateTime end);
+    List<WindowEntry> findWindowEntriesByToAndTimestampBetween(String to, LocalDateTime start,
+                                                                   LocalDateTime end);
+    /**
+     * Velocity counts for a source account, answered from the (account_from, timestamp, amount) index
+     * without loading rows. A null {@code maxAmount} yields a small count of zero.
+     */
+    @Query(value = WINDOW_COUNT + "WHERE account_from = :account AND timestamp BETWEEN :start AND :end",
+            nativeQuery = true)
+    WindowCountView countFromWindow(@Param("account") String account, @Param("start") LocalDateTime start,
+                                    @Param("end") LocalDateTime end, @Param("maxAmount") BigDecimal maxAmount);
+    @Query(value = WINDOW_COUNT + "WHERE account_to = :account AND timestamp BETWEEN :start AND :end",
+            nativeQuery = true)
+    WindowCountView countToWindow(@Param("account") String account, @Param("start") LocalDateTime start,
+                                  @Param("end") LocalDateTime end, @Param("maxAmount") BigDecimal maxAmount);
     @Query("SELECT COUNT(t) FROM Transactions t WHERE t.status = :status")
     Long countByStatus(@Param("status") EStatus status);
     @Query("SELECT COUNT(t) FROM Transactions t WHERE t.timestamp BETWEEN :start AND :end")
     Long countByTimestampBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     @Query("SELECT t FROM Transactions t WHERE t.timestamp BETWEEN :start AND :end ORDER BY t.timestamp DESC")
     List<Transactions> findTransactionsBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    /**
+     * Writes the outcome of rule evaluation without loading the row. {@code steps} is a JSON array that
+     * is appended to the existing processing history; null ml score / alert reasons keep the stored value.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = UPDATE_PROCESSING_RESULT, nativeQuery = true)
+    int updateProcessingResult(@Param("id") UUID id, @Param("status") String status,
+                               @Param("mlScore") Double mlScore, @Param("alertReasons") String alertReasons,
+                               @Param("steps") String steps, @Param("updatedAt") LocalDateTime updatedAt);
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE transactions SET processing_history = " + APPEND_HISTORY +
+            ", updated_at = :updatedAt WHERE id = :id", nativeQuery = true)
+    int appendProcessingHistory(@Param("id") UUID id, @Param("steps") String steps,
+                                @Param("updatedAt") LocalDateTime updatedAt);
+    interface WindowCountView {
+        long getTotal();
+        long getSmall();
+    }
+    /**
+     * Constructor projection; Spring Data selects just these two attributes.
+     */
+    record WindowEntry(LocalDateTime timestamp, BigDecimal amount) {
+    }
 }
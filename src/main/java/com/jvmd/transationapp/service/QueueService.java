@@ -1,95 +1,182 @@
 package com.jvmd.transationapp.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.slf4j.MDC;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.stereotype.Service;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.jvmd.transationapp.dto.DeadLetterResponse;
+import com.jvmd.transationapp.dto.PendingEntryResponse;
+import com.jvmd.transationapp.dto.QueueStatsResponse;
+import com.jvmd.transationapp.model.Transactions;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
-
-@Service
-@Slf4j
-@RequiredArgsConstructor
-public class QueueService {
-    private static final String QUEUE_NAME = "transaction:queue";
-    private static final String PROCESSING_SET = "transaction:processing";
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final ObjectMapper objectMapper;
-
-    @Value("${app.queue.retry-attempts:3}")
-    private int maxRetryAttempts;
-
-    public void enqueue(UUID transactionId, String correlationId) {
-        try {
-            MDC.put("correlationId", correlationId);
-            QueueMessage message = new QueueMessage();
-            message.setTransactionId(transactionId);
-            message.setCorrelationId(correlationId);
-            message.setEnqueuedAt(System.currentTimeMillis());
-            message.setRetryCount(0);
-            redisTemplate.opsForList().rightPush(QUEUE_NAME, message);
-            log.info("Transaction enqueued: transactionId={}, correlationId={}",
-                    transactionId, correlationId);
-        } catch (Exception e) {
-            log.error("Failed to enqueue transaction: transactionId={}, correlationId={}",
-                    transactionId, correlationId, e);
-            throw new RuntimeException("Failed to enqueue transaction", e);
-        } finally {
-            MDC.remove("correlationId");
-        }
-    }
 
-    public QueueMessage dequeue() {
-        try {
-            Object message = redisTemplate.opsForList().leftPop(QUEUE_NAME);
-            if (message != null) {
-                QueueMessage queueMessage = objectMapper.convertValue(message, QueueMessage.class);
-                redisTemplate.opsForSet().add(PROCESSING_SET, queueMessage.getTransactionId().toString());
-                redisTemplate.expire(PROCESSING_SET, 1, TimeUnit.HOURS);
-                return queueMessage;
-            }
-        } catch (Exception e) {
-            log.error("Failed to dequeue transaction", e);
-        }
-        return null;
-    }
+/**
+ * Transaction work queue. The backend is selected with {@code app.queue.backend}
+ * ({@code list} - the default - or {@code stream}).
+ */
+public interface QueueService {
 
-    public void markAsProcessed(UUID transactionId) {
-        redisTemplate.opsForSet().remove(PROCESSING_SET, transactionId.toString());
-    }
+    /**
+     * Enqueues a saved transaction. The source account decides the partition, so transactions of the
+     * same account are consumed by a single worker, in enqueue order as long as none of them fails.
+     * A transaction that is retried or reaped from a dead consumer is evaluated after later
+     * transactions of its account; see {@link com.jvmd.transationapp.service.queue.QueuePartitionManager}.
+     * With {@code app.queue.payload-snapshot} the message also carries the fields the rules need, so
+     * the worker can skip reading the row back.
+     */
+    void enqueue(Transactions transaction);
 
-    public void requeueForRetry(QueueMessage message) {
-        if (message.getRetryCount() < maxRetryAttempts) {
-            message.setRetryCount(message.getRetryCount() + 1);
-            redisTemplate.opsForList().rightPush(QUEUE_NAME, message);
-            log.warn("Transaction requeued for retry: transactionId={}, retryCount={}",
-                    message.getTransactionId(), message.getRetryCount());
-        } else {
-            log.error("Transaction exceeded max retry attempts: transactionId={}",
-                    message.getTransactionId());
-            markAsProcessed(message.getTransactionId());
-        }
-    }
+    /**
+     * Takes up to {@code maxMessages} messages for the given consumer, blocking on the server for at
+     * most {@code blockTimeout} when nothing is available. A zero timeout never blocks.
+     */
+    List<QueueMessage> dequeueBatch(String consumerId, int maxMessages, Duration blockTimeout);
 
-    public Long getQueueSize() {
-        Long size = redisTemplate.opsForList().size(QUEUE_NAME);
-        return size != null ? size : 0L;
-    }
+    void markAsProcessed(QueueMessage message);
 
-    public boolean isProcessing(UUID transactionId) {
-        Boolean isMember = redisTemplate.opsForSet().isMember(PROCESSING_SET, transactionId.toString());
-        return isMember != null && isMember;
-    }
+    /**
+     * Acknowledges the failed delivery and schedules a delayed retry, or dead-letters the message
+     * once {@code app.queue.retry-attempts} is exhausted.
+     */
+    void requeueForRetry(QueueMessage message, String failureReason);
+
+    /**
+     * Hands back whatever the consumer still holds, e.g. on startup or graceful shutdown.
+     */
+    void releaseConsumer(String consumerId);
+
+    Long getQueueSize();
+
+    boolean isProcessing(UUID transactionId);
+
+    QueueStatsResponse getStats();
+
+    List<PendingEntryResponse> getPendingEntries(int limit);
+
+    List<DeadLetterResponse> getDeadLetters(int limit);
+
+    /**
+     * Puts up to {@code limit} of the oldest dead letters back on the queue. Returns how many were moved.
+     */
+    int redriveDeadLetters(int limit);
 
     @lombok.Data
-    public static class QueueMessage {
+    class QueueMessage {
         private UUID transactionId;
+        private String partitionKey;
+        private Integer partition;
         private String correlationId;
         private Long enqueuedAt;
         private Integer retryCount;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private TransactionSnapshot snapshot;
+        @JsonIgnore
+        private String consumerId;
+        @JsonIgnore
+        private byte[] receipt;
+        @JsonIgnore
+        private String recordId;
+
+        public static QueueMessage of(Transactions transaction, boolean withSnapshot) {
+            QueueMessage message = new QueueMessage();
+            message.setTransactionId(transaction.getId());
+            message.setPartitionKey(transaction.getFrom());
+            message.setCorrelationId(transaction.getCorrelationId());
+            message.setEnqueuedAt(System.currentTimeMillis());
+            message.setRetryCount(0);
+            if (withSnapshot) {
+                message.setSnapshot(TransactionSnapshot.of(transaction));
+            }
+            return message;
+        }
+
+        public QueueMessage nextAttempt() {
+            QueueMessage retry = new QueueMessage();
+            retry.setTransactionId(transactionId);
+            retry.setPartitionKey(partitionKey);
+            retry.setCorrelationId(correlationId);
+            retry.setEnqueuedAt(enqueuedAt);
+            retry.setRetryCount(retryCount + 1);
+            retry.setSnapshot(snapshot);
+            return retry;
+        }
+    }
+
+    /**
+     * The transaction fields read by the rules and the ML model, as they were at ingest. Amount and
+     * timestamp are kept as strings so the payload does not depend on serializer modules.
+     */
+    @lombok.Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    class TransactionSnapshot {
+        private String amount;
+        private String from;
+        private String to;
+        private String type;
+        private String timestamp;
+        private String ipAddress;
+        private String deviceId;
+        private String location;
+        private String merchantCategory;
+        private String deviceUsed;
+        private String paymentChannel;
+        private Double timeSinceLastTransaction;
+        private Double spendingDeviationScore;
+        private Double velocityScore;
+        private Double geoAnomalyScore;
+        private String deviceHash;
+        private String fraudType;
+
+        public static TransactionSnapshot of(Transactions transaction) {
+            TransactionSnapshot snapshot = new TransactionSnapshot();
+            snapshot.setAmount(transaction.getAmount().toPlainString());
+            snapshot.setFrom(transaction.getFrom());
+            snapshot.setTo(transaction.getTo());
+            snapshot.setType(transaction.getType());
+            snapshot.setTimestamp(transaction.getTimestamp().toString());
+            snapshot.setIpAddress(transaction.getIpAddress());
+            snapshot.setDeviceId(transaction.getDeviceId());
+            snapshot.setLocation(transaction.getLocation());
+            snapshot.setMerchantCategory(transaction.getMerchantCategory());
+            snapshot.setDeviceUsed(transaction.getDeviceUsed());
+            snapshot.setPaymentChannel(transaction.getPaymentChannel());
+            snapshot.setTimeSinceLastTransaction(transaction.getTimeSinceLastTransaction());
+            snapshot.setSpendingDeviationScore(transaction.getSpendingDeviationScore());
+            snapshot.setVelocityScore(transaction.getVelocityScore());
+            snapshot.setGeoAnomalyScore(transaction.getGeoAnomalyScore());
+            snapshot.setDeviceHash(transaction.getDeviceHash());
+            snapshot.setFraudType(transaction.getFraudType());
+            return snapshot;
+        }
+
+        /**
+         * Detached entity for rule evaluation only; it is never merged back.
+         */
+        public Transactions toTransaction(UUID id, String correlationId) {
+            Transactions transaction = new Transactions();
+            transaction.setId(id);
+            transaction.setCorrelationId(correlationId);
+            transaction.setAmount(new BigDecimal(amount));
+            transaction.setFrom(from);
+            transaction.setTo(to);
+            transaction.setType(type);
+            transaction.setTimestamp(LocalDateTime.parse(timestamp));
+            transaction.setIpAddress(ipAddress);
+            transaction.setDeviceId(deviceId);
+            transaction.setLocation(location);
+            transaction.setMerchantCategory(merchantCategory);
+            transaction.setDeviceUsed(deviceUsed);
+            transaction.setPaymentChannel(paymentChannel);
+            transaction.setTimeSinceLastTransaction(timeSinceLastTransaction);
+            transaction.setSpendingDeviationScore(spendingDeviationScore);
+            transaction.setVelocityScore(velocityScore);
+            transaction.setGeoAnomalyScore(geoAnomalyScore);
+            transaction.setDeviceHash(deviceHash);
+            transaction.setFraudType(fraudType);
+            return transaction;
+        }
     }
 }
@@ -4,13 +4,20 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jvmd.transationapp.model.EStatus;
 import com.jvmd.transationapp.model.Transactions;
 import com.jvmd.transationapp.repository.TransactionRepository;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
 import com.jvmd.transationapp.service.rules.RuleEngine;
+import com.jvmd.transationapp.service.rules.velocity.VelocityStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -20,56 +27,41 @@ import java.util.*;
 public class TransactionProcessingService {
     private final TransactionRepository transactionRepository;
     private final RuleEngine ruleEngine;
+    private final VelocityStore velocityStore;
     private final NotificationService notificationService;
     private final MetricsService metricsService;
     private final ObjectMapper objectMapper;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
 
-    @Transactional
-    public void processTransaction(UUID transactionId, String correlationId) {
+    /**
+     * Evaluates the transaction and writes the outcome with a single targeted UPDATE. When the queue
+     * message carries a snapshot the row is not read at all; otherwise it is loaded detached, so
+     * nothing the rules touch on the entity is flushed back.
+     */
+    public void processTransaction(UUID transactionId, String correlationId,
+                                   QueueService.TransactionSnapshot snapshot) {
         MDC.put("correlationId", correlationId);
         MDC.put("component", "transaction-processor");
         long startTime = System.currentTimeMillis();
         try {
             log.info("Starting transaction processing: transactionId={}", transactionId);
-            Transactions transaction = transactionRepository.findById(transactionId)
+            Transactions transaction = snapshot != null
+                    ? snapshot.toTransaction(transactionId, correlationId)
+                    : transactionRepository.findById(transactionId)
                     .orElseThrow(() -> new RuntimeException("Transaction not found: " + transactionId));
-            addProcessingStep(transaction, "PROCESSING_STARTED", "Transaction processing started");
-            RuleEngine.RuleEvaluationResult result = ruleEngine.evaluateTransaction(transaction);
-            if (result.isAlerted()) {
-                transaction.setStatus(EStatus.ALERTED);
-                transaction.setAlertReasons(objectMapper.writeValueAsString(result.getAlertReasons()));
-                addProcessingStep(transaction, "ALERT_TRIGGERED",
-                        String.format("Alert triggered by %d rules", result.getTriggeredRules().size()));
-                log.warn("Transaction alerted: transactionId={}, severity={}, rules={}",
-                        transactionId, result.getMaxSeverity(), result.getTriggeredRules().size());
-                notificationService.sendAlertNotifications(transaction, result);
-                metricsService.recordAlert(result.getMaxSeverity());
-            } else {
-                transaction.setStatus(EStatus.PROCESSED);
-                addProcessingStep(transaction, "PROCESSING_COMPLETED", "No alerts triggered");
-                log.info("Transaction processed successfully: transactionId={}", transactionId);
-                metricsService.recordProcessed();
+            recordVelocity(transaction);
+            Outcome outcome = evaluate(transaction, EvaluationContext.NONE, startTime);
+            int updated = transactionRepository.updateProcessingResult(transactionId,
+                    transaction.getStatus().name(), transaction.getMlScore(), outcome.alertReasons(),
+                    outcome.steps(), outcome.updatedAt());
+            if (updated == 0) {
+                throw new RuntimeException("Transaction not found: " + transactionId);
             }
-            if (result.getMlScore() != null) {
-                transaction.setMlScore(result.getMlScore());
-            }
-            transactionRepository.save(transaction);
-            long duration = System.currentTimeMillis() - startTime;
-            metricsService.recordProcessingTime(duration);
-            log.info("Transaction processing completed: transactionId={}, status={}, duration={}ms",
-                    transactionId, transaction.getStatus(), duration);
+            complete(outcome);
         } catch (Exception e) {
             log.error("Error processing transaction: transactionId={}", transactionId, e);
-            metricsService.recordError();
-            try {
-                Transactions transaction = transactionRepository.findById(transactionId).orElse(null);
-                if (transaction != null) {
-                    addProcessingStep(transaction, "PROCESSING_ERROR", "Error: " + e.getMessage());
-                    transactionRepository.save(transaction);
-                }
-            } catch (Exception ex) {
-                log.error("Failed to update transaction with error", ex);
-            }
+            recordFailure(transactionId, e);
             throw new RuntimeException("Failed to process transaction", e);
         } finally {
             MDC.remove("correlationId");
@@ -77,23 +69,246 @@ public class TransactionProcessingService {
         }
     }
 
-    private void addProcessingStep(Transactions transaction, String step, String details) {
+    /**
+     * Processes a dequeued batch: rows without a snapshot are loaded with one query, pattern history
+     * of accounts repeated in the batch is fetched once, and all results are written as one JDBC batch
+     * in a single commit. A transaction that fails to load, evaluate or write is reported in the
+     * returned map (transaction id to failure reason) without affecting the rest of the batch.
+     */
+    public Map<UUID, String> processBatch(List<QueueService.QueueMessage> messages) {
+        MDC.put("component", "transaction-processor");
+        long startTime = System.currentTimeMillis();
+        Map<UUID, String> failures = new HashMap<>();
+        try {
+            List<Transactions> transactions = resolve(messages, failures);
+            transactions.forEach(this::recordVelocity);
+            EvaluationContext context = ruleEngine.prepareBatch(transactions);
+            List<Outcome> outcomes = new ArrayList<>(transactions.size());
+            for (Transactions transaction : transactions) {
+                MDC.put("correlationId", transaction.getCorrelationId());
+                try {
+                    outcomes.add(evaluate(transaction, context, startTime));
+                } catch (Exception e) {
+                    log.error("Error evaluating transaction in batch: transactionId={}", transaction.getId(), e);
+                    recordFailure(transaction.getId(), e);
+                    fail(failures, transaction.getId(), e);
+                } finally {
+                    MDC.remove("correlationId");
+                }
+            }
+            for (Outcome outcome : write(outcomes, failures)) {
+                MDC.put("correlationId", outcome.transaction().getCorrelationId());
+                try {
+                    complete(outcome);
+                } finally {
+                    MDC.remove("correlationId");
+                }
+            }
+            log.info("Processed batch of {} transactions ({} failed) in {}ms",
+                    messages.size(), failures.size(), System.currentTimeMillis() - startTime);
+            return failures;
+        } finally {
+            MDC.remove("component");
+        }
+    }
+
+    /**
+     * Builds the batch in message order, from snapshots where present and from one findAllById
+     * for the rest.
+     */
+    private List<Transactions> resolve(List<QueueService.QueueMessage> messages, Map<UUID, String> failures) {
+        Map<UUID, Transactions> resolved = new HashMap<>();
+        Set<UUID> toLoad = new LinkedHashSet<>();
+        for (QueueService.QueueMessage message : messages) {
+            if (message.getSnapshot() != null) {
+                try {
+                    resolved.put(message.getTransactionId(), message.getSnapshot().toTransaction(
+                            message.getTransactionId(), message.getCorrelationId()));
+                    continue;
+                } catch (Exception e) {
+                    log.warn("Unusable snapshot, loading transaction instead: transactionId={}",
+                            message.getTransactionId(), e);
+                }
+            }
+            toLoad.add(message.getTransactionId());
+        }
+        if (!toLoad.isEmpty()) {
+            try {
+                for (Transactions transaction : transactionRepository.findAllById(toLoad)) {
+                    resolved.put(transaction.getId(), transaction);
+                }
+            } catch (Exception e) {
+                log.error("Failed to load batch of {} transactions", toLoad.size(), e);
+                for (UUID id : toLoad) {
+                    fail(failures, id, e);
+                }
+            }
+        }
+        List<Transactions> transactions = new ArrayList<>(messages.size());
+        for (QueueService.QueueMessage message : messages) {
+            UUID id = message.getTransactionId();
+            Transactions transaction = resolved.remove(id);
+            if (transaction != null) {
+                transactions.add(transaction);
+            } else if (!failures.containsKey(id) && toLoad.contains(id)) {
+                failures.put(id, "Transaction not found: " + id);
+            }
+        }
+        return transactions;
+    }
+
+    /**
+     * Every processed transaction goes into the velocity windows, whether or not a pattern rule ends up
+     * counting it. A failure here only costs the windows this transaction.
+     */
+    private void recordVelocity(Transactions transaction) {
         try {
-            List<Map<String, Object>> history = new ArrayList<>();
-            if (transaction.getProcessingHistory() != null && !transaction.getProcessingHistory().isEmpty()) {
-                history = objectMapper.readValue(
-                        transaction.getProcessingHistory(),
-                        objectMapper.getTypeFactory().constructCollectionType(List.class, Map.class)
-                );
+            velocityStore.record(transaction);
+        } catch (RuntimeException e) {
+            log.warn("Failed to record transaction {} for velocity windows: {}", transaction.getId(), e.getMessage());
+        }
+    }
+
+    private Outcome evaluate(Transactions transaction, EvaluationContext context, long startTime)
+            throws Exception {
+        List<Map<String, Object>> steps = new ArrayList<>();
+        addProcessingStep(steps, "PROCESSING_STARTED", "Transaction processing started");
+        RuleEngine.RuleEvaluationResult result = ruleEngine.evaluateTransaction(transaction, context);
+        if (!result.getTimedOutRules().isEmpty()) {
+            addProcessingStep(steps, "RULES_TIMED_OUT",
+                    "Rules not finished within the time budget: " + String.join(", ", result.getTimedOutRules()));
+        }
+        String alertReasons = null;
+        if (result.isAlerted()) {
+            transaction.setStatus(EStatus.ALERTED);
+            alertReasons = objectMapper.writeValueAsString(result.getAlertReasons());
+            transaction.setAlertReasons(alertReasons);
+            addProcessingStep(steps, "ALERT_TRIGGERED",
+                    String.format("Alert triggered by %d rules", result.getTriggeredRules().size()))
+                    .put("ruleSetVersion", result.getRuleSetVersion());
+            log.warn("Transaction alerted: transactionId={}, severity={}, rules={}",
+                    transaction.getId(), result.getMaxSeverity(), result.getTriggeredRules().size());
+        } else {
+            transaction.setStatus(EStatus.PROCESSED);
+            addProcessingStep(steps, "PROCESSING_COMPLETED", "No alerts triggered")
+                    .put("ruleSetVersion", result.getRuleSetVersion());
+        }
+        if (result.getMlScore() != null) {
+            transaction.setMlScore(result.getMlScore());
+        }
+        return new Outcome(transaction, result, alertReasons, objectMapper.writeValueAsString(steps),
+                LocalDateTime.now(), startTime);
+    }
+
+    /**
+     * Writes all outcomes in one transaction. If the batch is rejected as a whole, each outcome is
+     * retried on its own so a single bad row only fails itself. Returns the outcomes that were stored.
+     */
+    private List<Outcome> write(List<Outcome> outcomes, Map<UUID, String> failures) {
+        if (outcomes.isEmpty()) {
+            return outcomes;
+        }
+        try {
+            SqlParameterSource[] parameters = outcomes.stream()
+                    .map(TransactionProcessingService::resultParameters)
+                    .toArray(SqlParameterSource[]::new);
+            int[] counts = transactionTemplate.execute(status -> namedParameterJdbcTemplate.batchUpdate(
+                    TransactionRepository.UPDATE_PROCESSING_RESULT, parameters));
+            List<Outcome> written = new ArrayList<>(outcomes.size());
+            for (int index = 0; index < outcomes.size(); index++) {
+                Outcome outcome = outcomes.get(index);
+                if (counts != null && counts[index] == 0) {
+                    failures.put(outcome.transaction().getId(),
+                            "Transaction not found: " + outcome.transaction().getId());
+                } else {
+                    written.add(outcome);
+                }
             }
-            Map<String, Object> stepData = new HashMap<>();
-            stepData.put("timestamp", LocalDateTime.now().toString());
-            stepData.put("step", step);
-            stepData.put("details", details);
-            history.add(stepData);
-            transaction.setProcessingHistory(objectMapper.writeValueAsString(history));
+            return written;
         } catch (Exception e) {
-            log.error("Error adding processing step", e);
+            log.warn("Batch result write failed, falling back to per-transaction updates: {}", e.getMessage());
+            List<Outcome> written = new ArrayList<>(outcomes.size());
+            for (Outcome outcome : outcomes) {
+                Transactions transaction = outcome.transaction();
+                try {
+                    int updated = transactionRepository.updateProcessingResult(transaction.getId(),
+                            transaction.getStatus().name(), transaction.getMlScore(), outcome.alertReasons(),
+                            outcome.steps(), outcome.updatedAt());
+                    if (updated == 0) {
+                        failures.put(transaction.getId(), "Transaction not found: " + transaction.getId());
+                    } else {
+                        written.add(outcome);
+                    }
+                } catch (Exception ex) {
+                    log.error("Failed to write result: transactionId={}", transaction.getId(), ex);
+                    recordFailure(transaction.getId(), ex);
+                    fail(failures, transaction.getId(), ex);
+                }
+            }
+            return written;
+        }
+    }
+
+    private static SqlParameterSource resultParameters(Outcome outcome) {
+        Transactions transaction = outcome.transaction();
+        return new MapSqlParameterSource()
+                .addValue("id", transaction.getId())
+                .addValue("status", transaction.getStatus().name())
+                .addValue("mlScore", transaction.getMlScore(), Types.DOUBLE)
+                .addValue("alertReasons", outcome.alertReasons(), Types.VARCHAR)
+                .addValue("steps", outcome.steps())
+                .addValue("updatedAt", Timestamp.valueOf(outcome.updatedAt()));
+    }
+
+    private void complete(Outcome outcome) {
+        Transactions transaction = outcome.transaction();
+        RuleEngine.RuleEvaluationResult result = outcome.result();
+        if (result.isAlerted()) {
+            notificationService.sendAlertNotifications(transaction, result);
+            metricsService.recordAlert(result.getMaxSeverity());
+        } else {
+            log.info("Transaction processed successfully: transactionId={}", transaction.getId());
+            metricsService.recordProcessed();
+        }
+        long duration = System.currentTimeMillis() - outcome.startTime();
+        metricsService.recordProcessingTime(duration);
+        log.info("Transaction processing completed: transactionId={}, status={}, duration={}ms",
+                transaction.getId(), transaction.getStatus(), duration);
+    }
+
+    private void recordFailure(UUID transactionId, Exception e) {
+        metricsService.recordError();
+        try {
+            List<Map<String, Object>> steps = new ArrayList<>();
+            addProcessingStep(steps, "PROCESSING_ERROR", "Error: " + e.getMessage());
+            transactionRepository.appendProcessingHistory(transactionId,
+                    objectMapper.writeValueAsString(steps), LocalDateTime.now());
+        } catch (Exception ex) {
+            log.error("Failed to update transaction with error", ex);
         }
     }
+
+    private static void fail(Map<UUID, String> failures, UUID transactionId, Exception e) {
+        String reason = e.getClass().getSimpleName();
+        failures.put(transactionId, e.getMessage() != null ? reason + ": " + e.getMessage() : reason);
+    }
+
+    private Map<String, Object> addProcessingStep(List<Map<String, Object>> steps, String step, String details) {
+        Map<String, Object> stepData = new HashMap<>();
+        stepData.put("timestamp", LocalDateTime.now().toString());
+        stepData.put("step", step);
+        stepData.put("details", details);
+        steps.add(stepData);
+        return stepData;
+    }
+
+    private record Outcome(
+            Transactions transaction,
+            RuleEngine.RuleEvaluationResult result,
+            String alertReasons,
+            String steps,
+            LocalDateTime updatedAt,
+            long startTime
+    ) {
+    }
 }
@@ -7,6 +7,10 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -21,6 +25,16 @@ public class TransactionQueueWorker {
     private final TransactionProcessingService processingService;
     @Value("${app.queue.worker-threads:5}")
     private int workerThreads;
+    @Value("${app.queue.blocking-dequeue:true}")
+    private boolean blockingDequeue;
+    @Value("${app.queue.batch-size:10}")
+    private int batchSize;
+    @Value("${app.queue.block-timeout-ms:2000}")
+    private long blockTimeoutMs;
+    @Value("${app.queue.batch-processing:false}")
+    private boolean batchProcessing;
+    @Value("${app.queue.node-id:${HOSTNAME:local}}")
+    private String nodeId;
     private ExecutorService executorService;
     private volatile boolean running = false;
 
@@ -31,30 +45,33 @@ public class TransactionQueueWorker {
         running = true;
         for (int i = 0; i < workerThreads; i++) {
             final int workerId = i;
-            executorService.submit(() -> processQueue(workerId));
+            String consumerId = consumerId(workerId);
+            queueService.releaseConsumer(consumerId);
+            executorService.submit(() -> processQueue(workerId, consumerId));
         }
     }
 
-    private void processQueue(int workerId) {
-        log.info("Queue worker {} started", workerId);
+    private String consumerId(int workerId) {
+        return nodeId + "-" + workerId;
+    }
+
+    private void processQueue(int workerId, String consumerId) {
+        log.info("Queue worker {} started (consumer={}, blockingDequeue={}, batchSize={})",
+                workerId, consumerId, blockingDequeue, batchSize);
+        Duration blockTimeout = blockingDequeue ? Duration.ofMillis(blockTimeoutMs) : Duration.ZERO;
+        int maxMessages = blockingDequeue ? batchSize : 1;
         while (running) {
             try {
-                QueueService.QueueMessage message = queueService.dequeue();
-                if (message != null) {
-                    try {
-                        log.debug("Worker {} processing transaction: {}",
-                                workerId, message.getTransactionId());
-                        processingService.processTransaction(
-                                message.getTransactionId(),
-                                message.getCorrelationId()
-                        );
-                        queueService.markAsProcessed(message.getTransactionId());
-                    } catch (Exception e) {
-                        log.error("Worker {} failed to process transaction: {}",
-                                workerId, message.getTransactionId(), e);
-                        queueService.requeueForRetry(message);
-                    }
+                List<QueueService.QueueMessage> batch =
+                        queueService.dequeueBatch(consumerId, maxMessages, blockTimeout);
+                if (batchProcessing && batch.size() > 1) {
+                    processBatch(workerId, batch);
                 } else {
+                    for (QueueService.QueueMessage message : batch) {
+                        processMessage(workerId, message);
+                    }
+                }
+                if (batch.isEmpty() && !blockingDequeue) {
                     Thread.sleep(100);
                 }
             } catch (InterruptedException e) {
@@ -74,6 +91,51 @@ public class TransactionQueueWorker {
         log.info("Queue worker {} stopped", workerId);
     }
 
+    private void processMessage(int workerId, QueueService.QueueMessage message) {
+        try {
+            log.debug("Worker {} processing transaction: {}",
+                    workerId, message.getTransactionId());
+            processingService.processTransaction(
+                    message.getTransactionId(),
+                    message.getCorrelationId(),
+                    message.getSnapshot()
+            );
+            queueService.markAsProcessed(message);
+        } catch (Exception e) {
+            log.error("Worker {} failed to process transaction: {}",
+                    workerId, message.getTransactionId(), e);
+            queueService.requeueForRetry(message, failureReason(e));
+        }
+    }
+
+    private void processBatch(int workerId, List<QueueService.QueueMessage> batch) {
+        Map<UUID, String> failures;
+        try {
+            failures = processingService.processBatch(batch);
+        } catch (Exception e) {
+            log.error("Worker {} failed to process batch of {}, retrying one by one", workerId, batch.size(), e);
+            for (QueueService.QueueMessage message : batch) {
+                processMessage(workerId, message);
+            }
+            return;
+        }
+        for (QueueService.QueueMessage message : batch) {
+            String failure = failures.get(message.getTransactionId());
+            if (failure == null) {
+                queueService.markAsProcessed(message);
+            } else {
+                log.error("Worker {} failed to process transaction: {} ({})",
+                        workerId, message.getTransactionId(), failure);
+                queueService.requeueForRetry(message, failure);
+            }
+        }
+    }
+
+    private static String failureReason(Exception e) {
+        String reason = e.getClass().getSimpleName();
+        return e.getMessage() != null ? reason + ": " + e.getMessage() : reason;
+    }
+
     @PreDestroy
     public void stopWorkers() {
         log.info("Stopping queue workers");
@@ -89,5 +151,8 @@ public class TransactionQueueWorker {
                 Thread.currentThread().interrupt();
             }
         }
+        for (int i = 0; i < workerThreads; i++) {
+            queueService.releaseConsumer(consumerId(i));
+        }
     }
 }
@@ -0,0 +1,252 @@
+package com.jvmd.transationapp.service.backtest;
+
+import com.jvmd.transationapp.dto.BacktestResponse;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.service.ml.OfflineScorer;
+import com.jvmd.transationapp.service.rules.CompiledRule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * State and running totals of one backtest. Chunks are evaluated concurrently, so every total is an
+ * adder; a snapshot taken while the job runs is approximate but never blocks the workers.
+ */
+final class BacktestJob {
+    enum Status {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+
+    private final String id;
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final List<CompiledRule> rules;
+    private final boolean scoresTransactions;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder alerts = new LongAdder();
+    private final LongAdder labeledFraud = new LongAdder();
+    private final LongAdder truePositives = new LongAdder();
+    private final RuleTotals[] ruleTotals;
+    private final Map<LocalDate, DayTotals> days = new ConcurrentSkipListMap<>();
+    private volatile Status status = Status.RUNNING;
+    private volatile boolean cancelRequested;
+    private volatile long estimatedTransactions;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+    private OfflineScorer offlineScorer;
+
+    BacktestJob(String id, LocalDateTime start, LocalDateTime end, List<CompiledRule> rules) {
+        this.id = id;
+        this.start = start;
+        this.end = end;
+        this.rules = List.copyOf(rules);
+        this.scoresTransactions = rules.stream().anyMatch(rule -> rule.type() == RuleType.ML_RULE);
+        this.ruleTotals = new RuleTotals[rules.size()];
+        for (int i = 0; i < ruleTotals.length; i++) {
+            ruleTotals[i] = new RuleTotals();
+        }
+    }
+
+    String id() {
+        return id;
+    }
+
+    LocalDateTime start() {
+        return start;
+    }
+
+    LocalDateTime end() {
+        return end;
+    }
+
+    List<CompiledRule> rules() {
+        return rules;
+    }
+
+    /**
+     * Whether a candidate is an ML rule, so transactions without a stored score need one.
+     */
+    boolean scoresTransactions() {
+        return scoresTransactions;
+    }
+
+    /**
+     * The job's private model, opened by the first chunk that needs it and closed by {@link #finish()}.
+     */
+    synchronized OfflineScorer offlineScorer(Callable<OfflineScorer> opener) throws Exception {
+        if (offlineScorer == null) {
+            if (status != Status.RUNNING) {
+                throw new IllegalStateException("backtest " + id + " is no longer running");
+            }
+            offlineScorer = opener.call();
+        }
+        return offlineScorer;
+    }
+
+    Status status() {
+        return status;
+    }
+
+    boolean isRunning() {
+        return status == Status.RUNNING;
+    }
+
+    /**
+     * Workers and the reader stop at the next transaction or row once this is set.
+     */
+    boolean shouldStop() {
+        return cancelRequested || status != Status.RUNNING;
+    }
+
+    void cancel() {
+        cancelRequested = true;
+    }
+
+    void setEstimatedTransactions(long estimatedTransactions) {
+        this.estimatedTransactions = estimatedTransactions;
+    }
+
+    void recordRule(int position, long nanos, boolean triggered, boolean fraud) {
+        RuleTotals totals = ruleTotals[position];
+        totals.evaluations.increment();
+        totals.nanos.add(nanos);
+        if (triggered) {
+            totals.hits.increment();
+            if (fraud) {
+                totals.truePositives.increment();
+            }
+        }
+    }
+
+    void recordRuleError(int position) {
+        ruleTotals[position].errors.increment();
+    }
+
+    void recordTransaction(LocalDate day, boolean alerted, boolean fraud) {
+        processed.increment();
+        DayTotals dayTotals = days.computeIfAbsent(day, d -> new DayTotals());
+        dayTotals.transactions.increment();
+        if (alerted) {
+            alerts.increment();
+            dayTotals.alerts.increment();
+        }
+        if (fraud) {
+            labeledFraud.increment();
+            dayTotals.labeledFraud.increment();
+            if (alerted) {
+                truePositives.increment();
+            }
+        }
+    }
+
+    /**
+     * Called once no chunk is in flight any more.
+     */
+    synchronized void finish() {
+        if (status == Status.RUNNING) {
+            status = cancelRequested ? Status.CANCELLED : Status.COMPLETED;
+            finishedAt = LocalDateTime.now();
+        }
+        if (offlineScorer != null) {
+            offlineScorer.close();
+            offlineScorer = null;
+        }
+    }
+
+    synchronized void fail(Throwable cause) {
+        if (status == Status.RUNNING) {
+            status = Status.FAILED;
+            error = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            finishedAt = LocalDateTime.now();
+        }
+    }
+
+    BacktestResponse snapshot() {
+        long processedCount = processed.sum();
+        long alertCount = alerts.sum();
+        long fraudCount = labeledFraud.sum();
+        long hits = truePositives.sum();
+        List<BacktestResponse.RuleEntry> ruleEntries = new ArrayList<>(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            CompiledRule rule = rules.get(i);
+            RuleTotals totals = ruleTotals[i];
+            long evaluations = totals.evaluations.sum();
+            long ruleHits = totals.hits.sum();
+            ruleEntries.add(BacktestResponse.RuleEntry.builder()
+                    .ruleId(rule.id())
+                    .name(rule.name())
+                    .type(rule.type().name())
+                    .evaluations(evaluations)
+                    .hits(ruleHits)
+                    .truePositives(totals.truePositives.sum())
+                    .precision(ratio(totals.truePositives.sum(), ruleHits))
+                    .errors(totals.errors.sum())
+                    .averageLatencyMicros(evaluations > 0 ? totals.nanos.sum() / 1_000.0 / evaluations : 0)
+                    .build());
+        }
+        List<BacktestResponse.DayEntry> dayEntries = new ArrayList<>(days.size());
+        days.forEach((day, totals) -> dayEntries.add(BacktestResponse.DayEntry.builder()
+                .day(day)
+                .transactions(totals.transactions.sum())
+                .alerts(totals.alerts.sum())
+                .labeledFraud(totals.labeledFraud.sum())
+                .build()));
+        long estimate = estimatedTransactions;
+        return BacktestResponse.builder()
+                .id(id)
+                .status(status.name())
+                .start(start)
+                .end(end)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .estimatedTransactions(estimate)
+                .processedTransactions(processedCount)
+                .progress(progress(processedCount, estimate))
+                .alerts(alertCount)
+                .labeledFraud(fraudCount)
+                .truePositives(hits)
+                .falsePositives(alertCount - hits)
+                .falseNegatives(fraudCount - hits)
+                .precision(ratio(hits, alertCount))
+                .recall(ratio(hits, fraudCount))
+                .rules(ruleEntries)
+                .days(dayEntries)
+                .build();
+    }
+
+    private double progress(long processedCount, long estimate) {
+        if (status == Status.COMPLETED) {
+            return 1.0;
+        }
+        return estimate > 0 ? Math.min(1.0, (double) processedCount / estimate) : 0;
+    }
+
+    private static double ratio(long numerator, long denominator) {
+        return denominator > 0 ? (double) numerator / denominator : 0;
+    }
+
+    private static final class RuleTotals {
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder truePositives = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+
+    private static final class DayTotals {
+        private final LongAdder transactions = new LongAdder();
+        private final LongAdder alerts = new LongAdder();
+        private final LongAdder labeledFraud = new LongAdder();
+    }
+}
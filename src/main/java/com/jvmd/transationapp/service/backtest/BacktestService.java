@@ -0,0 +1,355 @@
+package com.jvmd.transationapp.service.backtest;
+
+import com.jvmd.transationapp.dto.BacktestRequest;
+import com.jvmd.transationapp.dto.BacktestResponse;
+import com.jvmd.transationapp.dto.RuleRequest;
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.repository.RuleRepository;
+import com.jvmd.transationapp.repository.TransactionRepository;
+import com.jvmd.transationapp.service.ml.MLInferenceService;
+import com.jvmd.transationapp.service.rules.CompiledRule;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
+import com.jvmd.transationapp.service.rules.MLRuleEvaluator;
+import com.jvmd.transationapp.service.rules.PatternRuleEvaluator;
+import com.jvmd.transationapp.service.rules.RuleEngine;
+import com.jvmd.transationapp.service.rules.velocity.RepositoryVelocityStore;
+import com.jvmd.transationapp.service.rules.velocity.WindowSpec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays stored transactions of a date range through a candidate rule set and measures it against
+ * the {@code fraudType} labels. Rows are streamed through a server-side cursor and cut into chunks
+ * that are evaluated on a dedicated ForkJoin pool; a semaphore caps the chunks in flight, so memory
+ * stays bounded however many rows the range holds. Rows are read in timestamp order, which the
+ * timestamp index serves without a sort. Pattern rules count against a private repository-backed
+ * velocity store with one aggregate query per transaction and window, never a prefetch of history
+ * rows, so a replay neither touches live velocity state nor loads whole account histories. ML rules
+ * read the stored {@code ml_score}; rows without one are scored by a private copy of the active
+ * model, so a replay never queues behind live predictions or feeds the challenger.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BacktestService {
+    private static final String STREAM_SQL = "SELECT id, correlation_id, amount, account_from, account_to, type, " +
+            "timestamp, ml_score, ip_address, device_id, location, merchant_category, device_used, fraud_type, " +
+            "time_since_last_transaction, spending_deviation_score, velocity_score, geo_anomaly_score, " +
+            "payment_channel, device_hash FROM transactions WHERE timestamp BETWEEN ? AND ? ORDER BY timestamp";
+    private static final Set<String> NON_FRAUD_LABELS = Set.of("none", "normal", "legitimate");
+    private final DataSource dataSource;
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionRepository transactionRepository;
+    private final RuleRepository ruleRepository;
+    private final RuleEngine ruleEngine;
+    private final PatternRuleEvaluator patternEvaluator;
+    private final MLRuleEvaluator mlRuleEvaluator;
+    private final MLInferenceService inferenceService;
+    private final Map<String, BacktestJob> jobs = new LinkedHashMap<>();
+    private final ExecutorService jobExecutor =
+            Executors.newCachedThreadPool(Thread.ofPlatform().name("backtest-", 0).daemon().factory());
+    private JdbcTemplate streamingJdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private ForkJoinPool pool;
+
+    @Value("${app.backtest.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.backtest.chunk-size:2000}")
+    private int chunkSize;
+
+    @Value("${app.backtest.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.backtest.max-in-flight-chunks:8}")
+    private int maxInFlightChunks;
+
+    @Value("${app.backtest.max-concurrent-jobs:1}")
+    private int maxConcurrentJobs;
+
+    @Value("${app.backtest.retained-jobs:20}")
+    private int retainedJobs;
+
+    @PostConstruct
+    public void init() {
+        streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        streamingJdbcTemplate.setFetchSize(fetchSize);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (jobs) {
+            jobs.values().forEach(BacktestJob::cancel);
+        }
+        jobExecutor.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * Compiles the candidate rules and starts the replay in the background.
+     *
+     * @throws IllegalArgumentException if the range or a candidate rule is invalid
+     * @throws IllegalStateException    if the maximum number of backtests is already running
+     */
+    public BacktestResponse start(BacktestRequest request) {
+        if (request.getEnd().isBefore(request.getStart())) {
+            throw new IllegalArgumentException("end must not be before start");
+        }
+        RepositoryVelocityStore velocityStore = new RepositoryVelocityStore(transactionRepository);
+        List<CompiledRule> rules = compileCandidates(request, velocityStore);
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("candidate rule set is empty");
+        }
+        BacktestJob job = new BacktestJob(UUID.randomUUID().toString(), request.getStart(), request.getEnd(),
+                rules);
+        synchronized (jobs) {
+            long running = jobs.values().stream().filter(BacktestJob::isRunning).count();
+            if (running >= maxConcurrentJobs) {
+                throw new IllegalStateException(running + " backtest(s) already running");
+            }
+            jobs.put(job.id(), job);
+            evictFinished();
+        }
+        jobExecutor.execute(() -> run(job));
+        log.info("Backtest {} started: {} rules, {} .. {}", job.id(), rules.size(), job.start(), job.end());
+        return job.snapshot();
+    }
+
+    public Optional<BacktestResponse> get(String id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id)).map(BacktestJob::snapshot);
+        }
+    }
+
+    public List<BacktestResponse> list() {
+        synchronized (jobs) {
+            return jobs.values().stream().map(BacktestJob::snapshot).toList();
+        }
+    }
+
+    public Optional<BacktestResponse> cancel(String id) {
+        synchronized (jobs) {
+            BacktestJob job = jobs.get(id);
+            if (job == null) {
+                return Optional.empty();
+            }
+            job.cancel();
+            log.info("Backtest {} cancellation requested", id);
+            return Optional.of(job.snapshot());
+        }
+    }
+
+    private List<CompiledRule> compileCandidates(BacktestRequest request, RepositoryVelocityStore velocityStore) {
+        List<Rule> candidates = new ArrayList<>();
+        if (request.getRuleIds() != null) {
+            for (Long ruleId : request.getRuleIds()) {
+                candidates.add(ruleRepository.findById(ruleId)
+                        .orElseThrow(() -> new IllegalArgumentException("rule " + ruleId + " does not exist")));
+            }
+        }
+        if (request.getRules() != null) {
+            for (RuleRequest ruleRequest : request.getRules()) {
+                Rule rule = new Rule();
+                rule.setName(ruleRequest.getName());
+                rule.setType(ruleRequest.getType());
+                rule.setConfiguration(ruleRequest.getConfiguration());
+                rule.setPriority(ruleRequest.getPriority() != null ? ruleRequest.getPriority() : 0);
+                rule.setSeverity(ruleRequest.getSeverity() != null ? ruleRequest.getSeverity() : 1);
+                candidates.add(rule);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(ruleRepository.findByEnabledTrueOrderByPriorityAsc());
+        }
+        candidates.sort(Comparator.comparing(rule -> rule.getPriority() != null ? rule.getPriority() : 0));
+        List<CompiledRule> rules = new ArrayList<>(candidates.size());
+        Set<WindowSpec> windows = new LinkedHashSet<>();
+        for (Rule rule : candidates) {
+            if (rule.getType() == RuleType.PATTERN) {
+                CompiledRule compiled = CompiledRule.of(rule, patternEvaluator.compile(rule, velocityStore));
+                windows.add(((PatternRuleEvaluator.PatternMatcher) compiled.matcher()).config().windowSpec());
+                rules.add(compiled);
+            } else if (rule.getType() == RuleType.ML_RULE) {
+                rules.add(CompiledRule.of(rule, mlRuleEvaluator.compileOffline(rule)));
+            } else {
+                rules.add(ruleEngine.compileRule(rule));
+            }
+        }
+        velocityStore.register(windows);
+        return rules;
+    }
+
+    private void run(BacktestJob job) {
+        Semaphore inFlight = new Semaphore(maxInFlightChunks);
+        try {
+            job.setEstimatedTransactions(transactionRepository.countByTimestampBetween(job.start(), job.end()));
+            List<Transactions> chunk = new ArrayList<>(chunkSize);
+            readOnlyTransaction.executeWithoutResult(status -> streamingJdbcTemplate.query(STREAM_SQL, ps -> {
+                ps.setTimestamp(1, Timestamp.valueOf(job.start()));
+                ps.setTimestamp(2, Timestamp.valueOf(job.end()));
+            }, rs -> {
+                if (job.shouldStop()) {
+                    throw new CancellationException();
+                }
+                chunk.add(mapRow(rs));
+                if (chunk.size() >= chunkSize) {
+                    submit(job, List.copyOf(chunk), inFlight);
+                    chunk.clear();
+                }
+            }));
+            if (!chunk.isEmpty()) {
+                submit(job, List.copyOf(chunk), inFlight);
+            }
+        } catch (CancellationException e) {
+            log.info("Backtest {} cancelled", job.id());
+        } catch (Exception e) {
+            log.error("Backtest {} failed", job.id(), e);
+            job.fail(e);
+        } finally {
+            awaitChunks(job, inFlight);
+            job.finish();
+            log.info("Backtest {} finished with status {}", job.id(), job.status());
+        }
+    }
+
+    /**
+     * Blocks the reader while {@code maxInFlightChunks} chunks are being evaluated.
+     */
+    private void submit(BacktestJob job, List<Transactions> chunk, Semaphore inFlight) {
+        try {
+            while (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (job.shouldStop()) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.cancel();
+            throw new CancellationException();
+        }
+        pool.execute(() -> {
+            try {
+                evaluateChunk(job, chunk);
+            } catch (Exception e) {
+                log.error("Backtest {} chunk failed", job.id(), e);
+                job.fail(e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void awaitChunks(BacktestJob job, Semaphore inFlight) {
+        try {
+            inFlight.acquire(maxInFlightChunks);
+            inFlight.release(maxInFlightChunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.cancel();
+        }
+    }
+
+    /**
+     * Every candidate rule runs on every transaction, without the critical short circuit, so the
+     * per-rule figures are complete. A transaction counts as alerted when any rule fires, which is
+     * what the live engine would decide.
+     */
+    private void evaluateChunk(BacktestJob job, List<Transactions> chunk) throws Exception {
+        if (job.scoresTransactions() && chunk.stream().anyMatch(transaction -> transaction.getMlScore() == null)) {
+            job.offlineScorer(() -> inferenceService.openOfflineScorer(parallelism)).scoreMissing(chunk);
+        }
+        List<CompiledRule> rules = job.rules();
+        for (Transactions transaction : chunk) {
+            if (job.shouldStop()) {
+                return;
+            }
+            boolean fraud = isFraud(transaction.getFraudType());
+            boolean alerted = false;
+            for (int i = 0; i < rules.size(); i++) {
+                long startTime = System.nanoTime();
+                try {
+                    boolean triggered = rules.get(i).matcher().matches(transaction, EvaluationContext.NONE);
+                    job.recordRule(i, System.nanoTime() - startTime, triggered, fraud);
+                    alerted |= triggered;
+                } catch (Exception e) {
+                    job.recordRuleError(i);
+                    log.debug("Backtest {}: rule {} failed on {}: {}", job.id(), rules.get(i).name(),
+                            transaction.getId(), e.getMessage());
+                }
+            }
+            job.recordTransaction(transaction.getTimestamp().toLocalDate(), alerted, fraud);
+        }
+    }
+
+    private static boolean isFraud(String fraudType) {
+        return fraudType != null && !fraudType.isBlank()
+                && !NON_FRAUD_LABELS.contains(fraudType.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private void evictFinished() {
+        var iterator = jobs.values().iterator();
+        while (jobs.size() > retainedJobs && iterator.hasNext()) {
+            if (!iterator.next().isRunning()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static Transactions mapRow(ResultSet rs) throws SQLException {
+        Transactions transaction = new Transactions();
+        transaction.setId(rs.getObject("id", UUID.class));
+        transaction.setCorrelationId(rs.getString("correlation_id"));
+        transaction.setAmount(rs.getBigDecimal("amount"));
+        transaction.setFrom(rs.getString("account_from"));
+        transaction.setTo(rs.getString("account_to"));
+        transaction.setType(rs.getString("type"));
+        transaction.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+        transaction.setMlScore(rs.getObject("ml_score", Double.class));
+        transaction.setIpAddress(rs.getString("ip_address"));
+        transaction.setDeviceId(rs.getString("device_id"));
+        transaction.setLocation(rs.getString("location"));
+        transaction.setMerchantCategory(rs.getString("merchant_category"));
+        transaction.setDeviceUsed(rs.getString("device_used"));
+        transaction.setFraudType(rs.getString("fraud_type"));
+        transaction.setTimeSinceLastTransaction(rs.getObject("time_since_last_transaction", Double.class));
+        transaction.setSpendingDeviationScore(rs.getObject("spending_deviation_score", Double.class));
+        transaction.setVelocityScore(rs.getObject("velocity_score", Double.class));
+        transaction.setGeoAnomalyScore(rs.getObject("geo_anomaly_score", Double.class));
+        transaction.setPaymentChannel(rs.getString("payment_channel"));
+        transaction.setDeviceHash(rs.getString("device_hash"));
+        return transaction;
+    }
+}
@@ -0,0 +1,212 @@
+package com.jvmd.transationapp.service.ml;
+
+import com.jvmd.transationapp.dto.ChallengerStatsResponse;
+import com.jvmd.transationapp.model.Transactions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scores transactions with a challenger model version next to the production (champion) one.
+ * Challenger inference never runs on the caller's thread: {@link #submit} hands the transaction to
+ * a small executor with a bounded queue and returns, and transactions that do not fit are dropped
+ * and counted. Scores go to {@code transactions.ml_challenger_score} in batched UPDATEs and into
+ * {@link ChallengerStats}, which start over whenever another version is set.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ChallengerScorer {
+    private static final String UPDATE_SQL = "UPDATE transactions SET ml_challenger_score = ? WHERE id = ?";
+    private final MLInferenceService inferenceService;
+    private final ModelRegistry modelRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReference<Challenger> challenger = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<ScoreUpdate> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final ExecutorService challengerLoader =
+            Executors.newSingleThreadExecutor(Thread.ofPlatform().name("ml-challenger-loader").daemon().factory());
+    private final ThreadLocal<float[]> features = ThreadLocal.withInitial(() -> new float[MLInferenceService.INPUT_SIZE]);
+    private final ThreadLocal<float[]> scores = ThreadLocal.withInitial(() -> new float[1]);
+    private ThreadPoolExecutor executor;
+    private Counter droppedCounter;
+
+    @Value("${app.ml.challenger.version:}")
+    private String initialVersion;
+
+    @Value("${app.ml.challenger.threads:1}")
+    private int threads;
+
+    @Value("${app.ml.challenger.queue-capacity:1024}")
+    private int queueCapacity;
+
+    @PostConstruct
+    public void init() {
+        droppedCounter = Counter.builder("ml.challenger.dropped")
+                .description("Transactions not scored by the challenger because its queue was full")
+                .register(meterRegistry);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("ml-challenger-", 0).daemon().factory(),
+                (task, pool) -> dropped());
+        if (!initialVersion.isBlank()) {
+            activate(initialVersion).exceptionally(e -> {
+                log.warn("Failed to load challenger model {}: {}", initialVersion, e.getMessage());
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Loads {@code version} as the challenger in the background. Fails like
+     * {@link MLInferenceService#activate}.
+     */
+    public CompletableFuture<Void> activate(String version) {
+        if (!modelRegistry.exists(version)) {
+            throw new IllegalArgumentException("model version not found: " + version);
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                replace(new Challenger(inferenceService.load(version, threads), new ChallengerStats()));
+                log.info("Challenger model version {} active", version);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, challengerLoader);
+    }
+
+    public void clear() {
+        replace(null);
+        log.info("Challenger model removed");
+    }
+
+    public boolean isActive() {
+        return challenger.get() != null;
+    }
+
+    /**
+     * Queues challenger scoring of a transaction the champion scored {@code championScore}.
+     * Returns at once; does nothing without a challenger.
+     */
+    public void submit(Transactions transaction, float championScore, double threshold) {
+        Challenger current = challenger.get();
+        if (current == null || transaction.getId() == null) {
+            return;
+        }
+        executor.execute(() -> score(current, transaction, championScore, threshold));
+    }
+
+    public ChallengerStatsResponse describe() {
+        Challenger current = challenger.get();
+        if (current == null) {
+            return ChallengerStatsResponse.builder().queued(executor.getQueue().size()).build();
+        }
+        return current.stats().describe()
+                .version(current.model().version())
+                .engine(current.model().engineName())
+                .loadedAt(current.model().loadedAt())
+                .queued(executor.getQueue().size())
+                .build();
+    }
+
+    /**
+     * Writes the scores collected since the last flush. A failed write is logged and its scores are
+     * dropped; they are diagnostic and must not pile up while the database is unavailable.
+     */
+    @Scheduled(fixedDelayString = "${app.ml.challenger.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<ScoreUpdate> updates = new ArrayList<>();
+        ScoreUpdate update;
+        while ((update = pendingWrites.poll()) != null) {
+            updates.add(update);
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates, updates.size(), (ps, entry) -> {
+                ps.setDouble(1, entry.score());
+                ps.setObject(2, entry.transactionId());
+            });
+        } catch (Exception e) {
+            log.warn("Failed to write {} challenger scores: {}", updates.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        challengerLoader.shutdownNow();
+        executor.shutdownNow();
+        replace(null);
+        flush();
+    }
+
+    private void score(Challenger current, Transactions transaction, float championScore, double threshold) {
+        long start = System.nanoTime();
+        InferenceEngine engine = null;
+        try {
+            engine = current.model().borrow();
+            if (engine == null) {
+                current.stats().recordDropped();
+                return;
+            }
+            float[] row = features.get();
+            float[] score = scores.get();
+            FeatureExtractor.extract(transaction, row, 0);
+            engine.predict(row, 1, score);
+            current.stats().record(championScore, score[0], threshold, System.nanoTime() - start);
+            pendingWrites.add(new ScoreUpdate(transaction.getId(), score[0]));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            current.stats().recordFailed();
+            log.debug("Challenger scoring failed for transaction {}: {}", transaction.getId(), e.getMessage());
+        } finally {
+            if (engine != null) {
+                current.model().release(engine);
+            }
+        }
+    }
+
+    private void dropped() {
+        droppedCounter.increment();
+        Challenger current = challenger.get();
+        if (current != null) {
+            current.stats().recordDropped();
+        }
+    }
+
+    private void replace(Challenger next) {
+        Challenger previous = challenger.getAndSet(next);
+        if (previous != null) {
+            previous.model().retire();
+        }
+    }
+
+    private record Challenger(LoadedModel model, ChallengerStats stats) {
+    }
+
+    private record ScoreUpdate(UUID transactionId, double score) {
+    }
+}
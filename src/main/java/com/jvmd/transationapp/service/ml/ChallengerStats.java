@@ -0,0 +1,101 @@
+package com.jvmd.transationapp.service.ml;
+
+import com.jvmd.transationapp.dto.ChallengerStatsResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Online champion/challenger comparison of one challenger version: score histograms in ten equal
+ * buckets over [0, 1], means, absolute differences and agreement of the alert decision at the ML
+ * rule's threshold.
+ */
+final class ChallengerStats {
+    private static final int BUCKETS = 10;
+    private final LongAdder scored = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final DoubleAdder championSum = new DoubleAdder();
+    private final DoubleAdder challengerSum = new DoubleAdder();
+    private final DoubleAdder absoluteDifference = new DoubleAdder();
+    private final DoubleAccumulator maxAbsoluteDifference = new DoubleAccumulator(Math::max, 0);
+    private final LongAdder bothAlerted = new LongAdder();
+    private final LongAdder bothCleared = new LongAdder();
+    private final LongAdder championOnly = new LongAdder();
+    private final LongAdder challengerOnly = new LongAdder();
+    private final LongAdder[] championHistogram = newHistogram();
+    private final LongAdder[] challengerHistogram = newHistogram();
+
+    void record(float championScore, float challengerScore, double threshold, long nanos) {
+        scored.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        championSum.add(championScore);
+        challengerSum.add(challengerScore);
+        double difference = Math.abs(championScore - challengerScore);
+        absoluteDifference.add(difference);
+        maxAbsoluteDifference.accumulate(difference);
+        championHistogram[bucket(championScore)].increment();
+        challengerHistogram[bucket(challengerScore)].increment();
+        boolean championAlert = championScore >= threshold;
+        boolean challengerAlert = challengerScore >= threshold;
+        (championAlert ? (challengerAlert ? bothAlerted : championOnly)
+                : (challengerAlert ? challengerOnly : bothCleared)).increment();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    ChallengerStatsResponse.ChallengerStatsResponseBuilder describe() {
+        long count = scored.sum();
+        long agreed = bothAlerted.sum() + bothCleared.sum();
+        return ChallengerStatsResponse.builder()
+                .scored(count)
+                .dropped(dropped.sum())
+                .failed(failed.sum())
+                .averageLatencyMicros(count > 0 ? totalNanos.sum() / 1_000.0 / count : 0)
+                .maxLatencyMicros(maxNanos.get() / 1_000.0)
+                .championMean(count > 0 ? championSum.sum() / count : 0)
+                .challengerMean(count > 0 ? challengerSum.sum() / count : 0)
+                .meanAbsoluteDifference(count > 0 ? absoluteDifference.sum() / count : 0)
+                .maxAbsoluteDifference(maxAbsoluteDifference.get())
+                .bothAlerted(bothAlerted.sum())
+                .bothCleared(bothCleared.sum())
+                .championOnly(championOnly.sum())
+                .challengerOnly(challengerOnly.sum())
+                .agreementRate(count > 0 ? (double) agreed / count : 0)
+                .championHistogram(sums(championHistogram))
+                .challengerHistogram(sums(challengerHistogram));
+    }
+
+    private static int bucket(float score) {
+        return Math.max(0, Math.min(BUCKETS - 1, (int) (score * BUCKETS)));
+    }
+
+    private static LongAdder[] newHistogram() {
+        LongAdder[] histogram = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = new LongAdder();
+        }
+        return histogram;
+    }
+
+    private static List<Long> sums(LongAdder[] histogram) {
+        List<Long> sums = new ArrayList<>(histogram.length);
+        for (LongAdder bucket : histogram) {
+            sums.add(bucket.sum());
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,107 @@
+package com.jvmd.transationapp.service.ml;
+
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.nn.Block;
+import ai.djl.nn.Parameter;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+import ai.djl.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the fraud model through a DJL predictor on the PyTorch engine.
+ */
+final class DjlInferenceEngine implements InferenceEngine {
+    private final Predictor<float[], Float> predictor;
+    private final int inputs;
+
+    DjlInferenceEngine(Predictor<float[], Float> predictor, int inputs) {
+        this.predictor = predictor;
+        this.inputs = inputs;
+    }
+
+    static Translator<float[], Float> translator() {
+        return new FraudTranslator();
+    }
+
+    @Override
+    public String name() {
+        return "djl";
+    }
+
+    @Override
+    public void predict(float[] features, int rows, float[] scores) throws Exception {
+        List<float[]> batch = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            batch.add(Arrays.copyOfRange(features, row * inputs, (row + 1) * inputs));
+        }
+        List<Float> results = predictor.batchPredict(batch);
+        for (int row = 0; row < rows; row++) {
+            scores[row] = results.get(row);
+        }
+    }
+
+    @Override
+    public void close() {
+        predictor.close();
+    }
+
+    /**
+     * Copies the linear layers of a loaded block into flat arrays, in forward order. Blocks with any
+     * other kind of parameter are not plain MLPs and are rejected.
+     */
+    static List<MlpWeights.Layer> exportLayers(Block block) {
+        List<MlpWeights.Layer> layers = new ArrayList<>();
+        NDArray pendingWeight = null;
+        for (Pair<String, Parameter> entry : block.getParameters()) {
+            Parameter parameter = entry.getValue();
+            NDArray array = parameter.getArray();
+            if (parameter.getType() == Parameter.Type.WEIGHT && array.getShape().dimension() == 2) {
+                if (pendingWeight != null) {
+                    throw new IllegalArgumentException("weight " + entry.getKey() + " follows a weight without bias");
+                }
+                pendingWeight = array;
+            } else if (parameter.getType() == Parameter.Type.BIAS && pendingWeight != null) {
+                int outputs = Math.toIntExact(pendingWeight.getShape().get(0));
+                int in = Math.toIntExact(pendingWeight.getShape().get(1));
+                layers.add(new MlpWeights.Layer(in, outputs, pendingWeight.toFloatArray(), array.toFloatArray()));
+                pendingWeight = null;
+            } else {
+                throw new IllegalArgumentException("unsupported parameter " + entry.getKey()
+                        + " of type " + parameter.getType());
+            }
+        }
+        if (pendingWeight != null) {
+            throw new IllegalArgumentException("last weight has no bias");
+        }
+        return layers;
+    }
+
+    /**
+     * One row per input; {@link Batchifier#STACK} adds the batch dimension, so a batch of n vectors
+     * runs as a single (n, 15) forward pass.
+     */
+    private static class FraudTranslator implements Translator<float[], Float> {
+        @Override
+        public NDList processInput(TranslatorContext ctx, float[] input) {
+            return new NDList(ctx.getNDManager().create(input));
+        }
+
+        @Override
+        public Float processOutput(TranslatorContext ctx, NDList list) {
+            NDArray output = list.singletonOrThrow();
+            return output.getFloat();
+        }
+
+        @Override
+        public Batchifier getBatchifier() {
+            return Batchifier.STACK;
+        }
+    }
+}
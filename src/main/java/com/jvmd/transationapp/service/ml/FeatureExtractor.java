@@ -0,0 +1,126 @@
+package com.jvmd.transationapp.service.ml;
+
+import com.jvmd.transationapp.model.Transactions;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns a transaction into the 15 model inputs, written straight into a caller-owned batch array.
+ * Nothing is allocated for the usual inputs: categorical values are looked up in tables that hold
+ * the lower, upper and capitalized spellings of every known value, so only unusual casings pay for
+ * a {@code toLowerCase}; string hashes are the cached {@link String#hashCode()}; amounts at or above
+ * the normalization cap never reach {@link BigDecimal#floatValue()}, whose fast path covers the rest.
+ * <p>
+ * The encodings must stay identical to the ones the model was trained with.
+ */
+public final class FeatureExtractor {
+    private static final BigDecimal AMOUNT_CAP = BigDecimal.valueOf(10_000);
+    private static final float UNKNOWN = 0.5f;
+    private static final CategoryTable TRANSACTION_TYPES = new CategoryTable(Map.of(
+            "withdrawal", 0.25f,
+            "deposit", 0.5f,
+            "transfer", 0.75f,
+            "payment", 1.0f));
+    private static final CategoryTable MERCHANT_CATEGORIES = new CategoryTable(Map.of(
+            "utilities", 0.1f,
+            "online", 0.2f,
+            "grocery", 0.3f,
+            "restaurant", 0.4f,
+            "entertainment", 0.5f,
+            "travel", 0.6f,
+            "gas", 0.7f,
+            "retail", 0.8f,
+            "other", 0.9f));
+    private static final CategoryTable DEVICES = new CategoryTable(Map.of(
+            "mobile", 0.25f,
+            "atm", 0.5f,
+            "pos", 0.75f,
+            "online", 1.0f));
+    private static final CategoryTable PAYMENT_CHANNELS = new CategoryTable(Map.of(
+            "card", 0.25f,
+            "ach", 0.5f,
+            "wire_transfer", 0.75f,
+            "cash", 1.0f));
+
+    private FeatureExtractor() {
+    }
+
+    /**
+     * Writes the features of the transaction to {@code target[offset .. offset + 15)}.
+     */
+    public static void extract(Transactions transaction, float[] target, int offset) {
+        target[offset] = normalizedAmount(transaction.getAmount());
+        target[offset + 1] = transaction.getTimestamp().getHour() / 24.0f;
+        target[offset + 2] = (transaction.getTimestamp().getDayOfWeek().getValue() - 1) / 6.0f;
+        target[offset + 3] = hash(transaction.getFrom());
+        target[offset + 4] = hash(transaction.getTo());
+        target[offset + 5] = TRANSACTION_TYPES.encode(transaction.getType());
+        target[offset + 6] = MERCHANT_CATEGORIES.encode(transaction.getMerchantCategory());
+        target[offset + 7] = DEVICES.encode(transaction.getDeviceUsed());
+        target[offset + 8] = hash(transaction.getLocation());
+        target[offset + 9] = orZero(transaction.getTimeSinceLastTransaction());
+        target[offset + 10] = orZero(transaction.getSpendingDeviationScore());
+        target[offset + 11] = transaction.getVelocityScore() != null
+                ? Math.min(1.0f, transaction.getVelocityScore().floatValue() / 50.0f) : 0.0f;
+        target[offset + 12] = orZero(transaction.getGeoAnomalyScore());
+        target[offset + 13] = PAYMENT_CHANNELS.encode(transaction.getPaymentChannel());
+        target[offset + 14] = ipRiskScore(transaction.getIpAddress());
+    }
+
+    private static float normalizedAmount(BigDecimal amount) {
+        if (amount.compareTo(AMOUNT_CAP) >= 0) {
+            return 1.0f;
+        }
+        return amount.floatValue() / 10_000f;
+    }
+
+    private static float hash(String value) {
+        if (value == null || value.isEmpty()) {
+            return UNKNOWN;
+        }
+        return Math.abs(value.hashCode() % 1000) / 1000.0f;
+    }
+
+    private static float orZero(Double value) {
+        return value != null ? value.floatValue() : 0.0f;
+    }
+
+    private static float ipRiskScore(String ipAddress) {
+        if (ipAddress == null || ipAddress.isEmpty()) {
+            return UNKNOWN;
+        }
+        if (ipAddress.startsWith("192.168.") || ipAddress.startsWith("10.") || ipAddress.startsWith("172.")) {
+            return 0.1f;
+        }
+        return Math.abs(ipAddress.hashCode() % 100) / 200.0f;
+    }
+
+    /**
+     * Case-insensitive lookup of a closed set of values; unknown values encode as {@link #UNKNOWN}.
+     */
+    private static final class CategoryTable {
+        private final Map<String, Float> codes = new HashMap<>();
+
+        private CategoryTable(Map<String, Float> lowerCaseCodes) {
+            lowerCaseCodes.forEach((value, code) -> {
+                codes.put(value, code);
+                codes.put(value.toUpperCase(Locale.ROOT), code);
+                codes.put(Character.toUpperCase(value.charAt(0)) + value.substring(1), code);
+            });
+        }
+
+        private float encode(String value) {
+            if (value == null) {
+                return UNKNOWN;
+            }
+            Float code = codes.get(value);
+            if (code == null) {
+                code = codes.get(value.toLowerCase(Locale.ROOT));
+            }
+            return code != null ? code : UNKNOWN;
+        }
+    }
+}
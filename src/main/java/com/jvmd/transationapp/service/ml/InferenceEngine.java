@@ -0,0 +1,19 @@
+package com.jvmd.transationapp.service.ml;
+
+/**
+ * Scores a batch of feature rows with the fraud model. Instances keep scratch state and are not
+ * thread-safe; {@link MLInferenceService} pools one per batching thread.
+ */
+public interface InferenceEngine extends AutoCloseable {
+
+    String name();
+
+    /**
+     * Scores {@code rows} rows of {@link MLInferenceService#INPUT_SIZE} features, packed row after row
+     * in {@code features}, writing one score per row into {@code scores}.
+     */
+    void predict(float[] features, int rows, float[] scores) throws Exception;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,58 @@
+package com.jvmd.transationapp.service.ml;
+
+import java.util.List;
+
+/**
+ * Forward pass of the fraud MLP in plain Java, without native libraries. Weights are shared and
+ * read-only; the two activation buffers are owned by the instance, so a pass allocates nothing.
+ */
+final class JavaMlpEngine implements InferenceEngine {
+    private final MlpWeights weights;
+    private final List<MlpWeights.Layer> layers;
+    private final MlpKernel kernel;
+    private final float[] front;
+    private final float[] back;
+
+    JavaMlpEngine(MlpWeights weights, MlpKernel kernel) {
+        this.weights = weights;
+        this.layers = weights.layers();
+        this.kernel = kernel;
+        this.front = new float[weights.maxWidth()];
+        this.back = new float[weights.maxWidth()];
+    }
+
+    @Override
+    public String name() {
+        return kernel instanceof VectorMlpKernel ? "java-vector" : "java";
+    }
+
+    @Override
+    public void predict(float[] features, int rows, float[] scores) {
+        int inputs = weights.inputs();
+        int last = layers.size() - 1;
+        for (int row = 0; row < rows; row++) {
+            float[] source = features;
+            int sourceOffset = row * inputs;
+            float[] target = front;
+            for (int l = 0; l <= last; l++) {
+                MlpWeights.Layer layer = layers.get(l);
+                float[] w = layer.weights();
+                float[] bias = layer.bias();
+                int in = layer.inputs();
+                for (int o = 0; o < layer.outputs(); o++) {
+                    float value = kernel.dot(w, o * in, source, sourceOffset, in) + bias[o];
+                    target[o] = l < last && value < 0 ? 0 : value;
+                }
+                source = target;
+                sourceOffset = 0;
+                target = target == front ? back : front;
+            }
+            float output = source[0];
+            scores[row] = weights.sigmoidOutput() ? (float) (1.0 / (1.0 + Math.exp(-output))) : output;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,100 @@
+package com.jvmd.transationapp.service.ml;
+
+import ai.djl.Model;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A model version with its engines. Once retired it hands out no more engines: idle ones are
+ * closed right away, borrowed ones when they are released, and the DJL model after the last
+ * engine. Borrowers that arrive after retirement get {@code null} and retry on the current model.
+ */
+@Slf4j
+final class LoadedModel {
+    private final String version;
+    private final LocalDateTime loadedAt;
+    private final Model djlModel;
+    private final BlockingQueue<InferenceEngine> engines;
+    private final int size;
+    private final String engineName;
+    private boolean retired;
+    private int closedEngines;
+
+    LoadedModel(String version, LocalDateTime loadedAt, Model djlModel,
+                BlockingQueue<InferenceEngine> engines, int size, String engineName) {
+        this.version = version;
+        this.loadedAt = loadedAt;
+        this.djlModel = djlModel;
+        this.engines = engines;
+        this.size = size;
+        this.engineName = engineName;
+    }
+
+    String version() {
+        return version;
+    }
+
+    LocalDateTime loadedAt() {
+        return loadedAt;
+    }
+
+    String engineName() {
+        return engineName;
+    }
+
+    InferenceEngine borrow() throws InterruptedException {
+        while (!isRetired()) {
+            InferenceEngine engine = engines.poll(10, TimeUnit.MILLISECONDS);
+            if (engine != null) {
+                synchronized (this) {
+                    if (!retired) {
+                        return engine;
+                    }
+                }
+                closeEngine(engine);
+            }
+        }
+        return null;
+    }
+
+    void release(InferenceEngine engine) {
+        synchronized (this) {
+            if (!retired) {
+                engines.add(engine);
+                return;
+            }
+        }
+        closeEngine(engine);
+    }
+
+    void retire() {
+        synchronized (this) {
+            retired = true;
+        }
+        InferenceEngine engine;
+        while ((engine = engines.poll()) != null) {
+            closeEngine(engine);
+        }
+    }
+
+    private synchronized boolean isRetired() {
+        return retired;
+    }
+
+    private void closeEngine(InferenceEngine engine) {
+        engine.close();
+        boolean last;
+        synchronized (this) {
+            last = ++closedEngines == size;
+        }
+        if (last) {
+            if (djlModel != null) {
+                djlModel.close();
+            }
+            log.info("ML model version {} closed", version);
+        }
+    }
+}
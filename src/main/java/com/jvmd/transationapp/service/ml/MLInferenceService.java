@@ -0,0 +1,598 @@
+package com.jvmd.transationapp.service.ml;
+
+import ai.djl.Model;
+import ai.djl.nn.Block;
+import com.jvmd.fraud.model.FraudDetectionModel;
+import com.jvmd.transationapp.dto.ModelRegistryResponse;
+import com.jvmd.transationapp.model.Transactions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scores feature vectors with the fraud model. Engines are not thread-safe, so the model is served
+ * by a pool of {@link InferenceEngine}s, one per batching thread. Callers enqueue a vector and wait
+ * on its future; a batching thread collects vectors until {@code app.ml.batch.max-size} rows are
+ * queued or the oldest has waited {@code app.ml.batch.max-wait-micros}, runs one forward pass over
+ * the batch and completes every future of it.
+ * <p>
+ * {@code app.ml.engine} picks the engine: {@code djl} (PyTorch), {@code java} (the pure-Java MLP) or
+ * {@code auto}, which uses DJL when its natives load and the Java engine otherwise. The Java engine
+ * reads {@code <model>-<version>.weights}, exported from the DJL model the first time both are
+ * available. When both engines load, they are compared on a fixed probe batch and the Java engine is
+ * only used if its scores agree within {@code app.ml.engine.parity-tolerance}. In {@code java} mode
+ * DJL is only loaded to export missing weights, so parity is checked once, at export, and later
+ * loads never touch PyTorch.
+ * <p>
+ * Versions come from the {@link ModelRegistry}. Activating one loads it into a fresh
+ * {@link LoadedModel} on the {@code ml-model-loader} thread, warms every engine up with synthetic
+ * batches and swaps it in atomically; the previous model is closed as its engines come back from
+ * in-flight batches, so no prediction is dropped or sees a half-loaded model.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MLInferenceService {
+    public static final int INPUT_SIZE = 15;
+    private static final int[] HIDDEN_LAYERS = {64, 32};
+    private static final int PARITY_ROWS = 256;
+    private final MeterRegistry meterRegistry;
+    private final ModelRegistry modelRegistry;
+    private final AtomicReference<LoadedModel> loaded = new AtomicReference<>();
+    private final ExecutorService modelLoader =
+            Executors.newSingleThreadExecutor(Thread.ofPlatform().name("ml-model-loader").daemon().factory());
+    private volatile String failedVersion;
+    private volatile boolean nativeAvailable = true;
+    private volatile double parityError = Double.NaN;
+    private volatile boolean running;
+    private BlockingQueue<PendingPrediction> pending;
+    private ExecutorService batchers;
+    private Timer batchTimer;
+    private Timer queueWaitTimer;
+    private DistributionSummary batchSizes;
+    private Counter rejected;
+    private Counter failedRows;
+
+    @Value("${app.ml.engine:auto}")
+    private String engineMode;
+
+    @Value("${app.ml.engine.parity-check:true}")
+    private boolean parityCheck;
+
+    @Value("${app.ml.engine.parity-tolerance:0.0001}")
+    private double parityTolerance;
+
+    @Value("${app.ml.engine.vector-api:true}")
+    private boolean vectorApi;
+
+    @Value("${app.ml.batch.max-size:32}")
+    private int maxBatchSize;
+
+    @Value("${app.ml.batch.max-wait-micros:500}")
+    private long maxWaitMicros;
+
+    @Value("${app.ml.batch.pool-size:2}")
+    private int poolSize;
+
+    @Value("${app.ml.batch.queue-capacity:4096}")
+    private int queueCapacity;
+
+    @Value("${app.ml.batch.timeout-ms:1000}")
+    private long timeoutMs;
+
+    @Value("${app.ml.registry.warmup-batches:3}")
+    private int warmupBatches;
+
+    @PostConstruct
+    public void init() {
+        pending = new ArrayBlockingQueue<>(queueCapacity);
+        batchTimer = Timer.builder("ml.inference.batch.time")
+                .description("Forward pass time per batch")
+                .register(meterRegistry);
+        queueWaitTimer = Timer.builder("ml.inference.queue.wait")
+                .description("Time a feature vector waited to be batched")
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("ml.inference.batch.size")
+                .description("Rows per forward pass")
+                .register(meterRegistry);
+        rejected = Counter.builder("ml.inference.rejected")
+                .description("Predictions rejected because the queue was full")
+                .register(meterRegistry);
+        failedRows = Counter.builder("ml.inference.failed")
+                .description("Rows of failed forward passes")
+                .register(meterRegistry);
+        Gauge.builder("ml.inference.queue.size", pending, BlockingQueue::size)
+                .description("Feature vectors waiting to be batched")
+                .register(meterRegistry);
+        Gauge.builder("ml.inference.parity.error", this, service -> service.parityError)
+                .description("Largest score difference between the Java and DJL engines on the probe batch")
+                .register(meterRegistry);
+        String version = modelRegistry.pointer().active();
+        try {
+            swapIn(load(version, poolSize));
+            log.info("ML model initialized successfully");
+        } catch (Exception e) {
+            failedVersion = version;
+            log.warn("Failed to load ML model at startup: {}. ML rules will be disabled until model is loaded.",
+                    e.getMessage());
+            log.debug("Model loading error details", e);
+        }
+        running = true;
+        batchers = Executors.newFixedThreadPool(poolSize, Thread.ofPlatform().name("ml-batch-", 0).daemon().factory());
+        for (int i = 0; i < poolSize; i++) {
+            batchers.execute(this::runBatcher);
+        }
+    }
+
+    /**
+     * Loads and warms up {@code version} in the background, records it as the active version and
+     * swaps it in. Batches already running finish on the previous model. The future fails with
+     * {@link IllegalArgumentException} for an unknown version and with {@link IOException} when the
+     * version cannot be loaded or recorded, in which case the current model stays active. Only a
+     * version that failed to load is skipped by {@link #syncActiveVersion()}.
+     */
+    public CompletableFuture<Void> activate(String version) {
+        if (!modelRegistry.exists(version)) {
+            throw new IllegalArgumentException("model version not found: " + version);
+        }
+        return CompletableFuture.runAsync(() -> {
+            LoadedModel next;
+            try {
+                next = load(version, poolSize);
+            } catch (IOException e) {
+                failedVersion = version;
+                throw new CompletionException(e);
+            }
+            try {
+                modelRegistry.recordActivation(version);
+            } catch (IOException e) {
+                next.retire();
+                throw new CompletionException(e);
+            }
+            swapIn(next);
+            failedVersion = null;
+        }, modelLoader);
+    }
+
+    /**
+     * Activates the version that was active before the current one.
+     */
+    public CompletableFuture<Void> rollback() {
+        String previous = modelRegistry.pointer().previous();
+        if (previous == null) {
+            throw new IllegalStateException("no previous model version to roll back to");
+        }
+        return activate(previous);
+    }
+
+    /**
+     * Follows activations made by other nodes sharing the model directory. A version that failed to
+     * load is not retried until the active version changes again.
+     */
+    @Scheduled(fixedDelayString = "${app.ml.registry.poll-interval-ms:30000}")
+    public void syncActiveVersion() {
+        String active = modelRegistry.pointer().active();
+        LoadedModel current = loaded.get();
+        if ((current != null && active.equals(current.version())) || active.equals(failedVersion)) {
+            return;
+        }
+        log.info("Active model version changed to {}, loading it", active);
+        try {
+            activate(active).exceptionally(e -> {
+                log.error("Failed to activate model version {}: {}", active, e.getMessage());
+                return null;
+            });
+        } catch (IllegalArgumentException e) {
+            failedVersion = active;
+            log.warn("Active model version {} not found in {}", active, modelRegistry.directory());
+        }
+    }
+
+    public ModelRegistryResponse describeModels() {
+        ModelRegistry.Pointer pointer = modelRegistry.pointer();
+        LoadedModel current = loaded.get();
+        String loadedVersion = current != null ? current.version() : null;
+        List<ModelRegistryResponse.VersionEntry> versions = new ArrayList<>();
+        try {
+            for (ModelRegistry.ModelVersion version : modelRegistry.versions()) {
+                versions.add(ModelRegistryResponse.VersionEntry.builder()
+                        .version(version.version())
+                        .active(version.version().equals(pointer.active()))
+                        .loaded(version.version().equals(loadedVersion))
+                        .params(version.params())
+                        .weights(version.weights())
+                        .sizeBytes(version.sizeBytes())
+                        .modifiedAt(version.modifiedAt())
+                        .build());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list model versions in " + modelRegistry.directory(), e);
+        }
+        return ModelRegistryResponse.builder()
+                .activeVersion(pointer.active())
+                .previousVersion(pointer.previous())
+                .loadedVersion(loadedVersion)
+                .engine(current != null ? current.engineName() : "none")
+                .loadedAt(current != null ? current.loadedAt() : null)
+                .versions(versions)
+                .build();
+    }
+
+    private void swapIn(LoadedModel next) {
+        LoadedModel previous = loaded.getAndSet(next);
+        log.info("ML model version {} active (engine: {}, {} instances)", next.version(), next.engineName(), poolSize);
+        if (previous != null) {
+            previous.retire();
+        }
+    }
+
+    /**
+     * Builds a ready-to-serve model for {@code version} with {@code instances} engines without
+     * touching the active one.
+     */
+    LoadedModel load(String version, int instances) throws IOException {
+        ModelRegistry.validate(version);
+        Path modelDir = modelRegistry.directory();
+        String fullModelName = modelRegistry.fullName(version);
+        if (!Files.exists(modelDir)) {
+            throw new IOException("Model directory does not exist: " + modelDir.toAbsolutePath());
+        }
+        boolean javaOnly = "java".equals(engineMode);
+        boolean exported = Files.exists(modelRegistry.weightsFile(version));
+        Model djlModel = javaOnly && exported ? null : loadDjlModel(modelRegistry.paramsFile(version), fullModelName);
+        try {
+            MlpWeights weights = "djl".equals(engineMode) ? null
+                    : loadWeights(modelRegistry.weightsFile(version), djlModel);
+            if (weights != null && djlModel != null && parityCheck && !checkParity(djlModel, weights)) {
+                weights = null;
+            }
+            BlockingQueue<InferenceEngine> engines = new ArrayBlockingQueue<>(instances);
+            if (weights != null && (javaOnly || djlModel == null)) {
+                if (djlModel != null) {
+                    djlModel.close();
+                    djlModel = null;
+                }
+                MlpKernel kernel = MlpKernel.create(vectorApi);
+                for (int i = 0; i < instances; i++) {
+                    engines.add(new JavaMlpEngine(weights, kernel));
+                }
+            } else if (djlModel != null) {
+                for (int i = 0; i < instances; i++) {
+                    engines.add(new DjlInferenceEngine(djlModel.newPredictor(DjlInferenceEngine.translator()),
+                            INPUT_SIZE));
+                }
+            } else {
+                throw new IOException("No inference engine available for " + fullModelName + " (engine="
+                        + engineMode + ", PyTorch natives " + (nativeAvailable ? "loaded" : "missing") + ")");
+            }
+            warmUp(engines);
+            LoadedModel model = new LoadedModel(version, LocalDateTime.now(), djlModel, engines, instances,
+                    engines.peek().name());
+            log.info("ML model loaded from: {} (version: {}, engine: {})",
+                    modelDir.toAbsolutePath(), version, model.engineName());
+            return model;
+        } catch (IOException | RuntimeException e) {
+            if (djlModel != null) {
+                djlModel.close();
+            }
+            throw e instanceof IOException io ? io : new IOException("Failed to load model: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs full-size synthetic batches through every engine before it takes traffic, so lazy native
+     * initialisation and JIT compilation of the forward pass do not land on the first real batches.
+     */
+    private void warmUp(BlockingQueue<InferenceEngine> engines) throws IOException {
+        float[] probes = probeFeatures();
+        int rows = Math.min(maxBatchSize, PARITY_ROWS);
+        float[] scores = new float[rows];
+        for (InferenceEngine engine : engines) {
+            for (int i = 0; i < warmupBatches; i++) {
+                try {
+                    engine.predict(probes, rows, scores);
+                } catch (Exception e) {
+                    throw new IOException("Warm-up inference failed on " + engine.name() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Null when the DJL engine is not needed or, outside {@code djl} mode, cannot be used.
+     */
+    private Model loadDjlModel(Path paramsFile, String fullModelName) throws IOException {
+        boolean required = "djl".equals(engineMode);
+        if (!nativeAvailable || !Files.exists(paramsFile)) {
+            if (required) {
+                throw new IOException(!nativeAvailable
+                        ? "ML engine not available. PyTorch native libraries may be missing."
+                        : "Model params file not found: " + paramsFile.toAbsolutePath()
+                        + ". Please train the model first using ml-model project.");
+            }
+            return null;
+        }
+        Model model = null;
+        try {
+            model = Model.newInstance(modelRegistry.modelName());
+            Block block = new FraudDetectionModel(INPUT_SIZE, HIDDEN_LAYERS).newBlock(model, paramsFile, null);
+            model.setBlock(block);
+            model.load(paramsFile.getParent(), fullModelName);
+            return model;
+        } catch (UnsatisfiedLinkError | NoClassDefFoundError e) {
+            nativeAvailable = false;
+            log.warn("ML engine (PyTorch) not available: {}", e.getMessage());
+            if (required) {
+                throw new IOException("ML engine not available. PyTorch native libraries may be missing.", e);
+            }
+            return null;
+        } catch (Exception e) {
+            if (model != null) {
+                model.close();
+            }
+            if (required) {
+                throw new IOException("Failed to load model: " + e.getMessage(), e);
+            }
+            log.warn("Failed to load DJL model {}: {}", fullModelName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the Java engine's weights, exporting them from the DJL model when the file does not
+     * exist yet. The output activation is not part of the DJL parameters, so the export keeps
+     * whichever of sigmoid / identity reproduces the DJL scores.
+     */
+    private MlpWeights loadWeights(Path weightsFile, Model djlModel) throws IOException {
+        if (Files.exists(weightsFile)) {
+            return MlpWeights.read(weightsFile);
+        }
+        if (djlModel == null) {
+            return null;
+        }
+        MlpWeights exported;
+        try {
+            exported = new MlpWeights(DjlInferenceEngine.exportLayers(djlModel.getBlock()), true);
+        } catch (IllegalArgumentException e) {
+            log.warn("Model is not a plain MLP, the Java engine cannot run it: {}", e.getMessage());
+            return null;
+        }
+        float[] probes = probeFeatures();
+        float[] expected = scoreDjl(djlModel, probes);
+        for (boolean sigmoid : new boolean[]{true, false}) {
+            MlpWeights candidate = exported.withSigmoidOutput(sigmoid);
+            if (maxError(expected, score(new JavaMlpEngine(candidate, MlpKernel.SCALAR), probes)) <= parityTolerance) {
+                candidate.write(weightsFile);
+                log.info("Exported MLP weights for the Java engine to {}", weightsFile.toAbsolutePath());
+                return candidate;
+            }
+        }
+        log.warn("Exported MLP weights do not reproduce the DJL scores, the Java engine stays disabled");
+        return null;
+    }
+
+    private boolean checkParity(Model djlModel, MlpWeights weights) throws IOException {
+        float[] probes = probeFeatures();
+        float[] expected = scoreDjl(djlModel, probes);
+        parityError = maxError(expected, score(new JavaMlpEngine(weights, MlpKernel.create(vectorApi)), probes));
+        if (parityError > parityTolerance) {
+            log.error("Java engine disagrees with DJL by up to {} on {} probe rows (tolerance {}), not using it",
+                    parityError, PARITY_ROWS, parityTolerance);
+            return false;
+        }
+        log.info("Java engine matches DJL within {} on {} probe rows", parityError, PARITY_ROWS);
+        return true;
+    }
+
+    private float[] scoreDjl(Model djlModel, float[] probes) throws IOException {
+        try (InferenceEngine engine = new DjlInferenceEngine(
+                djlModel.newPredictor(DjlInferenceEngine.translator()), INPUT_SIZE)) {
+            return score(engine, probes);
+        }
+    }
+
+    private static float[] score(InferenceEngine engine, float[] probes) throws IOException {
+        float[] scores = new float[PARITY_ROWS];
+        try {
+            engine.predict(probes, PARITY_ROWS, scores);
+        } catch (Exception e) {
+            throw new IOException("Probe inference failed on " + engine.name() + ": " + e.getMessage(), e);
+        }
+        return scores;
+    }
+
+    private static float[] probeFeatures() {
+        Random random = new Random(42);
+        float[] probes = new float[PARITY_ROWS * INPUT_SIZE];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = random.nextFloat();
+        }
+        return probes;
+    }
+
+    private static double maxError(float[] expected, float[] actual) {
+        double max = 0;
+        for (int i = 0; i < expected.length; i++) {
+            max = Math.max(max, Math.abs(expected[i] - actual[i]));
+        }
+        return max;
+    }
+
+    /**
+     * Loads the active version once more, with {@code instances} engines of its own, for scoring
+     * outside the live request path. The caller closes it.
+     */
+    public OfflineScorer openOfflineScorer(int instances) throws IOException {
+        return new OfflineScorer(load(modelRegistry.pointer().active(), instances));
+    }
+
+    public boolean isModelLoaded() {
+        return loaded.get() != null;
+    }
+
+    public boolean isAvailable() {
+        return nativeAvailable || !"djl".equals(engineMode);
+    }
+
+    public String engineName() {
+        LoadedModel current = loaded.get();
+        return current != null ? current.engineName() : "none";
+    }
+
+    /**
+     * Queues the transaction for the next batch; its features are extracted by the batching thread.
+     * The future fails right away when the queue is full.
+     */
+    public CompletableFuture<Float> submit(Transactions transaction) {
+        PendingPrediction prediction =
+                new PendingPrediction(transaction, System.nanoTime(), new CompletableFuture<>());
+        if (!pending.offer(prediction)) {
+            rejected.increment();
+            prediction.future().completeExceptionally(new RejectedExecutionException("ML inference queue is full"));
+        }
+        return prediction.future();
+    }
+
+    /**
+     * Blocks until the batch holding the transaction has run, at most {@code app.ml.batch.timeout-ms}.
+     */
+    public float predict(Transactions transaction) throws InterruptedException, ExecutionException, TimeoutException {
+        return submit(transaction).get(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        log.info("Cleaning up ML model resources");
+        running = false;
+        modelLoader.shutdownNow();
+        if (batchers != null) {
+            batchers.shutdownNow();
+        }
+        PendingPrediction prediction;
+        while ((prediction = pending.poll()) != null) {
+            prediction.future().completeExceptionally(new RejectedExecutionException("ML inference is shutting down"));
+        }
+        LoadedModel current = loaded.getAndSet(null);
+        if (current != null) {
+            current.retire();
+        }
+    }
+
+    private void runBatcher() {
+        List<PendingPrediction> batch = new ArrayList<>(maxBatchSize);
+        float[] features = new float[maxBatchSize * INPUT_SIZE];
+        float[] scores = new float[maxBatchSize];
+        while (running) {
+            try {
+                PendingPrediction first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedAt() + TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingPrediction next = remaining > 0
+                            ? pending.poll(remaining, TimeUnit.NANOSECONDS)
+                            : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                runBatch(batch, features, scores);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(p -> p.future().completeExceptionally(e));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * {@code features} and {@code scores} belong to the batching thread and are reused for every
+     * batch. A transaction whose features cannot be extracted fails alone and is dropped from the batch.
+     */
+    private void runBatch(List<PendingPrediction> batch, float[] features, float[] scores)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        int rows = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingPrediction prediction = batch.get(i);
+            queueWaitTimer.record(start - prediction.enqueuedAt(), TimeUnit.NANOSECONDS);
+            try {
+                FeatureExtractor.extract(prediction.transaction(), features, rows * INPUT_SIZE);
+                batch.set(rows++, prediction);
+            } catch (RuntimeException e) {
+                failedRows.increment();
+                prediction.future().completeExceptionally(e);
+            }
+        }
+        batch.subList(rows, batch.size()).clear();
+        if (batch.isEmpty()) {
+            return;
+        }
+        LoadedModel current;
+        InferenceEngine engine;
+        do {
+            current = loaded.get();
+            if (current == null) {
+                fail(batch, new IllegalStateException("ML model not loaded"));
+                return;
+            }
+            engine = current.borrow();
+        } while (engine == null);
+        try {
+            engine.predict(features, batch.size(), scores);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(scores[i]);
+            }
+        } catch (Exception e) {
+            log.error("Error during ML inference of {} rows: {}", batch.size(), e.getMessage());
+            fail(batch, e);
+        } finally {
+            current.release(engine);
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizes.record(batch.size());
+        }
+    }
+
+    private void fail(List<PendingPrediction> batch, Exception cause) {
+        failedRows.increment(batch.size());
+        batch.forEach(prediction -> prediction.future().completeExceptionally(cause));
+    }
+
+    private record PendingPrediction(Transactions transaction, long enqueuedAt, CompletableFuture<Float> future) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.jvmd.transationapp.service.ml;
+
+/**
+ * Dot product used by {@link JavaMlpEngine}. The Vector API implementation is picked when the
+ * {@code jdk.incubator.vector} module is present at runtime ({@code --add-modules jdk.incubator.vector}).
+ */
+interface MlpKernel {
+    MlpKernel SCALAR = MlpKernel::scalarDot;
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    static MlpKernel create(boolean vectorApi) {
+        if (vectorApi) {
+            try {
+                return new VectorMlpKernel();
+            } catch (NoClassDefFoundError | ExceptionInInitializerError e) {
+                return SCALAR;
+            }
+        }
+        return SCALAR;
+    }
+
+    static float scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
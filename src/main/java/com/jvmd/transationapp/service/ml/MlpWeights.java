@@ -0,0 +1,113 @@
+package com.jvmd.transationapp.service.ml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Weights of the fraud MLP as flat row-major matrices: layer {@code i} maps {@code inputs} to
+ * {@code outputs} with {@code weights[o * inputs + i]}, matching the (out, in) layout of DJL linear
+ * layers. Hidden layers use ReLU; the output layer is followed by a sigmoid when
+ * {@code sigmoidOutput} is set.
+ * <p>
+ * Stored next to the DJL params as {@code <model>-<version>.weights}, so the pure-Java engine can
+ * load them without the PyTorch natives.
+ */
+record MlpWeights(List<Layer> layers, boolean sigmoidOutput) {
+    private static final int MAGIC = 0x4D4C5031;
+
+    MlpWeights {
+        layers = List.copyOf(layers);
+        if (layers.isEmpty()) {
+            throw new IllegalArgumentException("MLP has no layers");
+        }
+        for (int i = 1; i < layers.size(); i++) {
+            if (layers.get(i).inputs() != layers.get(i - 1).outputs()) {
+                throw new IllegalArgumentException("layer " + i + " expects " + layers.get(i).inputs()
+                        + " inputs but layer " + (i - 1) + " has " + layers.get(i - 1).outputs() + " outputs");
+            }
+        }
+        if (layers.get(layers.size() - 1).outputs() != 1) {
+            throw new IllegalArgumentException("MLP must have a single output");
+        }
+    }
+
+    int inputs() {
+        return layers.get(0).inputs();
+    }
+
+    int maxWidth() {
+        int width = inputs();
+        for (Layer layer : layers) {
+            width = Math.max(width, layer.outputs());
+        }
+        return width;
+    }
+
+    MlpWeights withSigmoidOutput(boolean sigmoid) {
+        return new MlpWeights(layers, sigmoid);
+    }
+
+    static MlpWeights read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an MLP weights file: " + path);
+            }
+            boolean sigmoid = in.readBoolean();
+            int count = in.readInt();
+            Layer[] layers = new Layer[count];
+            for (int l = 0; l < count; l++) {
+                int inputs = in.readInt();
+                int outputs = in.readInt();
+                float[] weights = new float[inputs * outputs];
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = in.readFloat();
+                }
+                float[] bias = new float[outputs];
+                for (int i = 0; i < bias.length; i++) {
+                    bias[i] = in.readFloat();
+                }
+                layers[l] = new Layer(inputs, outputs, weights, bias);
+            }
+            return new MlpWeights(List.of(layers), sigmoid);
+        }
+    }
+
+    /**
+     * Writes to a temporary file first, so a reader never sees a partial file.
+     */
+    void write(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeBoolean(sigmoidOutput);
+            out.writeInt(layers.size());
+            for (Layer layer : layers) {
+                out.writeInt(layer.inputs());
+                out.writeInt(layer.outputs());
+                for (float weight : layer.weights()) {
+                    out.writeFloat(weight);
+                }
+                for (float bias : layer.bias()) {
+                    out.writeFloat(bias);
+                }
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    record Layer(int inputs, int outputs, float[] weights, float[] bias) {
+        Layer {
+            if (weights.length != inputs * outputs || bias.length != outputs) {
+                throw new IllegalArgumentException("layer " + inputs + "x" + outputs + " has "
+                        + weights.length + " weights and " + bias.length + " biases");
+            }
+        }
+    }
+}
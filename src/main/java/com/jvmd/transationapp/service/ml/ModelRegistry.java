@@ -0,0 +1,169 @@
+package com.jvmd.transationapp.service.ml;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Model versions stored under {@code app.ml.model-path}, as written by the training project:
+ * {@code <model>-<version>-0000.params} for DJL and {@code <model>-<version>.weights} for the Java
+ * engine. The active version is recorded in {@code <model>.active} together with the version it
+ * replaced, so nodes sharing the directory agree on it and an activation can be rolled back. Without
+ * that file, {@code app.ml.model-version} is active.
+ */
+@Component
+@Slf4j
+public class ModelRegistry {
+    private static final Pattern VERSION = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final String PARAMS_SUFFIX = "-0000.params";
+    private static final String WEIGHTS_SUFFIX = ".weights";
+
+    @Value("${app.ml.model-path:ml-model/models}")
+    private String modelBasePath;
+
+    @Value("${app.ml.model-name:fraud-detection}")
+    private String modelName;
+
+    @Value("${app.ml.model-version:1.0}")
+    private String defaultVersion;
+
+    public Path directory() {
+        return Paths.get(modelBasePath);
+    }
+
+    public String modelName() {
+        return modelName;
+    }
+
+    public String fullName(String version) {
+        return modelName + "-" + version;
+    }
+
+    public Path paramsFile(String version) {
+        return directory().resolve(fullName(version) + PARAMS_SUFFIX);
+    }
+
+    public Path weightsFile(String version) {
+        return directory().resolve(fullName(version) + WEIGHTS_SUFFIX);
+    }
+
+    public List<ModelVersion> versions() throws IOException {
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        String prefix = modelName + "-";
+        Map<String, ModelVersion> versions = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String version;
+                if (name.endsWith(PARAMS_SUFFIX)) {
+                    version = name.substring(prefix.length(), name.length() - PARAMS_SUFFIX.length());
+                } else if (name.endsWith(WEIGHTS_SUFFIX)) {
+                    version = name.substring(prefix.length(), name.length() - WEIGHTS_SUFFIX.length());
+                } else {
+                    continue;
+                }
+                if (VERSION.matcher(version).matches()) {
+                    versions.computeIfAbsent(version, this::describe);
+                }
+            }
+        }
+        return new ArrayList<>(versions.values());
+    }
+
+    public boolean exists(String version) {
+        validate(version);
+        return Files.exists(paramsFile(version)) || Files.exists(weightsFile(version));
+    }
+
+    public synchronized Pointer pointer() {
+        Path file = pointerFile();
+        if (!Files.exists(file)) {
+            return new Pointer(defaultVersion, null);
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            log.warn("Cannot read active model pointer {}: {}", file, e.getMessage());
+            return new Pointer(defaultVersion, null);
+        }
+        return new Pointer(properties.getProperty("active", defaultVersion), properties.getProperty("previous"));
+    }
+
+    /**
+     * Records {@code version} as active and the currently active version as the one to roll back to.
+     */
+    public synchronized void recordActivation(String version) throws IOException {
+        Pointer current = pointer();
+        if (version.equals(current.active())) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty("active", version);
+        properties.setProperty("previous", current.active());
+        Path file = pointerFile();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, "Active model version");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Active model version set to {} (previous {})", version, current.active());
+    }
+
+    static void validate(String version) {
+        if (version == null || !VERSION.matcher(version).matches()) {
+            throw new IllegalArgumentException("invalid model version: " + version);
+        }
+    }
+
+    private Path pointerFile() {
+        return directory().resolve(modelName + ".active");
+    }
+
+    private ModelVersion describe(String version) {
+        Path params = paramsFile(version);
+        Path weights = weightsFile(version);
+        long size = 0;
+        LocalDateTime modifiedAt = null;
+        for (Path file : List.of(params, weights)) {
+            try {
+                if (Files.exists(file)) {
+                    size += Files.size(file);
+                    LocalDateTime modified = LocalDateTime.ofInstant(
+                            Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault());
+                    modifiedAt = modifiedAt == null || modified.isAfter(modifiedAt) ? modified : modifiedAt;
+                }
+            } catch (IOException e) {
+                log.debug("Cannot stat {}: {}", file, e.getMessage());
+            }
+        }
+        return new ModelVersion(version, Files.exists(params), Files.exists(weights), size, modifiedAt);
+    }
+
+    public record ModelVersion(String version, boolean params, boolean weights, long sizeBytes,
+                               LocalDateTime modifiedAt) {
+    }
+
+    public record Pointer(String active, String previous) {
+    }
+}
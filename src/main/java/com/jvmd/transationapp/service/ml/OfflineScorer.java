@@ -0,0 +1,69 @@
+package com.jvmd.transationapp.service.ml;
+
+import com.jvmd.transationapp.model.Transactions;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A private copy of a model version for offline work such as backtests. It has its own engines, so
+ * replays neither queue behind live predictions nor hold engines the batching threads need. Close
+ * it when done; the engines are not shared with anything else.
+ */
+@Slf4j
+public final class OfflineScorer implements AutoCloseable {
+    private final LoadedModel model;
+
+    OfflineScorer(LoadedModel model) {
+        this.model = model;
+    }
+
+    public String version() {
+        return model.version();
+    }
+
+    /**
+     * Scores, in one forward pass, every transaction that has no {@code mlScore} yet and stores the
+     * score on it. A transaction whose features cannot be extracted is left unscored. Safe to call
+     * from several threads; calls beyond the number of engines wait for one to come back.
+     *
+     * @throws IllegalStateException if the scorer was closed
+     */
+    public void scoreMissing(List<Transactions> transactions) throws Exception {
+        List<Transactions> rows = new ArrayList<>();
+        float[] features = new float[transactions.size() * MLInferenceService.INPUT_SIZE];
+        for (Transactions transaction : transactions) {
+            if (transaction.getMlScore() != null) {
+                continue;
+            }
+            try {
+                FeatureExtractor.extract(transaction, features, rows.size() * MLInferenceService.INPUT_SIZE);
+                rows.add(transaction);
+            } catch (RuntimeException e) {
+                log.debug("No features for transaction {}: {}", transaction.getId(), e.getMessage());
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        float[] scores = new float[rows.size()];
+        InferenceEngine engine = model.borrow();
+        if (engine == null) {
+            throw new IllegalStateException("offline scorer for model version " + model.version() + " is closed");
+        }
+        try {
+            engine.predict(features, rows.size(), scores);
+        } finally {
+            model.release(engine);
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setMlScore((double) scores[i]);
+        }
+    }
+
+    @Override
+    public void close() {
+        model.retire();
+    }
+}
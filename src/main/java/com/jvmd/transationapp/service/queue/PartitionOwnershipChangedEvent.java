@@ -0,0 +1,9 @@
+package com.jvmd.transationapp.service.queue;
+
+import java.util.Set;
+
+/**
+ * Published when a local consumer gains or gives up queue partitions.
+ */
+public record PartitionOwnershipChangedEvent(String consumerId, Set<Integer> acquired, Set<Integer> released) {
+}
@@ -0,0 +1,281 @@
+package com.jvmd.transationapp.service.queue;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigns queue partitions to consumers. Every consumer heartbeats into a membership sorted set;
+ * the live members, sorted by id, get partitions round-robin, and a consumer only reads a partition
+ * while it holds that partition's owner lock. A revoked partition is released by the worker itself
+ * at its next batch boundary, so two consumers never process the same partition at the same time.
+ * <p>
+ * That makes evaluation of an account's transactions sequential, not strictly ordered. Without
+ * failures they are consumed in enqueue order. A failed transaction re-enters at the tail of its
+ * partition after its backoff, and the in-flight messages of a dead consumer are only reaped after
+ * the visibility timeout, while its partitions move on after {@code member-ttl-ms}. In both cases
+ * later transactions of the account are evaluated first. Pattern windows are keyed by transaction
+ * timestamp, so the late transaction still sees the earlier ones, but the later ones were evaluated
+ * without it.
+ * <p>
+ * Locks are renewed by the heartbeat on its own thread, so a slow {@code @Scheduled} job cannot let
+ * them expire. If renewal still falls behind - Redis unreachable, a long GC pause - the consumer
+ * stops reading its partitions {@code heartbeat-ms} before the locks could expire and resumes once
+ * a renewal succeeds.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class QueuePartitionManager {
+    private static final String MEMBERS_KEY = "transaction:partitions:members";
+    private static final String OWNER_PREFIX = "transaction:partitions:owner:";
+    private static final int[] SINGLE_PARTITION = {0};
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ACQUIRE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/partition-lock-acquire.lua"), List.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/partition-lock-release.lua"), Long.class);
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<String, ConsumerPartitions> consumers = new ConcurrentHashMap<>();
+
+    @Value("${app.queue.partitions:1}")
+    private int partitions;
+
+    @Value("${app.queue.partition.member-ttl-ms:15000}")
+    private long memberTtlMs;
+
+    @Value("${app.queue.partition.heartbeat-ms:5000}")
+    private long heartbeatMs;
+
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void startHeartbeat() {
+        if (!isPartitioned()) {
+            return;
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("partition-heartbeat").daemon().factory());
+        heartbeat.scheduleWithFixedDelay(this::rebalance, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    public int getPartitionCount() {
+        return Math.max(1, partitions);
+    }
+
+    public boolean isPartitioned() {
+        return partitions > 1;
+    }
+
+    public int partitionFor(String partitionKey) {
+        if (!isPartitioned() || partitionKey == null) {
+            return 0;
+        }
+        return Math.floorMod(partitionKey.hashCode(), partitions);
+    }
+
+    /**
+     * Partitions the consumer may read right now. Workers call this between batches, which is also
+     * where partitions revoked by a rebalance are handed back.
+     */
+    public int[] ownedPartitions(String consumerId) {
+        if (!isPartitioned()) {
+            return SINGLE_PARTITION;
+        }
+        ConsumerPartitions state = consumers.get(consumerId);
+        if (state == null) {
+            consumers.putIfAbsent(consumerId, new ConsumerPartitions());
+            rebalance();
+            state = consumers.get(consumerId);
+            if (state == null) {
+                return new int[0];
+            }
+        }
+        releaseRevoked(consumerId, state);
+        if (System.nanoTime() - state.renewedAt > TimeUnit.MILLISECONDS.toNanos(memberTtlMs - heartbeatMs)) {
+            if (!state.stale) {
+                state.stale = true;
+                log.warn("Partition locks of consumer {} were not renewed in time, pausing partitions {}",
+                        consumerId, Arrays.toString(state.owned));
+            }
+            return new int[0];
+        }
+        if (state.stale) {
+            state.stale = false;
+            log.info("Partition locks of consumer {} renewed, resuming", consumerId);
+        }
+        return state.owned;
+    }
+
+    public void unregister(String consumerId) {
+        ConsumerPartitions state = consumers.remove(consumerId);
+        if (state == null) {
+            return;
+        }
+        try {
+            List<Integer> held = new ArrayList<>(state.revoked);
+            for (int partition : state.owned) {
+                held.add(partition);
+            }
+            release(consumerId, held);
+            redisTemplate.opsForZSet().remove(MEMBERS_KEY, consumerId);
+            log.info("Consumer {} left the partition group", consumerId);
+        } catch (Exception e) {
+            log.error("Failed to release partitions: consumer={}", consumerId, e);
+        }
+    }
+
+    public synchronized void rebalance() {
+        if (!isPartitioned() || consumers.isEmpty()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (String consumerId : consumers.keySet()) {
+                    stringConnection.zAdd(MEMBERS_KEY, now, consumerId);
+                }
+                stringConnection.zRemRangeByScore(MEMBERS_KEY, 0, now - memberTtlMs);
+                return null;
+            });
+            Set<String> live = redisTemplate.opsForZSet().range(MEMBERS_KEY, 0, -1);
+            List<String> members = new ArrayList<>(live != null ? new TreeSet<>(live) : Set.of());
+            for (Map.Entry<String, ConsumerPartitions> entry : consumers.entrySet()) {
+                assign(entry.getKey(), entry.getValue(), members);
+            }
+        } catch (Exception e) {
+            log.error("Failed to rebalance queue partitions", e);
+        }
+    }
+
+    private void assign(String consumerId, ConsumerPartitions state, List<String> members) {
+        List<Integer> desired = new ArrayList<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            if (!members.isEmpty() && members.get(partition % members.size()).equals(consumerId)) {
+                desired.add(partition);
+            }
+        }
+        synchronized (state) {
+            state.revoked.removeAll(desired);
+            List<Integer> toLock = new ArrayList<>(desired);
+            toLock.addAll(state.revoked);
+            long renewStartedAt = System.nanoTime();
+            List<Boolean> held = acquire(consumerId, toLock);
+            state.renewedAt = renewStartedAt;
+            List<Integer> owned = new ArrayList<>();
+            for (int i = 0; i < desired.size(); i++) {
+                if (held.get(i)) {
+                    owned.add(desired.get(i));
+                }
+            }
+            Set<Integer> released = new TreeSet<>();
+            for (int partition : state.owned) {
+                if (!desired.contains(partition)) {
+                    state.revoked.add(partition);
+                }
+                if (!owned.contains(partition)) {
+                    released.add(partition);
+                }
+            }
+            Set<Integer> acquired = new TreeSet<>(owned);
+            for (int partition : state.owned) {
+                acquired.remove(partition);
+            }
+            int[] next = owned.stream().mapToInt(Integer::intValue).toArray();
+            if (!Arrays.equals(next, state.owned)) {
+                log.info("Consumer {} now owns partitions {} (waiting for {}, releasing {})",
+                        consumerId, owned, desired.size() - owned.size(), state.revoked);
+            }
+            state.owned = next;
+            if (!acquired.isEmpty() || !released.isEmpty()) {
+                eventPublisher.publishEvent(new PartitionOwnershipChangedEvent(consumerId, acquired, released));
+            }
+        }
+    }
+
+    private void releaseRevoked(String consumerId, ConsumerPartitions state) {
+        if (state.revoked.isEmpty()) {
+            return;
+        }
+        List<Integer> revoked;
+        synchronized (state) {
+            revoked = new ArrayList<>(state.revoked);
+            state.revoked.clear();
+        }
+        try {
+            release(consumerId, revoked);
+            log.info("Consumer {} released partitions {}", consumerId, revoked);
+        } catch (Exception e) {
+            log.error("Failed to release partitions {}: consumer={}", revoked, consumerId, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Boolean> acquire(String consumerId, List<Integer> partitionIds) {
+        if (partitionIds.isEmpty()) {
+            return List.of();
+        }
+        List<Object> reply = redisTemplate.execute(ACQUIRE_SCRIPT, ownerKeys(partitionIds),
+                consumerId, String.valueOf(memberTtlMs));
+        List<Boolean> held = new ArrayList<>(partitionIds.size());
+        for (int i = 0; i < partitionIds.size(); i++) {
+            Object value = reply != null && i < reply.size() ? reply.get(i) : null;
+            held.add(value instanceof Number number && number.longValue() == 1);
+        }
+        return held;
+    }
+
+    private void release(String consumerId, List<Integer> partitionIds) {
+        if (!partitionIds.isEmpty()) {
+            redisTemplate.execute(RELEASE_SCRIPT, ownerKeys(partitionIds), consumerId);
+        }
+    }
+
+    private static List<String> ownerKeys(List<Integer> partitionIds) {
+        List<String> keys = new ArrayList<>(partitionIds.size());
+        for (Integer partition : partitionIds) {
+            keys.add(OWNER_PREFIX + partition);
+        }
+        return keys;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        for (String consumerId : new ArrayList<>(consumers.keySet())) {
+            unregister(consumerId);
+        }
+    }
+
+    private static final class ConsumerPartitions {
+        private volatile int[] owned = new int[0];
+        private volatile long renewedAt = System.nanoTime();
+        private volatile boolean stale;
+        private final Set<Integer> revoked = Collections.synchronizedSet(new TreeSet<>());
+    }
+}
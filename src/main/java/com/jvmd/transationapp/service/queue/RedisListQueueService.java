@@ -0,0 +1,458 @@
+package com.jvmd.transationapp.service.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.dto.DeadLetterResponse;
+import com.jvmd.transationapp.dto.PendingEntryResponse;
+import com.jvmd.transationapp.dto.QueueStatsResponse;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.QueueService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.queue.backend", havingValue = "list", matchIfMissing = true)
+public class RedisListQueueService implements QueueService {
+    private static final String QUEUE_NAME = "transaction:queue";
+    private static final String PARTITION_PREFIX = "transaction:queue:p";
+    private static final double MIN_BLOCK_SLICE_SECONDS = 0.1;
+    private static final String PROCESSING_SET = "transaction:processing";
+    private static final String IN_FLIGHT_PREFIX = "transaction:inflight:";
+    private static final String LEASES_KEY = "transaction:inflight:leases";
+    private static final long PROCESSING_SET_TTL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final int REAPER_MAX_CONSUMERS = 100;
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> POP_BATCH_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/queue-pop-batch.lua"), List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_BATCH_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/queue-claim-batch.lua"), List.class);
+    private static final RedisScript<Long> REAP_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/queue-reap-inflight.lua"), Long.class);
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RetryScheduler retryScheduler;
+    private final QueuePartitionManager partitionManager;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    @Value("${app.queue.retry-attempts:3}")
+    private int maxRetryAttempts;
+
+    @Value("${app.queue.reliable:false}")
+    private boolean reliable;
+
+    @Value("${app.queue.visibility-timeout-ms:60000}")
+    private long visibilityTimeoutMs;
+
+    @Value("${app.queue.payload-snapshot:false}")
+    private boolean payloadSnapshot;
+
+    @Override
+    public void enqueue(Transactions transaction) {
+        UUID transactionId = transaction.getId();
+        String correlationId = transaction.getCorrelationId();
+        try {
+            MDC.put("correlationId", correlationId);
+            publish(QueueMessage.of(transaction, payloadSnapshot));
+            log.info("Transaction enqueued: transactionId={}, correlationId={}",
+                    transactionId, correlationId);
+        } catch (Exception e) {
+            log.error("Failed to enqueue transaction: transactionId={}, correlationId={}",
+                    transactionId, correlationId, e);
+            throw new RuntimeException("Failed to enqueue transaction", e);
+        } finally {
+            MDC.remove("correlationId");
+        }
+    }
+
+    /**
+     * Takes the batch in a single round trip from the partitions the consumer owns. In reliable mode
+     * messages are moved into the consumer's in-flight list and stay there until they are acknowledged.
+     */
+    @Override
+    public List<QueueMessage> dequeueBatch(String consumerId, int maxMessages, Duration blockTimeout) {
+        try {
+            List<String> queueKeys = ownedQueueKeys(consumerId);
+            if (queueKeys.isEmpty()) {
+                if (blockTimeout != null && !blockTimeout.isZero()) {
+                    Thread.sleep(blockTimeout.toMillis());
+                }
+                return List.of();
+            }
+            List<QueueMessage> batch = takeBatch(consumerId, queueKeys, maxMessages, null);
+            if (!batch.isEmpty() || blockTimeout == null || blockTimeout.isZero()) {
+                return batch;
+            }
+            byte[] first = blockingTake(consumerId, queueKeys, blockTimeout);
+            if (first == null) {
+                return List.of();
+            }
+            QueueMessage firstMessage = toMessage(consumerId, first);
+            List<QueueMessage> messages = new ArrayList<>(maxMessages);
+            if (firstMessage != null) {
+                messages.add(firstMessage);
+            }
+            messages.addAll(takeBatch(consumerId, queueKeys, maxMessages - 1,
+                    firstMessage != null ? firstMessage.getTransactionId() : null));
+            return messages;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (Exception e) {
+            log.error("Failed to dequeue transaction batch: consumer={}", consumerId, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Queue keys of the consumer's partitions, rotated on every call so a busy partition cannot
+     * starve the others. The owner of partition 0 also drains the unpartitioned legacy queue.
+     */
+    private List<String> ownedQueueKeys(String consumerId) {
+        int[] owned = partitionManager.ownedPartitions(consumerId);
+        if (!partitionManager.isPartitioned()) {
+            return List.of(QUEUE_NAME);
+        }
+        List<String> keys = new ArrayList<>(owned.length + 1);
+        int offset = owned.length > 0 ? Math.floorMod(rotation.getAndIncrement(), owned.length) : 0;
+        for (int i = 0; i < owned.length; i++) {
+            int partition = owned[(offset + i) % owned.length];
+            keys.add(queueKey(partition));
+            if (partition == 0) {
+                keys.add(QUEUE_NAME);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * BLPOP waits on all owned partitions at once. BLMOVE only takes one source, so in reliable mode
+     * the wait is spent on the first (rotated) partition with a share of the timeout.
+     */
+    private byte[] blockingTake(String consumerId, List<String> queueKeys, Duration blockTimeout) {
+        double timeoutSeconds = blockTimeout.toMillis() / 1000.0;
+        if (reliable) {
+            byte[] queueKey = key(queueKeys.get(0));
+            byte[] inFlightKey = key(inFlightKey(consumerId));
+            double sliceSeconds = Math.max(MIN_BLOCK_SLICE_SECONDS, timeoutSeconds / queueKeys.size());
+            return redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.listCommands()
+                    .bLMove(queueKey, inFlightKey, RedisListCommands.Direction.LEFT,
+                            RedisListCommands.Direction.RIGHT, sliceSeconds));
+        }
+        byte[][] keys = queueKeys.stream().map(RedisListQueueService::key).toArray(byte[][]::new);
+        List<byte[]> popped = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.listCommands().bLPop((int) Math.max(1, Math.ceil(timeoutSeconds)), keys));
+        return popped != null && popped.size() == 2 ? popped.get(1) : null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<QueueMessage> takeBatch(String consumerId, List<String> queueKeys, int maxMessages,
+                                         UUID alreadyTakenId) {
+        String count = String.valueOf(Math.max(0, maxMessages));
+        String ttl = String.valueOf(PROCESSING_SET_TTL_SECONDS);
+        String takenId = alreadyTakenId != null ? alreadyTakenId.toString() : "";
+        List<byte[]> items;
+        if (reliable) {
+            List<String> keys = new ArrayList<>(queueKeys.size() + 3);
+            keys.add(inFlightKey(consumerId));
+            keys.add(PROCESSING_SET);
+            keys.add(LEASES_KEY);
+            keys.addAll(queueKeys);
+            items = (List<byte[]>) redisTemplate.execute(
+                    CLAIM_BATCH_SCRIPT,
+                    RedisSerializer.string(),
+                    (RedisSerializer) RedisSerializer.byteArray(),
+                    keys,
+                    count, ttl, consumerId, String.valueOf(leaseDeadline()), takenId
+            );
+        } else {
+            List<String> keys = new ArrayList<>(queueKeys.size() + 1);
+            keys.add(PROCESSING_SET);
+            keys.addAll(queueKeys);
+            items = (List<byte[]>) redisTemplate.execute(
+                    POP_BATCH_SCRIPT,
+                    RedisSerializer.string(),
+                    (RedisSerializer) RedisSerializer.byteArray(),
+                    keys,
+                    count, ttl, takenId
+            );
+        }
+        if (items == null || items.isEmpty()) {
+            return List.of();
+        }
+        List<QueueMessage> messages = new ArrayList<>(items.size());
+        for (byte[] item : items) {
+            QueueMessage message = toMessage(consumerId, item);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private QueueMessage toMessage(String consumerId, byte[] raw) {
+        try {
+            Object value = redisTemplate.getValueSerializer().deserialize(raw);
+            QueueMessage message = objectMapper.convertValue(value, QueueMessage.class);
+            if (reliable) {
+                message.setConsumerId(consumerId);
+                message.setReceipt(raw);
+            }
+            return message;
+        } catch (Exception e) {
+            log.error("Dropping undecodable queue message: {}", new String(raw, StandardCharsets.UTF_8), e);
+            if (reliable) {
+                redisTemplate.execute((RedisCallback<Long>) connection ->
+                        connection.listCommands().lRem(key(inFlightKey(consumerId)), 1, raw));
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public void markAsProcessed(QueueMessage message) {
+        if (message.getReceipt() == null) {
+            redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.setCommands().sRem(key(PROCESSING_SET), key(message.getTransactionId().toString())));
+            return;
+        }
+        byte[] inFlightKey = key(inFlightKey(message.getConsumerId()));
+        byte[] transactionId = key(message.getTransactionId().toString());
+        byte[] consumerId = key(message.getConsumerId());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.listCommands().lRem(inFlightKey, 1, message.getReceipt());
+            connection.setCommands().sRem(key(PROCESSING_SET), transactionId);
+            connection.zSetCommands().zAdd(key(LEASES_KEY), leaseDeadline(), consumerId);
+            return null;
+        });
+    }
+
+    @Override
+    public void requeueForRetry(QueueMessage message, String failureReason) {
+        if (message.getRetryCount() < maxRetryAttempts) {
+            QueueMessage retry = message.nextAttempt();
+            retryScheduler.schedule(retry);
+            log.warn("Transaction scheduled for retry: transactionId={}, retryCount={}, reason={}",
+                    retry.getTransactionId(), retry.getRetryCount(), failureReason);
+        } else {
+            retryScheduler.deadLetter(message, failureReason);
+            log.error("Transaction exceeded max retry attempts, dead-lettered: transactionId={}, reason={}",
+                    message.getTransactionId(), failureReason);
+        }
+        markAsProcessed(message);
+    }
+
+    @Scheduled(fixedDelayString = "${app.queue.retry.poll-interval-ms:1000}")
+    public void promoteDueRetries() {
+        try {
+            int promoted = retryScheduler.promoteDue(this::publish);
+            if (promoted > 0) {
+                log.info("Promoted {} due retries to the queue", promoted);
+            }
+        } catch (Exception e) {
+            log.error("Failed to promote due retries", e);
+        }
+    }
+
+    @Override
+    public List<DeadLetterResponse> getDeadLetters(int limit) {
+        return retryScheduler.getDeadLetters(limit);
+    }
+
+    @Override
+    public int redriveDeadLetters(int limit) {
+        int redriven = retryScheduler.redrive(limit, this::publish);
+        log.info("Redrove {} dead-lettered transactions", redriven);
+        return redriven;
+    }
+
+    private void publish(QueueMessage message) {
+        int partition = partitionManager.partitionFor(message.getPartitionKey());
+        message.setPartition(partitionManager.isPartitioned() ? partition : null);
+        redisTemplate.opsForList().rightPush(queueKey(partition), message);
+    }
+
+    @Override
+    public void releaseConsumer(String consumerId) {
+        partitionManager.unregister(consumerId);
+        if (!reliable) {
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                    connection.zSetCommands().zAdd(key(LEASES_KEY), 0, key(consumerId)));
+            reapExpiredInFlight();
+        } catch (Exception e) {
+            log.error("Failed to release in-flight transactions: consumer={}", consumerId, e);
+        }
+    }
+
+    /**
+     * Lists consumers whose lease expired and hands each one's in-flight messages back with its own
+     * script call, so every key the script touches is passed in KEYS.
+     */
+    @Scheduled(fixedDelayString = "${app.queue.reaper-interval-ms:15000}")
+    public void reapExpiredInFlight() {
+        if (!reliable) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            Set<byte[]> expired = redisTemplate.execute((RedisCallback<Set<byte[]>>) connection ->
+                    connection.zSetCommands().zRangeByScore(key(LEASES_KEY), Double.NEGATIVE_INFINITY, now,
+                            0, REAPER_MAX_CONSUMERS));
+            if (expired == null || expired.isEmpty()) {
+                return;
+            }
+            long moved = 0;
+            for (byte[] consumer : expired) {
+                String consumerId = new String(consumer, StandardCharsets.UTF_8);
+                Long reaped = redisTemplate.execute(
+                        REAP_SCRIPT,
+                        RedisSerializer.string(),
+                        new GenericToStringSerializer<>(Long.class),
+                        reapKeys(consumerId),
+                        consumerId,
+                        String.valueOf(now)
+                );
+                moved += reaped != null ? reaped : 0;
+            }
+            if (moved > 0) {
+                log.warn("Re-queued {} in-flight transactions from expired consumers", moved);
+            }
+        } catch (Exception e) {
+            log.error("Failed to reap expired in-flight transactions", e);
+        }
+    }
+
+    private List<String> reapKeys(String consumerId) {
+        int partitionKeys = partitionManager.isPartitioned() ? partitionManager.getPartitionCount() : 0;
+        List<String> keys = new ArrayList<>(3 + partitionKeys);
+        keys.add(LEASES_KEY);
+        keys.add(inFlightKey(consumerId));
+        keys.add(QUEUE_NAME);
+        for (int partition = 0; partition < partitionKeys; partition++) {
+            keys.add(PARTITION_PREFIX + partition);
+        }
+        return keys;
+    }
+
+    @Override
+    public Long getQueueSize() {
+        if (!partitionManager.isPartitioned()) {
+            Long size = redisTemplate.opsForList().size(QUEUE_NAME);
+            return size != null ? size : 0L;
+        }
+        List<Object> sizes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.listCommands().lLen(key(QUEUE_NAME));
+            for (int partition = 0; partition < partitionManager.getPartitionCount(); partition++) {
+                connection.listCommands().lLen(key(queueKey(partition)));
+            }
+            return null;
+        });
+        long total = 0;
+        for (Object size : sizes) {
+            if (size instanceof Number number) {
+                total += number.longValue();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isProcessing(UUID transactionId) {
+        Boolean isMember = redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.setCommands().sIsMember(key(PROCESSING_SET), key(transactionId.toString())));
+        return isMember != null && isMember;
+    }
+
+    @Override
+    public QueueStatsResponse getStats() {
+        Long processing = redisTemplate.opsForSet().size(PROCESSING_SET);
+        Long consumers = redisTemplate.opsForZSet().zCard(LEASES_KEY);
+        long queueSize = getQueueSize();
+        return QueueStatsResponse.builder()
+                .backend("list")
+                .partitions(partitionManager.getPartitionCount())
+                .queueSize(queueSize)
+                .pending(processing != null ? processing : 0L)
+                .consumers(consumers != null ? consumers : 0L)
+                .lag(queueSize)
+                .retryScheduled(retryScheduler.getScheduledCount())
+                .deadLetters(retryScheduler.getDeadLetterCount())
+                .build();
+    }
+
+    @Override
+    public List<PendingEntryResponse> getPendingEntries(int limit) {
+        List<PendingEntryResponse> entries = new ArrayList<>();
+        Set<Tuple> leases = redisTemplate.execute((RedisCallback<Set<Tuple>>) connection ->
+                connection.zSetCommands().zRangeWithScores(key(LEASES_KEY), 0, -1));
+        if (leases == null) {
+            return entries;
+        }
+        long now = System.currentTimeMillis();
+        for (Tuple lease : leases) {
+            if (entries.size() >= limit) {
+                break;
+            }
+            String consumerId = new String(lease.getValue(), StandardCharsets.UTF_8);
+            long idleMs = Math.max(0, now - (lease.getScore().longValue() - visibilityTimeoutMs));
+            List<Object> inFlight = redisTemplate.opsForList()
+                    .range(inFlightKey(consumerId), 0, limit - entries.size() - 1);
+            if (inFlight == null) {
+                continue;
+            }
+            for (Object value : inFlight) {
+                QueueMessage message = objectMapper.convertValue(value, QueueMessage.class);
+                entries.add(PendingEntryResponse.builder()
+                        .id(message.getTransactionId().toString())
+                        .transactionId(message.getTransactionId())
+                        .consumer(consumerId)
+                        .idleMs(idleMs)
+                        .deliveryCount((long) message.getRetryCount() + 1)
+                        .build());
+            }
+        }
+        return entries;
+    }
+
+    private long leaseDeadline() {
+        return System.currentTimeMillis() + visibilityTimeoutMs;
+    }
+
+    private String queueKey(int partition) {
+        return partitionManager.isPartitioned() ? PARTITION_PREFIX + partition : QUEUE_NAME;
+    }
+
+    private static String inFlightKey(String consumerId) {
+        return IN_FLIGHT_PREFIX + consumerId;
+    }
+
+    private static byte[] key(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
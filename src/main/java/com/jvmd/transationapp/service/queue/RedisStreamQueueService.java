@@ -0,0 +1,471 @@
+package com.jvmd.transationapp.service.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.dto.DeadLetterResponse;
+import com.jvmd.transationapp.dto.PendingEntryResponse;
+import com.jvmd.transationapp.dto.QueueStatsResponse;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.QueueService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Redis Streams backend: XADD on enqueue, XREADGROUP (COUNT/BLOCK) per worker, XACK + XDEL on
+ * acknowledgement and XAUTOCLAIM for entries whose consumer stopped acknowledging them. Every
+ * redelivery, claimed or resumed after a restart, counts as an attempt, so an entry that keeps
+ * killing or hanging its consumer is dead-lettered once it exceeds {@code app.queue.retry-attempts}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.queue.backend", havingValue = "stream")
+public class RedisStreamQueueService implements QueueService {
+    private static final String STREAM_KEY = "transaction:stream";
+    private static final String GROUP_NAME = "transaction-workers";
+    private static final String PROCESSING_SET = "transaction:processing";
+    private static final long PROCESSING_SET_TTL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> AUTOCLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/stream-autoclaim.lua"), List.class);
+    private final StringRedisTemplate redisTemplate;
+    private final RetryScheduler retryScheduler;
+    private final ObjectMapper objectMapper;
+    private final Set<String> drainedConsumers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong nextClaimAt = new AtomicLong();
+    private final AtomicReference<String> claimCursor = new AtomicReference<>("0-0");
+
+    @Value("${app.queue.retry-attempts:3}")
+    private int maxRetryAttempts;
+
+    @Value("${app.queue.visibility-timeout-ms:60000}")
+    private long visibilityTimeoutMs;
+
+    @Value("${app.queue.payload-snapshot:false}")
+    private boolean payloadSnapshot;
+
+    @Value("${app.queue.reaper-interval-ms:15000}")
+    private long claimIntervalMs;
+
+    @PostConstruct
+    public void ensureGroup() {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(key(STREAM_KEY), GROUP_NAME, ReadOffset.from("0"), true));
+            log.info("Created consumer group {} on stream {}", GROUP_NAME, STREAM_KEY);
+        } catch (Exception e) {
+            if (hasErrorCode(e, "BUSYGROUP")) {
+                log.debug("Consumer group {} already exists", GROUP_NAME);
+            } else {
+                log.error("Failed to create consumer group {} on stream {}", GROUP_NAME, STREAM_KEY, e);
+            }
+        }
+    }
+
+    @Override
+    public void enqueue(Transactions transaction) {
+        UUID transactionId = transaction.getId();
+        String correlationId = transaction.getCorrelationId();
+        try {
+            MDC.put("correlationId", correlationId);
+            RecordId recordId = publish(QueueMessage.of(transaction, payloadSnapshot));
+            log.info("Transaction enqueued: transactionId={}, correlationId={}, recordId={}",
+                    transactionId, correlationId, recordId);
+        } catch (Exception e) {
+            log.error("Failed to enqueue transaction: transactionId={}, correlationId={}",
+                    transactionId, correlationId, e);
+            throw new RuntimeException("Failed to enqueue transaction", e);
+        } finally {
+            MDC.remove("correlationId");
+        }
+    }
+
+    @Override
+    public List<QueueMessage> dequeueBatch(String consumerId, int maxMessages, Duration blockTimeout) {
+        try {
+            Consumer consumer = Consumer.from(GROUP_NAME, consumerId);
+            if (!drainedConsumers.contains(consumerId)) {
+                List<QueueMessage> backlog = read(consumer, StreamReadOptions.empty().count(maxMessages),
+                        ReadOffset.from("0"));
+                if (!backlog.isEmpty()) {
+                    backlog = withoutExhausted(consumer, backlog);
+                    if (backlog.isEmpty()) {
+                        return backlog;
+                    }
+                }
+                if (backlog.isEmpty()) {
+                    drainedConsumers.add(consumerId);
+                } else {
+                    log.info("Consumer {} resuming {} pending transactions", consumerId, backlog.size());
+                    return track(backlog);
+                }
+            }
+            List<QueueMessage> claimed = claimStale(consumerId, maxMessages);
+            if (!claimed.isEmpty()) {
+                return track(claimed);
+            }
+            StreamReadOptions options = StreamReadOptions.empty().count(maxMessages);
+            if (blockTimeout != null && !blockTimeout.isZero()) {
+                options = options.block(blockTimeout);
+            }
+            return track(read(consumer, options, ReadOffset.lastConsumed()));
+        } catch (Exception e) {
+            log.error("Failed to dequeue transaction batch: consumer={}", consumerId, e);
+            if (hasErrorCode(e, "NOGROUP")) {
+                ensureGroup();
+            }
+            return List.of();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<QueueMessage> read(Consumer consumer, StreamReadOptions options, ReadOffset offset) {
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                .read(consumer, options, StreamOffset.create(STREAM_KEY, offset));
+        if (records == null || records.isEmpty()) {
+            return List.of();
+        }
+        List<QueueMessage> messages = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            QueueMessage message = toMessage(record.getId().getValue(), record.getValue());
+            if (message != null) {
+                message.setConsumerId(consumer.getName());
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<QueueMessage> claimStale(String consumerId, int maxMessages) {
+        long now = System.currentTimeMillis();
+        long scheduled = nextClaimAt.get();
+        if (now < scheduled || !nextClaimAt.compareAndSet(scheduled, now + claimIntervalMs)) {
+            return List.of();
+        }
+        List<Object> reply = (List<Object>) redisTemplate.execute(
+                AUTOCLAIM_SCRIPT,
+                RedisSerializer.string(),
+                (RedisSerializer) RedisSerializer.string(),
+                List.of(STREAM_KEY),
+                GROUP_NAME, consumerId, String.valueOf(visibilityTimeoutMs),
+                claimCursor.get(), String.valueOf(maxMessages)
+        );
+        if (reply == null || reply.size() < 2) {
+            return List.of();
+        }
+        claimCursor.set(String.valueOf(reply.get(0)));
+        List<Object> entries = (List<Object>) reply.get(1);
+        List<Object> deliveryCounts = reply.size() > 2 ? (List<Object>) reply.get(2) : List.of();
+        List<QueueMessage> messages = new ArrayList<>();
+        for (int index = 0; index < entries.size(); index++) {
+            if (!(entries.get(index) instanceof List<?> parts) || parts.size() < 2
+                    || !(parts.get(1) instanceof List<?> flat)) {
+                continue;
+            }
+            Map<Object, Object> fields = new HashMap<>();
+            for (int i = 0; i + 1 < flat.size(); i += 2) {
+                fields.put(flat.get(i), flat.get(i + 1));
+            }
+            QueueMessage message = toMessage(String.valueOf(parts.get(0)), fields);
+            if (message == null) {
+                continue;
+            }
+            message.setConsumerId(consumerId);
+            long deliveries = index < deliveryCounts.size()
+                    ? Long.parseLong(String.valueOf(deliveryCounts.get(index))) : 1;
+            if (message.getRetryCount() + deliveries - 1 > maxRetryAttempts) {
+                deadLetterUndelivered(message, deliveries);
+            } else {
+                messages.add(message);
+            }
+        }
+        if (!messages.isEmpty()) {
+            log.warn("Consumer {} claimed {} stale pending transactions", consumerId, messages.size());
+        }
+        return messages;
+    }
+
+    /**
+     * Dead-letters the consumer's own pending entries that were already delivered too often, e.g.
+     * because the consumer keeps crashing on them and resuming its backlog after a restart.
+     */
+    private List<QueueMessage> withoutExhausted(Consumer consumer, List<QueueMessage> backlog) {
+        PendingMessages pending = redisTemplate.opsForStream()
+                .pending(STREAM_KEY, consumer, Range.unbounded(), backlog.size());
+        Map<String, Long> deliveries = new HashMap<>();
+        if (pending != null) {
+            for (PendingMessage entry : pending) {
+                deliveries.put(entry.getIdAsString(), entry.getTotalDeliveryCount());
+            }
+        }
+        List<QueueMessage> deliverable = new ArrayList<>(backlog.size());
+        for (QueueMessage message : backlog) {
+            long count = deliveries.getOrDefault(message.getRecordId(), 1L);
+            if (message.getRetryCount() + count - 1 > maxRetryAttempts) {
+                deadLetterUndelivered(message, count);
+            } else {
+                deliverable.add(message);
+            }
+        }
+        return deliverable;
+    }
+
+    /**
+     * The entry was delivered {@code deliveries} times without being acknowledged, so its consumers
+     * crashed or hung on it every time.
+     */
+    private void deadLetterUndelivered(QueueMessage message, long deliveries) {
+        String reason = "Delivered " + deliveries + " times without acknowledgement";
+        try {
+            retryScheduler.deadLetter(message, reason);
+            markAsProcessed(message);
+            log.error("Stale transaction exceeded max delivery attempts, dead-lettered: transactionId={}, deliveries={}",
+                    message.getTransactionId(), deliveries);
+        } catch (Exception e) {
+            log.error("Failed to dead-letter stale transaction: transactionId={}", message.getTransactionId(), e);
+        }
+    }
+
+    private List<QueueMessage> track(List<QueueMessage> messages) {
+        if (messages.isEmpty()) {
+            return messages;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (QueueMessage message : messages) {
+                connection.setCommands().sAdd(key(PROCESSING_SET), key(message.getTransactionId().toString()));
+            }
+            connection.keyCommands().expire(key(PROCESSING_SET), PROCESSING_SET_TTL_SECONDS);
+            return null;
+        });
+        return messages;
+    }
+
+    @Override
+    public void markAsProcessed(QueueMessage message) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            acknowledge(connection, message);
+            return null;
+        });
+    }
+
+    private void acknowledge(RedisConnection connection, QueueMessage message) {
+        if (message.getRecordId() != null) {
+            RecordId recordId = RecordId.of(message.getRecordId());
+            connection.streamCommands().xAck(key(STREAM_KEY), GROUP_NAME, recordId);
+            connection.streamCommands().xDel(key(STREAM_KEY), recordId);
+        }
+        connection.setCommands().sRem(key(PROCESSING_SET), key(message.getTransactionId().toString()));
+    }
+
+    @Override
+    public void requeueForRetry(QueueMessage message, String failureReason) {
+        if (message.getRetryCount() < maxRetryAttempts) {
+            QueueMessage retry = message.nextAttempt();
+            retryScheduler.schedule(retry);
+            log.warn("Transaction scheduled for retry: transactionId={}, retryCount={}, reason={}",
+                    retry.getTransactionId(), retry.getRetryCount(), failureReason);
+        } else {
+            retryScheduler.deadLetter(message, failureReason);
+            log.error("Transaction exceeded max retry attempts, dead-lettered: transactionId={}, reason={}",
+                    message.getTransactionId(), failureReason);
+        }
+        markAsProcessed(message);
+    }
+
+    @Scheduled(fixedDelayString = "${app.queue.retry.poll-interval-ms:1000}")
+    public void promoteDueRetries() {
+        try {
+            int promoted = retryScheduler.promoteDue(this::publish);
+            if (promoted > 0) {
+                log.info("Promoted {} due retries to the queue", promoted);
+            }
+        } catch (Exception e) {
+            log.error("Failed to promote due retries", e);
+        }
+    }
+
+    @Override
+    public List<DeadLetterResponse> getDeadLetters(int limit) {
+        return retryScheduler.getDeadLetters(limit);
+    }
+
+    @Override
+    public int redriveDeadLetters(int limit) {
+        int redriven = retryScheduler.redrive(limit, this::publish);
+        log.info("Redrove {} dead-lettered transactions", redriven);
+        return redriven;
+    }
+
+    private RecordId publish(QueueMessage message) {
+        return redisTemplate.opsForStream().add(STREAM_KEY, toFields(message));
+    }
+
+    @Override
+    public void releaseConsumer(String consumerId) {
+        drainedConsumers.remove(consumerId);
+    }
+
+    @Override
+    public Long getQueueSize() {
+        Long size = redisTemplate.opsForStream().size(STREAM_KEY);
+        return size != null ? size : 0L;
+    }
+
+    @Override
+    public boolean isProcessing(UUID transactionId) {
+        Boolean isMember = redisTemplate.opsForSet().isMember(PROCESSING_SET, transactionId.toString());
+        return isMember != null && isMember;
+    }
+
+    @Override
+    public QueueStatsResponse getStats() {
+        long size = getQueueSize();
+        long pending = 0;
+        long consumers = 0;
+        try {
+            PendingMessagesSummary summary = redisTemplate.opsForStream().pending(STREAM_KEY, GROUP_NAME);
+            pending = summary != null ? summary.getTotalPendingMessages() : 0;
+            StreamInfo.XInfoGroups groups = redisTemplate.opsForStream().groups(STREAM_KEY);
+            consumers = groups.stream()
+                    .filter(group -> GROUP_NAME.equals(group.groupName()))
+                    .mapToLong(StreamInfo.XInfoGroup::consumerCount)
+                    .sum();
+        } catch (Exception e) {
+            log.warn("Failed to read consumer group info: {}", e.getMessage());
+        }
+        return QueueStatsResponse.builder()
+                .backend("stream")
+                .partitions(1)
+                .queueSize(size)
+                .pending(pending)
+                .consumers(consumers)
+                .lag(Math.max(0, size - pending))
+                .retryScheduled(retryScheduler.getScheduledCount())
+                .deadLetters(retryScheduler.getDeadLetterCount())
+                .build();
+    }
+
+    @Override
+    public List<PendingEntryResponse> getPendingEntries(int limit) {
+        PendingMessages pending = redisTemplate.opsForStream()
+                .pending(STREAM_KEY, GROUP_NAME, Range.unbounded(), limit);
+        List<PendingEntryResponse> entries = new ArrayList<>();
+        if (pending == null) {
+            return entries;
+        }
+        for (PendingMessage message : pending) {
+            entries.add(PendingEntryResponse.builder()
+                    .id(message.getIdAsString())
+                    .consumer(message.getConsumerName())
+                    .idleMs(message.getElapsedTimeSinceLastDelivery().toMillis())
+                    .deliveryCount(message.getTotalDeliveryCount())
+                    .build());
+        }
+        return entries;
+    }
+
+    private QueueMessage toMessage(String recordId, Map<?, ?> fields) {
+        try {
+            if (fields == null || fields.get("transactionId") == null) {
+                log.error("Acknowledging stream entry without payload: recordId={}", recordId);
+                redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, recordId);
+                return null;
+            }
+            QueueMessage message = new QueueMessage();
+            message.setRecordId(recordId);
+            message.setTransactionId(UUID.fromString(fields.get("transactionId").toString()));
+            message.setPartitionKey(stringField(fields, "partitionKey"));
+            message.setCorrelationId(stringField(fields, "correlationId"));
+            String enqueuedAt = stringField(fields, "enqueuedAt");
+            message.setEnqueuedAt(enqueuedAt != null ? Long.parseLong(enqueuedAt) : null);
+            String retryCount = stringField(fields, "retryCount");
+            message.setRetryCount(retryCount != null ? Integer.parseInt(retryCount) : 0);
+            String snapshot = stringField(fields, "snapshot");
+            if (snapshot != null) {
+                message.setSnapshot(objectMapper.readValue(snapshot, TransactionSnapshot.class));
+            }
+            return message;
+        } catch (Exception e) {
+            log.error("Dropping undecodable stream entry: recordId={}, fields={}", recordId, fields, e);
+            redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, recordId);
+            return null;
+        }
+    }
+
+    private Map<String, String> toFields(QueueMessage message) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("transactionId", message.getTransactionId().toString());
+        if (message.getPartitionKey() != null) {
+            fields.put("partitionKey", message.getPartitionKey());
+        }
+        if (message.getCorrelationId() != null) {
+            fields.put("correlationId", message.getCorrelationId());
+        }
+        if (message.getEnqueuedAt() != null) {
+            fields.put("enqueuedAt", String.valueOf(message.getEnqueuedAt()));
+        }
+        fields.put("retryCount", String.valueOf(message.getRetryCount() != null ? message.getRetryCount() : 0));
+        if (message.getSnapshot() != null) {
+            try {
+                fields.put("snapshot", objectMapper.writeValueAsString(message.getSnapshot()));
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to serialize transaction snapshot", e);
+            }
+        }
+        return fields;
+    }
+
+    private static String stringField(Map<?, ?> fields, String name) {
+        Object value = fields.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    private static boolean hasErrorCode(Throwable e, String code) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains(code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] key(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
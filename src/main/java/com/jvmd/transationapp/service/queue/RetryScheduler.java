@@ -0,0 +1,212 @@
+package com.jvmd.transationapp.service.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.dto.DeadLetterResponse;
+import com.jvmd.transationapp.service.QueueService.QueueMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Delayed retries and dead letters shared by the queue backends. Failed messages are parked in a
+ * sorted set scored by their due time and promoted back to the queue in batches; messages that
+ * exhaust their attempts go to a capped dead-letter list together with the failure reason.
+ * Promoted retries are appended to their partition, behind any transactions of the same account
+ * that arrived in the meantime.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RetryScheduler {
+    private static final String RETRY_KEY = "transaction:retry";
+    private static final String DEAD_LETTER_KEY = "transaction:dlq";
+    private static final long RESCHEDULE_DELAY_MS = 5_000;
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_DUE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/retry-claim-due.lua"), List.class);
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.queue.retry.base-delay-ms:1000}")
+    private long baseDelayMs;
+
+    @Value("${app.queue.retry.max-delay-ms:60000}")
+    private long maxDelayMs;
+
+    @Value("${app.queue.retry.promote-batch-size:100}")
+    private int promoteBatchSize;
+
+    @Value("${app.queue.retry.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.queue.dead-letter.max-size:10000}")
+    private long deadLetterMaxSize;
+
+    /**
+     * Parks the message until its backoff elapses. {@code retryCount} is the attempt that is being
+     * scheduled, so the first retry waits roughly {@code base-delay-ms}.
+     */
+    public void schedule(QueueMessage message) {
+        long dueAt = System.currentTimeMillis() + backoffMs(message.getRetryCount());
+        redisTemplate.opsForZSet().add(RETRY_KEY, write(message), dueAt);
+    }
+
+    /**
+     * Equal-jitter exponential backoff: half of the capped delay is fixed, the other half random, so
+     * retries of a burst of failures spread out instead of hitting the queue together.
+     */
+    long backoffMs(int attempt) {
+        int exponent = Math.min(Math.max(attempt - 1, 0), 30);
+        long delay = Math.min(maxDelayMs, baseDelayMs << exponent);
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    /**
+     * Moves due retries to the queue through {@code publisher}. Entries are removed from the set
+     * atomically, so several nodes can run this concurrently without promoting an entry twice.
+     */
+    public int promoteDue(Consumer<QueueMessage> publisher) {
+        int promoted = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<String> due = claimDue(promoteBatchSize);
+            for (String raw : due) {
+                QueueMessage message = read(raw);
+                if (message == null) {
+                    continue;
+                }
+                try {
+                    publisher.accept(message);
+                    promoted++;
+                } catch (Exception e) {
+                    log.error("Failed to promote retry, rescheduling: transactionId={}",
+                            message.getTransactionId(), e);
+                    redisTemplate.opsForZSet().add(RETRY_KEY, raw, System.currentTimeMillis() + RESCHEDULE_DELAY_MS);
+                }
+            }
+            if (due.size() < promoteBatchSize) {
+                break;
+            }
+        }
+        return promoted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> claimDue(int max) {
+        List<String> due = redisTemplate.execute(CLAIM_DUE_SCRIPT, List.of(RETRY_KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(max));
+        return due != null ? due : List.of();
+    }
+
+    public void deadLetter(QueueMessage message, String failureReason) {
+        DeadLetterResponse entry = DeadLetterResponse.builder()
+                .transactionId(message.getTransactionId())
+                .partitionKey(message.getPartitionKey())
+                .correlationId(message.getCorrelationId())
+                .enqueuedAt(message.getEnqueuedAt())
+                .retryCount(message.getRetryCount())
+                .failureReason(failureReason)
+                .failedAt(System.currentTimeMillis())
+                .build();
+        try {
+            redisTemplate.opsForList().leftPush(DEAD_LETTER_KEY, objectMapper.writeValueAsString(entry));
+            redisTemplate.opsForList().trim(DEAD_LETTER_KEY, 0, deadLetterMaxSize - 1);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to dead-letter transaction " + message.getTransactionId(), e);
+        }
+    }
+
+    /**
+     * Newest first.
+     */
+    public List<DeadLetterResponse> getDeadLetters(int limit) {
+        List<String> values = redisTemplate.opsForList().range(DEAD_LETTER_KEY, 0, limit - 1);
+        List<DeadLetterResponse> entries = new ArrayList<>();
+        if (values == null) {
+            return entries;
+        }
+        for (String value : values) {
+            DeadLetterResponse entry = readDeadLetter(value);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Pops up to {@code limit} of the oldest dead letters and republishes them with a fresh retry budget.
+     */
+    public int redrive(int limit, Consumer<QueueMessage> publisher) {
+        List<String> values = redisTemplate.opsForList().rightPop(DEAD_LETTER_KEY, limit);
+        if (values == null) {
+            return 0;
+        }
+        int redriven = 0;
+        for (String value : values) {
+            DeadLetterResponse entry = readDeadLetter(value);
+            if (entry == null) {
+                continue;
+            }
+            QueueMessage message = new QueueMessage();
+            message.setTransactionId(entry.getTransactionId());
+            message.setPartitionKey(entry.getPartitionKey());
+            message.setCorrelationId(entry.getCorrelationId());
+            message.setEnqueuedAt(System.currentTimeMillis());
+            message.setRetryCount(0);
+            try {
+                publisher.accept(message);
+                redriven++;
+            } catch (Exception e) {
+                log.error("Failed to redrive dead letter: transactionId={}", entry.getTransactionId(), e);
+                redisTemplate.opsForList().rightPush(DEAD_LETTER_KEY, value);
+            }
+        }
+        return redriven;
+    }
+
+    public long getScheduledCount() {
+        Long size = redisTemplate.opsForZSet().zCard(RETRY_KEY);
+        return size != null ? size : 0L;
+    }
+
+    public long getDeadLetterCount() {
+        Long size = redisTemplate.opsForList().size(DEAD_LETTER_KEY);
+        return size != null ? size : 0L;
+    }
+
+    private String write(QueueMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize retry for transaction " + message.getTransactionId(), e);
+        }
+    }
+
+    private QueueMessage read(String raw) {
+        try {
+            return objectMapper.readValue(raw, QueueMessage.class);
+        } catch (Exception e) {
+            log.error("Dropping undecodable retry entry: {}", raw, e);
+            return null;
+        }
+    }
+
+    private DeadLetterResponse readDeadLetter(String raw) {
+        try {
+            return objectMapper.readValue(raw, DeadLetterResponse.class);
+        } catch (Exception e) {
+            log.error("Skipping undecodable dead letter: {}", raw, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.model.Transactions;
+
+public enum AccountField {
+    FROM,
+    TO;
+
+    public String valueOf(Transactions transaction) {
+        return this == FROM ? transaction.getFrom() : transaction.getTo();
+    }
+
+    public static AccountField fromConfig(String field) {
+        return switch (field) {
+            case "from" -> FROM;
+            case "to" -> TO;
+            default -> throw new IllegalArgumentException("Unknown account field: " + field);
+        };
+    }
+}
@@ -0,0 +1,158 @@
+package com.jvmd.transationapp.service.rules;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.regex.Pattern;
+
+/**
+ * Compiled form of an account condition pattern, matched against the whole account value. Patterns
+ * that are a plain literal, optionally surrounded by {@code .*}, are answered with string
+ * comparisons; anything else goes to {@link java.util.regex} with a time budget, so a backtracking
+ * pattern gives up instead of holding the worker thread. A match that runs out of budget counts as
+ * no match.
+ */
+@Slf4j
+public abstract sealed class AccountPattern {
+    private static final String WILDCARD = ".*";
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    public abstract boolean matches(String value);
+
+    public static AccountPattern compile(String pattern, long budgetNanos) {
+        String body = pattern;
+        if (body.startsWith("^")) {
+            body = body.substring(1);
+        }
+        if (body.endsWith("$") && !body.endsWith("\\$")) {
+            body = body.substring(0, body.length() - 1);
+        }
+        boolean leading = body.startsWith(WILDCARD);
+        if (leading) {
+            body = body.substring(WILDCARD.length());
+        }
+        boolean trailing = body.endsWith(WILDCARD) && !body.endsWith("\\" + WILDCARD);
+        if (trailing) {
+            body = body.substring(0, body.length() - WILDCARD.length());
+        }
+        if (isLiteral(body)) {
+            return new Literal(pattern, body, leading, trailing);
+        }
+        return new Regex(Pattern.compile(pattern), budgetNanos);
+    }
+
+    private static boolean isLiteral(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (METACHARACTERS.indexOf(text.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static final class Literal extends AccountPattern {
+        private final String pattern;
+        private final String text;
+        private final boolean anyPrefix;
+        private final boolean anySuffix;
+
+        private Literal(String pattern, String text, boolean anyPrefix, boolean anySuffix) {
+            this.pattern = pattern;
+            this.text = text;
+            this.anyPrefix = anyPrefix;
+            this.anySuffix = anySuffix;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            if (anyPrefix && anySuffix) {
+                return value.contains(text);
+            }
+            if (anyPrefix) {
+                return value.endsWith(text);
+            }
+            if (anySuffix) {
+                return value.startsWith(text);
+            }
+            return value.equals(text);
+        }
+
+        @Override
+        public String toString() {
+            return pattern;
+        }
+    }
+
+    static final class Regex extends AccountPattern {
+        private static final int CHECK_INTERVAL = 1024;
+        private final Pattern pattern;
+        private final long budgetNanos;
+
+        private Regex(Pattern pattern, long budgetNanos) {
+            this.pattern = pattern;
+            this.budgetNanos = budgetNanos;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            if (budgetNanos <= 0) {
+                return pattern.matcher(value).matches();
+            }
+            try {
+                return pattern.matcher(new DeadlineCharSequence(value, System.nanoTime() + budgetNanos)).matches();
+            } catch (BudgetExceededException e) {
+                log.warn("Account pattern {} exceeded its time budget on a {}-character value", pattern,
+                        value.length());
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return pattern.pattern();
+        }
+
+        /**
+         * The regex engine reads its input through {@link #charAt}, including while backtracking, so
+         * checking the clock every few thousand reads bounds the time of any match.
+         */
+        private static final class DeadlineCharSequence implements CharSequence {
+            private final String value;
+            private final long deadline;
+            private int reads;
+
+            private DeadlineCharSequence(String value, long deadline) {
+                this.value = value;
+                this.deadline = deadline;
+            }
+
+            @Override
+            public char charAt(int index) {
+                if (++reads % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                    throw new BudgetExceededException();
+                }
+                return value.charAt(index);
+            }
+
+            @Override
+            public int length() {
+                return value.length();
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return new DeadlineCharSequence(value.substring(start, end), deadline);
+            }
+
+            @Override
+            public String toString() {
+                return value;
+            }
+        }
+    }
+
+    private static final class BudgetExceededException extends RuntimeException {
+        private BudgetExceededException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.jvmd.transationapp.service.rules;
+
+import java.util.Arrays;
+
+public enum ComparisonOperator {
+    GT(">"),
+    GTE(">="),
+    LT("<"),
+    LTE("<="),
+    EQ("="),
+    NEQ("!=");
+
+    private final String symbol;
+
+    ComparisonOperator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+
+    public boolean test(int comparison) {
+        return switch (this) {
+            case GT -> comparison > 0;
+            case GTE -> comparison >= 0;
+            case LT -> comparison < 0;
+            case LTE -> comparison <= 0;
+            case EQ -> comparison == 0;
+            case NEQ -> comparison != 0;
+        };
+    }
+
+    public static ComparisonOperator fromSymbol(String symbol) {
+        return Arrays.stream(values())
+                .filter(operator -> operator.symbol.equals(symbol))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown operator: " + symbol));
+    }
+}
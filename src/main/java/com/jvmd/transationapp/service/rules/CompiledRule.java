@@ -0,0 +1,40 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.RuleType;
+
+/**
+ * Immutable, validated snapshot of an enabled {@link Rule} ready for the hot evaluation loop.
+ */
+public record CompiledRule(
+        Long id,
+        String name,
+        RuleType type,
+        int priority,
+        int severity,
+        boolean shadow,
+        Rule rule,
+        RuleMatcher matcher
+) {
+    /**
+     * Rules at or above this severity end evaluation of a transaction when they fire.
+     */
+    public static final int CRITICAL_SEVERITY = 4;
+
+    public static CompiledRule of(Rule rule, RuleMatcher matcher) {
+        return new CompiledRule(
+                rule.getId(),
+                rule.getName(),
+                rule.getType(),
+                rule.getPriority() != null ? rule.getPriority() : 0,
+                rule.getSeverity() != null ? rule.getSeverity() : 1,
+                Boolean.TRUE.equals(rule.getShadow()),
+                rule,
+                matcher
+        );
+    }
+
+    public boolean critical() {
+        return severity >= CRITICAL_SEVERITY;
+    }
+}
@@ -1,17 +1,18 @@
 package com.jvmd.transationapp.service.rules;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jvmd.transationapp.model.Rule;
 import com.jvmd.transationapp.model.Transactions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
-import java.time.LocalTime;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
 
 @Component
 @Slf4j
@@ -19,90 +20,176 @@ import java.util.Map;
 public class CompositeRuleEvaluator {
     private final ObjectMapper objectMapper;
 
-    public boolean evaluate(Rule rule, Transactions transaction) {
-        try {
-            Map<String, Object> config = objectMapper.readValue(
-                    rule.getConfiguration(),
-                    new TypeReference<Map<String, Object>>() {
-                    }
+    @Value("${app.rules.account-pattern.budget-ms:25}")
+    private long accountPatternBudgetMs;
+
+    public RuleMatcher compile(Rule rule) {
+        RuleConfigReader config = RuleConfigReader.parse(objectMapper, rule);
+        String operator = config.requireText("operator");
+        CompositeOperator compositeOperator = switch (operator) {
+            case "AND" -> CompositeOperator.AND;
+            case "OR" -> CompositeOperator.OR;
+            case "NOT" -> CompositeOperator.NOT;
+            default -> throw config.invalid("operator", "has unknown composite operator: " + operator);
+        };
+        List<RuleMatcher> conditions = config.requireObjects("conditions").stream()
+                .map(this::compileCondition)
+                .toList();
+        return new CompositeMatcher(compositeOperator, conditions.toArray(RuleMatcher[]::new));
+    }
+
+    private RuleMatcher compileCondition(RuleConfigReader condition) {
+        String type = condition.requireText("type");
+        return switch (type) {
+            case "amount" -> new AmountCondition(
+                    amountOperator(condition),
+                    condition.requireDecimal("value")
             );
-            String operator = (String) config.get("operator");
-            List<Map<String, Object>> conditions = (List<Map<String, Object>>) config.get("conditions");
-            return switch (operator) {
-                case "AND" -> evaluateAnd(conditions, transaction);
-                case "OR" -> evaluateOr(conditions, transaction);
-                case "NOT" -> evaluateNot(conditions, transaction);
-                default -> {
-                    log.warn("Unknown composite operator: {}", operator);
-                    yield false;
-                }
-            };
-        } catch (Exception e) {
-            log.error("Error evaluating composite rule: {}", e.getMessage());
-            return false;
+            case "nighttime" -> new NighttimeCondition(
+                    requireHour(condition, "startHour"),
+                    requireHour(condition, "endHour")
+            );
+            case "type" -> new TypeCondition(condition.requireText("value"));
+            case "account" -> new AccountCondition(
+                    AccountField.fromConfig(condition.requireText("field")),
+                    compilePattern(condition)
+            );
+            default -> throw condition.invalid("type", "has unknown condition type: " + type);
+        };
+    }
+
+    /**
+     * Amount conditions never supported {@code !=}: stored rules using it never matched, so it is
+     * rejected rather than given a meaning that would start alerting on almost every transaction.
+     */
+    private ComparisonOperator amountOperator(RuleConfigReader condition) {
+        String symbol = condition.requireText("operator");
+        if (ComparisonOperator.NEQ.symbol().equals(symbol)) {
+            throw condition.invalid("operator", "'!=' is not supported in amount conditions");
+        }
+        try {
+            return ComparisonOperator.fromSymbol(symbol);
+        } catch (IllegalArgumentException e) {
+            throw condition.invalid("operator", "has unknown comparison operator: " + symbol);
         }
     }
 
-    private boolean evaluateAnd(List<Map<String, Object>> conditions, Transactions transaction) {
-        return conditions.stream().allMatch(condition -> evaluateCondition(condition, transaction));
+    private int requireHour(RuleConfigReader condition, String field) {
+        int hour = condition.requireInt(field);
+        if (hour < 0 || hour > 23) {
+            throw condition.invalid(field, "must be between 0 and 23");
+        }
+        return hour;
     }
 
-    private boolean evaluateOr(List<Map<String, Object>> conditions, Transactions transaction) {
-        return conditions.stream().anyMatch(condition -> evaluateCondition(condition, transaction));
+    private AccountPattern compilePattern(RuleConfigReader condition) {
+        String pattern = condition.requireText("pattern");
+        try {
+            return AccountPattern.compile(pattern, TimeUnit.MILLISECONDS.toNanos(accountPatternBudgetMs));
+        } catch (PatternSyntaxException e) {
+            throw condition.invalid("pattern", "is not a valid regular expression: " + e.getDescription());
+        }
     }
 
-    private boolean evaluateNot(List<Map<String, Object>> conditions, Transactions transaction) {
-        return conditions.stream().noneMatch(condition -> evaluateCondition(condition, transaction));
+    public enum CompositeOperator {
+        AND,
+        OR,
+        NOT
     }
 
-    private boolean evaluateCondition(Map<String, Object> condition, Transactions transaction) {
-        String type = (String) condition.get("type");
-        return switch (type) {
-            case "amount" -> evaluateAmountCondition(condition, transaction);
-            case "nighttime" -> evaluateNighttimeCondition(condition, transaction);
-            case "type" -> evaluateTypeCondition(condition, transaction);
-            case "account" -> evaluateAccountCondition(condition, transaction);
-            default -> {
-                log.warn("Unknown condition type: {}", type);
-                yield false;
+    public record CompositeMatcher(CompositeOperator operator, RuleMatcher[] conditions) implements RuleMatcher {
+        @Override
+        public boolean matches(Transactions transaction) {
+            return switch (operator) {
+                case AND -> {
+                    for (RuleMatcher condition : conditions) {
+                        if (!condition.matches(transaction)) {
+                            yield false;
+                        }
+                    }
+                    yield true;
+                }
+                case OR -> {
+                    for (RuleMatcher condition : conditions) {
+                        if (condition.matches(transaction)) {
+                            yield true;
+                        }
+                    }
+                    yield false;
+                }
+                case NOT -> {
+                    for (RuleMatcher condition : conditions) {
+                        if (condition.matches(transaction)) {
+                            yield false;
+                        }
+                    }
+                    yield true;
+                }
+            };
+        }
+
+        @Override
+        public RuleGuard guard() {
+            if (operator == CompositeOperator.NOT) {
+                return RuleGuard.ANY;
             }
-        };
+            RuleGuard guard = conditions[0].guard();
+            for (int i = 1; i < conditions.length; i++) {
+                RuleGuard next = conditions[i].guard();
+                guard = operator == CompositeOperator.AND ? guard.and(next) : guard.or(next);
+            }
+            return guard;
+        }
     }
 
-    private boolean evaluateAmountCondition(Map<String, Object> condition, Transactions transaction) {
-        String operator = (String) condition.get("operator");
-        BigDecimal value = new BigDecimal(condition.get("value").toString());
-        return switch (operator) {
-            case ">" -> transaction.getAmount().compareTo(value) > 0;
-            case ">=" -> transaction.getAmount().compareTo(value) >= 0;
-            case "<" -> transaction.getAmount().compareTo(value) < 0;
-            case "<=" -> transaction.getAmount().compareTo(value) <= 0;
-            case "=" -> transaction.getAmount().compareTo(value) == 0;
-            default -> false;
-        };
+    public record AmountCondition(ComparisonOperator operator, BigDecimal value) implements RuleMatcher {
+        @Override
+        public boolean matches(Transactions transaction) {
+            return operator.test(transaction.getAmount().compareTo(value));
+        }
+
+        @Override
+        public RuleGuard guard() {
+            return RuleGuard.amount(operator, value);
+        }
     }
 
-    private boolean evaluateNighttimeCondition(Map<String, Object> condition, Transactions transaction) {
-        int startHour = (Integer) condition.get("startHour");
-        int endHour = (Integer) condition.get("endHour");
-        LocalTime transactionTime = transaction.getTimestamp().toLocalTime();
-        int hour = transactionTime.getHour();
-        if (startHour > endHour) {
-            return hour >= startHour || hour < endHour;
-        } else {
+    public record NighttimeCondition(int startHour, int endHour) implements RuleMatcher {
+        @Override
+        public boolean matches(Transactions transaction) {
+            return covers(transaction.getTimestamp().getHour());
+        }
+
+        @Override
+        public RuleGuard guard() {
+            return RuleGuard.hours(this::covers);
+        }
+
+        private boolean covers(int hour) {
+            if (startHour > endHour) {
+                return hour >= startHour || hour < endHour;
+            }
             return hour >= startHour && hour < endHour;
         }
     }
 
-    private boolean evaluateTypeCondition(Map<String, Object> condition, Transactions transaction) {
-        String expectedType = (String) condition.get("value");
-        return transaction.getType().equals(expectedType);
+    public record TypeCondition(String value) implements RuleMatcher {
+        @Override
+        public boolean matches(Transactions transaction) {
+            return value.equals(transaction.getType());
+        }
+
+        @Override
+        public RuleGuard guard() {
+            return RuleGuard.types(Set.of(value));
+        }
     }
 
-    private boolean evaluateAccountCondition(Map<String, Object> condition, Transactions transaction) {
-        String field = (String) condition.get("field");
-        String pattern = (String) condition.get("pattern");
-        String accountValue = "from".equals(field) ? transaction.getFrom() : transaction.getTo();
-        return accountValue.matches(pattern);
+    public record AccountCondition(AccountField field, AccountPattern pattern) implements RuleMatcher {
+        @Override
+        public boolean matches(Transactions transaction) {
+            String accountValue = field.valueOf(transaction);
+            return accountValue != null && pattern.matches(accountValue);
+        }
     }
 }
@@ -0,0 +1,19 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.repository.TransactionRepository.WindowEntry;
+
+import java.util.List;
+
+/**
+ * State shared by the rules evaluating one batch of transactions.
+ */
+@FunctionalInterface
+public interface EvaluationContext {
+    EvaluationContext NONE = (field, account) -> null;
+
+    /**
+     * Timestamps and amounts of the account's transactions, loaded once for the whole batch and covering
+     * every pattern window of the batch, or {@code null} when the account was not prefetched.
+     */
+    List<WindowEntry> prefetchedHistory(AccountField field, String account);
+}
@@ -0,0 +1,38 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.rules.expression.ExpressionCompiler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rules written as a boolean expression over transaction fields, e.g.
+ * {@code {"expression": "velocityScore > 0.8 && paymentChannel in ('card', 'online')"}}.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ExpressionRuleEvaluator {
+    private final ObjectMapper objectMapper;
+
+    public RuleMatcher compile(Rule rule) {
+        RuleConfigReader config = RuleConfigReader.parse(objectMapper, rule);
+        String expression = config.requireText("expression");
+        try {
+            ExpressionCompiler.CompiledExpression compiled = ExpressionCompiler.compile(expression);
+            return new ExpressionMatcher(expression, compiled.predicate(), compiled.guard());
+        } catch (IllegalArgumentException e) {
+            throw config.invalid("expression", "is invalid: " + e.getMessage());
+        }
+    }
+
+    public record ExpressionMatcher(String expression, RuleMatcher compiled, RuleGuard guard) implements RuleMatcher {
+        @Override
+        public boolean matches(Transactions transaction) {
+            return compiled.matches(transaction);
+        }
+    }
+}
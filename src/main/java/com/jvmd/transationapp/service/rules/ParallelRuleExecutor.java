@@ -0,0 +1,154 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.model.RuleType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Runs the rules that wait on I/O or native inference (pattern and ML rules) of one transaction
+ * concurrently on virtual threads. The caller still walks the plan in order and collects each
+ * result where the rule sits, so the merged result does not depend on completion order; cheap rules
+ * are evaluated inline by the caller at their position.
+ * <p>
+ * Pattern rules may query the database, so at most {@code app.rules.parallel.max-concurrency} rules
+ * run at once across all transactions, kept below the connection pool size; the rest wait for a
+ * permit in arrival order. Rules are never interrupted: a rule that is no longer needed is skipped if it has not
+ * started yet and otherwise runs to completion with its result ignored, so no JDBC call is broken
+ * off half way.
+ */
+@Component
+@Slf4j
+public class ParallelRuleExecutor {
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rule-", 0).factory());
+    private Semaphore permits;
+
+    @Value("${app.rules.parallel.max-concurrency:6}")
+    private int maxConcurrency;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    @PostConstruct
+    public void init() {
+        if (maxConcurrency < 1 || maxConcurrency >= connectionPoolSize) {
+            throw new IllegalStateException("app.rules.parallel.max-concurrency must be between 1 and "
+                    + (connectionPoolSize - 1) + " (below the connection pool size), got " + maxConcurrency);
+        }
+        permits = new Semaphore(maxConcurrency, true);
+    }
+
+    public static boolean runsAsync(CompiledRule rule) {
+        return rule.type() == RuleType.PATTERN || rule.type() == RuleType.ML_RULE;
+    }
+
+    /**
+     * Starts every async rule of the plan. {@code evaluation} runs one rule against the transaction
+     * and must be safe to call from another thread.
+     */
+    public FanOut start(List<CompiledRule> plan, Predicate<CompiledRule> evaluation) {
+        FanOut fanOut = new FanOut(plan.size());
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        for (int i = 0; i < plan.size(); i++) {
+            CompiledRule rule = plan.get(i);
+            if (!runsAsync(rule)) {
+                continue;
+            }
+            int position = i;
+            FutureTask<Boolean> task = new FutureTask<>(() -> {
+                permits.acquire();
+                try {
+                    if (fanOut.isAbandoned(position)) {
+                        return false;
+                    }
+                    if (mdc != null) {
+                        MDC.setContextMap(mdc);
+                    }
+                    boolean triggered = evaluation.test(rule);
+                    if (triggered && rule.critical()) {
+                        fanOut.decide(position);
+                    }
+                    return triggered;
+                } finally {
+                    MDC.clear();
+                    permits.release();
+                }
+            });
+            fanOut.futures[i] = task;
+            executor.execute(task);
+        }
+        return fanOut;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static final class FanOut {
+        private final Future<Boolean>[] futures;
+        private final AtomicInteger decidedAt = new AtomicInteger(Integer.MAX_VALUE);
+
+        @SuppressWarnings("unchecked")
+        private FanOut(int size) {
+            this.futures = new Future[size];
+        }
+
+        public boolean isAsync(int position) {
+            return futures[position] != null;
+        }
+
+        private boolean isAbandoned(int position) {
+            return decidedAt.get() < position || futures[position].isCancelled();
+        }
+
+        /**
+         * Waits for the rule at {@code position} until the transaction's deadline; a rule still pending
+         * at the deadline is abandoned and reported through {@link TimeoutException}.
+         */
+        public boolean await(int position, long deadlineNanos) throws ExecutionException, TimeoutException,
+                InterruptedException {
+            Future<Boolean> future = futures[position];
+            try {
+                return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(false);
+                throw e;
+            }
+        }
+
+        /**
+         * A critical rule fired at {@code position}: rules after it can no longer change the result.
+         */
+        public void decide(int position) {
+            decidedAt.accumulateAndGet(position, Math::min);
+            for (int i = position + 1; i < futures.length; i++) {
+                Future<Boolean> future = futures[i];
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+
+        public void cancelAll() {
+            decide(-1);
+        }
+    }
+}
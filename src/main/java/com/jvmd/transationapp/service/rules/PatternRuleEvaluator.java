@@ -1,94 +1,134 @@
 package com.jvmd.transationapp.service.rules;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jvmd.transationapp.model.Rule;
 import com.jvmd.transationapp.model.Transactions;
-import com.jvmd.transationapp.repository.TransactionRepository;
+import com.jvmd.transationapp.service.rules.velocity.VelocityStore;
+import com.jvmd.transationapp.service.rules.velocity.WindowCounts;
+import com.jvmd.transationapp.service.rules.velocity.WindowSpec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.time.Duration;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class PatternRuleEvaluator {
     private final ObjectMapper objectMapper;
-    private final TransactionRepository transactionRepository;
-
-    public boolean evaluate(Rule rule, Transactions transaction) {
-        try {
-            Map<String, Object> config = objectMapper.readValue(
-                    rule.getConfiguration(),
-                    new TypeReference<Map<String, Object>>() {
-                    }
+    private final VelocityStore velocityStore;
+
+    public RuleMatcher compile(Rule rule) {
+        return compile(rule, velocityStore);
+    }
+
+    /**
+     * Compiles against the given store instead of the active one, for evaluations that must not
+     * touch live velocity state.
+     */
+    public RuleMatcher compile(Rule rule, VelocityStore store) {
+        RuleConfigReader config = RuleConfigReader.parse(objectMapper, rule);
+        String patternType = config.requireText("type");
+        PatternConfig pattern = switch (patternType) {
+            case "multiple_small_transactions" -> new PatternConfig(
+                    PatternType.MULTIPLE_SMALL_TRANSACTIONS,
+                    Duration.ofMinutes(config.requirePositiveInt("timeWindowMinutes")),
+                    config.requirePositiveInt("minTransactions"),
+                    config.requireDecimal("maxAmountPerTransaction"),
+                    AccountField.fromConfig(config.requireText("accountField"))
             );
-            String patternType = (String) config.get("type");
-            return switch (patternType) {
-                case "multiple_small_transactions" -> evaluateMultipleSmallTransactions(config, transaction);
-                case "rapid_succession" -> evaluateRapidSuccession(config, transaction);
-                default -> {
-                    log.warn("Unknown pattern type: {}", patternType);
-                    yield false;
-                }
-            };
-        } catch (Exception e) {
-            log.error("Error evaluating pattern rule: {}", e.getMessage());
-            return false;
-        }
+            case "rapid_succession" -> new PatternConfig(
+                    PatternType.RAPID_SUCCESSION,
+                    Duration.ofSeconds(config.requirePositiveInt("timeWindowSeconds")),
+                    config.requirePositiveInt("minTransactions"),
+                    null,
+                    AccountField.FROM
+            );
+            default -> throw config.invalid("type", "has unknown pattern type: " + patternType);
+        };
+        return new PatternMatcher(pattern, store);
     }
 
-    private boolean evaluateMultipleSmallTransactions(Map<String, Object> config, Transactions transaction) {
-        try {
-            int timeWindowMinutes = (Integer) config.get("timeWindowMinutes");
-            int minTransactions = (Integer) config.get("minTransactions");
-            double maxAmountPerTransaction = ((Number) config.get("maxAmountPerTransaction")).doubleValue();
-            String accountField = (String) config.get("accountField");
-            LocalDateTime windowStart = transaction.getTimestamp().minusMinutes(timeWindowMinutes);
-            LocalDateTime windowEnd = transaction.getTimestamp();
-            List<Transactions> recentTransactions;
-            if ("from".equals(accountField)) {
-                recentTransactions = transactionRepository.findByFromAndTimestampBetween(
-                        transaction.getFrom(), windowStart, windowEnd
-                );
-            } else {
-                recentTransactions = transactionRepository.findByToAndTimestampBetween(
-                        transaction.getTo(), windowStart, windowEnd
-                );
-            }
-            long smallTransactionCount = recentTransactions.stream()
-                    .filter(t -> t.getAmount().compareTo(BigDecimal.valueOf(maxAmountPerTransaction)) <= 0)
-                    .count();
-            boolean triggered = smallTransactionCount >= minTransactions;
-            if (triggered) {
-                log.warn("Pattern detected: {} small transactions from {} in {} minutes",
-                        smallTransactionCount, accountField.equals("from") ? transaction.getFrom() : transaction.getTo(),
-                        timeWindowMinutes);
+    /**
+     * Hands the windows of the active pattern rules to the velocity store.
+     */
+    public void register(List<CompiledRule> rules) {
+        Set<WindowSpec> specs = new LinkedHashSet<>();
+        for (CompiledRule rule : rules) {
+            if (rule.matcher() instanceof PatternMatcher matcher) {
+                specs.add(matcher.config().windowSpec());
             }
-            return triggered;
-        } catch (Exception e) {
-            log.error("Error evaluating multiple small transactions pattern: {}", e.getMessage());
-            return false;
         }
+        velocityStore.register(specs);
+    }
+
+    public EvaluationContext prefetch(List<Transactions> batch) {
+        return velocityStore.prepareBatch(batch);
+    }
+
+    private boolean evaluate(PatternConfig pattern, VelocityStore store, Transactions transaction,
+                             EvaluationContext context) {
+        WindowCounts counts = store.count(pattern.windowSpec(), transaction, context);
+        return switch (pattern.type()) {
+            case MULTIPLE_SMALL_TRANSACTIONS -> evaluateMultipleSmallTransactions(pattern, transaction, counts);
+            case RAPID_SUCCESSION -> counts.total() >= pattern.minTransactions();
+        };
+    }
+
+    private boolean evaluateMultipleSmallTransactions(PatternConfig pattern, Transactions transaction,
+                                                      WindowCounts counts) {
+        boolean triggered = counts.small() >= pattern.minTransactions();
+        if (triggered) {
+            log.warn("Pattern detected: {} small transactions from {} in {} minutes",
+                    counts.small(), pattern.accountField().valueOf(transaction),
+                    pattern.window().toMinutes());
+        }
+        return triggered;
+    }
+
+    public final class PatternMatcher implements RuleMatcher {
+        private final PatternConfig config;
+        private final VelocityStore store;
+
+        private PatternMatcher(PatternConfig config, VelocityStore store) {
+            this.config = config;
+            this.store = store;
+        }
+
+        public PatternConfig config() {
+            return config;
+        }
+
+        @Override
+        public boolean matches(Transactions transaction) {
+            return evaluate(config, store, transaction, EvaluationContext.NONE);
+        }
+
+        @Override
+        public boolean matches(Transactions transaction, EvaluationContext context) {
+            return evaluate(config, store, transaction, context);
+        }
+    }
+
+    public enum PatternType {
+        MULTIPLE_SMALL_TRANSACTIONS,
+        RAPID_SUCCESSION
     }
 
-    private boolean evaluateRapidSuccession(Map<String, Object> config, Transactions transaction) {
-        try {
-            int timeWindowSeconds = (Integer) config.get("timeWindowSeconds");
-            int minTransactions = (Integer) config.get("minTransactions");
-            LocalDateTime windowStart = transaction.getTimestamp().minusSeconds(timeWindowSeconds);
-            LocalDateTime windowEnd = transaction.getTimestamp();
-            List<Transactions> recentTransactions = transactionRepository
-                    .findByFromAndTimestampBetween(transaction.getFrom(), windowStart, windowEnd);
-            return recentTransactions.size() >= minTransactions;
-        } catch (Exception e) {
-            log.error("Error evaluating rapid succession pattern: {}", e.getMessage());
-            return false;
+    public record PatternConfig(
+            PatternType type,
+            Duration window,
+            int minTransactions,
+            BigDecimal maxAmountPerTransaction,
+            AccountField accountField
+    ) {
+        public WindowSpec windowSpec() {
+            return new WindowSpec(accountField, window, maxAmountPerTransaction);
         }
     }
 }
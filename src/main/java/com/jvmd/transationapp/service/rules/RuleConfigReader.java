@@ -0,0 +1,127 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.model.Rule;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed, validating access to a rule's JSON configuration. Every accessor fails with
+ * {@link IllegalArgumentException} so that broken rules are rejected when they are compiled.
+ */
+final class RuleConfigReader {
+    private final JsonNode node;
+    private final String context;
+
+    private RuleConfigReader(JsonNode node, String context) {
+        this.node = node;
+        this.context = context;
+    }
+
+    static RuleConfigReader parse(ObjectMapper objectMapper, Rule rule) {
+        String context = "rule '" + rule.getName() + "'";
+        if (rule.getConfiguration() == null || rule.getConfiguration().isBlank()) {
+            throw new IllegalArgumentException(context + ": configuration is empty");
+        }
+        try {
+            JsonNode root = objectMapper.readTree(rule.getConfiguration());
+            if (root == null || !root.isObject()) {
+                throw new IllegalArgumentException(context + ": configuration must be a JSON object");
+            }
+            return new RuleConfigReader(root, context);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException(context + ": invalid JSON configuration: " + e.getMessage(), e);
+        }
+    }
+
+    String context() {
+        return context;
+    }
+
+    boolean has(String field) {
+        JsonNode value = node.get(field);
+        return value != null && !value.isNull();
+    }
+
+    String requireText(String field) {
+        JsonNode value = require(field);
+        if (!value.isTextual() || value.asText().isEmpty()) {
+            throw invalid(field, "must be a non-empty string");
+        }
+        return value.asText();
+    }
+
+    int requireInt(String field) {
+        JsonNode value = require(field);
+        if (!value.isIntegralNumber() || !value.canConvertToInt()) {
+            throw invalid(field, "must be an integer");
+        }
+        return value.intValue();
+    }
+
+    int requirePositiveInt(String field) {
+        int value = requireInt(field);
+        if (value <= 0) {
+            throw invalid(field, "must be positive");
+        }
+        return value;
+    }
+
+    BigDecimal requireDecimal(String field) {
+        JsonNode value = require(field);
+        if (value.isNumber()) {
+            return value.decimalValue();
+        }
+        if (value.isTextual()) {
+            try {
+                return new BigDecimal(value.asText().trim());
+            } catch (NumberFormatException e) {
+                throw invalid(field, "must be a number");
+            }
+        }
+        throw invalid(field, "must be a number");
+    }
+
+    double optionalDouble(String field, double defaultValue) {
+        if (!has(field)) {
+            return defaultValue;
+        }
+        JsonNode value = node.get(field);
+        if (!value.isNumber()) {
+            throw invalid(field, "must be a number");
+        }
+        return value.doubleValue();
+    }
+
+    List<RuleConfigReader> requireObjects(String field) {
+        JsonNode value = require(field);
+        if (!value.isArray() || value.isEmpty()) {
+            throw invalid(field, "must be a non-empty array");
+        }
+        List<RuleConfigReader> items = new ArrayList<>(value.size());
+        for (int i = 0; i < value.size(); i++) {
+            JsonNode item = value.get(i);
+            if (!item.isObject()) {
+                throw invalid(field + "[" + i + "]", "must be an object");
+            }
+            items.add(new RuleConfigReader(item, context + " " + field + "[" + i + "]"));
+        }
+        return items;
+    }
+
+    IllegalArgumentException invalid(String field, String reason) {
+        return new IllegalArgumentException(context + ": '" + field + "' " + reason);
+    }
+
+    private JsonNode require(String field) {
+        if (!has(field)) {
+            throw invalid(field, "is required");
+        }
+        return node.get(field);
+    }
+}
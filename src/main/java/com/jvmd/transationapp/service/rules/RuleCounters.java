@@ -0,0 +1,89 @@
+package com.jvmd.transationapp.service.rules;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-rule execution and alert counts. Evaluations only bump in-memory adders; the accumulated
+ * deltas are added to {@code rules.execution_count} / {@code alert_count} with one batched UPDATE
+ * per flush. A failed flush leaves its deltas for the next one.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RuleCounters {
+    private static final String FLUSH_SQL = "UPDATE rules SET " +
+            "execution_count = COALESCE(execution_count, 0) + ?, " +
+            "alert_count = COALESCE(alert_count, 0) + ? WHERE id = ?";
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    public void record(CompiledRule rule, boolean triggered) {
+        if (rule.id() == null) {
+            return;
+        }
+        Counter counter = counters.computeIfAbsent(rule.id(), id -> new Counter());
+        counter.executions.increment();
+        if (triggered) {
+            counter.alerts.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rules.counters.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        List<Delta> deltas = new ArrayList<>();
+        counters.forEach((id, counter) -> {
+            long executions = counter.executions.sum() - counter.flushedExecutions;
+            long alerts = counter.alerts.sum() - counter.flushedAlerts;
+            if (executions > 0 || alerts > 0) {
+                deltas.add(new Delta(id, counter, executions, alerts));
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, deltas, deltas.size(), (ps, delta) -> {
+                ps.setLong(1, delta.executions());
+                ps.setLong(2, delta.alerts());
+                ps.setLong(3, delta.ruleId());
+            });
+            for (Delta delta : deltas) {
+                delta.counter().flushedExecutions += delta.executions();
+                delta.counter().flushedAlerts += delta.alerts();
+            }
+            log.debug("Flushed counters of {} rules", deltas.size());
+        } catch (Exception e) {
+            log.error("Failed to flush rule counters for {} rules", deltas.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Adders are never reset, so increments racing with a flush are not lost; {@code flushed*} is
+     * what has already been written and is only touched under the flush lock.
+     */
+    private static final class Counter {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder alerts = new LongAdder();
+        private long flushedExecutions;
+        private long flushedAlerts;
+    }
+
+    private record Delta(Long ruleId, Counter counter, long executions, long alerts) {
+    }
+}
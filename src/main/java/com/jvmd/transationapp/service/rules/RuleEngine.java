@@ -1,17 +1,28 @@
 package com.jvmd.transationapp.service.rules;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.dto.RulePlanResponse;
+import com.jvmd.transationapp.dto.ShadowRuleStatsResponse;
 import com.jvmd.transationapp.model.Rule;
-import com.jvmd.transationapp.model.RuleType;
 import com.jvmd.transationapp.model.Transactions;
 import com.jvmd.transationapp.repository.RuleRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -22,26 +33,153 @@ public class RuleEngine {
     private final PatternRuleEvaluator patternEvaluator;
     private final CompositeRuleEvaluator compositeEvaluator;
     private final MLRuleEvaluator mlRuleEvaluator;
-    private final ObjectMapper objectMapper;
-    private List<Rule> activeRules = new ArrayList<>();
+    private final ExpressionRuleEvaluator expressionEvaluator;
+    private final RulePlanner rulePlanner;
+    private final ParallelRuleExecutor parallelRuleExecutor;
+    private final RuleSetSync ruleSetSync;
+    private final RuleCounters ruleCounters;
+    private final ShadowRuleStats shadowRuleStats;
+    private final AtomicLong requestedVersion = new AtomicLong();
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    private volatile boolean installFailed;
+    private final ExecutorService reloadExecutor =
+            Executors.newSingleThreadExecutor(Thread.ofPlatform().name("rule-reload").daemon().factory());
+
+    @Value("${app.rules.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${app.rules.parallel.budget-ms:500}")
+    private long parallelBudgetMs;
 
     @PostConstruct
     public void loadRules() {
+        install(ruleSetSync.currentVersion());
+    }
+
+    /**
+     * Compiles the enabled rules into a new rule set and swaps it in. In-flight evaluations keep the
+     * set they started with. If the rules cannot be read, the current set stays active and the next
+     * version poll tries again.
+     */
+    private synchronized void install(long version) {
         try {
-            activeRules = ruleRepository.findByEnabledTrueOrderByPriorityAsc();
-            log.info("Loaded {} active rules", activeRules.size());
+            List<Rule> rules = ruleRepository.findByEnabledTrueOrderByPriorityAsc();
+            List<CompiledRule> compiledRules = new ArrayList<>(rules.size());
+            List<CompiledRule> liveRules = new ArrayList<>(rules.size());
+            List<CompiledRule> shadowRules = new ArrayList<>();
+            for (Rule rule : rules) {
+                try {
+                    CompiledRule compiled = compile(rule, true);
+                    compiledRules.add(compiled);
+                    (compiled.shadow() ? shadowRules : liveRules).add(compiled);
+                } catch (IllegalArgumentException e) {
+                    log.error("Rule rejected at load time: id={}, name={}, reason={}",
+                            rule.getId(), rule.getName(), e.getMessage());
+                }
+            }
+            RuleSet next = new RuleSet(version, liveRules, shadowRules, LocalDateTime.now());
+            patternEvaluator.register(compiledRules);
+            shadowRuleStats.retain(shadowRules);
+            rulePlanner.plan(next);
+            installFailed = false;
+            log.info("Loaded {} active rules, {} shadow rules ({} rejected), rule set version {}",
+                    liveRules.size(), shadowRules.size(), rules.size() - compiledRules.size(), version);
         } catch (Exception e) {
-            log.error("Failed to load rules", e);
-            activeRules = new ArrayList<>();
+            installFailed = true;
+            log.error("Failed to load rules for version {}, keeping version {}", version, getRuleSet().version(), e);
+        }
+    }
+
+    /**
+     * Compiles a rule outside the live rule set, for validation or replays. Its ML matcher does not
+     * feed the challenger.
+     */
+    public CompiledRule compileRule(Rule rule) {
+        return compile(rule, false);
+    }
+
+    /**
+     * {@code live} is only set for the rules this engine evaluates on incoming traffic, so only
+     * those offer their scores to the challenger.
+     */
+    private CompiledRule compile(Rule rule, boolean live) {
+        if (rule.getType() == null) {
+            throw new IllegalArgumentException("rule '" + rule.getName() + "': type is required");
         }
+        RuleMatcher matcher = switch (rule.getType()) {
+            case THRESHOLD -> thresholdEvaluator.compile(rule);
+            case PATTERN -> patternEvaluator.compile(rule);
+            case COMPOSITE -> compositeEvaluator.compile(rule);
+            case ML_RULE -> mlRuleEvaluator.compile(rule, live);
+            case EXPRESSION -> expressionEvaluator.compile(rule);
+        };
+        return CompiledRule.of(rule, matcher);
     }
 
+    /**
+     * Rebuilds the rule set on this node right away and announces the change to the other nodes.
+     */
     public void reloadRules() {
-        loadRules();
-        log.info("Rules reloaded: {} active rules", activeRules.size());
+        long version = ruleSetSync.publishChange();
+        install(version > 0 ? version : getRuleSet().version());
+        log.info("Rules reloaded: {} active rules", getRuleSet().rules().size());
+    }
+
+    public RuleSet getRuleSet() {
+        return rulePlanner.snapshot();
+    }
+
+    /**
+     * Rebuilds in the background when a newer version is announced, or on the next poll after a
+     * failed rebuild. Announcements that arrive while a rebuild is running are coalesced into one
+     * more rebuild for the newest version.
+     */
+    @EventListener
+    public void onRuleSetChanged(RuleSetChangedEvent event) {
+        long version = requestedVersion.accumulateAndGet(event.version(), Math::max);
+        if (needsInstall(version) && reloadScheduled.compareAndSet(false, true)) {
+            reloadExecutor.execute(this::reloadRequested);
+        }
+    }
+
+    private void reloadRequested() {
+        reloadScheduled.set(false);
+        long version = requestedVersion.get();
+        if (needsInstall(version)) {
+            log.info("Rebuilding rule set for version {}", version);
+            install(Math.max(version, getRuleSet().version()));
+        }
+    }
+
+    private boolean needsInstall(long version) {
+        return installFailed || version > getRuleSet().version();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloadExecutor.shutdownNow();
+    }
+
+    public RulePlanResponse describePlan() {
+        return rulePlanner.describe();
+    }
+
+    public List<ShadowRuleStatsResponse> describeShadowRules() {
+        return shadowRuleStats.describe(getRuleSet().shadowRules());
     }
 
     public RuleEvaluationResult evaluateTransaction(Transactions transaction) {
+        return evaluateTransaction(transaction, EvaluationContext.NONE);
+    }
+
+    /**
+     * Shared lookups for evaluating the given transactions as one batch.
+     */
+    public EvaluationContext prepareBatch(List<Transactions> batch) {
+        return patternEvaluator.prefetch(batch);
+    }
+
+    public RuleEvaluationResult evaluateTransaction(Transactions transaction, EvaluationContext context) {
         String correlationId = transaction.getCorrelationId();
         MDC.put("correlationId", correlationId);
         RuleEvaluationResult result = new RuleEvaluationResult();
@@ -49,32 +187,56 @@ public class RuleEngine {
         result.setCorrelationId(correlationId);
         result.setTriggeredRules(new ArrayList<>());
         result.setAlertReasons(new ArrayList<>());
+        result.setTimedOutRules(new ArrayList<>());
+        RuleSet current = rulePlanner.snapshot();
+        List<CompiledRule> shadowRules = current.shadowRules();
+        result.setRuleSetVersion(current.version());
+        List<CompiledRule> rules = rulePlanner.candidates(current.plan(), transaction);
+        int skippedFrom = rules.size();
+        ParallelRuleExecutor.FanOut fanOut = parallelEnabled
+                ? parallelRuleExecutor.start(rules, rule -> evaluateRule(rule, transaction, context))
+                : null;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(parallelBudgetMs);
         try {
-            log.debug("Evaluating {} rules for transaction {}", activeRules.size(), transaction.getId());
-            for (Rule rule : activeRules) {
+            log.debug("Evaluating {} rules for transaction {}", rules.size(), transaction.getId());
+            for (int i = 0; i < rules.size(); i++) {
+                CompiledRule rule = rules.get(i);
                 try {
-                    long startTime = System.currentTimeMillis();
-                    boolean triggered = evaluateRule(rule, transaction);
-                    long executionTime = System.currentTimeMillis() - startTime;
-                    log.debug("Rule {} evaluated in {}ms: triggered={}",
-                            rule.getName(), executionTime, triggered);
+                    boolean triggered = fanOut != null && fanOut.isAsync(i)
+                            ? fanOut.await(i, deadline)
+                            : evaluateRule(rule, transaction, context);
                     if (triggered) {
-                        result.getTriggeredRules().add(rule);
+                        result.getTriggeredRules().add(rule.rule());
                         result.getAlertReasons().add(String.format(
                                 "Rule '%s' (type: %s, severity: %d) triggered",
-                                rule.getName(), rule.getType(), rule.getSeverity()
+                                rule.name(), rule.type(), rule.severity()
                         ));
                         result.setAlerted(true);
-                        result.setMaxSeverity(Math.max(result.getMaxSeverity(), rule.getSeverity()));
-                        if (rule.getSeverity() >= 4) {
-                            log.warn("Critical rule triggered, short-circuiting: rule={}", rule.getName());
+                        result.setMaxSeverity(Math.max(result.getMaxSeverity(), rule.severity()));
+                        if (rule.critical()) {
+                            log.warn("Critical rule triggered, short-circuiting: rule={}", rule.name());
+                            skippedFrom = i + 1;
+                            if (fanOut != null) {
+                                fanOut.decide(i);
+                            }
                             break;
                         }
                     }
+                } catch (TimeoutException e) {
+                    log.warn("Rule {} did not finish within {}ms, marked as timed out", rule.name(), parallelBudgetMs);
+                    result.getTimedOutRules().add(rule.name());
+                } catch (ExecutionException e) {
+                    log.error("Error evaluating rule {}: {}", rule.name(), e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fanOut.cancelAll();
+                    throw new IllegalStateException("Interrupted while evaluating rules", e);
                 } catch (Exception e) {
-                    log.error("Error evaluating rule {}: {}", rule.getName(), e.getMessage(), e);
+                    log.error("Error evaluating rule {}: {}", rule.name(), e.getMessage(), e);
                 }
             }
+            rulePlanner.recordTransaction(rules, skippedFrom);
+            evaluateShadowRules(shadowRules, transaction, context, result);
             log.info("Transaction evaluation complete: alerted={}, triggeredRules={}",
                     result.isAlerted(), result.getTriggeredRules().size());
         } finally {
@@ -83,13 +245,36 @@ public class RuleEngine {
         return result;
     }
 
-    private boolean evaluateRule(Rule rule, Transactions transaction) {
-        return switch (rule.getType()) {
-            case THRESHOLD -> thresholdEvaluator.evaluate(rule, transaction);
-            case PATTERN -> patternEvaluator.evaluate(rule, transaction);
-            case COMPOSITE -> compositeEvaluator.evaluate(rule, transaction);
-            case ML_RULE -> mlRuleEvaluator.evaluate(rule, transaction);
-        };
+    private boolean evaluateRule(CompiledRule rule, Transactions transaction, EvaluationContext context) {
+        long startTime = System.nanoTime();
+        boolean triggered = rule.matcher().matches(transaction, context);
+        long executionTime = System.nanoTime() - startTime;
+        rulePlanner.recordEvaluation(rule, executionTime, triggered);
+        ruleCounters.record(rule, triggered);
+        log.debug("Rule {} evaluated in {}us: triggered={}", rule.name(), executionTime / 1_000, triggered);
+        return triggered;
+    }
+
+    /**
+     * Runs after the live decision is made and never touches the result, so shadow rules cannot
+     * change a transaction's status or alerts. The prefetched context is reused.
+     */
+    private void evaluateShadowRules(List<CompiledRule> shadowRules, Transactions transaction,
+                                     EvaluationContext context, RuleEvaluationResult result) {
+        if (shadowRules.isEmpty()) {
+            return;
+        }
+        for (CompiledRule rule : shadowRules) {
+            long startTime = System.nanoTime();
+            try {
+                boolean triggered = rule.matcher().matches(transaction, context);
+                shadowRuleStats.record(rule, System.nanoTime() - startTime, triggered, result.getTriggeredRules());
+                log.debug("Shadow rule {} evaluated: triggered={}", rule.name(), triggered);
+            } catch (Exception e) {
+                shadowRuleStats.recordError(rule);
+                log.error("Error evaluating shadow rule {}: {}", rule.name(), e.getMessage(), e);
+            }
+        }
     }
 
     @lombok.Data
@@ -101,5 +286,7 @@ public class RuleEngine {
         private List<String> alertReasons;
         private int maxSeverity = 0;
         private Double mlScore;
+        private List<String> timedOutRules;
+        private long ruleSetVersion;
     }
 }
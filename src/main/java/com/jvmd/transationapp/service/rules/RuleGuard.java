@@ -0,0 +1,119 @@
+package com.jvmd.transationapp.service.rules;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Necessary condition of a rule over the transaction type, amount and hour: a transaction outside
+ * the guard cannot match the rule. Guards are deliberately loose: amount bounds are always
+ * inclusive and doubles, so rounding can only let an extra transaction through, never drop one.
+ *
+ * @param types allowed transaction types, or null for any type
+ * @param hours bit {@code h} set when hour {@code h} of the day is allowed
+ */
+public record RuleGuard(Set<String> types, double minAmount, double maxAmount, int hours) {
+    public static final int ALL_HOURS = (1 << 24) - 1;
+    public static final RuleGuard ANY =
+            new RuleGuard(null, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, ALL_HOURS);
+
+    public RuleGuard {
+        types = types != null ? Set.copyOf(types) : null;
+        // A comparison with NaN admits no amount; left as NaN it would spread through min/max in and/or.
+        // Adding 0.0 turns -0.0 into 0.0: the matchers treat them as equal, the index's ordering does not.
+        minAmount = Double.isNaN(minAmount) ? Double.POSITIVE_INFINITY : minAmount + 0.0;
+        maxAmount = Double.isNaN(maxAmount) ? Double.NEGATIVE_INFINITY : maxAmount + 0.0;
+    }
+
+    public static RuleGuard types(Set<String> types) {
+        return new RuleGuard(types, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, ALL_HOURS);
+    }
+
+    public static RuleGuard amount(ComparisonOperator operator, BigDecimal value) {
+        return amount(operator, value.doubleValue());
+    }
+
+    public static RuleGuard amount(ComparisonOperator operator, double value) {
+        return switch (operator) {
+            case GT, GTE -> new RuleGuard(null, value, Double.POSITIVE_INFINITY, ALL_HOURS);
+            case LT, LTE -> new RuleGuard(null, Double.NEGATIVE_INFINITY, value, ALL_HOURS);
+            case EQ -> new RuleGuard(null, value, value, ALL_HOURS);
+            case NEQ -> ANY;
+        };
+    }
+
+    public static RuleGuard amountBetween(double minAmount, double maxAmount) {
+        return new RuleGuard(null, minAmount, maxAmount, ALL_HOURS);
+    }
+
+    public static RuleGuard hours(IntPredicate allowed) {
+        int mask = 0;
+        for (int hour = 0; hour < 24; hour++) {
+            if (allowed.test(hour)) {
+                mask |= 1 << hour;
+            }
+        }
+        return new RuleGuard(null, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, mask);
+    }
+
+    public RuleGuard and(RuleGuard other) {
+        Set<String> mergedTypes;
+        if (types == null || other.types == null) {
+            mergedTypes = types != null ? types : other.types;
+        } else {
+            mergedTypes = new HashSet<>(types);
+            mergedTypes.retainAll(other.types);
+        }
+        return new RuleGuard(mergedTypes, Math.max(minAmount, other.minAmount),
+                Math.min(maxAmount, other.maxAmount), hours & other.hours);
+    }
+
+    public RuleGuard or(RuleGuard other) {
+        Set<String> mergedTypes = null;
+        if (types != null && other.types != null) {
+            mergedTypes = new HashSet<>(types);
+            mergedTypes.addAll(other.types);
+        }
+        return new RuleGuard(mergedTypes, Math.min(minAmount, other.minAmount),
+                Math.max(maxAmount, other.maxAmount), hours | other.hours);
+    }
+
+    public boolean isAny() {
+        return types == null && minAmount == Double.NEGATIVE_INFINITY && maxAmount == Double.POSITIVE_INFINITY
+                && hours == ALL_HOURS;
+    }
+
+    public boolean admits(String type, double amount, int hour) {
+        return (types == null || (type != null && types.contains(type)))
+                && amount >= minAmount && amount <= maxAmount
+                && (hours & (1 << hour)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        if (isAny()) {
+            return "any";
+        }
+        List<String> parts = new ArrayList<>();
+        if (types != null) {
+            parts.add("type in " + new TreeSet<>(types));
+        }
+        if (minAmount != Double.NEGATIVE_INFINITY || maxAmount != Double.POSITIVE_INFINITY) {
+            parts.add("amount in [" + minAmount + ", " + maxAmount + "]");
+        }
+        if (hours != ALL_HOURS) {
+            List<Integer> allowed = new ArrayList<>();
+            for (int hour = 0; hour < 24; hour++) {
+                if ((hours & (1 << hour)) != 0) {
+                    allowed.add(hour);
+                }
+            }
+            parts.add("hour in " + allowed);
+        }
+        return String.join(", ", parts);
+    }
+}
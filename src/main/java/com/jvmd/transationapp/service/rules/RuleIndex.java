@@ -0,0 +1,170 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.model.Transactions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Dispatch index over the {@link RuleGuard}s of an evaluation plan. Every rule is a bit in a bitset;
+ * the index keeps one bitset per transaction type, per hour of day and per amount segment between
+ * guard bounds, so the candidate rules of a transaction are the AND of three precomputed bitsets,
+ * returned in plan order.
+ */
+final class RuleIndex {
+    private static final RuleIndex EMPTY = linear(0, List.of());
+    private final long version;
+    private final List<CompiledRule> rules;
+    private final boolean linear;
+    private final Map<String, long[]> byType;
+    private final long[] anyType;
+    private final long[][] byHour;
+    private final double[] amountBounds;
+    private final long[][] byAmountSegment;
+
+    private RuleIndex(long version, List<CompiledRule> rules, boolean linear, Map<String, long[]> byType,
+                      long[] anyType, long[][] byHour, double[] amountBounds, long[][] byAmountSegment) {
+        this.version = version;
+        this.rules = rules;
+        this.linear = linear;
+        this.byType = byType;
+        this.anyType = anyType;
+        this.byHour = byHour;
+        this.amountBounds = amountBounds;
+        this.byAmountSegment = byAmountSegment;
+    }
+
+    static RuleIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * An index that always returns the whole plan.
+     */
+    static RuleIndex linear(long version, List<CompiledRule> plan) {
+        return new RuleIndex(version, List.copyOf(plan), true, Map.of(), null, null, null, null);
+    }
+
+    static RuleIndex build(long version, List<CompiledRule> plan) {
+        List<CompiledRule> rules = List.copyOf(plan);
+        RuleGuard[] guards = new RuleGuard[rules.size()];
+        boolean allAny = true;
+        for (int i = 0; i < guards.length; i++) {
+            guards[i] = rules.get(i).matcher().guard();
+            allAny &= guards[i].isAny();
+        }
+        if (allAny) {
+            return linear(version, rules);
+        }
+        int words = (rules.size() + 63) / 64;
+
+        long[] anyType = new long[words];
+        TreeSet<String> types = new TreeSet<>();
+        for (int i = 0; i < guards.length; i++) {
+            if (guards[i].types() == null) {
+                set(anyType, i);
+            } else {
+                types.addAll(guards[i].types());
+            }
+        }
+        Map<String, long[]> byType = new HashMap<>();
+        for (String type : types) {
+            long[] bits = anyType.clone();
+            for (int i = 0; i < guards.length; i++) {
+                if (guards[i].types() != null && guards[i].types().contains(type)) {
+                    set(bits, i);
+                }
+            }
+            byType.put(type, bits);
+        }
+
+        long[][] byHour = new long[24][words];
+        for (int hour = 0; hour < 24; hour++) {
+            for (int i = 0; i < guards.length; i++) {
+                if ((guards[i].hours() & (1 << hour)) != 0) {
+                    set(byHour[hour], i);
+                }
+            }
+        }
+
+        TreeSet<Double> bounds = new TreeSet<>();
+        for (RuleGuard guard : guards) {
+            if (Double.isFinite(guard.minAmount())) {
+                bounds.add(guard.minAmount());
+            }
+            if (Double.isFinite(guard.maxAmount())) {
+                bounds.add(guard.maxAmount());
+            }
+        }
+        double[] amountBounds = bounds.stream().mapToDouble(Double::doubleValue).toArray();
+        long[][] byAmountSegment = new long[2 * amountBounds.length + 1][words];
+        for (int segment = 0; segment < byAmountSegment.length; segment++) {
+            double low;
+            double high;
+            if (segment % 2 == 1) {
+                low = high = amountBounds[segment / 2];
+            } else {
+                low = segment == 0 ? Double.NEGATIVE_INFINITY : amountBounds[segment / 2 - 1];
+                high = segment / 2 == amountBounds.length ? Double.POSITIVE_INFINITY : amountBounds[segment / 2];
+            }
+            for (int i = 0; i < guards.length; i++) {
+                if (guards[i].minAmount() <= low && guards[i].maxAmount() >= high) {
+                    set(byAmountSegment[segment], i);
+                }
+            }
+        }
+        return new RuleIndex(version, rules, false, Map.copyOf(byType), anyType, byHour, amountBounds,
+                byAmountSegment);
+    }
+
+    /**
+     * Version of the rule set the plan was built from.
+     */
+    long version() {
+        return version;
+    }
+
+    List<CompiledRule> rules() {
+        return rules;
+    }
+
+    /**
+     * Rules whose guard admits the transaction, in plan order. Transactions without an amount or
+     * timestamp get the whole plan.
+     */
+    List<CompiledRule> candidates(Transactions transaction) {
+        if (linear || transaction.getAmount() == null || transaction.getTimestamp() == null) {
+            return rules;
+        }
+        long[] typeBits = transaction.getType() != null
+                ? byType.getOrDefault(transaction.getType(), anyType)
+                : anyType;
+        long[] hourBits = byHour[transaction.getTimestamp().getHour()];
+        long[] amountBits = byAmountSegment[segment(transaction.getAmount().doubleValue())];
+        List<CompiledRule> candidates = new ArrayList<>(rules.size());
+        for (int word = 0; word < typeBits.length; word++) {
+            long bits = typeBits[word] & hourBits[word] & amountBits[word];
+            while (bits != 0) {
+                candidates.add(rules.get(word * 64 + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Segments alternate between the open ranges around the bounds (even) and the bounds themselves (odd).
+     */
+    private int segment(double amount) {
+        int position = Arrays.binarySearch(amountBounds, amount);
+        return position >= 0 ? 2 * position + 1 : 2 * (-position - 1);
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+}
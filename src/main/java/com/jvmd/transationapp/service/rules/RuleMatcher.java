@@ -0,0 +1,26 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.model.Transactions;
+
+/**
+ * Evaluation form of a rule produced by one of the evaluators at load time.
+ * Implementations hold only pre-parsed, immutable configuration.
+ */
+@FunctionalInterface
+public interface RuleMatcher {
+    boolean matches(Transactions transaction);
+
+    /**
+     * Batch-aware form; only matchers that can use shared lookups override it.
+     */
+    default boolean matches(Transactions transaction, EvaluationContext context) {
+        return matches(transaction);
+    }
+
+    /**
+     * Condition every matching transaction satisfies, used to skip the rule without evaluating it.
+     */
+    default RuleGuard guard() {
+        return RuleGuard.ANY;
+    }
+}
@@ -0,0 +1,206 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.dto.RulePlanResponse;
+import com.jvmd.transationapp.model.Transactions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chooses the evaluation order of the active rules. Priority groups keep their admin-assigned order;
+ * inside a group, critical rules (which end evaluation when they fire) go first, ranked by average
+ * cost divided by trigger rate, so the cheapest likely way to a critical decision is tried first.
+ * Non-critical rules follow, cheapest first. Cost is an exponentially weighted average of observed
+ * evaluation time; the plan is rebuilt periodically from the latest statistics and held as a
+ * {@link RuleIndex}, which hands each transaction only the rules whose guards admit it.
+ * <p>
+ * The planner holds the active {@link RuleSet}; a new plan replaces it with a copy carrying the plan,
+ * so readers of {@link #snapshot()} never see a plan of one version with rules of another.
+ */
+@Component
+@Slf4j
+public class RulePlanner {
+    private final Map<Long, RuleStats> stats = new ConcurrentHashMap<>();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder shortCircuits = new LongAdder();
+    private final LongAdder skippedRuleEvaluations = new LongAdder();
+    private final DoubleAdder savedNanos = new DoubleAdder();
+    private final LongAdder indexSkippedRuleEvaluations = new LongAdder();
+    private volatile RuleSet ruleSet = RuleSet.EMPTY;
+    private volatile LocalDateTime plannedAt;
+
+    @Value("${app.rules.planner.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rules.index.enabled:true}")
+    private boolean indexEnabled;
+
+    @Value("${app.rules.planner.cost-smoothing:0.05}")
+    private double costSmoothing;
+
+    /**
+     * Plans a new rule set, already ordered by priority, and makes it the active one.
+     */
+    public synchronized RuleSet plan(RuleSet next) {
+        stats.keySet().retainAll(next.rules().stream().map(CompiledRule::id).toList());
+        ruleSet = withPlan(next, true);
+        plannedAt = LocalDateTime.now();
+        return ruleSet;
+    }
+
+    @Scheduled(fixedDelayString = "${app.rules.planner.replan-interval-ms:30000}")
+    public synchronized void replan() {
+        ruleSet = withPlan(ruleSet, false);
+        plannedAt = LocalDateTime.now();
+    }
+
+    private RuleSet withPlan(RuleSet current, boolean fresh) {
+        List<CompiledRule> ordered = new ArrayList<>(current.rules());
+        if (enabled) {
+            ordered.sort(Comparator.comparingInt(CompiledRule::priority)
+                    .thenComparing(rule -> !rule.critical())
+                    .thenComparingDouble(this::rank));
+        }
+        List<CompiledRule> next = List.copyOf(ordered);
+        if (!fresh && next.equals(current.plan().rules())) {
+            return current;
+        }
+        log.debug("Rule plan for version {}: {}", current.version(), next.stream().map(CompiledRule::name).toList());
+        return current.withPlan(indexEnabled
+                ? RuleIndex.build(current.version(), next)
+                : RuleIndex.linear(current.version(), next));
+    }
+
+    public List<CompiledRule> currentPlan() {
+        return ruleSet.plan().rules();
+    }
+
+    /**
+     * The active rule set with its plan; evaluations read it once so a concurrent reload or replan
+     * cannot mix two rule sets.
+     */
+    RuleSet snapshot() {
+        return ruleSet;
+    }
+
+    /**
+     * The rules of the given plan that can match the transaction, in plan order.
+     */
+    List<CompiledRule> candidates(RuleIndex index, Transactions transaction) {
+        List<CompiledRule> candidates = index.candidates(transaction);
+        int skipped = index.rules().size() - candidates.size();
+        if (skipped > 0) {
+            indexSkippedRuleEvaluations.add(skipped);
+        }
+        return candidates;
+    }
+
+    public void recordEvaluation(CompiledRule rule, long nanos, boolean triggered) {
+        if (rule.id() != null) {
+            stats.computeIfAbsent(rule.id(), id -> new RuleStats()).record(nanos, triggered, costSmoothing);
+        }
+    }
+
+    /**
+     * Called once per evaluated transaction; {@code skippedFrom} is the plan position after the
+     * critical rule that ended evaluation, or the plan size when every rule ran.
+     */
+    public void recordTransaction(List<CompiledRule> order, int skippedFrom) {
+        evaluations.increment();
+        if (skippedFrom >= order.size()) {
+            return;
+        }
+        shortCircuits.increment();
+        skippedRuleEvaluations.add(order.size() - skippedFrom);
+        double saved = 0;
+        for (int i = skippedFrom; i < order.size(); i++) {
+            saved += averageCostNanos(order.get(i));
+        }
+        savedNanos.add(saved);
+    }
+
+    public RulePlanResponse describe() {
+        RuleIndex plan = ruleSet.plan();
+        List<CompiledRule> current = plan.rules();
+        List<RulePlanResponse.RuleEntry> entries = new ArrayList<>(current.size());
+        for (int i = 0; i < current.size(); i++) {
+            CompiledRule rule = current.get(i);
+            RuleStats ruleStats = rule.id() != null ? stats.get(rule.id()) : null;
+            entries.add(RulePlanResponse.RuleEntry.builder()
+                    .position(i + 1)
+                    .ruleId(rule.id())
+                    .name(rule.name())
+                    .type(rule.type().name())
+                    .priority(rule.priority())
+                    .severity(rule.severity())
+                    .evaluations(ruleStats != null ? ruleStats.evaluations : 0)
+                    .averageCostMicros(averageCostNanos(rule) / 1_000.0)
+                    .triggerRate(triggerRate(rule))
+                    .guard(rule.matcher().guard().toString())
+                    .build());
+        }
+        return RulePlanResponse.builder()
+                .ruleSetVersion(plan.version())
+                .costBased(enabled)
+                .plannedAt(plannedAt)
+                .rules(entries)
+                .evaluations(evaluations.sum())
+                .shortCircuits(shortCircuits.sum())
+                .skippedRuleEvaluations(skippedRuleEvaluations.sum())
+                .indexed(indexEnabled)
+                .indexSkippedRuleEvaluations(indexSkippedRuleEvaluations.sum())
+                .estimatedSavedMs(savedNanos.sum() / 1_000_000.0)
+                .build();
+    }
+
+    /**
+     * Expected cost of trying this rule per critical decision it produces; non-critical rules are
+     * ranked by cost alone. Rules without statistics rank first so they get measured.
+     */
+    private double rank(CompiledRule rule) {
+        double cost = averageCostNanos(rule);
+        return rule.critical() ? cost / triggerRate(rule) : cost;
+    }
+
+    private double averageCostNanos(CompiledRule rule) {
+        RuleStats ruleStats = rule.id() != null ? stats.get(rule.id()) : null;
+        return ruleStats != null ? ruleStats.averageNanos : 0;
+    }
+
+    /**
+     * Laplace-smoothed, so a rule that has never fired still has a finite rank.
+     */
+    private double triggerRate(CompiledRule rule) {
+        RuleStats ruleStats = rule.id() != null ? stats.get(rule.id()) : null;
+        if (ruleStats == null) {
+            return 0.5;
+        }
+        synchronized (ruleStats) {
+            return (ruleStats.triggers + 1.0) / (ruleStats.evaluations + 2.0);
+        }
+    }
+
+    private static final class RuleStats {
+        private volatile double averageNanos;
+        private long evaluations;
+        private long triggers;
+
+        private synchronized void record(long nanos, boolean triggered, double smoothing) {
+            averageNanos = evaluations == 0 ? nanos : averageNanos + smoothing * (nanos - averageNanos);
+            evaluations++;
+            if (triggered) {
+                triggers++;
+            }
+        }
+    }
+}
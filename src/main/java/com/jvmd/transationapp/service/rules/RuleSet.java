@@ -0,0 +1,29 @@
+package com.jvmd.transationapp.service.rules;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Immutable compiled rule set. {@code version} is the cluster-wide rule version it was built for;
+ * every evaluation reads one snapshot and records its version. {@code plan} is the evaluation order
+ * of {@code rules} chosen by the {@link RulePlanner}, and {@code shadowRules} are evaluated alongside
+ * for statistics only, so one snapshot gives the live rules, their order and the shadow rules of the
+ * same version.
+ */
+public record RuleSet(long version, List<CompiledRule> rules, List<CompiledRule> shadowRules, RuleIndex plan,
+                      LocalDateTime loadedAt) {
+    public static final RuleSet EMPTY = new RuleSet(0, List.of(), List.of(), RuleIndex.empty(), null);
+
+    public RuleSet {
+        rules = List.copyOf(rules);
+        shadowRules = List.copyOf(shadowRules);
+    }
+
+    public RuleSet(long version, List<CompiledRule> rules, List<CompiledRule> shadowRules, LocalDateTime loadedAt) {
+        this(version, rules, shadowRules, RuleIndex.linear(version, rules), loadedAt);
+    }
+
+    RuleSet withPlan(RuleIndex plan) {
+        return new RuleSet(version, rules, shadowRules, plan, loadedAt);
+    }
+}
@@ -0,0 +1,8 @@
+package com.jvmd.transationapp.service.rules;
+
+/**
+ * Published when a rule change is announced on the rule channel, by this node or another, and by
+ * the periodic version poll ({@code 0} when the version cannot be read).
+ */
+public record RuleSetChangedEvent(long version) {
+}
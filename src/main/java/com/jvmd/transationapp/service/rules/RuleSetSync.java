@@ -0,0 +1,80 @@
+package com.jvmd.transationapp.service.rules;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cluster-wide rule versioning. A rule change increments the version counter in Redis and
+ * announces the new version on a channel; every node turns the announcement into a
+ * {@link RuleSetChangedEvent}. Pub/sub does not redeliver, so the counter is also polled.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RuleSetSync implements MessageListener {
+    private static final String VERSION_KEY = "rules:version";
+    private static final String CHANNEL = "rules:changed";
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Allocates the next rule version and announces it. Returns -1 when Redis is unavailable; the
+     * change then only reaches other nodes with the next successful announcement.
+     */
+    public long publishChange() {
+        try {
+            Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+            redisTemplate.convertAndSend(CHANNEL, String.valueOf(version));
+            log.info("Published rule set version {}", version);
+            return version != null ? version : -1;
+        } catch (Exception e) {
+            log.error("Failed to publish rule change", e);
+            return -1;
+        }
+    }
+
+    public long currentVersion() {
+        try {
+            String version = redisTemplate.opsForValue().get(VERSION_KEY);
+            return version != null ? Long.parseLong(version) : 0;
+        } catch (Exception e) {
+            log.warn("Failed to read rule set version: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            eventPublisher.publishEvent(new RuleSetChangedEvent(Long.parseLong(body.trim())));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed rule change message: {}", body);
+        }
+    }
+
+    /**
+     * Publishes even when the version cannot be read (0), so a node whose last rebuild failed retries it.
+     */
+    @Scheduled(fixedDelayString = "${app.rules.sync.poll-interval-ms:30000}")
+    public void poll() {
+        eventPublisher.publishEvent(new RuleSetChangedEvent(currentVersion()));
+    }
+}
@@ -0,0 +1,99 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.dto.ShadowRuleStatsResponse;
+import com.jvmd.transationapp.model.Rule;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit, latency and overlap counters of shadow rules. A hit overlaps when live rules triggered on the
+ * same transaction; otherwise it is an alert the rule would add if it went live. Overlap only sees
+ * live rules that actually ran, so rules skipped after a critical hit are not counted.
+ */
+@Component
+public class ShadowRuleStats {
+    private final Map<Long, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Drops the counters of rules that are no longer in shadow mode.
+     */
+    public void retain(List<CompiledRule> shadowRules) {
+        stats.keySet().retainAll(shadowRules.stream().map(CompiledRule::id).toList());
+    }
+
+    public void record(CompiledRule rule, long nanos, boolean triggered, List<Rule> liveHits) {
+        if (rule.id() == null) {
+            return;
+        }
+        Stats ruleStats = stats.computeIfAbsent(rule.id(), id -> new Stats());
+        ruleStats.evaluations.increment();
+        ruleStats.totalNanos.add(nanos);
+        ruleStats.maxNanos.accumulate(nanos);
+        if (!triggered) {
+            return;
+        }
+        ruleStats.hits.increment();
+        if (liveHits.isEmpty()) {
+            ruleStats.newAlerts.increment();
+            return;
+        }
+        ruleStats.overlappingHits.increment();
+        for (Rule live : liveHits) {
+            ruleStats.overlap.computeIfAbsent(live.getName(), name -> new LongAdder()).increment();
+        }
+    }
+
+    public void recordError(CompiledRule rule) {
+        if (rule.id() != null) {
+            stats.computeIfAbsent(rule.id(), id -> new Stats()).errors.increment();
+        }
+    }
+
+    public List<ShadowRuleStatsResponse> describe(List<CompiledRule> shadowRules) {
+        List<ShadowRuleStatsResponse> response = new ArrayList<>(shadowRules.size());
+        for (CompiledRule rule : shadowRules) {
+            Stats ruleStats = rule.id() != null ? stats.get(rule.id()) : null;
+            ShadowRuleStatsResponse.ShadowRuleStatsResponseBuilder entry = ShadowRuleStatsResponse.builder()
+                    .ruleId(rule.id())
+                    .name(rule.name())
+                    .type(rule.type().name())
+                    .severity(rule.severity())
+                    .overlapByRule(Map.of());
+            if (ruleStats != null) {
+                long evaluations = ruleStats.evaluations.sum();
+                long hits = ruleStats.hits.sum();
+                Map<String, Long> overlap = new LinkedHashMap<>();
+                ruleStats.overlap.forEach((name, count) -> overlap.put(name, count.sum()));
+                entry.evaluations(evaluations)
+                        .hits(hits)
+                        .hitRate(evaluations > 0 ? (double) hits / evaluations : 0)
+                        .errors(ruleStats.errors.sum())
+                        .averageLatencyMicros(evaluations > 0 ? ruleStats.totalNanos.sum() / 1_000.0 / evaluations : 0)
+                        .maxLatencyMicros(ruleStats.maxNanos.get() / 1_000.0)
+                        .overlappingHits(ruleStats.overlappingHits.sum())
+                        .newAlerts(ruleStats.newAlerts.sum())
+                        .overlapByRule(overlap);
+            }
+            response.add(entry.build());
+        }
+        return response;
+    }
+
+    private static final class Stats {
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder overlappingHits = new LongAdder();
+        private final LongAdder newAlerts = new LongAdder();
+        private final Map<String, LongAdder> overlap = new ConcurrentHashMap<>();
+    }
+}
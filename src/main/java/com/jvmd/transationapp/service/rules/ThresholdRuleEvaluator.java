@@ -1,6 +1,5 @@
 package com.jvmd.transationapp.service.rules;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jvmd.transationapp.model.Rule;
 import com.jvmd.transationapp.model.Transactions;
@@ -9,7 +8,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
-import java.util.Map;
 
 @Component
 @Slf4j
@@ -17,43 +15,47 @@ import java.util.Map;
 public class ThresholdRuleEvaluator {
     private final ObjectMapper objectMapper;
 
-    public boolean evaluate(Rule rule, Transactions transaction) {
-        try {
-            Map<String, Object> config = objectMapper.readValue(
-                    rule.getConfiguration(),
-                    new TypeReference<Map<String, Object>>() {
-                    }
-            );
-            String field = (String) config.get("field");
-            String operator = (String) config.get("operator");
-            Object thresholdValue = config.get("value");
-            BigDecimal actualValue = getFieldValue(transaction, field);
-            BigDecimal threshold = new BigDecimal(thresholdValue.toString());
-            return switch (operator) {
-                case ">" -> actualValue.compareTo(threshold) > 0;
-                case ">=" -> actualValue.compareTo(threshold) >= 0;
-                case "<" -> actualValue.compareTo(threshold) < 0;
-                case "<=" -> actualValue.compareTo(threshold) <= 0;
-                case "=" -> actualValue.compareTo(threshold) == 0;
-                case "!=" -> actualValue.compareTo(threshold) != 0;
-                default -> {
-                    log.warn("Unknown operator: {}", operator);
-                    yield false;
-                }
+    public RuleMatcher compile(Rule rule) {
+        RuleConfigReader config = RuleConfigReader.parse(objectMapper, rule);
+        ThresholdField field = ThresholdField.fromConfig(config.requireText("field"));
+        ComparisonOperator operator = ComparisonOperator.fromSymbol(config.requireText("operator"));
+        BigDecimal threshold = config.requireDecimal("value");
+        return new ThresholdMatcher(field, operator, threshold, threshold.doubleValue());
+    }
+
+    public enum ThresholdField {
+        AMOUNT,
+        ML_SCORE;
+
+        static ThresholdField fromConfig(String field) {
+            return switch (field) {
+                case "amount" -> AMOUNT;
+                case "mlScore" -> ML_SCORE;
+                default -> throw new IllegalArgumentException("Unknown threshold field: " + field);
             };
-        } catch (Exception e) {
-            log.error("Error evaluating threshold rule: {}", e.getMessage());
-            return false;
         }
     }
 
-    private BigDecimal getFieldValue(Transactions transaction, String field) {
-        return switch (field) {
-            case "amount" -> transaction.getAmount();
-            case "mlScore" -> transaction.getMlScore() != null
-                    ? BigDecimal.valueOf(transaction.getMlScore())
-                    : BigDecimal.ZERO;
-            default -> BigDecimal.ZERO;
-        };
+    public record ThresholdMatcher(
+            ThresholdField field,
+            ComparisonOperator operator,
+            BigDecimal threshold,
+            double thresholdValue
+    ) implements RuleMatcher {
+        @Override
+        public boolean matches(Transactions transaction) {
+            return switch (field) {
+                case AMOUNT -> operator.test(transaction.getAmount().compareTo(threshold));
+                case ML_SCORE -> {
+                    double score = transaction.getMlScore() != null ? transaction.getMlScore() : 0.0;
+                    yield operator.test(Double.compare(score, thresholdValue));
+                }
+            };
+        }
+
+        @Override
+        public RuleGuard guard() {
+            return field == ThresholdField.AMOUNT ? RuleGuard.amount(operator, threshold) : RuleGuard.ANY;
+        }
     }
 }
@@ -0,0 +1,374 @@
+package com.jvmd.transationapp.service.rules.expression;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.rules.ComparisonOperator;
+import com.jvmd.transationapp.service.rules.RuleGuard;
+import com.jvmd.transationapp.service.rules.RuleMatcher;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Turns a rule expression into a tree of closed lambdas. Types are checked once here; the
+ * resulting tree reads fields through direct getters, compares primitive doubles and has constant
+ * sub-expressions folded, so evaluation does no parsing, boxing or map lookups.
+ */
+public final class ExpressionCompiler {
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression does not parse or is not a well-typed condition
+     */
+    public static CompiledExpression compile(String source) {
+        ExpressionNode root = ExpressionParser.parse(source);
+        if (typeOf(root) != ExpressionType.BOOLEAN) {
+            throw ExpressionParser.error("expression must be a condition, not a " + typeOf(root).name().toLowerCase()
+                    + " value", root.position());
+        }
+        return new CompiledExpression(predicate(root), guard(root));
+    }
+
+    public record CompiledExpression(RuleMatcher predicate, RuleGuard guard) {
+    }
+
+    /**
+     * Type, amount and hour constraints implied by the expression; anything it cannot see through,
+     * such as a negation, is left unconstrained.
+     */
+    private static RuleGuard guard(ExpressionNode node) {
+        return switch (node) {
+            case ExpressionNode.And and -> guard(and.left()).and(guard(and.right()));
+            case ExpressionNode.Or or -> guard(or.left()).or(guard(or.right()));
+            case ExpressionNode.Comparison comparison -> {
+                ComparisonOperator operator = comparison.operator();
+                ExpressionNode fieldNode = comparison.left();
+                ExpressionNode valueNode = comparison.right();
+                if (!(fieldNode instanceof ExpressionNode.Field)) {
+                    operator = mirror(operator);
+                    fieldNode = comparison.right();
+                    valueNode = comparison.left();
+                }
+                if (!(fieldNode instanceof ExpressionNode.Field field)) {
+                    yield RuleGuard.ANY;
+                }
+                yield switch (field.field()) {
+                    case AMOUNT, HOUR -> {
+                        Double value = typeOf(valueNode) == ExpressionType.NUMBER ? constant(valueNode) : null;
+                        if (value == null) {
+                            yield RuleGuard.ANY;
+                        }
+                        double c = value;
+                        ComparisonOperator op = operator;
+                        yield field.field() == ExpressionField.AMOUNT
+                                ? RuleGuard.amount(op, c)
+                                : RuleGuard.hours(hour -> compare(op, hour, c));
+                    }
+                    case TYPE -> operator == ComparisonOperator.EQ
+                            && valueNode instanceof ExpressionNode.StringLiteral literal
+                            ? RuleGuard.types(Set.of(literal.value()))
+                            : RuleGuard.ANY;
+                    default -> RuleGuard.ANY;
+                };
+            }
+            case ExpressionNode.In in when !in.negated() && in.value() instanceof ExpressionNode.Field field -> {
+                if (field.field() == ExpressionField.TYPE) {
+                    Set<String> types = new LinkedHashSet<>();
+                    for (ExpressionNode candidate : in.candidates()) {
+                        if (candidate instanceof ExpressionNode.StringLiteral literal) {
+                            types.add(literal.value());
+                        }
+                    }
+                    yield RuleGuard.types(types);
+                }
+                if (field.field() == ExpressionField.AMOUNT || field.field() == ExpressionField.HOUR) {
+                    double[] values = in.candidates().stream().map(ExpressionCompiler::constant)
+                            .mapToDouble(value -> value != null ? value : Double.NaN).toArray();
+                    if (field.field() == ExpressionField.HOUR) {
+                        yield RuleGuard.hours(hour -> {
+                            for (double value : values) {
+                                if (hour == value) {
+                                    return true;
+                                }
+                            }
+                            return false;
+                        });
+                    }
+                    // NaN candidates never match; an all-NaN list leaves an empty range
+                    double[] comparable = Arrays.stream(values).filter(value -> !Double.isNaN(value)).toArray();
+                    yield RuleGuard.amountBetween(Arrays.stream(comparable).min().orElse(Double.POSITIVE_INFINITY),
+                            Arrays.stream(comparable).max().orElse(Double.NEGATIVE_INFINITY));
+                }
+                yield RuleGuard.ANY;
+            }
+            default -> RuleGuard.ANY;
+        };
+    }
+
+    private static boolean compare(ComparisonOperator operator, double left, double right) {
+        return switch (operator) {
+            case GT -> left > right;
+            case GTE -> left >= right;
+            case LT -> left < right;
+            case LTE -> left <= right;
+            case EQ -> left == right;
+            case NEQ -> left != right;
+        };
+    }
+
+    private static ExpressionType typeOf(ExpressionNode node) {
+        return switch (node) {
+            case ExpressionNode.Field field -> field.field().type();
+            case ExpressionNode.NumberLiteral ignored -> ExpressionType.NUMBER;
+            case ExpressionNode.StringLiteral ignored -> ExpressionType.STRING;
+            case ExpressionNode.Arithmetic ignored -> ExpressionType.NUMBER;
+            case ExpressionNode.Negate ignored -> ExpressionType.NUMBER;
+            case ExpressionNode.BooleanLiteral ignored -> ExpressionType.BOOLEAN;
+            case ExpressionNode.Comparison ignored -> ExpressionType.BOOLEAN;
+            case ExpressionNode.In ignored -> ExpressionType.BOOLEAN;
+            case ExpressionNode.Not ignored -> ExpressionType.BOOLEAN;
+            case ExpressionNode.And ignored -> ExpressionType.BOOLEAN;
+            case ExpressionNode.Or ignored -> ExpressionType.BOOLEAN;
+        };
+    }
+
+    private static RuleMatcher predicate(ExpressionNode node) {
+        return switch (node) {
+            case ExpressionNode.BooleanLiteral literal -> literal.value() ? t -> true : t -> false;
+            case ExpressionNode.Not not -> {
+                RuleMatcher operand = predicate(requireType(not.operand(), ExpressionType.BOOLEAN));
+                yield t -> !operand.matches(t);
+            }
+            case ExpressionNode.And and -> {
+                RuleMatcher left = predicate(requireType(and.left(), ExpressionType.BOOLEAN));
+                RuleMatcher right = predicate(requireType(and.right(), ExpressionType.BOOLEAN));
+                yield t -> left.matches(t) && right.matches(t);
+            }
+            case ExpressionNode.Or or -> {
+                RuleMatcher left = predicate(requireType(or.left(), ExpressionType.BOOLEAN));
+                RuleMatcher right = predicate(requireType(or.right(), ExpressionType.BOOLEAN));
+                yield t -> left.matches(t) || right.matches(t);
+            }
+            case ExpressionNode.Comparison comparison -> comparison(comparison);
+            case ExpressionNode.In in -> membership(in);
+            default -> throw ExpressionParser.error("expected a condition", node.position());
+        };
+    }
+
+    private static RuleMatcher comparison(ExpressionNode.Comparison comparison) {
+        ExpressionType left = typeOf(comparison.left());
+        ExpressionType right = typeOf(comparison.right());
+        if (left != right) {
+            throw ExpressionParser.error("cannot compare " + left.name().toLowerCase() + " with "
+                    + right.name().toLowerCase(), comparison.position());
+        }
+        ComparisonOperator operator = comparison.operator();
+        if (left != ExpressionType.NUMBER && operator != ComparisonOperator.EQ && operator != ComparisonOperator.NEQ) {
+            throw ExpressionParser.error("operator " + operator.symbol() + " needs numbers", comparison.position());
+        }
+        return switch (left) {
+            case NUMBER -> numericComparison(operator, comparison.left(), comparison.right());
+            case STRING -> textComparison(operator == ComparisonOperator.EQ, comparison.left(), comparison.right());
+            case BOOLEAN -> {
+                RuleMatcher a = predicate(comparison.left());
+                RuleMatcher b = predicate(comparison.right());
+                yield operator == ComparisonOperator.EQ
+                        ? t -> a.matches(t) == b.matches(t)
+                        : t -> a.matches(t) != b.matches(t);
+            }
+        };
+    }
+
+    private static RuleMatcher numericComparison(ComparisonOperator operator, ExpressionNode leftNode,
+                                                 ExpressionNode rightNode) {
+        Double leftConstant = constant(leftNode);
+        if (leftConstant != null && constant(rightNode) == null) {
+            return numericComparison(mirror(operator), rightNode, leftNode);
+        }
+        ToDoubleFunction<Transactions> left = numeric(leftNode);
+        Double rightConstant = constant(rightNode);
+        if (rightConstant != null) {
+            double c = rightConstant;
+            return switch (operator) {
+                case GT -> t -> left.applyAsDouble(t) > c;
+                case GTE -> t -> left.applyAsDouble(t) >= c;
+                case LT -> t -> left.applyAsDouble(t) < c;
+                case LTE -> t -> left.applyAsDouble(t) <= c;
+                case EQ -> t -> left.applyAsDouble(t) == c;
+                case NEQ -> t -> left.applyAsDouble(t) != c;
+            };
+        }
+        ToDoubleFunction<Transactions> right = numeric(rightNode);
+        return switch (operator) {
+            case GT -> t -> left.applyAsDouble(t) > right.applyAsDouble(t);
+            case GTE -> t -> left.applyAsDouble(t) >= right.applyAsDouble(t);
+            case LT -> t -> left.applyAsDouble(t) < right.applyAsDouble(t);
+            case LTE -> t -> left.applyAsDouble(t) <= right.applyAsDouble(t);
+            case EQ -> t -> left.applyAsDouble(t) == right.applyAsDouble(t);
+            case NEQ -> t -> left.applyAsDouble(t) != right.applyAsDouble(t);
+        };
+    }
+
+    private static ComparisonOperator mirror(ComparisonOperator operator) {
+        return switch (operator) {
+            case GT -> ComparisonOperator.LT;
+            case GTE -> ComparisonOperator.LTE;
+            case LT -> ComparisonOperator.GT;
+            case LTE -> ComparisonOperator.GTE;
+            case EQ, NEQ -> operator;
+        };
+    }
+
+    /**
+     * A missing string field is unequal to everything, including another missing field.
+     */
+    private static RuleMatcher textComparison(boolean equal, ExpressionNode leftNode, ExpressionNode rightNode) {
+        RuleMatcher matcher;
+        if (rightNode instanceof ExpressionNode.StringLiteral literal) {
+            Function<Transactions, String> left = text(leftNode);
+            String c = literal.value();
+            matcher = t -> c.equals(left.apply(t));
+        } else if (leftNode instanceof ExpressionNode.StringLiteral literal) {
+            Function<Transactions, String> right = text(rightNode);
+            String c = literal.value();
+            matcher = t -> c.equals(right.apply(t));
+        } else {
+            Function<Transactions, String> left = text(leftNode);
+            Function<Transactions, String> right = text(rightNode);
+            matcher = t -> {
+                String value = left.apply(t);
+                return value != null && value.equals(right.apply(t));
+            };
+        }
+        if (equal) {
+            return matcher;
+        }
+        RuleMatcher positive = matcher;
+        return t -> !positive.matches(t);
+    }
+
+    private static RuleMatcher membership(ExpressionNode.In in) {
+        ExpressionType type = typeOf(in.value());
+        RuleMatcher matcher = switch (type) {
+            case NUMBER -> {
+                ToDoubleFunction<Transactions> value = numeric(in.value());
+                double[] candidates = new double[in.candidates().size()];
+                for (int i = 0; i < candidates.length; i++) {
+                    Double candidate = constant(requireType(in.candidates().get(i), ExpressionType.NUMBER));
+                    if (candidate == null) {
+                        throw ExpressionParser.error("'in' list must hold constants", in.candidates().get(i).position());
+                    }
+                    candidates[i] = candidate;
+                }
+                yield t -> {
+                    double v = value.applyAsDouble(t);
+                    for (double candidate : candidates) {
+                        if (v == candidate) {
+                            return true;
+                        }
+                    }
+                    return false;
+                };
+            }
+            case STRING -> {
+                Function<Transactions, String> value = text(in.value());
+                Set<String> candidates = new LinkedHashSet<>();
+                for (ExpressionNode candidate : in.candidates()) {
+                    if (!(requireType(candidate, ExpressionType.STRING) instanceof ExpressionNode.StringLiteral literal)) {
+                        throw ExpressionParser.error("'in' list must hold constants", candidate.position());
+                    }
+                    candidates.add(literal.value());
+                }
+                Set<String> lookup = Set.copyOf(candidates);
+                yield t -> {
+                    String v = value.apply(t);
+                    return v != null && lookup.contains(v);
+                };
+            }
+            case BOOLEAN -> throw ExpressionParser.error("'in' needs a number or string", in.position());
+        };
+        if (!in.negated()) {
+            return matcher;
+        }
+        RuleMatcher positive = matcher;
+        return t -> !positive.matches(t);
+    }
+
+    private static ToDoubleFunction<Transactions> numeric(ExpressionNode node) {
+        requireType(node, ExpressionType.NUMBER);
+        Double folded = constant(node);
+        if (folded != null) {
+            double c = folded;
+            return t -> c;
+        }
+        return switch (node) {
+            case ExpressionNode.Field field -> field.field().numeric();
+            case ExpressionNode.Negate negate -> {
+                ToDoubleFunction<Transactions> operand = numeric(negate.operand());
+                yield t -> -operand.applyAsDouble(t);
+            }
+            case ExpressionNode.Arithmetic arithmetic -> {
+                ToDoubleFunction<Transactions> left = numeric(arithmetic.left());
+                ToDoubleFunction<Transactions> right = numeric(arithmetic.right());
+                yield switch (arithmetic.operator()) {
+                    case '+' -> t -> left.applyAsDouble(t) + right.applyAsDouble(t);
+                    case '-' -> t -> left.applyAsDouble(t) - right.applyAsDouble(t);
+                    case '*' -> t -> left.applyAsDouble(t) * right.applyAsDouble(t);
+                    default -> t -> left.applyAsDouble(t) / right.applyAsDouble(t);
+                };
+            }
+            default -> throw ExpressionParser.error("expected a number", node.position());
+        };
+    }
+
+    private static Function<Transactions, String> text(ExpressionNode node) {
+        return switch (requireType(node, ExpressionType.STRING)) {
+            case ExpressionNode.Field field -> field.field().text();
+            case ExpressionNode.StringLiteral literal -> {
+                String c = literal.value();
+                yield t -> c;
+            }
+            default -> throw ExpressionParser.error("expected a string", node.position());
+        };
+    }
+
+    /**
+     * Value of a numeric sub-expression that does not read the transaction, or null.
+     */
+    private static Double constant(ExpressionNode node) {
+        return switch (node) {
+            case ExpressionNode.NumberLiteral literal -> literal.value();
+            case ExpressionNode.Negate negate -> {
+                Double operand = constant(negate.operand());
+                yield operand != null ? -operand : null;
+            }
+            case ExpressionNode.Arithmetic arithmetic -> {
+                Double left = constant(arithmetic.left());
+                Double right = constant(arithmetic.right());
+                if (left == null || right == null) {
+                    yield null;
+                }
+                yield switch (arithmetic.operator()) {
+                    case '+' -> left + right;
+                    case '-' -> left - right;
+                    case '*' -> left * right;
+                    default -> left / right;
+                };
+            }
+            default -> null;
+        };
+    }
+
+    private static ExpressionNode requireType(ExpressionNode node, ExpressionType expected) {
+        ExpressionType actual = typeOf(node);
+        if (actual != expected) {
+            throw ExpressionParser.error("expected a " + expected.name().toLowerCase() + " but found a "
+                    + actual.name().toLowerCase(), node.position());
+        }
+        return node;
+    }
+}
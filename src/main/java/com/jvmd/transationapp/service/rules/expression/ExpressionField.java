@@ -0,0 +1,81 @@
+package com.jvmd.transationapp.service.rules.expression;
+
+import com.jvmd.transationapp.model.Transactions;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Transaction fields visible to rule expressions. Numeric fields read as {@code double}; a missing
+ * value reads as NaN, so every comparison with it is false except {@code !=}.
+ */
+public enum ExpressionField {
+    AMOUNT("amount", (Transactions t) -> t.getAmount() != null ? t.getAmount().doubleValue() : Double.NaN),
+    ML_SCORE("mlScore", (Transactions t) -> orNaN(t.getMlScore())),
+    TIME_SINCE_LAST_TRANSACTION("timeSinceLastTransaction", (Transactions t) -> orNaN(t.getTimeSinceLastTransaction())),
+    SPENDING_DEVIATION_SCORE("spendingDeviationScore", (Transactions t) -> orNaN(t.getSpendingDeviationScore())),
+    VELOCITY_SCORE("velocityScore", (Transactions t) -> orNaN(t.getVelocityScore())),
+    GEO_ANOMALY_SCORE("geoAnomalyScore", (Transactions t) -> orNaN(t.getGeoAnomalyScore())),
+    HOUR("hour", (Transactions t) -> t.getTimestamp() != null ? t.getTimestamp().getHour() : Double.NaN),
+    DAY_OF_WEEK("dayOfWeek", (Transactions t) -> t.getTimestamp() != null
+            ? t.getTimestamp().getDayOfWeek().getValue() : Double.NaN),
+    FROM("from", Transactions::getFrom),
+    TO("to", Transactions::getTo),
+    TYPE("type", Transactions::getType),
+    IP_ADDRESS("ipAddress", Transactions::getIpAddress),
+    DEVICE_ID("deviceId", Transactions::getDeviceId),
+    DEVICE_USED("deviceUsed", Transactions::getDeviceUsed),
+    DEVICE_HASH("deviceHash", Transactions::getDeviceHash),
+    LOCATION("location", Transactions::getLocation),
+    MERCHANT_CATEGORY("merchantCategory", Transactions::getMerchantCategory),
+    PAYMENT_CHANNEL("paymentChannel", Transactions::getPaymentChannel);
+
+    private static final Map<String, ExpressionField> BY_NAME = Arrays.stream(values())
+            .collect(Collectors.toUnmodifiableMap(ExpressionField::fieldName, Function.identity()));
+
+    private final String fieldName;
+    private final ExpressionType type;
+    private final ToDoubleFunction<Transactions> numeric;
+    private final Function<Transactions, String> text;
+
+    ExpressionField(String fieldName, ToDoubleFunction<Transactions> numeric) {
+        this.fieldName = fieldName;
+        this.type = ExpressionType.NUMBER;
+        this.numeric = numeric;
+        this.text = null;
+    }
+
+    ExpressionField(String fieldName, Function<Transactions, String> text) {
+        this.fieldName = fieldName;
+        this.type = ExpressionType.STRING;
+        this.numeric = null;
+        this.text = text;
+    }
+
+    public String fieldName() {
+        return fieldName;
+    }
+
+    public ExpressionType type() {
+        return type;
+    }
+
+    ToDoubleFunction<Transactions> numeric() {
+        return numeric;
+    }
+
+    Function<Transactions, String> text() {
+        return text;
+    }
+
+    static ExpressionField byName(String name) {
+        return BY_NAME.get(name);
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
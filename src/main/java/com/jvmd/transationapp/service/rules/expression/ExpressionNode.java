@@ -0,0 +1,48 @@
+package com.jvmd.transationapp.service.rules.expression;
+
+import com.jvmd.transationapp.service.rules.ComparisonOperator;
+
+import java.util.List;
+
+/**
+ * Syntax tree produced by {@link ExpressionParser}. {@code position} is the offset of the node in
+ * the source, used in error messages.
+ */
+sealed interface ExpressionNode {
+    int position();
+
+    record Field(ExpressionField field, int position) implements ExpressionNode {
+    }
+
+    record NumberLiteral(double value, int position) implements ExpressionNode {
+    }
+
+    record StringLiteral(String value, int position) implements ExpressionNode {
+    }
+
+    record BooleanLiteral(boolean value, int position) implements ExpressionNode {
+    }
+
+    record Arithmetic(char operator, ExpressionNode left, ExpressionNode right, int position) implements ExpressionNode {
+    }
+
+    record Negate(ExpressionNode operand, int position) implements ExpressionNode {
+    }
+
+    record Comparison(ComparisonOperator operator, ExpressionNode left, ExpressionNode right, int position)
+            implements ExpressionNode {
+    }
+
+    record In(ExpressionNode value, List<ExpressionNode> candidates, boolean negated, int position)
+            implements ExpressionNode {
+    }
+
+    record Not(ExpressionNode operand, int position) implements ExpressionNode {
+    }
+
+    record And(ExpressionNode left, ExpressionNode right, int position) implements ExpressionNode {
+    }
+
+    record Or(ExpressionNode left, ExpressionNode right, int position) implements ExpressionNode {
+    }
+}
@@ -0,0 +1,250 @@
+package com.jvmd.transationapp.service.rules.expression;
+
+import com.jvmd.transationapp.service.rules.ComparisonOperator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive-descent parser for rule expressions:
+ * <pre>
+ * or         := and (("||" | "or") and)*
+ * and        := unary (("&amp;&amp;" | "and") unary)*
+ * unary      := ("!" | "not") unary | comparison
+ * comparison := sum [ ("==" | "=" | "!=" | "&lt;" | "&lt;=" | "&gt;" | "&gt;=") sum | ["not"] "in" "(" sum ("," sum)* ")" ]
+ * sum        := product (("+" | "-") product)*
+ * product    := prefix (("*" | "/") prefix)*
+ * prefix     := "-" prefix | number | 'string' | "string" | true | false | field | "(" or ")"
+ * </pre>
+ * Errors are {@link IllegalArgumentException}s that carry the offset of the offending token.
+ */
+final class ExpressionParser {
+    private static final String[] SYMBOLS = {
+            "&&", "||", "==", "!=", "<=", ">=", "<", ">", "=", "!", "(", ")", ",", "+", "-", "*", "/"
+    };
+    private final List<Token> tokens;
+    private int current;
+
+    private ExpressionParser(String source) {
+        this.tokens = tokenize(source);
+    }
+
+    static ExpressionNode parse(String source) {
+        ExpressionParser parser = new ExpressionParser(source);
+        ExpressionNode node = parser.or();
+        Token trailing = parser.peek();
+        if (trailing.kind() != Kind.END) {
+            throw error("unexpected '" + trailing.text() + "'", trailing.position());
+        }
+        return node;
+    }
+
+    private ExpressionNode or() {
+        ExpressionNode left = and();
+        while (peek().is("||") || peek().isKeyword("or")) {
+            int position = next().position();
+            left = new ExpressionNode.Or(left, and(), position);
+        }
+        return left;
+    }
+
+    private ExpressionNode and() {
+        ExpressionNode left = unary();
+        while (peek().is("&&") || peek().isKeyword("and")) {
+            int position = next().position();
+            left = new ExpressionNode.And(left, unary(), position);
+        }
+        return left;
+    }
+
+    private ExpressionNode unary() {
+        if (peek().is("!") || peek().isKeyword("not")) {
+            int position = next().position();
+            return new ExpressionNode.Not(unary(), position);
+        }
+        return comparison();
+    }
+
+    private ExpressionNode comparison() {
+        ExpressionNode left = sum();
+        Token token = peek();
+        if (token.kind() == Kind.SYMBOL) {
+            ComparisonOperator operator = switch (token.text()) {
+                case "==", "=" -> ComparisonOperator.EQ;
+                case "!=" -> ComparisonOperator.NEQ;
+                case "<" -> ComparisonOperator.LT;
+                case "<=" -> ComparisonOperator.LTE;
+                case ">" -> ComparisonOperator.GT;
+                case ">=" -> ComparisonOperator.GTE;
+                default -> null;
+            };
+            if (operator != null) {
+                next();
+                return new ExpressionNode.Comparison(operator, left, sum(), token.position());
+            }
+        }
+        boolean negated = token.isKeyword("not") && tokens.get(current + 1).isKeyword("in");
+        if (negated || token.isKeyword("in")) {
+            if (negated) {
+                next();
+            }
+            next();
+            expect("(");
+            List<ExpressionNode> candidates = new ArrayList<>();
+            do {
+                candidates.add(sum());
+            } while (accept(","));
+            expect(")");
+            return new ExpressionNode.In(left, List.copyOf(candidates), negated, token.position());
+        }
+        return left;
+    }
+
+    private ExpressionNode sum() {
+        ExpressionNode left = product();
+        while (peek().is("+") || peek().is("-")) {
+            Token operator = next();
+            left = new ExpressionNode.Arithmetic(operator.text().charAt(0), left, product(), operator.position());
+        }
+        return left;
+    }
+
+    private ExpressionNode product() {
+        ExpressionNode left = prefix();
+        while (peek().is("*") || peek().is("/")) {
+            Token operator = next();
+            left = new ExpressionNode.Arithmetic(operator.text().charAt(0), left, prefix(), operator.position());
+        }
+        return left;
+    }
+
+    private ExpressionNode prefix() {
+        Token token = next();
+        return switch (token.kind()) {
+            case NUMBER -> new ExpressionNode.NumberLiteral(Double.parseDouble(token.text()), token.position());
+            case STRING -> new ExpressionNode.StringLiteral(token.text(), token.position());
+            case IDENT -> switch (token.text()) {
+                case "true" -> new ExpressionNode.BooleanLiteral(true, token.position());
+                case "false" -> new ExpressionNode.BooleanLiteral(false, token.position());
+                default -> {
+                    ExpressionField field = ExpressionField.byName(token.text());
+                    if (field == null) {
+                        throw error("unknown field '" + token.text() + "'", token.position());
+                    }
+                    yield new ExpressionNode.Field(field, token.position());
+                }
+            };
+            case SYMBOL -> switch (token.text()) {
+                case "-" -> new ExpressionNode.Negate(prefix(), token.position());
+                case "(" -> {
+                    ExpressionNode inner = or();
+                    expect(")");
+                    yield inner;
+                }
+                default -> throw error("unexpected '" + token.text() + "'", token.position());
+            };
+            case END -> throw error("unexpected end of expression", token.position());
+        };
+    }
+
+    private Token peek() {
+        return tokens.get(current);
+    }
+
+    private Token next() {
+        Token token = tokens.get(current);
+        if (token.kind() != Kind.END) {
+            current++;
+        }
+        return token;
+    }
+
+    private boolean accept(String symbol) {
+        if (peek().is(symbol)) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String symbol) {
+        Token token = peek();
+        if (!accept(symbol)) {
+            throw error("expected '" + symbol + "' but found "
+                    + (token.kind() == Kind.END ? "end of expression" : "'" + token.text() + "'"), token.position());
+        }
+    }
+
+    private static List<Token> tokenize(String source) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < source.length()
+                    && Character.isDigit(source.charAt(i + 1)))) {
+                int start = i;
+                while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                    i++;
+                }
+                String number = source.substring(start, i);
+                if (number.indexOf('.') != number.lastIndexOf('.')) {
+                    throw error("malformed number '" + number + "'", start);
+                }
+                tokens.add(new Token(Kind.NUMBER, number, start));
+            } else if (c == '\'' || c == '"') {
+                int start = i;
+                int end = source.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw error("unterminated string", start);
+                }
+                tokens.add(new Token(Kind.STRING, source.substring(i + 1, end), start));
+                i = end + 1;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i))) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.IDENT, source.substring(start, i), start));
+            } else {
+                String symbol = null;
+                for (String candidate : SYMBOLS) {
+                    if (source.startsWith(candidate, i)) {
+                        symbol = candidate;
+                        break;
+                    }
+                }
+                if (symbol == null) {
+                    throw error("unexpected character '" + c + "'", i);
+                }
+                tokens.add(new Token(Kind.SYMBOL, symbol, i));
+                i += symbol.length();
+            }
+        }
+        tokens.add(new Token(Kind.END, "", source.length()));
+        return tokens;
+    }
+
+    static IllegalArgumentException error(String message, int position) {
+        return new IllegalArgumentException(message + " at position " + position);
+    }
+
+    private enum Kind {
+        NUMBER,
+        STRING,
+        IDENT,
+        SYMBOL,
+        END
+    }
+
+    private record Token(Kind kind, String text, int position) {
+        boolean is(String symbol) {
+            return kind == Kind.SYMBOL && text.equals(symbol);
+        }
+
+        boolean isKeyword(String keyword) {
+            return kind == Kind.IDENT && text.equals(keyword);
+        }
+    }
+}
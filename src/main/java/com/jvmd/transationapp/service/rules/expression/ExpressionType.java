@@ -0,0 +1,7 @@
+package com.jvmd.transationapp.service.rules.expression;
+
+public enum ExpressionType {
+    NUMBER,
+    STRING,
+    BOOLEAN
+}
@@ -0,0 +1,338 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.queue.PartitionOwnershipChangedEvent;
+import com.jvmd.transationapp.service.queue.QueuePartitionManager;
+import com.jvmd.transationapp.service.rules.AccountField;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-account sliding windows kept in process memory. Each registered window is a ring of time
+ * buckets holding the transaction count and the small-amount count, so a lookup is a pass over a
+ * fixed number of primitive slots instead of a range query. Resolution is {@code window / buckets};
+ * the oldest bucket of a window may include transactions up to one bucket older than the window.
+ * Rings span twice their window, so a transaction redelivered out of order still lands in its own
+ * bucket; a count reaching back past what the rings hold goes to the repository.
+ * <p>
+ * Only source-account windows are kept here: the queue is partitioned by source account, so this
+ * node sees every transaction of the accounts it owns. Destination-account windows, and accounts
+ * not seen since startup or since their partition moved, go to the repository; a cold account is
+ * seeded from it once and then maintained in memory. At most {@code app.rules.pattern.memory.max-accounts}
+ * accounts are kept; beyond that the least recently used are dropped.
+ * <p>
+ * Startup fails unless that holds: the list backend with more than one partition, or a single
+ * partition on a deployment declared single-node with {@code app.rules.pattern.memory.single-node}.
+ */
+@Component
+@Primary
+@Slf4j
+@ConditionalOnProperty(name = "app.rules.pattern.velocity-store", havingValue = "memory")
+public class InMemoryVelocityStore implements VelocityStore {
+    private static final int RECENT_IDS = 64;
+    private final RepositoryVelocityStore repositoryStore;
+    private final QueuePartitionManager partitionManager;
+    private final Map<String, AccountWindows> accounts = new ConcurrentHashMap<>();
+    private volatile Layout layout = Layout.EMPTY;
+
+    @Value("${app.rules.pattern.memory.buckets:60}")
+    private int buckets;
+
+    @Value("${app.rules.pattern.memory.max-accounts:200000}")
+    private int maxAccounts;
+
+    @Value("${app.rules.pattern.memory.single-node:false}")
+    private boolean singleNode;
+
+    @Value("${app.queue.backend:list}")
+    private String queueBackend;
+
+    public InMemoryVelocityStore(RepositoryVelocityStore repositoryStore, QueuePartitionManager partitionManager) {
+        this.repositoryStore = repositoryStore;
+        this.partitionManager = partitionManager;
+    }
+
+    @PostConstruct
+    public void checkDeployment() {
+        if (!"list".equals(queueBackend)) {
+            throw new IllegalStateException("app.rules.pattern.velocity-store=memory requires app.queue.backend=list; "
+                    + "the " + queueBackend + " backend does not route an account's transactions to one node");
+        }
+        if (!partitionManager.isPartitioned() && !singleNode) {
+            throw new IllegalStateException("app.rules.pattern.velocity-store=memory requires app.queue.partitions > 1, "
+                    + "or app.rules.pattern.memory.single-node=true if only one node consumes the queue");
+        }
+    }
+
+    @Override
+    public void register(Collection<WindowSpec> specs) {
+        repositoryStore.register(specs);
+        List<WindowSpec> sourceSpecs = specs.stream()
+                .filter(spec -> spec.field() == AccountField.FROM)
+                .distinct()
+                .toList();
+        Layout next = Layout.of(sourceSpecs, Math.max(1, buckets));
+        if (!next.specs().equals(layout.specs())) {
+            layout = next;
+            accounts.clear();
+            log.info("In-memory velocity windows: {} (resolution {} buckets)", sourceSpecs, buckets);
+        }
+    }
+
+    @Override
+    public void record(Transactions transaction) {
+        Layout current = layout;
+        String account = transaction.getFrom();
+        if (current.specs().isEmpty() || account == null || transaction.getTimestamp() == null) {
+            return;
+        }
+        AccountWindows windows = accounts.get(account);
+        if (windows == null || windows.layout != current) {
+            windows = seed(current, account, transaction);
+        }
+        synchronized (windows) {
+            windows.observe(transaction);
+        }
+    }
+
+    @Override
+    public EvaluationContext prepareBatch(List<Transactions> batch) {
+        return repositoryStore.prepareBatch(batch);
+    }
+
+    @Override
+    public WindowCounts count(WindowSpec spec, Transactions transaction, EvaluationContext context) {
+        Layout current = layout;
+        Integer index = current.index().get(spec);
+        String account = transaction.getFrom();
+        AccountWindows windows = index != null && account != null ? accounts.get(account) : null;
+        if (windows != null && windows.layout == current) {
+            synchronized (windows) {
+                WindowCounts counts = windows.count(index, epochMillis(transaction.getTimestamp()));
+                if (counts != null) {
+                    return counts;
+                }
+            }
+        }
+        return repositoryStore.count(spec, transaction, context);
+    }
+
+    /**
+     * Builds the account's rings from the repository for the widest registered window. The transaction
+     * being recorded is left out; the caller observes it right after.
+     */
+    private AccountWindows seed(Layout current, String account, Transactions transaction) {
+        LocalDateTime end = transaction.getTimestamp();
+        LocalDateTime start = end.minus(current.maxWindow());
+        List<Transactions> history = repositoryStore.findInRange(AccountField.FROM, account, start, end);
+        AccountWindows windows = new AccountWindows(current, epochMillis(start));
+        for (Transactions seen : history) {
+            if (!seen.getId().equals(transaction.getId())) {
+                windows.observe(seen);
+            }
+        }
+        makeRoom();
+        AccountWindows existing = accounts.putIfAbsent(account, windows);
+        if (existing != null && existing.layout == current) {
+            return existing;
+        }
+        accounts.put(account, windows);
+        return windows;
+    }
+
+    /**
+     * Keeps the account count below the cap: idle accounts go first, then the least recently used
+     * tenth, so the sort is paid once per many new accounts rather than once per account.
+     */
+    private synchronized void makeRoom() {
+        if (accounts.size() < maxAccounts) {
+            return;
+        }
+        evictIdle();
+        int excess = accounts.size() - maxAccounts + 1;
+        if (excess <= 0) {
+            return;
+        }
+        int evict = Math.max(excess, maxAccounts / 10);
+        accounts.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().lastUsedAt))
+                .sorted(Map.Entry.comparingByValue())
+                .limit(evict)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(accounts::remove);
+        log.debug("Evicted {} least recently used account windows (cap {})", evict, maxAccounts);
+    }
+
+    /**
+     * Another consumer may have processed the accounts of a partition while it was not owned here, so
+     * their windows are dropped and re-seeded on next use.
+     */
+    @EventListener
+    public void onPartitionOwnershipChanged(PartitionOwnershipChangedEvent event) {
+        Set<Integer> changed = new HashSet<>(event.acquired());
+        changed.addAll(event.released());
+        int before = accounts.size();
+        accounts.keySet().removeIf(account -> changed.contains(partitionManager.partitionFor(account)));
+        log.debug("Dropped {} account windows after partition change {}", before - accounts.size(), changed);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rules.pattern.memory.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long idleBefore = System.currentTimeMillis() - 2 * layout.maxWindow().toMillis();
+        accounts.values().removeIf(windows -> windows.lastUsedAt < idleBefore);
+    }
+
+    private static long epochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Per window, the bucket width and the ring size: enough buckets to cover the window twice, plus
+     * the partial bucket at each end.
+     */
+    private record Layout(List<WindowSpec> specs, Map<WindowSpec, Integer> index, long[] windowMillis,
+                          long[] bucketMillis, int[] ringSizes, Duration maxWindow) {
+        private static final Layout EMPTY = of(List.of(), 1);
+
+        private static Layout of(List<WindowSpec> specs, int buckets) {
+            Map<WindowSpec, Integer> index = new HashMap<>();
+            long[] windowMillis = new long[specs.size()];
+            long[] bucketMillis = new long[specs.size()];
+            int[] ringSizes = new int[specs.size()];
+            Duration maxWindow = Duration.ZERO;
+            for (int i = 0; i < specs.size(); i++) {
+                WindowSpec spec = specs.get(i);
+                index.put(spec, i);
+                windowMillis[i] = spec.window().toMillis();
+                bucketMillis[i] = Math.max(1, windowMillis[i] / buckets);
+                long windowBuckets = (windowMillis[i] + bucketMillis[i] - 1) / bucketMillis[i];
+                ringSizes[i] = Math.toIntExact(2 * windowBuckets + 1);
+                if (spec.window().compareTo(maxWindow) > 0) {
+                    maxWindow = spec.window();
+                }
+            }
+            return new Layout(List.copyOf(specs), Map.copyOf(index), windowMillis, bucketMillis, ringSizes, maxWindow);
+        }
+    }
+
+    /**
+     * Rings for one account, one per registered window: {@code epochs[s][slot]} is the bucket number a
+     * slot currently holds, {@code counts} and {@code small} its totals, and {@code newest[s]} the latest
+     * bucket seen. Nothing before {@code seededFrom} was loaded, so windows reaching back past it are
+     * not answered here.
+     */
+    private static final class AccountWindows {
+        private final Layout layout;
+        private final long seededFrom;
+        private final long[][] epochs;
+        private final int[][] counts;
+        private final int[][] small;
+        private final long[] newest;
+        private final UUID[] recentIds = new UUID[RECENT_IDS];
+        private int recentPosition;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        private AccountWindows(Layout layout, long seededFrom) {
+            this.layout = layout;
+            this.seededFrom = seededFrom;
+            int specs = layout.specs().size();
+            this.epochs = new long[specs][];
+            this.counts = new int[specs][];
+            this.small = new int[specs][];
+            this.newest = new long[specs];
+            for (int s = 0; s < specs; s++) {
+                int ringSize = layout.ringSizes()[s];
+                epochs[s] = new long[ringSize];
+                counts[s] = new int[ringSize];
+                small[s] = new int[ringSize];
+                Arrays.fill(epochs[s], Long.MIN_VALUE);
+            }
+            Arrays.fill(newest, Long.MIN_VALUE);
+        }
+
+        /**
+         * Adds the transaction once; redeliveries of a recently seen id are ignored.
+         */
+        private void observe(Transactions transaction) {
+            lastUsedAt = System.currentTimeMillis();
+            UUID id = transaction.getId();
+            if (id != null) {
+                for (UUID recent : recentIds) {
+                    if (id.equals(recent)) {
+                        return;
+                    }
+                }
+                recentIds[recentPosition] = id;
+                recentPosition = (recentPosition + 1) % RECENT_IDS;
+            }
+            long timestamp = epochMillis(transaction.getTimestamp());
+            BigDecimal amount = transaction.getAmount();
+            for (int s = 0; s < epochs.length; s++) {
+                long epoch = Math.floorDiv(timestamp, layout.bucketMillis()[s]);
+                int ringSize = layout.ringSizes()[s];
+                if (newest[s] != Long.MIN_VALUE && epoch <= newest[s] - ringSize) {
+                    continue;
+                }
+                newest[s] = Math.max(newest[s], epoch);
+                int slot = (int) Math.floorMod(epoch, (long) ringSize);
+                if (epochs[s][slot] != epoch) {
+                    epochs[s][slot] = epoch;
+                    counts[s][slot] = 0;
+                    small[s][slot] = 0;
+                }
+                counts[s][slot]++;
+                BigDecimal maxAmount = layout.specs().get(s).maxAmount();
+                if (maxAmount != null && amount != null && amount.compareTo(maxAmount) <= 0) {
+                    small[s][slot]++;
+                }
+            }
+        }
+
+        /**
+         * Null when the window reaches back past the seeded range or the buckets the ring still holds.
+         */
+        private WindowCounts count(int s, long endMillis) {
+            lastUsedAt = System.currentTimeMillis();
+            long bucketMillis = layout.bucketMillis()[s];
+            long windowStart = endMillis - layout.windowMillis()[s];
+            long last = Math.floorDiv(endMillis, bucketMillis);
+            long first = Math.floorDiv(windowStart, bucketMillis);
+            int ringSize = layout.ringSizes()[s];
+            if (windowStart < seededFrom || (newest[s] != Long.MIN_VALUE && first <= newest[s] - ringSize)) {
+                return null;
+            }
+            long total = 0;
+            long smallTotal = 0;
+            for (int slot = 0; slot < ringSize; slot++) {
+                long epoch = epochs[s][slot];
+                if (epoch >= first && epoch <= last) {
+                    total += counts[s][slot];
+                    smallTotal += small[s][slot];
+                }
+            }
+            return new WindowCounts(total, smallTotal);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.rules.AccountField;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Velocity state shared by all nodes: one sorted set per account and field, scored by transaction
+ * time, plus one per distinct small-amount threshold holding only the transactions at or below it.
+ * Every processed transaction is recorded with one Lua call per field that adds it and trims the sets
+ * to the retention. Counting is a second, read-only call that returns the total and small-amount
+ * counts of every registered window as range counts; the rules of the same transaction reuse that
+ * answer. An account without state, or seeded for a different set of thresholds, is seeded from the
+ * repository when recorded and then expires with its retention. Whenever Redis cannot answer, counts
+ * come from the repository.
+ */
+@Component
+@Primary
+@Slf4j
+@ConditionalOnProperty(name = "app.rules.pattern.velocity-store", havingValue = "redis")
+public class RedisVelocityStore implements VelocityStore {
+    private static final String KEY_PREFIX = "velocity:";
+    private static final RedisScript<Long> RECORD_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/velocity-record.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> COUNT_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/velocity-count.lua"), List.class);
+    private final StringRedisTemplate redisTemplate;
+    private final RepositoryVelocityStore repositoryStore;
+    private final ThreadLocal<CachedCounts> lastCounts = new ThreadLocal<>();
+    private volatile Map<AccountField, FieldLayout> layouts = Map.of();
+
+    public RedisVelocityStore(StringRedisTemplate redisTemplate, RepositoryVelocityStore repositoryStore) {
+        this.redisTemplate = redisTemplate;
+        this.repositoryStore = repositoryStore;
+    }
+
+    @Override
+    public void register(Collection<WindowSpec> specs) {
+        repositoryStore.register(specs);
+        Map<AccountField, List<WindowSpec>> byField = new EnumMap<>(AccountField.class);
+        for (WindowSpec spec : specs) {
+            List<WindowSpec> fieldSpecs = byField.computeIfAbsent(spec.field(), field -> new ArrayList<>());
+            if (!fieldSpecs.contains(spec)) {
+                fieldSpecs.add(spec);
+            }
+        }
+        Map<AccountField, FieldLayout> next = new EnumMap<>(AccountField.class);
+        byField.forEach((field, fieldSpecs) -> next.put(field, FieldLayout.of(fieldSpecs)));
+        layouts = next;
+    }
+
+    /**
+     * Counts come from Redis in one call per transaction, so there is nothing to share across a batch.
+     */
+    @Override
+    public EvaluationContext prepareBatch(List<Transactions> batch) {
+        return EvaluationContext.NONE;
+    }
+
+    @Override
+    public void record(Transactions transaction) {
+        if (transaction.getId() == null || transaction.getAmount() == null || transaction.getTimestamp() == null) {
+            return;
+        }
+        layouts.forEach((field, layout) -> {
+            String account = field.valueOf(transaction);
+            if (account == null) {
+                return;
+            }
+            try {
+                if (!record(layout, account, transaction)) {
+                    seed(field, layout, account, transaction);
+                    if (!record(layout, account, transaction)) {
+                        log.warn("Velocity state for {} {} unavailable after seeding", field, account);
+                    }
+                }
+            } catch (DataAccessException e) {
+                log.warn("Failed to record transaction {} in velocity state for {} {}: {}",
+                        transaction.getId(), field, account, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public WindowCounts count(WindowSpec spec, Transactions transaction, EvaluationContext context) {
+        FieldLayout layout = layouts.get(spec.field());
+        Integer index = layout != null ? layout.index().get(spec) : null;
+        if (index == null || transaction.getId() == null || transaction.getTimestamp() == null
+                || spec.field().valueOf(transaction) == null) {
+            return repositoryStore.count(spec, transaction, context);
+        }
+        long[] counts;
+        try {
+            counts = counts(spec.field(), layout, transaction);
+        } catch (DataAccessException e) {
+            log.warn("Velocity counts for transaction {} unavailable, using repository: {}",
+                    transaction.getId(), e.getMessage());
+            counts = null;
+        }
+        if (counts == null) {
+            return repositoryStore.count(spec, transaction, context);
+        }
+        return new WindowCounts(counts[2 * index], counts[2 * index + 1]);
+    }
+
+    private long[] counts(AccountField field, FieldLayout layout, Transactions transaction) {
+        CachedCounts cached = lastCounts.get();
+        if (cached != null && cached.matches(transaction.getId(), field, layout)) {
+            return cached.counts();
+        }
+        String account = field.valueOf(transaction);
+        @SuppressWarnings("unchecked")
+        List<Object> reply = redisTemplate.execute(COUNT_SCRIPT, keys(layout, account),
+                layout.countArguments(epochMillis(transaction.getTimestamp())));
+        if (reply == null || reply.isEmpty() || ((Number) reply.get(0)).longValue() < 0) {
+            log.debug("No velocity state for {} {}, using repository", field, account);
+            return null;
+        }
+        long[] counts = new long[reply.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = ((Number) reply.get(i)).longValue();
+        }
+        lastCounts.set(new CachedCounts(transaction.getId(), field, layout, counts));
+        return counts;
+    }
+
+    /**
+     * False when the account has not been seeded for the layout.
+     */
+    private boolean record(FieldLayout layout, String account, Transactions transaction) {
+        Long reply = redisTemplate.execute(RECORD_SCRIPT, keys(layout, account), layout.recordArguments(
+                member(transaction), epochMillis(transaction.getTimestamp()), transaction.getAmount()));
+        return reply != null && reply > 0;
+    }
+
+    /**
+     * Loads the account's history for the widest window of the field. Members are the same strings the
+     * script writes, so a concurrent seed from another node only rewrites identical entries.
+     */
+    private void seed(AccountField field, FieldLayout layout, String account, Transactions transaction) {
+        LocalDateTime end = transaction.getTimestamp();
+        List<Transactions> history = repositoryStore.findInRange(field, account,
+                end.minus(layout.maxWindow()), end);
+        List<String> keys = keys(layout, account);
+        List<BigDecimal> thresholds = layout.thresholds();
+        long retention = layout.retentionMillis();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (Transactions seen : history) {
+                double score = epochMillis(seen.getTimestamp());
+                String member = member(seen);
+                stringConnection.zAdd(keys.get(0), score, member);
+                for (int j = 0; j < thresholds.size(); j++) {
+                    if (seen.getAmount().compareTo(thresholds.get(j)) <= 0) {
+                        stringConnection.zAdd(keys.get(2 + j), score, member);
+                    }
+                }
+            }
+            for (int k = 0; k < keys.size(); k++) {
+                if (k != 1) {
+                    stringConnection.pExpire(keys.get(k), retention);
+                }
+            }
+            stringConnection.pSetEx(keys.get(1), retention, layout.signature());
+            return null;
+        });
+        log.debug("Seeded velocity state for {} {} with {} transactions", field, account, history.size());
+    }
+
+    /**
+     * The account is the hash tag, so both keys of an account land in the same cluster slot.
+     */
+    private static String key(FieldLayout layout, String account) {
+        return KEY_PREFIX + layout.field().name().toLowerCase() + ":{" + account + "}";
+    }
+
+    /**
+     * The all-transactions set, the seeded marker, then one set per threshold of the layout.
+     */
+    private static List<String> keys(FieldLayout layout, String account) {
+        String key = key(layout, account);
+        List<String> keys = new ArrayList<>(2 + layout.thresholds().size());
+        keys.add(key);
+        keys.add(key + ":seeded");
+        for (BigDecimal threshold : layout.thresholds()) {
+            keys.add(key + ":le:" + threshold.toPlainString());
+        }
+        return keys;
+    }
+
+    private static String member(Transactions transaction) {
+        return transaction.getAmount().stripTrailingZeros().toPlainString() + ":" + transaction.getId();
+    }
+
+    private static long epochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Windows of one account field, in the order the count script returns their counts, and the distinct
+     * small-amount thresholds they use. The seeded marker holds the thresholds, so an account seeded
+     * before a rule change is reseeded instead of counting from an empty threshold set. Retention keeps
+     * twice the widest window so transactions arriving somewhat out of order still find their window.
+     */
+    private record FieldLayout(AccountField field, List<WindowSpec> specs, Map<WindowSpec, Integer> index,
+                               Duration maxWindow, List<BigDecimal> thresholds, String signature,
+                               String[] windowArguments) {
+
+        private static FieldLayout of(List<WindowSpec> specs) {
+            Map<WindowSpec, Integer> index = new HashMap<>();
+            Map<String, Integer> thresholdIndex = new HashMap<>();
+            List<BigDecimal> thresholds = new ArrayList<>();
+            Duration maxWindow = Duration.ZERO;
+            String[] windowArguments = new String[specs.size() * 2];
+            for (int i = 0; i < specs.size(); i++) {
+                WindowSpec spec = specs.get(i);
+                index.put(spec, i);
+                if (spec.window().compareTo(maxWindow) > 0) {
+                    maxWindow = spec.window();
+                }
+                windowArguments[2 * i] = String.valueOf(spec.window().toMillis());
+                int threshold = 0;
+                if (spec.maxAmount() != null) {
+                    BigDecimal maxAmount = spec.maxAmount().stripTrailingZeros();
+                    threshold = thresholdIndex.computeIfAbsent(maxAmount.toPlainString(), plain -> {
+                        thresholds.add(maxAmount);
+                        return thresholds.size();
+                    });
+                }
+                windowArguments[2 * i + 1] = String.valueOf(threshold);
+            }
+            String signature = String.join(",", thresholds.stream().map(BigDecimal::toPlainString).toList());
+            return new FieldLayout(specs.get(0).field(), List.copyOf(specs), Map.copyOf(index), maxWindow,
+                    List.copyOf(thresholds), signature, windowArguments);
+        }
+
+        private long retentionMillis() {
+            return Math.max(1, maxWindow.toMillis() * 2);
+        }
+
+        private Object[] recordArguments(String member, long timestamp, BigDecimal amount) {
+            Object[] arguments = new Object[4 + thresholds.size()];
+            arguments[0] = member;
+            arguments[1] = String.valueOf(timestamp);
+            arguments[2] = String.valueOf(retentionMillis());
+            arguments[3] = signature;
+            for (int j = 0; j < thresholds.size(); j++) {
+                arguments[4 + j] = amount.compareTo(thresholds.get(j)) <= 0 ? "1" : "0";
+            }
+            return arguments;
+        }
+
+        private Object[] countArguments(long timestamp) {
+            Object[] arguments = new Object[3 + windowArguments.length];
+            arguments[0] = String.valueOf(timestamp);
+            arguments[1] = signature;
+            arguments[2] = String.valueOf(specs.size());
+            System.arraycopy(windowArguments, 0, arguments, 3, windowArguments.length);
+            return arguments;
+        }
+    }
+
+    private record CachedCounts(UUID transactionId, AccountField field, FieldLayout layout, long[] counts) {
+        private boolean matches(UUID id, AccountField otherField, FieldLayout otherLayout) {
+            return transactionId.equals(id) && field == otherField && layout == otherLayout;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.repository.TransactionRepository;
+import com.jvmd.transationapp.repository.TransactionRepository.WindowEntry;
+import com.jvmd.transationapp.service.rules.AccountField;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts straight from the transactions table. Always available: it is the default store and the
+ * fallback the other stores use for cold accounts. Single lookups are aggregate queries over the
+ * account/timestamp indexes and batch prefetches read only timestamps and amounts, so counting loads
+ * no entities.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RepositoryVelocityStore implements VelocityStore {
+    private final TransactionRepository transactionRepository;
+    private volatile Map<AccountField, Duration> maxWindows = Map.of();
+
+    @Override
+    public void register(Collection<WindowSpec> specs) {
+        Map<AccountField, Duration> windows = new EnumMap<>(AccountField.class);
+        for (WindowSpec spec : specs) {
+            windows.merge(spec.field(), spec.window(), (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        }
+        maxWindows = windows;
+    }
+
+    /**
+     * Nothing to keep: the transactions table already has the transaction.
+     */
+    @Override
+    public void record(Transactions transaction) {
+    }
+
+    /**
+     * Loads the history of every account that occurs more than once in the batch with a single query
+     * per account, spanning the widest registered window. Only timestamps and amounts are read, which
+     * the account/timestamp indexes cover. Accounts seen once are left to the per-transaction query.
+     */
+    @Override
+    public EvaluationContext prepareBatch(List<Transactions> batch) {
+        Map<AccountField, Duration> windows = maxWindows;
+        if (windows.isEmpty() || batch.size() < 2) {
+            return EvaluationContext.NONE;
+        }
+        Map<AccountField, Map<String, List<WindowEntry>>> history = new EnumMap<>(AccountField.class);
+        windows.forEach((field, window) -> {
+            Map<String, List<Transactions>> byAccount = new HashMap<>();
+            for (Transactions transaction : batch) {
+                byAccount.computeIfAbsent(field.valueOf(transaction), account -> new ArrayList<>()).add(transaction);
+            }
+            Map<String, List<WindowEntry>> loaded = new HashMap<>();
+            byAccount.forEach((account, transactions) -> {
+                if (account == null || transactions.size() < 2) {
+                    return;
+                }
+                LocalDateTime start = transactions.stream().map(Transactions::getTimestamp)
+                        .min(Comparator.naturalOrder()).orElseThrow().minus(window);
+                LocalDateTime end = transactions.stream().map(Transactions::getTimestamp)
+                        .max(Comparator.naturalOrder()).orElseThrow();
+                loaded.put(account, field == AccountField.FROM
+                        ? transactionRepository.findWindowEntriesByFromAndTimestampBetween(account, start, end)
+                        : transactionRepository.findWindowEntriesByToAndTimestampBetween(account, start, end));
+            });
+            history.put(field, loaded);
+        });
+        log.debug("Prefetched pattern history for {} accounts", history.values().stream().mapToInt(Map::size).sum());
+        return (field, account) -> {
+            Map<String, List<WindowEntry>> loaded = history.get(field);
+            return loaded != null ? loaded.get(account) : null;
+        };
+    }
+
+    @Override
+    public WindowCounts count(WindowSpec spec, Transactions transaction, EvaluationContext context) {
+        LocalDateTime windowEnd = transaction.getTimestamp();
+        LocalDateTime windowStart = windowEnd.minus(spec.window());
+        String account = spec.field().valueOf(transaction);
+        List<WindowEntry> prefetched = context.prefetchedHistory(spec.field(), account);
+        if (prefetched == null) {
+            TransactionRepository.WindowCountView counts = spec.field() == AccountField.FROM
+                    ? transactionRepository.countFromWindow(account, windowStart, windowEnd, spec.maxAmount())
+                    : transactionRepository.countToWindow(account, windowStart, windowEnd, spec.maxAmount());
+            return new WindowCounts(counts.getTotal(), counts.getSmall());
+        }
+        long total = 0;
+        long small = 0;
+        for (WindowEntry entry : prefetched) {
+            if (entry.timestamp().isBefore(windowStart) || entry.timestamp().isAfter(windowEnd)) {
+                continue;
+            }
+            total++;
+            if (spec.maxAmount() != null && entry.amount().compareTo(spec.maxAmount()) <= 0) {
+                small++;
+            }
+        }
+        return new WindowCounts(total, small);
+    }
+
+    public List<Transactions> findInRange(AccountField field, String account, LocalDateTime start, LocalDateTime end) {
+        return field == AccountField.FROM
+                ? transactionRepository.findByFromAndTimestampBetween(account, start, end)
+                : transactionRepository.findByToAndTimestampBetween(account, start, end);
+    }
+}
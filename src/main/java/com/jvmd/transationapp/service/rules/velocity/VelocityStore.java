@@ -0,0 +1,36 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Answers the window counts of pattern rules. Selected with {@code app.rules.pattern.velocity-store}.
+ */
+public interface VelocityStore {
+
+    /**
+     * Called with the windows of the active rules whenever they are (re)loaded.
+     */
+    void register(Collection<WindowSpec> specs);
+
+    /**
+     * Adds a processed transaction to the store's windows. Called once for every transaction before its
+     * rules are evaluated, whatever they do, so windows see transactions that no pattern rule counted.
+     * A store that could not record a transaction counts that account from the repository.
+     */
+    void record(Transactions transaction);
+
+    /**
+     * Shared lookups for evaluating the given transactions as one batch.
+     */
+    EvaluationContext prepareBatch(List<Transactions> batch);
+
+    /**
+     * Counts for the window ending at the transaction's timestamp. The transaction itself is included,
+     * as it has been recorded before evaluation. Read-only.
+     */
+    WindowCounts count(WindowSpec spec, Transactions transaction, EvaluationContext context);
+}
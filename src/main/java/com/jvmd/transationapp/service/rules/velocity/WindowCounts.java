@@ -0,0 +1,4 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+public record WindowCounts(long total, long small) {
+}
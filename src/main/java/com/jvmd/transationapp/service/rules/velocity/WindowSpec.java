@@ -0,0 +1,14 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+import com.jvmd.transationapp.service.rules.AccountField;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * One sliding window a pattern rule asks about: transactions of the account in
+ * {@code [timestamp - window, timestamp]}, and how many of them are at most {@code maxAmount}
+ * ({@code null} when the rule only counts).
+ */
+public record WindowSpec(AccountField field, Duration window, BigDecimal maxAmount) {
+}
@@ -0,0 +1,18 @@
+-- Acquires or renews partition ownership locks for one consumer.
+-- KEYS[1..n] = partition owner keys
+-- ARGV[1] = consumer id, ARGV[2] = lock ttl (millis)
+-- Returns 1/0 per key: whether the consumer holds the lock after the call.
+local held = {}
+for i, key in ipairs(KEYS) do
+    local owner = redis.call('GET', key)
+    if owner == ARGV[1] then
+        redis.call('PEXPIRE', key, ARGV[2])
+        held[i] = 1
+    elseif not owner then
+        redis.call('SET', key, ARGV[1], 'PX', ARGV[2])
+        held[i] = 1
+    else
+        held[i] = 0
+    end
+end
+return held
@@ -0,0 +1,11 @@
+-- Releases the partition owner keys that are still held by the consumer.
+-- KEYS[1..n] = partition owner keys
+-- ARGV[1] = consumer id
+local released = 0
+for _, key in ipairs(KEYS) do
+    if redis.call('GET', key) == ARGV[1] then
+        redis.call('DEL', key)
+        released = released + 1
+    end
+end
+return released
@@ -0,0 +1,31 @@
+-- Atomically moves up to ARGV[1] messages from the queues, in key order, into a consumer's in-flight
+-- list, refreshes the consumer lease and records the message ids in the processing set.
+-- KEYS[1] = in-flight list, KEYS[2] = processing set, KEYS[3] = lease zset,
+-- KEYS[4..n] = queue lists (one per owned partition)
+-- ARGV[1] = max messages, ARGV[2] = processing set ttl (seconds), ARGV[3] = consumer id,
+-- ARGV[4] = lease deadline (epoch millis), ARGV[5] = already moved id (optional)
+redis.call('ZADD', KEYS[3], ARGV[4], ARGV[3])
+local items = {}
+local max = tonumber(ARGV[1])
+for i = 4, #KEYS do
+    while #items < max do
+        local item = redis.call('LMOVE', KEYS[i], KEYS[1], 'LEFT', 'RIGHT')
+        if not item then
+            break
+        end
+        items[#items + 1] = item
+    end
+end
+if ARGV[5] and ARGV[5] ~= '' then
+    redis.call('SADD', KEYS[2], ARGV[5])
+end
+for _, item in ipairs(items) do
+    local ok, message = pcall(cjson.decode, item)
+    if ok and type(message) == 'table' and message['transactionId'] then
+        redis.call('SADD', KEYS[2], message['transactionId'])
+    end
+end
+if #items > 0 or (ARGV[5] and ARGV[5] ~= '') then
+    redis.call('EXPIRE', KEYS[2], ARGV[2])
+end
+return items
@@ -0,0 +1,30 @@
+-- Pops up to ARGV[1] messages from the queues, in key order, and records their ids in the processing set.
+-- KEYS[1] = processing set, KEYS[2..n] = queue lists (one per owned partition)
+-- ARGV[1] = max messages, ARGV[2] = processing set ttl (seconds), ARGV[3] = already popped id (optional)
+local items = {}
+local remaining = tonumber(ARGV[1])
+for i = 2, #KEYS do
+    if remaining <= 0 then
+        break
+    end
+    local popped = redis.call('LPOP', KEYS[i], remaining)
+    if popped then
+        for _, item in ipairs(popped) do
+            items[#items + 1] = item
+        end
+        remaining = remaining - #popped
+    end
+end
+if ARGV[3] and ARGV[3] ~= '' then
+    redis.call('SADD', KEYS[1], ARGV[3])
+end
+for _, item in ipairs(items) do
+    local ok, message = pcall(cjson.decode, item)
+    if ok and type(message) == 'table' and message['transactionId'] then
+        redis.call('SADD', KEYS[1], message['transactionId'])
+    end
+end
+if #items > 0 or (ARGV[3] and ARGV[3] ~= '') then
+    redis.call('EXPIRE', KEYS[1], ARGV[2])
+end
+return items
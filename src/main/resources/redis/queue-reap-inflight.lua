@@ -0,0 +1,29 @@
+-- Returns the in-flight messages of a consumer whose lease expired to the head of their queue.
+-- KEYS[1] = lease zset, KEYS[2] = the consumer's in-flight list, KEYS[3] = default queue list,
+-- KEYS[4..n] = partition queue lists, partition i at KEYS[4 + i] (none when the queue is not partitioned)
+-- ARGV[1] = consumer id, ARGV[2] = now (epoch millis)
+-- The lease is checked again here, so a consumer that renewed it since it was listed keeps its messages.
+-- Messages go back to the head, ahead of what is still queued, but a new partition owner may already
+-- have processed later messages of the same accounts while the lease was running out.
+local lease = redis.call('ZSCORE', KEYS[1], ARGV[1])
+if not lease or tonumber(lease) > tonumber(ARGV[2]) then
+    return 0
+end
+local partitions = #KEYS - 3
+local moved = 0
+local item = redis.call('RPOP', KEYS[2])
+while item do
+    local target = KEYS[3]
+    if partitions > 0 then
+        local ok, message = pcall(cjson.decode, item)
+        if ok and type(message) == 'table' and type(message['partition']) == 'number'
+                and message['partition'] >= 0 and message['partition'] < partitions then
+            target = KEYS[4 + message['partition']]
+        end
+    end
+    redis.call('LPUSH', target, item)
+    moved = moved + 1
+    item = redis.call('RPOP', KEYS[2])
+end
+redis.call('ZREM', KEYS[1], ARGV[1])
+return moved
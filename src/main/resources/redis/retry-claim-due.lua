@@ -0,0 +1,8 @@
+-- Removes and returns up to ARGV[2] retry entries whose due time (score) is <= ARGV[1].
+-- KEYS[1] = retry zset
+-- ARGV[1] = now (epoch millis), ARGV[2] = max entries
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+if #due > 0 then
+    redis.call('ZREM', KEYS[1], unpack(due))
+end
+return due
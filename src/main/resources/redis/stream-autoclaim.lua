@@ -0,0 +1,12 @@
+-- Claims stream entries that have been pending longer than the visibility timeout and reports how
+-- many times each has been delivered, including this claim.
+-- KEYS[1] = stream
+-- ARGV[1] = group, ARGV[2] = consumer, ARGV[3] = min idle time (millis), ARGV[4] = cursor, ARGV[5] = count
+-- Returns {next cursor, claimed entries, delivery counts (same order as the entries)}.
+local reply = redis.call('XAUTOCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[3], ARGV[4], 'COUNT', ARGV[5])
+local counts = {}
+for i, entry in ipairs(reply[2]) do
+    local pending = redis.call('XPENDING', KEYS[1], ARGV[1], entry[1], entry[1], 1)
+    counts[i] = pending[1] and pending[1][4] or 0
+end
+return { reply[1], reply[2], counts }
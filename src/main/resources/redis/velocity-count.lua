@@ -0,0 +1,25 @@
+-- Returns the counts of every window ending at a timestamp from an account's velocity sets, as
+-- ZCOUNTs over the set of all transactions and the set of the window's small-amount threshold.
+-- Read-only; transactions are added by velocity-record.lua.
+-- KEYS[1] = velocity zset, KEYS[2] = seeded marker, KEYS[2 + j] = zset of threshold j (j = 1..m)
+-- ARGV[1] = timestamp (epoch millis), ARGV[2] = layout signature the seeded marker must hold,
+-- ARGV[3] = window count n, then n pairs of (window millis, threshold index j or 0)
+-- Returns {-1} when the account has not been seeded for this layout, otherwise
+-- {total_1, small_1, ..., total_n, small_n}.
+if redis.call('GET', KEYS[2]) ~= ARGV[2] then
+    return {-1}
+end
+local timestamp = tonumber(ARGV[1])
+local windows = tonumber(ARGV[3])
+local counts = {}
+for i = 0, windows - 1 do
+    local from = timestamp - tonumber(ARGV[4 + 2 * i])
+    local threshold = tonumber(ARGV[5 + 2 * i])
+    counts[#counts + 1] = redis.call('ZCOUNT', KEYS[1], from, timestamp)
+    if threshold > 0 then
+        counts[#counts + 1] = redis.call('ZCOUNT', KEYS[2 + threshold], from, timestamp)
+    else
+        counts[#counts + 1] = 0
+    end
+end
+return counts
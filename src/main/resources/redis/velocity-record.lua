@@ -0,0 +1,25 @@
+-- Records one transaction in an account's velocity sets and trims them to the retention.
+-- Members are '<amount>:<transaction id>', scored by the transaction timestamp, so re-recording the
+-- same transaction is a no-op. Besides the set of all transactions there is one set per distinct
+-- small-amount threshold holding only the transactions at or below it.
+-- KEYS[1] = velocity zset, KEYS[2] = seeded marker, KEYS[2 + j] = zset of threshold j (j = 1..m)
+-- ARGV[1] = member, ARGV[2] = timestamp (epoch millis), ARGV[3] = retention (millis),
+-- ARGV[4] = layout signature the seeded marker must hold, then m flags ('1' when the member is
+-- at or below threshold j)
+-- Returns -1 when the account has not been seeded for this layout, otherwise 1.
+if redis.call('GET', KEYS[2]) ~= ARGV[4] then
+    return -1
+end
+local timestamp = tonumber(ARGV[2])
+local retention = tonumber(ARGV[3])
+local trimBefore = '(' .. (timestamp - retention)
+for k = 1, #KEYS do
+    if k == 1 or (k > 2 and ARGV[k + 2] == '1') then
+        redis.call('ZADD', KEYS[k], timestamp, ARGV[1])
+    end
+    if k ~= 2 then
+        redis.call('ZREMRANGEBYSCORE', KEYS[k], '-inf', trimBefore)
+    end
+    redis.call('PEXPIRE', KEYS[k], retention)
+end
+return 1
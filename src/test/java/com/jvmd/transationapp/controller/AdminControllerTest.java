@@ -0,0 +1,86 @@
+package com.jvmd.transationapp.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.repository.NotificationConfigRepository;
+import com.jvmd.transationapp.repository.RuleChangeHistoryRepository;
+import com.jvmd.transationapp.repository.RuleRepository;
+import com.jvmd.transationapp.repository.TransactionRepository;
+import com.jvmd.transationapp.service.LLMService;
+import com.jvmd.transationapp.service.MetricsService;
+import com.jvmd.transationapp.service.rules.RuleEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ui.ExtendedModelMap;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdminControllerTest {
+    private RuleRepository ruleRepository;
+    private RuleEngine ruleEngine;
+    private AdminController controller;
+
+    @BeforeEach
+    void setUp() {
+        ruleRepository = mock(RuleRepository.class);
+        ruleEngine = mock(RuleEngine.class);
+        when(ruleRepository.save(any(Rule.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        controller = new AdminController(mock(TransactionRepository.class), ruleRepository,
+                mock(RuleChangeHistoryRepository.class), mock(NotificationConfigRepository.class), ruleEngine,
+                mock(MetricsService.class), mock(LLMService.class),
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+    }
+
+    @Test
+    void editingAShadowRuleKeepsItInShadow() {
+        Rule stored = rule(5L, "{\"field\": \"amount\", \"operator\": \">\", \"value\": 100}");
+        stored.setShadow(true);
+        stored.setCreatedBy("analyst");
+        when(ruleRepository.findById(5L)).thenReturn(Optional.of(stored));
+        Rule form = rule(5L, "{\"field\": \"amount\", \"operator\": \">\", \"value\": 500}");
+        form.setShadow(null);
+
+        String view = controller.saveRule(form, new ExtendedModelMap());
+
+        ArgumentCaptor<Rule> saved = ArgumentCaptor.forClass(Rule.class);
+        verify(ruleRepository).save(saved.capture());
+        assertThat(view).isEqualTo("redirect:/admin/rules");
+        assertThat(saved.getValue().getShadow()).isTrue();
+        assertThat(saved.getValue().getCreatedBy()).isEqualTo("analyst");
+        assertThat(saved.getValue().getConfiguration()).contains("500");
+        verify(ruleEngine).reloadRules();
+    }
+
+    @Test
+    void invalidRuleIsNotSaved() {
+        Rule form = rule(null, "{\"field\": \"balance\"}");
+        when(ruleEngine.compileRule(any(Rule.class))).thenThrow(new IllegalArgumentException("unknown field"));
+        ExtendedModelMap model = new ExtendedModelMap();
+
+        String view = controller.saveRule(form, model);
+
+        assertThat(view).isEqualTo("rule-form");
+        assertThat(model.getAttribute("error")).isEqualTo("unknown field");
+        verify(ruleRepository, never()).save(any(Rule.class));
+        verify(ruleEngine, never()).reloadRules();
+    }
+
+    private static Rule rule(Long id, String configuration) {
+        Rule rule = new Rule();
+        rule.setId(id);
+        rule.setName("large amount");
+        rule.setType(RuleType.THRESHOLD);
+        rule.setConfiguration(configuration);
+        return rule;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jvmd.transationapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.QueueService.TransactionSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionSnapshotTest {
+
+    /**
+     * Everything except the row's own bookkeeping must survive the queue payload, otherwise rules
+     * see a different transaction with {@code app.queue.payload-snapshot} than without it.
+     */
+    @Test
+    void detachedTransactionCarriesEveryFieldTheRulesRead() throws Exception {
+        Transactions original = new Transactions();
+        original.setId(UUID.randomUUID());
+        original.setCorrelationId("corr-1");
+        original.setAmount(new BigDecimal("1234.56"));
+        original.setFrom("ACC-1");
+        original.setTo("ACC-2");
+        original.setType("TRANSFER");
+        original.setTimestamp(LocalDateTime.of(2026, 3, 14, 15, 9, 26, 535_000_000));
+        original.setIpAddress("10.0.0.1");
+        original.setDeviceId("device-1");
+        original.setLocation("Berlin");
+        original.setMerchantCategory("electronics");
+        original.setDeviceUsed("mobile");
+        original.setPaymentChannel("card");
+        original.setTimeSinceLastTransaction(12.5);
+        original.setSpendingDeviationScore(0.4);
+        original.setVelocityScore(3.0);
+        original.setGeoAnomalyScore(0.9);
+        original.setDeviceHash("a1b2c3");
+        original.setFraudType("card_not_present");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        String payload = objectMapper.writeValueAsString(TransactionSnapshot.of(original));
+        Transactions detached = objectMapper.readValue(payload, TransactionSnapshot.class)
+                .toTransaction(original.getId(), original.getCorrelationId());
+
+        assertThat(detached).usingRecursiveComparison()
+                .ignoringFields("status", "mlScore", "mlChallengerScore", "alertReasons", "processingHistory",
+                        "createdAt", "updatedAt")
+                .isEqualTo(original);
+    }
+}
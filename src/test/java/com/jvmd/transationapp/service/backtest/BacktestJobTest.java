@@ -0,0 +1,145 @@
+package com.jvmd.transationapp.service.backtest;
+
+import com.jvmd.transationapp.dto.BacktestResponse;
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.service.ml.OfflineScorer;
+import com.jvmd.transationapp.service.rules.CompiledRule;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class BacktestJobTest {
+    private static final LocalDate DAY_1 = LocalDate.of(2026, 3, 1);
+    private static final LocalDate DAY_2 = LocalDate.of(2026, 3, 2);
+
+    @Test
+    void precisionAndRecallCountAlertsAgainstLabels() {
+        BacktestJob job = job(RuleType.THRESHOLD);
+        // 3 true positives, 1 false positive, 2 false negatives, 4 true negatives
+        record(job, DAY_1, true, true, 3);
+        record(job, DAY_1, true, false, 1);
+        record(job, DAY_2, false, true, 2);
+        record(job, DAY_2, false, false, 4);
+        job.finish();
+
+        BacktestResponse result = job.snapshot();
+
+        assertThat(result.getStatus()).isEqualTo("COMPLETED");
+        assertThat(result.getProcessedTransactions()).isEqualTo(10);
+        assertThat(result.getAlerts()).isEqualTo(4);
+        assertThat(result.getLabeledFraud()).isEqualTo(5);
+        assertThat(result.getTruePositives()).isEqualTo(3);
+        assertThat(result.getFalsePositives()).isEqualTo(1);
+        assertThat(result.getFalseNegatives()).isEqualTo(2);
+        assertThat(result.getPrecision()).isCloseTo(0.75, within(1e-9));
+        assertThat(result.getRecall()).isCloseTo(0.6, within(1e-9));
+        assertThat(result.getProgress()).isEqualTo(1.0);
+        assertThat(result.getDays()).extracting(BacktestResponse.DayEntry::getDay).containsExactly(DAY_1, DAY_2);
+        assertThat(result.getDays().get(0).getAlerts()).isEqualTo(4);
+        assertThat(result.getDays().get(1).getLabeledFraud()).isEqualTo(2);
+    }
+
+    @Test
+    void ratiosWithoutAlertsOrLabelsAreZero() {
+        BacktestJob job = job(RuleType.THRESHOLD);
+        record(job, DAY_1, false, false, 3);
+
+        BacktestResponse result = job.snapshot();
+
+        assertThat(result.getPrecision()).isZero();
+        assertThat(result.getRecall()).isZero();
+        assertThat(result.getRules().get(0).getPrecision()).isZero();
+    }
+
+    @Test
+    void rulePrecisionCountsOnlyItsOwnHits() {
+        BacktestJob job = job(RuleType.THRESHOLD);
+        job.recordRule(0, 2_000, true, true);
+        job.recordRule(0, 2_000, true, false);
+        job.recordRule(0, 2_000, true, false);
+        job.recordRule(0, 2_000, false, true);
+        job.recordRuleError(0);
+
+        BacktestResponse.RuleEntry rule = job.snapshot().getRules().get(0);
+
+        assertThat(rule.getEvaluations()).isEqualTo(4);
+        assertThat(rule.getHits()).isEqualTo(3);
+        assertThat(rule.getTruePositives()).isEqualTo(1);
+        assertThat(rule.getPrecision()).isCloseTo(1.0 / 3, within(1e-9));
+        assertThat(rule.getErrors()).isEqualTo(1);
+        assertThat(rule.getAverageLatencyMicros()).isCloseTo(2.0, within(1e-9));
+    }
+
+    @Test
+    void progressFollowsTheEstimateUntilCompleted() {
+        BacktestJob job = job(RuleType.THRESHOLD);
+        job.setEstimatedTransactions(8);
+        record(job, DAY_1, false, false, 2);
+
+        assertThat(job.snapshot().getProgress()).isCloseTo(0.25, within(1e-9));
+    }
+
+    @Test
+    void cancelledJobStopsAndEndsCancelled() {
+        BacktestJob job = job(RuleType.THRESHOLD);
+
+        job.cancel();
+
+        assertThat(job.shouldStop()).isTrue();
+        assertThat(job.isRunning()).isTrue();
+        job.finish();
+        assertThat(job.snapshot().getStatus()).isEqualTo("CANCELLED");
+    }
+
+    @Test
+    void failureWinsOverALaterFinish() {
+        BacktestJob job = job(RuleType.THRESHOLD);
+
+        job.fail(new IllegalStateException("boom"));
+        job.finish();
+
+        assertThat(job.snapshot().getStatus()).isEqualTo("FAILED");
+        assertThat(job.snapshot().getError()).isEqualTo("boom");
+    }
+
+    @Test
+    void offlineScorerIsOpenedOnceAndClosedOnFinish() throws Exception {
+        BacktestJob job = job(RuleType.ML_RULE);
+        OfflineScorer scorer = mock(OfflineScorer.class);
+
+        assertThat(job.scoresTransactions()).isTrue();
+        assertThat(job.offlineScorer(() -> scorer)).isSameAs(scorer);
+        assertThat(job.offlineScorer(() -> {
+            throw new AssertionError("opened twice");
+        })).isSameAs(scorer);
+        job.finish();
+
+        verify(scorer).close();
+        assertThatThrownBy(() -> job.offlineScorer(() -> scorer)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void record(BacktestJob job, LocalDate day, boolean alerted, boolean fraud, int times) {
+        for (int i = 0; i < times; i++) {
+            job.recordTransaction(day, alerted, fraud);
+        }
+    }
+
+    private static BacktestJob job(RuleType type) {
+        Rule rule = new Rule();
+        rule.setId(1L);
+        rule.setName("candidate");
+        rule.setType(type);
+        CompiledRule compiled = CompiledRule.of(rule, transaction -> false);
+        return new BacktestJob("job", LocalDateTime.of(2026, 3, 1, 0, 0), LocalDateTime.of(2026, 3, 3, 0, 0),
+                List.of(compiled));
+    }
+}
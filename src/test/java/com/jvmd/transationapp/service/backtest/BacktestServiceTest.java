@@ -0,0 +1,269 @@
+package com.jvmd.transationapp.service.backtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.dto.BacktestRequest;
+import com.jvmd.transationapp.dto.BacktestResponse;
+import com.jvmd.transationapp.dto.RuleRequest;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.repository.RuleRepository;
+import com.jvmd.transationapp.repository.TransactionRepository;
+import com.jvmd.transationapp.service.ml.ChallengerScorer;
+import com.jvmd.transationapp.service.ml.MLInferenceService;
+import com.jvmd.transationapp.service.ml.OfflineScorer;
+import com.jvmd.transationapp.service.rules.CompiledRule;
+import com.jvmd.transationapp.service.rules.MLRuleEvaluator;
+import com.jvmd.transationapp.service.rules.PatternRuleEvaluator;
+import com.jvmd.transationapp.service.rules.RuleEngine;
+import com.jvmd.transationapp.service.rules.RuleMatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class BacktestServiceTest {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 0, 0);
+
+    private DataSource dataSource;
+    private Connection connection;
+    private PreparedStatement statement;
+    private PlatformTransactionManager transactionManager;
+    private TransactionRepository transactionRepository;
+    private RuleEngine ruleEngine;
+    private MLInferenceService inferenceService;
+    private ChallengerScorer challengerScorer;
+    private BacktestService service;
+    private final AtomicInteger rowsRead = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        transactionManager = mock(PlatformTransactionManager.class);
+        transactionRepository = mock(TransactionRepository.class);
+        ruleEngine = mock(RuleEngine.class);
+        inferenceService = mock(MLInferenceService.class);
+        challengerScorer = mock(ChallengerScorer.class);
+        MLRuleEvaluator mlRuleEvaluator = new MLRuleEvaluator(new ObjectMapper(), inferenceService, challengerScorer);
+        service = new BacktestService(dataSource, transactionManager, transactionRepository,
+                mock(RuleRepository.class), ruleEngine, mock(PatternRuleEvaluator.class), mlRuleEvaluator,
+                inferenceService);
+        ReflectionTestUtils.setField(service, "fetchSize", 3);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+        ReflectionTestUtils.setField(service, "maxInFlightChunks", 2);
+        ReflectionTestUtils.setField(service, "maxConcurrentJobs", 1);
+        ReflectionTestUtils.setField(service, "retainedJobs", 20);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void streamsTheRangeThroughAReadOnlyCursorInChunks() throws Exception {
+        List<Transactions> rows = List.of(
+                row("card_fraud", 0.9),
+                row(null, null),
+                row("account_takeover", null),
+                row(null, null),
+                row("none", null));
+        ResultSet resultSet = resultSet(rows);
+        OfflineScorer scorer = mock(OfflineScorer.class);
+        List<Integer> chunkSizes = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            List<Transactions> chunk = invocation.getArgument(0);
+            chunkSizes.add(chunk.size());
+            chunk.stream().filter(transaction -> transaction.getMlScore() == null)
+                    .forEach(transaction -> transaction.setMlScore(transaction.getFraudType() != null ? 0.8 : 0.1));
+            return null;
+        }).when(scorer).scoreMissing(anyList());
+        when(inferenceService.openOfflineScorer(anyInt())).thenReturn(scorer);
+
+        BacktestResponse result = await(service.start(request(mlRule())));
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertThat(definition.getValue().isReadOnly()).isTrue();
+        verify(connection).prepareStatement(endsWith("ORDER BY timestamp"));
+        verify(statement).setFetchSize(3);
+        verify(resultSet).close();
+        verify(connection).close();
+        assertThat(chunkSizes).containsExactlyInAnyOrder(2, 2, 1);
+        assertThat(result.getStatus()).isEqualTo("COMPLETED");
+        assertThat(result.getProcessedTransactions()).isEqualTo(5);
+        assertThat(result.getAlerts()).isEqualTo(3);
+        assertThat(result.getTruePositives()).isEqualTo(2);
+        assertThat(result.getFalsePositives()).isEqualTo(1);
+        assertThat(result.getFalseNegatives()).isZero();
+        assertThat(result.getPrecision()).isCloseTo(2.0 / 3, within(1e-9));
+        assertThat(result.getRecall()).isCloseTo(1.0, within(1e-9));
+    }
+
+    @Test
+    void mlRulesScoreOfflineAndNeverUseTheLiveQueue() throws Exception {
+        resultSet(List.of(row("card_fraud", null), row(null, 0.2), row(null, null)));
+        OfflineScorer scorer = mock(OfflineScorer.class);
+        when(inferenceService.openOfflineScorer(anyInt())).thenReturn(scorer);
+
+        await(service.start(request(mlRule())));
+
+        verify(inferenceService).openOfflineScorer(2);
+        verify(inferenceService, never()).predict(any());
+        verify(inferenceService, never()).submit(any());
+        verifyNoInteractions(challengerScorer);
+        verify(scorer).close();
+    }
+
+    @Test
+    void storedScoresNeedNoModel() throws Exception {
+        resultSet(List.of(row("card_fraud", 0.95), row(null, 0.2), row(null, 0.7)));
+
+        BacktestResponse result = await(service.start(request(mlRule())));
+
+        verify(inferenceService, never()).openOfflineScorer(anyInt());
+        assertThat(result.getAlerts()).isEqualTo(2);
+        assertThat(result.getTruePositives()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelStopsTheReaderAndTheWorkers() throws Exception {
+        ReflectionTestUtils.setField(service, "chunkSize", 1);
+        ReflectionTestUtils.setField(service, "maxInFlightChunks", 1);
+        List<Transactions> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rows.add(row(null, null));
+        }
+        ResultSet resultSet = resultSet(rows);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RuleMatcher blocking = transaction -> {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        };
+        when(ruleEngine.compileRule(any())).thenAnswer(invocation -> CompiledRule.of(invocation.getArgument(0), blocking));
+
+        BacktestResponse started = service.start(request(RuleRequest.builder()
+                .name("slow").type(RuleType.THRESHOLD).configuration("{}").build()));
+        assertThat(entered.await(10, TimeUnit.SECONDS)).isTrue();
+        service.cancel(started.getId());
+        release.countDown();
+        BacktestResponse result = await(started);
+
+        assertThat(result.getStatus()).isEqualTo("CANCELLED");
+        assertThat(result.getProcessedTransactions()).isLessThan(rows.size());
+        assertThat(rowsRead.get()).isLessThan(rows.size());
+        verify(resultSet).close();
+        verify(connection).close();
+    }
+
+    private BacktestResponse await(BacktestResponse started) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        BacktestResponse current = started;
+        while ("RUNNING".equals(current.getStatus()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            current = service.get(started.getId()).orElseThrow();
+        }
+        assertThat(current.getStatus()).isNotEqualTo("RUNNING");
+        return current;
+    }
+
+    private ResultSet resultSet(List<Transactions> rows) throws Exception {
+        when(transactionRepository.countByTimestampBetween(any(), any())).thenReturn((long) rows.size());
+        ResultSet resultSet = mock(ResultSet.class);
+        AtomicInteger cursor = new AtomicInteger(-1);
+        when(resultSet.next()).thenAnswer(invocation -> {
+            rowsRead.incrementAndGet();
+            return cursor.incrementAndGet() < rows.size();
+        });
+        when(resultSet.getObject("id", UUID.class)).thenAnswer(invocation -> rows.get(cursor.get()).getId());
+        when(resultSet.getBigDecimal("amount")).thenAnswer(invocation -> rows.get(cursor.get()).getAmount());
+        when(resultSet.getTimestamp("timestamp"))
+                .thenAnswer(invocation -> Timestamp.valueOf(rows.get(cursor.get()).getTimestamp()));
+        when(resultSet.getObject("ml_score", Double.class))
+                .thenAnswer(invocation -> rows.get(cursor.get()).getMlScore());
+        when(resultSet.getString(anyString())).thenAnswer(invocation -> {
+            Transactions row = rows.get(cursor.get());
+            return switch ((String) invocation.getArgument(0)) {
+                case "account_from" -> row.getFrom();
+                case "account_to" -> row.getTo();
+                case "type" -> row.getType();
+                case "fraud_type" -> row.getFraudType();
+                default -> null;
+            };
+        });
+        when(statement.executeQuery()).thenReturn(resultSet);
+        return resultSet;
+    }
+
+    private static Transactions row(String fraudType, Double mlScore) {
+        Transactions transaction = new Transactions();
+        transaction.setId(UUID.randomUUID());
+        transaction.setAmount(BigDecimal.valueOf(120));
+        transaction.setFrom("A");
+        transaction.setTo("B");
+        transaction.setType("TRANSFER");
+        transaction.setTimestamp(START.plusHours(1));
+        transaction.setFraudType(fraudType);
+        transaction.setMlScore(mlScore);
+        return transaction;
+    }
+
+    private static RuleRequest mlRule() {
+        return RuleRequest.builder()
+                .name("model")
+                .type(RuleType.ML_RULE)
+                .configuration("{\"threshold\": 0.5}")
+                .build();
+    }
+
+    private static BacktestRequest request(RuleRequest rule) {
+        return BacktestRequest.builder()
+                .start(START)
+                .end(START.plusDays(1))
+                .rules(List.of(rule))
+                .build();
+    }
+}
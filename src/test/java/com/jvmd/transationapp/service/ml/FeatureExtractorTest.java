@@ -0,0 +1,208 @@
+package com.jvmd.transationapp.service.ml;
+
+import com.jvmd.transationapp.model.Transactions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Compares {@link FeatureExtractor} with the allocating extraction the model was trained against,
+ * which is kept below as {@link LegacyFeatures}. Every feature must be bit-identical.
+ */
+class FeatureExtractorTest {
+    private static final int TRANSACTIONS = 200_000;
+    private static final int INPUTS = MLInferenceService.INPUT_SIZE;
+    private static final String[] TYPES = {"withdrawal", "deposit", "transfer", "payment", "refund", ""};
+    private static final String[] CATEGORIES = {"utilities", "online", "grocery", "restaurant", "entertainment",
+            "travel", "gas", "retail", "other", "crypto", ""};
+    private static final String[] DEVICES = {"mobile", "atm", "pos", "online", "kiosk", ""};
+    private static final String[] CHANNELS = {"card", "ach", "wire_transfer", "cash", "paypal", ""};
+    private static final String[] IP_PREFIXES = {"192.168.", "10.", "172.", "8.8.", "203.0.", ""};
+
+    @Test
+    void matchesTheLegacyEncodingOnRandomTransactions() {
+        Random random = new Random(20261017);
+        float[] batch = new float[3 * INPUTS];
+        for (int n = 0; n < TRANSACTIONS; n++) {
+            Transactions transaction = randomTransaction(random);
+            int offset = (n % 3) * INPUTS;
+            FeatureExtractor.extract(transaction, batch, offset);
+            float[] expected = LegacyFeatures.extract(transaction);
+            for (int i = 0; i < INPUTS; i++) {
+                if (Float.floatToRawIntBits(batch[offset + i]) != Float.floatToRawIntBits(expected[i])) {
+                    fail("feature %d of transaction %d differs: %s vs legacy %s (%s)",
+                            i, n, batch[offset + i], expected[i], transaction);
+                }
+            }
+        }
+    }
+
+    @Test
+    void writesOnlyItsOwnRow() {
+        float[] batch = new float[3 * INPUTS];
+        Arrays.fill(batch, -1f);
+
+        FeatureExtractor.extract(randomTransaction(new Random(1)), batch, INPUTS);
+
+        for (int i = 0; i < INPUTS; i++) {
+            assertThat(batch[i]).isEqualTo(-1f);
+            assertThat(batch[2 * INPUTS + i]).isEqualTo(-1f);
+        }
+    }
+
+    private static Transactions randomTransaction(Random random) {
+        Transactions transaction = new Transactions();
+        transaction.setAmount(randomAmount(random));
+        transaction.setTimestamp(LocalDateTime.of(2026, 1, 1, 0, 0)
+                .plusMinutes(random.nextInt(366 * 24 * 60)));
+        transaction.setFrom(maybe(random, "ACC" + random.nextInt(1_000_000)));
+        transaction.setTo(maybe(random, random.nextInt(10) == 0 ? "" : "ACC" + random.nextInt(1_000_000)));
+        transaction.setType(category(random, TYPES));
+        transaction.setMerchantCategory(category(random, CATEGORIES));
+        transaction.setDeviceUsed(category(random, DEVICES));
+        transaction.setPaymentChannel(category(random, CHANNELS));
+        transaction.setLocation(maybe(random, random.nextInt(20) == 0 ? "" : "City-" + random.nextInt(5_000)));
+        transaction.setTimeSinceLastTransaction(maybeDouble(random, random.nextDouble() * 1e5 - 10));
+        transaction.setSpendingDeviationScore(maybeDouble(random, random.nextGaussian() * 3));
+        transaction.setVelocityScore(maybeDouble(random, random.nextDouble() * 120 - 5));
+        transaction.setGeoAnomalyScore(maybeDouble(random, random.nextDouble()));
+        String prefix = IP_PREFIXES[random.nextInt(IP_PREFIXES.length)];
+        transaction.setIpAddress(maybe(random, prefix.isEmpty() && random.nextBoolean() ? ""
+                : prefix + random.nextInt(256) + "." + random.nextInt(256)));
+        return transaction;
+    }
+
+    /**
+     * Mostly ordinary amounts, plus values around the 10,000 cap, negatives, large and high-scale ones.
+     */
+    private static BigDecimal randomAmount(Random random) {
+        return switch (random.nextInt(6)) {
+            case 0 -> BigDecimal.valueOf(10_000).add(BigDecimal.valueOf(random.nextInt(2001) - 1000, 4));
+            case 1 -> BigDecimal.valueOf(-random.nextInt(100_000), 2);
+            case 2 -> BigDecimal.valueOf(random.nextLong() & Long.MAX_VALUE, random.nextInt(20) - 5);
+            case 3 -> new BigDecimal(random.nextDouble() * 20_000).setScale(random.nextInt(12),
+                    RoundingMode.HALF_UP);
+            default -> BigDecimal.valueOf(random.nextInt(2_000_000), 2);
+        };
+    }
+
+    /**
+     * A known value in lower, upper, capitalized or random casing, or now and then null.
+     */
+    private static String category(Random random, String[] values) {
+        if (random.nextInt(15) == 0) {
+            return null;
+        }
+        String value = values[random.nextInt(values.length)];
+        return switch (random.nextInt(4)) {
+            case 0 -> value;
+            case 1 -> value.toUpperCase(Locale.ROOT);
+            case 2 -> value.isEmpty() ? value : Character.toUpperCase(value.charAt(0)) + value.substring(1);
+            default -> {
+                StringBuilder mixed = new StringBuilder(value.length());
+                for (char c : value.toCharArray()) {
+                    mixed.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+                }
+                yield mixed.toString();
+            }
+        };
+    }
+
+    private static String maybe(Random random, String value) {
+        return random.nextInt(15) == 0 ? null : value;
+    }
+
+    private static Double maybeDouble(Random random, double value) {
+        return random.nextInt(10) == 0 ? null : value;
+    }
+
+    /**
+     * The extraction as it was before {@link FeatureExtractor}, allocating a fresh array per call.
+     */
+    private static final class LegacyFeatures {
+        static float[] extract(Transactions transaction) {
+            return new float[]{
+                    Math.min(1.0f, transaction.getAmount().floatValue() / 10_000f),
+                    transaction.getTimestamp().getHour() / 24.0f,
+                    (transaction.getTimestamp().getDayOfWeek().getValue() - 1) / 6.0f,
+                    hash(transaction.getFrom()),
+                    hash(transaction.getTo()),
+                    switch (lower(transaction.getType())) {
+                        case "withdrawal" -> 0.25f;
+                        case "deposit" -> 0.5f;
+                        case "transfer" -> 0.75f;
+                        case "payment" -> 1.0f;
+                        default -> 0.5f;
+                    },
+                    switch (lower(transaction.getMerchantCategory())) {
+                        case "utilities" -> 0.1f;
+                        case "online" -> 0.2f;
+                        case "grocery" -> 0.3f;
+                        case "restaurant" -> 0.4f;
+                        case "entertainment" -> 0.5f;
+                        case "travel" -> 0.6f;
+                        case "gas" -> 0.7f;
+                        case "retail" -> 0.8f;
+                        case "other" -> 0.9f;
+                        default -> 0.5f;
+                    },
+                    switch (lower(transaction.getDeviceUsed())) {
+                        case "mobile" -> 0.25f;
+                        case "atm" -> 0.5f;
+                        case "pos" -> 0.75f;
+                        case "online" -> 1.0f;
+                        default -> 0.5f;
+                    },
+                    hash(transaction.getLocation()),
+                    transaction.getTimeSinceLastTransaction() != null
+                            ? transaction.getTimeSinceLastTransaction().floatValue() : 0.0f,
+                    transaction.getSpendingDeviationScore() != null
+                            ? transaction.getSpendingDeviationScore().floatValue() : 0.0f,
+                    transaction.getVelocityScore() != null
+                            ? Math.min(1.0f, transaction.getVelocityScore().floatValue() / 50.0f) : 0.0f,
+                    transaction.getGeoAnomalyScore() != null
+                            ? transaction.getGeoAnomalyScore().floatValue() : 0.0f,
+                    switch (lower(transaction.getPaymentChannel())) {
+                        case "card" -> 0.25f;
+                        case "ach" -> 0.5f;
+                        case "wire_transfer" -> 0.75f;
+                        case "cash" -> 1.0f;
+                        default -> 0.5f;
+                    },
+                    ipRiskScore(transaction.getIpAddress())
+            };
+        }
+
+        /**
+         * Null maps to a string no case matches, so it encodes as unknown like the legacy null check.
+         */
+        private static String lower(String value) {
+            return value == null ? "\0" : value.toLowerCase();
+        }
+
+        private static float hash(String value) {
+            if (value == null || value.isEmpty()) {
+                return 0.5f;
+            }
+            return Math.abs(value.hashCode() % 1000) / 1000.0f;
+        }
+
+        private static float ipRiskScore(String ipAddress) {
+            if (ipAddress == null || ipAddress.isEmpty()) {
+                return 0.5f;
+            }
+            if (ipAddress.startsWith("192.168.") || ipAddress.startsWith("10.") || ipAddress.startsWith("172.")) {
+                return 0.1f;
+            }
+            return Math.abs(ipAddress.hashCode() % 100) / 200.0f;
+        }
+    }
+}
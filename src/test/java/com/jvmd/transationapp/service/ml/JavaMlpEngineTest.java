@@ -0,0 +1,82 @@
+package com.jvmd.transationapp.service.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class JavaMlpEngineTest {
+
+    @Test
+    void appliesReluOnHiddenLayersAndSigmoidOnTheOutput() {
+        // hidden = relu([x0 - x1, x0 + x1 - 3]), out = 2 * h0 + h1 - 1
+        MlpWeights weights = new MlpWeights(List.of(
+                new MlpWeights.Layer(2, 2, new float[]{1, -1, 1, 1}, new float[]{0, -3}),
+                new MlpWeights.Layer(2, 1, new float[]{2, 1}, new float[]{-1})), true);
+        JavaMlpEngine engine = new JavaMlpEngine(weights, MlpKernel.SCALAR);
+        float[] features = {3, 1, 1, 3, 0, 0};
+        float[] scores = new float[3];
+
+        engine.predict(features, 3, scores);
+
+        // row 0: h = [2, 1], out = 4; row 1: h = [0, 1], out = 0; row 2: h = [0, 0], out = -1
+        assertThat(scores[0]).isCloseTo(sigmoid(4), within(1e-6f));
+        assertThat(scores[1]).isCloseTo(0.5f, within(1e-6f));
+        assertThat(scores[2]).isCloseTo(sigmoid(-1), within(1e-6f));
+    }
+
+    @Test
+    void identityOutputReturnsTheRawActivation() {
+        MlpWeights weights = new MlpWeights(List.of(
+                new MlpWeights.Layer(2, 1, new float[]{0.5f, -2f}, new float[]{0.25f})), false);
+        float[] scores = new float[1];
+
+        new JavaMlpEngine(weights, MlpKernel.SCALAR).predict(new float[]{4, 1}, 1, scores);
+
+        assertThat(scores[0]).isCloseTo(0.25f, within(1e-6f));
+    }
+
+    @Test
+    void vectorEngineMatchesScalarEngine() {
+        Random random = new Random(7);
+        MlpWeights weights = new MlpWeights(List.of(
+                layer(random, MLInferenceService.INPUT_SIZE, 64),
+                layer(random, 64, 32),
+                layer(random, 32, 1)), true);
+        int rows = 100;
+        float[] features = new float[rows * MLInferenceService.INPUT_SIZE];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = random.nextFloat();
+        }
+        float[] scalar = new float[rows];
+        float[] vector = new float[rows];
+
+        new JavaMlpEngine(weights, MlpKernel.SCALAR).predict(features, rows, scalar);
+        JavaMlpEngine vectorEngine = new JavaMlpEngine(weights, MlpKernel.create(true));
+        vectorEngine.predict(features, rows, vector);
+
+        assertThat(vectorEngine.name()).isEqualTo("java-vector");
+        for (int row = 0; row < rows; row++) {
+            assertThat(vector[row]).isCloseTo(scalar[row], within(1e-5f));
+        }
+    }
+
+    private static MlpWeights.Layer layer(Random random, int inputs, int outputs) {
+        float[] weights = new float[inputs * outputs];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (float) random.nextGaussian() * 0.3f;
+        }
+        float[] bias = new float[outputs];
+        for (int i = 0; i < bias.length; i++) {
+            bias[i] = (float) random.nextGaussian() * 0.1f;
+        }
+        return new MlpWeights.Layer(inputs, outputs, weights, bias);
+    }
+
+    private static float sigmoid(double value) {
+        return (float) (1.0 / (1.0 + Math.exp(-value)));
+    }
+}
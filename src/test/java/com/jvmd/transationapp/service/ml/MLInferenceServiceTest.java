@@ -0,0 +1,81 @@
+package com.jvmd.transationapp.service.ml;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MLInferenceServiceTest {
+    private ModelRegistry modelRegistry;
+    private MLInferenceService service;
+
+    @BeforeEach
+    void setUp() {
+        modelRegistry = mock(ModelRegistry.class);
+        when(modelRegistry.exists(anyString())).thenReturn(true);
+        service = spy(new MLInferenceService(new SimpleMeterRegistry(), modelRegistry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ((ExecutorService) ReflectionTestUtils.getField(service, "modelLoader")).shutdownNow();
+    }
+
+    @Test
+    void versionIsSwappedInOnlyAfterItIsRecorded() throws Exception {
+        LoadedModel next = model("2.0");
+        doReturn(next).when(service).load("2.0", 0);
+
+        service.activate("2.0").join();
+
+        verify(modelRegistry).recordActivation("2.0");
+        assertThat(service.engineName()).isEqualTo("engine-2.0");
+    }
+
+    @Test
+    void failedPointerWriteKeepsTheCurrentModelAndIsNotMarkedFailed() throws Exception {
+        LoadedModel next = spy(model("2.0"));
+        doReturn(next).when(service).load("2.0", 0);
+        doThrow(new IOException("disk full")).when(modelRegistry).recordActivation("2.0");
+
+        assertThatThrownBy(() -> service.activate("2.0").join())
+                .isInstanceOf(CompletionException.class)
+                .hasRootCauseMessage("disk full");
+
+        verify(next).retire();
+        assertThat(service.isModelLoaded()).isFalse();
+        assertThat(ReflectionTestUtils.getField(service, "failedVersion")).isNull();
+    }
+
+    @Test
+    void versionThatFailsToLoadIsMarkedFailedAndNotRecorded() throws Exception {
+        doThrow(new IOException("corrupt params")).when(service).load("2.0", 0);
+
+        assertThatThrownBy(() -> service.activate("2.0").join()).isInstanceOf(CompletionException.class);
+
+        verify(modelRegistry, never()).recordActivation(anyString());
+        assertThat(ReflectionTestUtils.getField(service, "failedVersion")).isEqualTo("2.0");
+    }
+
+    private static LoadedModel model(String version) {
+        return new LoadedModel(version, LocalDateTime.now(), null, new ArrayBlockingQueue<>(1), 0, "engine-" + version);
+    }
+}
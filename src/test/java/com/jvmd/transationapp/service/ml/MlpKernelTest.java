@@ -0,0 +1,49 @@
+package com.jvmd.transationapp.service.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MlpKernelTest {
+
+    @Test
+    void vectorKernelIsPickedWhenTheModuleIsPresent() {
+        assertThat(MlpKernel.create(true)).isInstanceOf(VectorMlpKernel.class);
+        assertThat(MlpKernel.create(false)).isSameAs(MlpKernel.SCALAR);
+    }
+
+    @Test
+    void vectorDotMatchesScalarForEveryLengthAndOffset() {
+        Random random = new Random(11);
+        MlpKernel vector = new VectorMlpKernel();
+        float[] a = new float[200];
+        float[] b = new float[200];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (float) random.nextGaussian();
+            b[i] = (float) random.nextGaussian();
+        }
+        for (int length = 0; length <= 70; length++) {
+            for (int aOffset = 0; aOffset < 5; aOffset++) {
+                int bOffset = 100 - 3 * aOffset;
+                float expected = MlpKernel.scalarDot(a, aOffset, b, bOffset, length);
+                float actual = vector.dot(a, aOffset, b, bOffset, length);
+                assertThat(actual)
+                        .as("length %d, offsets %d/%d", length, aOffset, bOffset)
+                        .isCloseTo(expected, within(1e-4f * (1 + length)));
+            }
+        }
+    }
+
+    @Test
+    void emptyAndTailOnlyProductsAreExact() {
+        MlpKernel vector = new VectorMlpKernel();
+        float[] a = {1, 2, 3};
+        float[] b = {4, 5, 6};
+
+        assertThat(vector.dot(a, 0, b, 0, 0)).isZero();
+        assertThat(vector.dot(a, 0, b, 0, 3)).isEqualTo(32f);
+    }
+}
@@ -0,0 +1,63 @@
+package com.jvmd.transationapp.service.ml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MlpWeightsTest {
+
+    @Test
+    void writeThenReadRoundTrips(@TempDir Path dir) throws IOException {
+        MlpWeights weights = new MlpWeights(List.of(
+                new MlpWeights.Layer(3, 2, new float[]{0.5f, -1f, 2f, 0.25f, 0f, -0.75f}, new float[]{0.1f, -0.2f}),
+                new MlpWeights.Layer(2, 1, new float[]{1.5f, -2.5f}, new float[]{0.3f})), false);
+        Path file = dir.resolve("fraud-detection-1.0.weights");
+
+        weights.write(file);
+        MlpWeights read = MlpWeights.read(file);
+
+        assertThat(read.sigmoidOutput()).isFalse();
+        assertThat(read.inputs()).isEqualTo(3);
+        assertThat(read.maxWidth()).isEqualTo(3);
+        assertThat(read.layers()).hasSize(2);
+        for (int l = 0; l < 2; l++) {
+            assertThat(read.layers().get(l).inputs()).isEqualTo(weights.layers().get(l).inputs());
+            assertThat(read.layers().get(l).outputs()).isEqualTo(weights.layers().get(l).outputs());
+            assertThat(read.layers().get(l).weights()).containsExactly(weights.layers().get(l).weights());
+            assertThat(read.layers().get(l).bias()).containsExactly(weights.layers().get(l).bias());
+        }
+        assertThat(Files.exists(dir.resolve("fraud-detection-1.0.weights.tmp"))).isFalse();
+    }
+
+    @Test
+    void readRejectsOtherFiles(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("model.weights");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertThatThrownBy(() -> MlpWeights.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not an MLP weights file");
+    }
+
+    @Test
+    void rejectsMismatchedLayers() {
+        MlpWeights.Layer first = new MlpWeights.Layer(2, 3, new float[6], new float[3]);
+        MlpWeights.Layer second = new MlpWeights.Layer(2, 1, new float[2], new float[1]);
+
+        assertThatThrownBy(() -> new MlpWeights(List.of(first, second), true))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("layer 1 expects 2 inputs");
+        assertThatThrownBy(() -> new MlpWeights(List.of(first), true))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("single output");
+        assertThatThrownBy(() -> new MlpWeights.Layer(2, 2, new float[3], new float[2]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,80 @@
+package com.jvmd.transationapp.service.queue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class QueuePartitionManagerTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void partitionsAreSplitBetweenLiveConsumersWithoutOverlap() {
+        QueuePartitionManager nodeA = manager(8, 15_000, 5_000);
+        QueuePartitionManager nodeB = manager(8, 15_000, 5_000);
+
+        assertThat(nodeA.ownedPartitions("a-0")).hasSize(8);
+        assertThat(nodeB.ownedPartitions("b-0")).as("locks still held by a-0").isEmpty();
+        nodeA.rebalance();
+        int[] ownedByA = nodeA.ownedPartitions("a-0");
+        nodeB.rebalance();
+        int[] ownedByB = nodeB.ownedPartitions("b-0");
+
+        assertThat(ownedByA).hasSize(4);
+        assertThat(ownedByB).hasSize(4).doesNotContain(ownedByA);
+    }
+
+    @Test
+    void consumerStopsReadingWhenItsLocksAreNotRenewedInTime() throws InterruptedException {
+        QueuePartitionManager manager = manager(4, 400, 200);
+        assertThat(manager.ownedPartitions("a-0")).containsExactly(0, 1, 2, 3);
+
+        Thread.sleep(300);
+        assertThat(manager.ownedPartitions("a-0")).as("renewal overdue").isEmpty();
+
+        manager.rebalance();
+        assertThat(manager.ownedPartitions("a-0")).containsExactly(0, 1, 2, 3);
+    }
+
+    private QueuePartitionManager manager(int partitions, long memberTtlMs, long heartbeatMs) {
+        QueuePartitionManager manager = new QueuePartitionManager(redisTemplate, event -> {
+        });
+        ReflectionTestUtils.setField(manager, "partitions", partitions);
+        ReflectionTestUtils.setField(manager, "memberTtlMs", memberTtlMs);
+        ReflectionTestUtils.setField(manager, "heartbeatMs", heartbeatMs);
+        return manager;
+    }
+}
@@ -0,0 +1,174 @@
+package com.jvmd.transationapp.service.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.config.RedisConfig;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.QueueService.QueueMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reliable-mode claim / ack / reap cycle of the list backend against a real Redis.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RedisListQueueServiceTest {
+    private static final String LEASES_KEY = "transaction:inflight:leases";
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisTemplate<String, Object> redisTemplate;
+    private StringRedisTemplate stringRedisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void claimedMessagesStayInFlightUntilAcknowledged() {
+        RedisListQueueService queue = queueService(1);
+        List<Transactions> transactions = enqueue(queue, 3);
+
+        List<QueueMessage> batch = queue.dequeueBatch("node-0", 10, Duration.ZERO);
+
+        assertThat(batch).extracting(QueueMessage::getTransactionId)
+                .containsExactly(ids(transactions).toArray(UUID[]::new));
+        assertThat(queue.getQueueSize()).isZero();
+        assertThat(stringRedisTemplate.opsForList().size("transaction:inflight:node-0")).isEqualTo(3);
+        assertThat(queue.isProcessing(transactions.get(0).getId())).isTrue();
+
+        queue.markAsProcessed(batch.get(0));
+
+        assertThat(stringRedisTemplate.opsForList().size("transaction:inflight:node-0")).isEqualTo(2);
+        assertThat(queue.isProcessing(transactions.get(0).getId())).isFalse();
+    }
+
+    @Test
+    void reaperReturnsInFlightMessagesOfExpiredConsumersInOrder() {
+        RedisListQueueService queue = queueService(1);
+        List<Transactions> transactions = enqueue(queue, 4);
+        List<QueueMessage> batch = queue.dequeueBatch("node-0", 10, Duration.ZERO);
+        queue.markAsProcessed(batch.get(0));
+
+        queue.reapExpiredInFlight();
+        assertThat(queue.getQueueSize()).as("lease still valid").isZero();
+
+        expireLease("node-0");
+        queue.reapExpiredInFlight();
+
+        assertThat(stringRedisTemplate.opsForList().size("transaction:inflight:node-0")).isZero();
+        assertThat(stringRedisTemplate.opsForZSet().score(LEASES_KEY, "node-0")).isNull();
+        List<QueueMessage> redelivered = queue.dequeueBatch("node-1", 10, Duration.ZERO);
+        assertThat(redelivered).extracting(QueueMessage::getTransactionId)
+                .containsExactly(ids(transactions.subList(1, 4)).toArray(UUID[]::new));
+    }
+
+    @Test
+    void reaperRoutesMessagesBackToTheirPartition() {
+        RedisListQueueService queue = queueService(4);
+        enqueue(queue, 8);
+        List<QueueMessage> batch = queue.dequeueBatch("node-0", 20, Duration.ZERO);
+        assertThat(batch).hasSize(8);
+
+        expireLease("node-0");
+        queue.reapExpiredInFlight();
+
+        assertThat(queue.getQueueSize()).isEqualTo(8);
+        for (QueueMessage message : batch) {
+            List<String> partition = stringRedisTemplate.opsForList()
+                    .range("transaction:queue:p" + message.getPartition(), 0, -1);
+            assertThat(partition).anyMatch(raw -> raw.contains(message.getTransactionId().toString()));
+        }
+        assertThat(stringRedisTemplate.opsForList().size("transaction:queue")).isZero();
+    }
+
+    @Test
+    void releasedConsumerLeaseIsStoredAsPlainId() {
+        RedisListQueueService queue = queueService(1);
+        enqueue(queue, 2);
+        queue.dequeueBatch("node-0", 10, Duration.ZERO);
+
+        queue.releaseConsumer("node-0");
+
+        assertThat(queue.getQueueSize()).isEqualTo(2);
+        assertThat(stringRedisTemplate.opsForZSet().zCard(LEASES_KEY)).isZero();
+    }
+
+    private RedisListQueueService queueService(int partitions) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        RetryScheduler retryScheduler = new RetryScheduler(stringRedisTemplate, objectMapper);
+        QueuePartitionManager partitionManager = new QueuePartitionManager(stringRedisTemplate, event -> {
+        });
+        ReflectionTestUtils.setField(partitionManager, "partitions", partitions);
+        ReflectionTestUtils.setField(partitionManager, "memberTtlMs", 15_000L);
+        RedisListQueueService queue =
+                new RedisListQueueService(redisTemplate, objectMapper, retryScheduler, partitionManager);
+        ReflectionTestUtils.setField(queue, "maxRetryAttempts", 3);
+        ReflectionTestUtils.setField(queue, "reliable", true);
+        ReflectionTestUtils.setField(queue, "visibilityTimeoutMs", 60_000L);
+        return queue;
+    }
+
+    private List<Transactions> enqueue(RedisListQueueService queue, int count) {
+        List<Transactions> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Transactions transaction = new Transactions();
+            transaction.setId(UUID.randomUUID());
+            transaction.setCorrelationId("corr-" + i);
+            transaction.setFrom("account-" + i);
+            transaction.setTo("merchant");
+            transaction.setType("TRANSFER");
+            transaction.setAmount(BigDecimal.TEN);
+            transaction.setTimestamp(LocalDateTime.now());
+            queue.enqueue(transaction);
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    private void expireLease(String consumerId) {
+        stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.zSetCommands()
+                .zAdd(LEASES_KEY.getBytes(StandardCharsets.UTF_8), 0, consumerId.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<UUID> ids(List<Transactions> transactions) {
+        return transactions.stream().map(Transactions::getId).toList();
+    }
+}
@@ -0,0 +1,109 @@
+package com.jvmd.transationapp.service.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.QueueService.QueueMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class RedisStreamQueueServiceTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private RetryScheduler retryScheduler;
+    private RedisStreamQueueService queue;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        ObjectMapper objectMapper = new ObjectMapper();
+        retryScheduler = new RetryScheduler(redisTemplate, objectMapper);
+        ReflectionTestUtils.setField(retryScheduler, "deadLetterMaxSize", 100L);
+        queue = new RedisStreamQueueService(redisTemplate, retryScheduler, objectMapper);
+        ReflectionTestUtils.setField(queue, "maxRetryAttempts", 2);
+        ReflectionTestUtils.setField(queue, "visibilityTimeoutMs", 0L);
+        ReflectionTestUtils.setField(queue, "claimIntervalMs", 0L);
+        queue.ensureGroup();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void entryThatIsNeverAcknowledgedIsDeadLetteredAfterMaxAttempts() {
+        UUID transactionId = enqueue();
+        assertThat(queue.dequeueBatch("node-0", 10, Duration.ZERO)).hasSize(1);
+
+        int redeliveries = 0;
+        for (int i = 0; i < 10; i++) {
+            queue.releaseConsumer("node-1");
+            List<QueueMessage> claimed = queue.dequeueBatch("node-1", 10, Duration.ZERO);
+            if (claimed.isEmpty()) {
+                break;
+            }
+            redeliveries++;
+        }
+
+        assertThat(redeliveries).isEqualTo(2);
+        assertThat(retryScheduler.getDeadLetters(10)).singleElement()
+                .satisfies(entry -> {
+                    assertThat(entry.getTransactionId()).isEqualTo(transactionId);
+                    assertThat(entry.getFailureReason()).contains("4 times");
+                });
+        assertThat(redisTemplate.opsForStream().size("transaction:stream")).isZero();
+    }
+
+    @Test
+    void acknowledgedEntryIsNotClaimedAgain() {
+        enqueue();
+        List<QueueMessage> batch = queue.dequeueBatch("node-0", 10, Duration.ZERO);
+        queue.markAsProcessed(batch.get(0));
+
+        assertThat(queue.dequeueBatch("node-1", 10, Duration.ZERO)).isEmpty();
+        assertThat(retryScheduler.getDeadLetterCount()).isZero();
+    }
+
+    private UUID enqueue() {
+        Transactions transaction = new Transactions();
+        transaction.setId(UUID.randomUUID());
+        transaction.setCorrelationId("corr");
+        transaction.setFrom("account");
+        transaction.setTo("merchant");
+        transaction.setType("TRANSFER");
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setTimestamp(LocalDateTime.now());
+        queue.enqueue(transaction);
+        return transaction.getId();
+    }
+}
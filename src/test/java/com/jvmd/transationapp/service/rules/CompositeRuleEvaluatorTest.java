@@ -0,0 +1,61 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.model.Transactions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompositeRuleEvaluatorTest {
+    private final CompositeRuleEvaluator evaluator = new CompositeRuleEvaluator(new ObjectMapper());
+
+    @Test
+    void amountConditionsCompareTheAmount() {
+        RuleMatcher matcher = evaluator.compile(rule("""
+                {"operator": "AND", "conditions": [
+                    {"type": "amount", "operator": ">=", "value": 500},
+                    {"type": "amount", "operator": "<", "value": 1000}]}"""));
+
+        assertThat(matcher.matches(transaction("500"))).isTrue();
+        assertThat(matcher.matches(transaction("999.99"))).isTrue();
+        assertThat(matcher.matches(transaction("1000"))).isFalse();
+        assertThat(matcher.matches(transaction("499"))).isFalse();
+    }
+
+    @Test
+    void notEqualIsRejectedInAmountConditions() {
+        assertThatThrownBy(() -> evaluator.compile(rule("""
+                {"operator": "OR", "conditions": [{"type": "amount", "operator": "!=", "value": 100}]}""")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("'!=' is not supported");
+    }
+
+    @Test
+    void unknownOperatorIsRejected() {
+        assertThatThrownBy(() -> evaluator.compile(rule("""
+                {"operator": "OR", "conditions": [{"type": "amount", "operator": "==", "value": 100}]}""")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown comparison operator");
+    }
+
+    private static Rule rule(String configuration) {
+        Rule rule = new Rule();
+        rule.setName("composite");
+        rule.setType(RuleType.COMPOSITE);
+        rule.setConfiguration(configuration);
+        return rule;
+    }
+
+    private static Transactions transaction(String amount) {
+        Transactions transaction = new Transactions();
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setTimestamp(LocalDateTime.of(2026, 3, 2, 12, 0));
+        return transaction;
+    }
+}
@@ -0,0 +1,83 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.ml.ChallengerScorer;
+import com.jvmd.transationapp.service.ml.MLInferenceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class MLRuleEvaluatorTest {
+    private MLInferenceService inferenceService;
+    private ChallengerScorer challengerScorer;
+    private MLRuleEvaluator evaluator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        inferenceService = mock(MLInferenceService.class);
+        challengerScorer = mock(ChallengerScorer.class);
+        when(inferenceService.isAvailable()).thenReturn(true);
+        when(inferenceService.isModelLoaded()).thenReturn(true);
+        when(inferenceService.predict(any())).thenReturn(0.8f);
+        evaluator = new MLRuleEvaluator(new ObjectMapper(), inferenceService, challengerScorer);
+        ReflectionTestUtils.setField(evaluator, "defaultThreshold", 0.7);
+    }
+
+    @Test
+    void liveMatcherOffersTheFirstScoreToTheChallenger() throws Exception {
+        Transactions transaction = new Transactions();
+
+        RuleMatcher matcher = evaluator.compile(rule("{\"threshold\": 0.5}"), true);
+
+        assertThat(matcher.matches(transaction)).isTrue();
+        assertThat(matcher.matches(transaction)).isTrue();
+        assertThat(transaction.getMlScore()).isEqualTo(0.8f);
+        verify(challengerScorer).submit(transaction, 0.8f, 0.5);
+    }
+
+    @Test
+    void otherMatchersNeverFeedTheChallenger() throws Exception {
+        Transactions transaction = new Transactions();
+
+        RuleMatcher matcher = evaluator.compile(rule("{}"), false);
+
+        assertThat(matcher.matches(transaction)).isTrue();
+        verify(inferenceService).predict(transaction);
+        verify(challengerScorer, never()).submit(any(), anyFloat(), anyDouble());
+    }
+
+    @Test
+    void offlineMatcherOnlyReadsTheScoreOnTheTransaction() {
+        RuleMatcher matcher = evaluator.compileOffline(rule("{\"threshold\": 0.5}"));
+        Transactions scored = new Transactions();
+        scored.setMlScore(0.5);
+        Transactions low = new Transactions();
+        low.setMlScore(0.49);
+
+        assertThat(matcher.matches(scored)).isTrue();
+        assertThat(matcher.matches(low)).isFalse();
+        assertThat(matcher.matches(new Transactions())).isFalse();
+        verifyNoInteractions(inferenceService, challengerScorer);
+    }
+
+    private static Rule rule(String configuration) {
+        Rule rule = new Rule();
+        rule.setName("model");
+        rule.setType(RuleType.ML_RULE);
+        rule.setConfiguration(configuration);
+        return rule;
+    }
+}
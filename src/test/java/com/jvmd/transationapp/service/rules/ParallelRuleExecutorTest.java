@@ -0,0 +1,144 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.model.RuleType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelRuleExecutorTest {
+    private static final long LONG_DEADLINE = TimeUnit.SECONDS.toNanos(10);
+
+    private ParallelRuleExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ParallelRuleExecutor();
+        ReflectionTestUtils.setField(executor, "maxConcurrency", 2);
+        ReflectionTestUtils.setField(executor, "connectionPoolSize", 10);
+        executor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void runsAtMostMaxConcurrencyRulesAtOnce() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<CompiledRule> plan = rules(8, 1);
+
+        ParallelRuleExecutor.FanOut fanOut = executor.start(plan, rule -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(20);
+            running.decrementAndGet();
+            return false;
+        });
+        for (int i = 0; i < plan.size(); i++) {
+            fanOut.await(i, System.nanoTime() + LONG_DEADLINE);
+        }
+
+        assertThat(peak.get()).isEqualTo(2);
+    }
+
+    @Test
+    void timedOutRuleIsNotInterrupted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        ParallelRuleExecutor.FanOut fanOut = executor.start(rules(1, 1), rule -> {
+            started.countDown();
+            long until = System.nanoTime() + LONG_DEADLINE;
+            while (release.getCount() > 0 && System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            interrupted.set(Thread.currentThread().isInterrupted());
+            finished.countDown();
+            return true;
+        });
+
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> fanOut.await(0, System.nanoTime())).isInstanceOf(TimeoutException.class);
+        release.countDown();
+        assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(interrupted).isFalse();
+    }
+
+    @Test
+    void abandonedRulesWaitingForAPermitAreNeverEvaluated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        List<String> evaluated = new CopyOnWriteArrayList<>();
+        ParallelRuleExecutor.FanOut busy = executor.start(rules(2, 1), rule -> {
+            started.countDown();
+            await(release);
+            return false;
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        ParallelRuleExecutor.FanOut waiting = executor.start(rules(3, 1), rule -> evaluated.add(rule.name()));
+        Thread.sleep(50);
+        waiting.cancelAll();
+        release.countDown();
+        ParallelRuleExecutor.FanOut next = executor.start(rules(1, 1), rule -> true);
+
+        assertThat(next.await(0, System.nanoTime() + LONG_DEADLINE)).isTrue();
+        assertThat(busy.await(1, System.nanoTime() + LONG_DEADLINE)).isFalse();
+        assertThat(evaluated).isEmpty();
+    }
+
+    @Test
+    void rejectsConcurrencyThatCouldExhaustTheConnectionPool() {
+        ParallelRuleExecutor unbounded = new ParallelRuleExecutor();
+        ReflectionTestUtils.setField(unbounded, "maxConcurrency", 10);
+        ReflectionTestUtils.setField(unbounded, "connectionPoolSize", 10);
+
+        assertThatThrownBy(unbounded::init).isInstanceOf(IllegalStateException.class);
+        unbounded.shutdown();
+    }
+
+    private static List<CompiledRule> rules(int count, int severity) {
+        List<CompiledRule> rules = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rules.add(rule("rule-" + i, severity));
+        }
+        return rules;
+    }
+
+    private static CompiledRule rule(String name, int severity) {
+        return new CompiledRule((long) name.hashCode(), name, RuleType.PATTERN, 0, severity, false, null,
+                transaction -> false);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jvmd.transationapp.model.Rule;
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.repository.RuleRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RuleEngineTest {
+    private RuleRepository ruleRepository;
+    private RuleSetSync ruleSetSync;
+    private RulePlanner rulePlanner;
+    private MLRuleEvaluator mlRuleEvaluator;
+    private RuleEngine ruleEngine;
+
+    @BeforeEach
+    void setUp() {
+        ruleRepository = mock(RuleRepository.class);
+        ruleSetSync = mock(RuleSetSync.class);
+        rulePlanner = new RulePlanner();
+        mlRuleEvaluator = mock(MLRuleEvaluator.class);
+        ObjectMapper objectMapper = new ObjectMapper();
+        ruleEngine = new RuleEngine(ruleRepository, new ThresholdRuleEvaluator(objectMapper),
+                mock(PatternRuleEvaluator.class), new CompositeRuleEvaluator(objectMapper),
+                mlRuleEvaluator, new ExpressionRuleEvaluator(objectMapper), rulePlanner,
+                new ParallelRuleExecutor(), ruleSetSync, mock(RuleCounters.class), new ShadowRuleStats());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ruleEngine.shutdown();
+    }
+
+    @Test
+    void planAndShadowRulesComeFromOneVersion() {
+        when(ruleSetSync.currentVersion()).thenReturn(7L);
+        when(ruleRepository.findByEnabledTrueOrderByPriorityAsc())
+                .thenReturn(List.of(rule(1L, "big", false), rule(2L, "bigger", true)));
+
+        ruleEngine.loadRules();
+        rulePlanner.replan();
+        RuleSet snapshot = ruleEngine.getRuleSet();
+
+        assertThat(snapshot.version()).isEqualTo(7);
+        assertThat(snapshot.plan().version()).isEqualTo(7);
+        assertThat(snapshot.plan().rules()).extracting(CompiledRule::name).containsExactly("big");
+        assertThat(snapshot.shadowRules()).extracting(CompiledRule::name).containsExactly("bigger");
+    }
+
+    @Test
+    void failedInstallIsRetriedOnTheNextPoll() throws Exception {
+        when(ruleSetSync.currentVersion()).thenReturn(3L);
+        when(ruleRepository.findByEnabledTrueOrderByPriorityAsc())
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(List.of(rule(1L, "big", false)));
+
+        ruleEngine.loadRules();
+        assertThat(ruleEngine.getRuleSet().version()).isZero();
+
+        ruleEngine.onRuleSetChanged(new RuleSetChangedEvent(0));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ruleEngine.getRuleSet().rules().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(ruleEngine.getRuleSet().rules()).extracting(CompiledRule::name).containsExactly("big");
+    }
+
+    @Test
+    void onlyTheLiveRuleSetOffersMlScoresToTheChallenger() {
+        Rule ml = rule(3L, "model", false);
+        ml.setType(RuleType.ML_RULE);
+        ml.setConfiguration("{}");
+        when(ruleSetSync.currentVersion()).thenReturn(1L);
+        when(ruleRepository.findByEnabledTrueOrderByPriorityAsc()).thenReturn(List.of(ml));
+        when(mlRuleEvaluator.compile(any(), anyBoolean())).thenReturn(transaction -> false);
+
+        ruleEngine.loadRules();
+        ruleEngine.compileRule(ml);
+
+        verify(mlRuleEvaluator).compile(ml, true);
+        verify(mlRuleEvaluator).compile(ml, false);
+    }
+
+    private static Rule rule(Long id, String name, boolean shadow) {
+        Rule rule = new Rule();
+        rule.setId(id);
+        rule.setName(name);
+        rule.setType(RuleType.THRESHOLD);
+        rule.setConfiguration("{\"field\": \"amount\", \"operator\": \">\", \"value\": 1000}");
+        rule.setShadow(shadow);
+        return rule;
+    }
+}
@@ -0,0 +1,168 @@
+package com.jvmd.transationapp.service.rules;
+
+import com.jvmd.transationapp.model.RuleType;
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.rules.CompositeRuleEvaluator.AmountCondition;
+import com.jvmd.transationapp.service.rules.CompositeRuleEvaluator.CompositeMatcher;
+import com.jvmd.transationapp.service.rules.CompositeRuleEvaluator.CompositeOperator;
+import com.jvmd.transationapp.service.rules.CompositeRuleEvaluator.NighttimeCondition;
+import com.jvmd.transationapp.service.rules.CompositeRuleEvaluator.TypeCondition;
+import com.jvmd.transationapp.service.rules.ThresholdRuleEvaluator.ThresholdField;
+import com.jvmd.transationapp.service.rules.ThresholdRuleEvaluator.ThresholdMatcher;
+import com.jvmd.transationapp.service.rules.expression.ExpressionCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Randomised check of the one property the index must keep: a rule that matches a transaction is
+ * always among its candidates, and its guard admits the transaction.
+ */
+class RuleIndexTest {
+    private static final String[] AMOUNTS = {"0", "-5", "10", "10.5", "100", "250", "1000"};
+    private static final String[] TYPES = {"A", "B", "C"};
+    private static final ComparisonOperator[] OPERATORS = ComparisonOperator.values();
+
+    @Test
+    void matchingRulesAreAlwaysCandidates() {
+        Random random = new Random(16);
+        for (int round = 0; round < 300; round++) {
+            List<CompiledRule> plan = new ArrayList<>();
+            int size = 1 + random.nextInt(150);
+            for (int i = 0; i < size; i++) {
+                plan.add(new CompiledRule((long) i, "rule-" + i, RuleType.EXPRESSION, 0, 1, false, null,
+                        matcher(random)));
+            }
+            RuleIndex index = RuleIndex.build(round, plan);
+            for (int n = 0; n < 200; n++) {
+                Transactions transaction = transaction(random);
+                List<CompiledRule> candidates = index.candidates(transaction);
+                assertThat(plan).containsSubsequence(candidates);
+                for (CompiledRule rule : plan) {
+                    if (rule.matcher().matches(transaction)) {
+                        assertThat(candidates).as("%s for %s", describe(rule), transaction).contains(rule);
+                        assertThat(rule.matcher().guard().admits(transaction.getType(),
+                                transaction.getAmount().doubleValue(), transaction.getTimestamp().getHour()))
+                                .as("guard of %s for %s", describe(rule), transaction).isTrue();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void transactionsWithoutAmountOrTimestampGetTheWholePlan() {
+        List<CompiledRule> plan = List.of(
+                new CompiledRule(1L, "big", RuleType.THRESHOLD, 0, 1, false, null, new ThresholdMatcher(
+                        ThresholdField.AMOUNT, ComparisonOperator.GT, new BigDecimal("100"), 100)),
+                new CompiledRule(2L, "night", RuleType.COMPOSITE, 0, 1, false, null,
+                        new NighttimeCondition(22, 6)));
+        RuleIndex index = RuleIndex.build(1, plan);
+        Transactions transaction = new Transactions();
+
+        assertThat(index.candidates(transaction)).isEqualTo(plan);
+    }
+
+    private static RuleMatcher matcher(Random random) {
+        return switch (random.nextInt(5)) {
+            case 0 -> {
+                BigDecimal threshold = new BigDecimal(pick(random, AMOUNTS));
+                yield random.nextInt(4) == 0
+                        ? new ThresholdMatcher(ThresholdField.ML_SCORE, pick(random, OPERATORS), threshold,
+                        threshold.doubleValue())
+                        : new ThresholdMatcher(ThresholdField.AMOUNT, pick(random, OPERATORS), threshold,
+                        threshold.doubleValue());
+            }
+            case 1 -> {
+                RuleMatcher[] conditions = new RuleMatcher[1 + random.nextInt(3)];
+                for (int i = 0; i < conditions.length; i++) {
+                    conditions[i] = condition(random);
+                }
+                yield new CompositeMatcher(pick(random, CompositeOperator.values()), conditions);
+            }
+            case 2 -> transaction -> transaction.getAmount().intValue() % 7 == 0;
+            default -> expressionMatcher(expression(random, 3));
+        };
+    }
+
+    private static RuleMatcher expressionMatcher(String expression) {
+        ExpressionCompiler.CompiledExpression compiled = ExpressionCompiler.compile(expression);
+        return new ExpressionRuleEvaluator.ExpressionMatcher(expression, compiled.predicate(), compiled.guard());
+    }
+
+    private static RuleMatcher condition(Random random) {
+        return switch (random.nextInt(3)) {
+            case 0 -> new AmountCondition(pick(random, OPERATORS), new BigDecimal(pick(random, AMOUNTS)));
+            case 1 -> new NighttimeCondition(random.nextInt(24), random.nextInt(24));
+            default -> new TypeCondition(pick(random, TYPES));
+        };
+    }
+
+    private static String expression(Random random, int depth) {
+        if (depth > 0 && random.nextInt(3) > 0) {
+            return switch (random.nextInt(3)) {
+                case 0 -> "(" + expression(random, depth - 1) + " and " + expression(random, depth - 1) + ")";
+                case 1 -> "(" + expression(random, depth - 1) + " or " + expression(random, depth - 1) + ")";
+                default -> "not (" + expression(random, depth - 1) + ")";
+            };
+        }
+        String operator = pick(random, OPERATORS).symbol();
+        return switch (random.nextInt(12)) {
+            case 0 -> "amount " + operator + " " + number(random);
+            case 1 -> number(random) + " " + operator + " amount";
+            case 2 -> "hour " + operator + " " + random.nextInt(24);
+            case 3 -> random.nextInt(24) + " " + operator + " hour";
+            case 4 -> random.nextBoolean() ? "type == '" + pick(random, TYPES) + "'" : "'" + pick(random, TYPES) + "' = type";
+            case 5 -> "type != '" + pick(random, TYPES) + "'";
+            case 6 -> "type " + (random.nextBoolean() ? "in" : "not in") + " ('" + pick(random, TYPES) + "', '"
+                    + pick(random, TYPES) + "')";
+            case 7 -> "amount " + (random.nextBoolean() ? "in" : "not in") + " (" + number(random) + ", "
+                    + number(random) + ")";
+            case 8 -> "hour in (" + random.nextInt(24) + ", " + random.nextInt(24) + ")";
+            case 9 -> "mlScore " + operator + " 0.5";
+            case 10 -> "amount + 1 " + operator + " " + number(random);
+            default -> "hour " + operator + " 5.5";
+        };
+    }
+
+    private static String number(Random random) {
+        return switch (random.nextInt(6)) {
+            case 0 -> "2 * " + pick(random, AMOUNTS);
+            case 1 -> "-0";
+            case 2 -> "0 / 0";
+            default -> pick(random, AMOUNTS).replace("-5", "(-5)");
+        };
+    }
+
+    private static Transactions transaction(Random random) {
+        Transactions transaction = new Transactions();
+        transaction.setType(random.nextInt(5) == 0 ? null : random.nextBoolean() ? pick(random, TYPES) : "D");
+        BigDecimal amount = new BigDecimal(pick(random, AMOUNTS));
+        amount = switch (random.nextInt(5)) {
+            case 0 -> amount.add(new BigDecimal("0.01"));
+            case 1 -> amount.subtract(new BigDecimal("0.01"));
+            case 2 -> amount.multiply(BigDecimal.valueOf(2));
+            case 3 -> BigDecimal.valueOf(random.nextInt(200_000), 2);
+            default -> amount.setScale(2);
+        };
+        transaction.setAmount(amount);
+        transaction.setTimestamp(LocalDateTime.of(2026, 1, 1, random.nextInt(24), random.nextInt(60)));
+        transaction.setMlScore(random.nextBoolean() ? random.nextDouble() : null);
+        return transaction;
+    }
+
+    private static String describe(CompiledRule rule) {
+        return rule.matcher() + " guarded by " + rule.matcher().guard();
+    }
+
+    @SafeVarargs
+    private static <T> T pick(Random random, T... values) {
+        return values[random.nextInt(values.length)];
+    }
+}
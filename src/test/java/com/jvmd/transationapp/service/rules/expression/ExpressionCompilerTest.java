@@ -0,0 +1,171 @@
+package com.jvmd.transationapp.service.rules.expression;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.rules.RuleGuard;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExpressionCompilerTest {
+
+    @Test
+    void evaluatesWithOperatorPrecedence() {
+        Transactions transaction = transaction("TRANSFER", "150", 3);
+
+        assertThat(matches("amount > 100 or amount > 1000 and hour > 12", transaction)).isTrue();
+        assertThat(matches("(amount > 100 or amount > 1000) and hour > 12", transaction)).isFalse();
+        assertThat(matches("not amount > 1000 and hour == 3", transaction)).isTrue();
+        assertThat(matches("amount - 50 * 2 == 50", transaction)).isTrue();
+        assertThat(matches("(amount - 50) * 2 == 200", transaction)).isTrue();
+        assertThat(matches("amount / 3 / 2 == 25", transaction)).isTrue();
+    }
+
+    @Test
+    void constantOnTheLeftIsMirrored() {
+        assertThat(matches("100 < amount", transaction("A", "150", 0))).isTrue();
+        assertThat(matches("100 < amount", transaction("A", "50", 0))).isFalse();
+        assertThat(matches("100 >= amount", transaction("A", "100", 0))).isTrue();
+        assertThat(matches("2 * 50 > amount", transaction("A", "100", 0))).isFalse();
+        assertThat(matches("-1 != amount", transaction("A", "1", 0))).isTrue();
+    }
+
+    @Test
+    void comparesTwoFields() {
+        Transactions transaction = transaction("A", "150", 0);
+        transaction.setMlScore(0.9);
+        transaction.setVelocityScore(0.4);
+
+        assertThat(matches("mlScore > velocityScore", transaction)).isTrue();
+        assertThat(matches("velocityScore * 2 >= mlScore", transaction)).isFalse();
+    }
+
+    @Test
+    void inAndNotInWorkForNumbersAndStrings() {
+        Transactions transaction = transaction("TRANSFER", "20", 23);
+
+        assertThat(matches("type in ('PAYMENT', 'TRANSFER')", transaction)).isTrue();
+        assertThat(matches("type not in ('PAYMENT', 'TRANSFER')", transaction)).isFalse();
+        assertThat(matches("hour in (22, 23, 0)", transaction)).isTrue();
+        assertThat(matches("amount in (10, 10 * 2)", transaction)).isTrue();
+        assertThat(matches("amount not in (10, 30)", transaction)).isTrue();
+    }
+
+    @Test
+    void missingStringFieldsMatchNoEqualityAndEveryInequality() {
+        Transactions transaction = transaction("A", "1", 0);
+        transaction.setFrom(null);
+        transaction.setTo(null);
+
+        assertThat(matches("deviceId == 'd1'", transaction)).isFalse();
+        assertThat(matches("'d1' == deviceId", transaction)).isFalse();
+        assertThat(matches("deviceId != 'd1'", transaction)).isTrue();
+        assertThat(matches("from == to", transaction)).isFalse();
+        assertThat(matches("from != to", transaction)).isTrue();
+        assertThat(matches("deviceId in ('d1', 'd2')", transaction)).isFalse();
+        assertThat(matches("deviceId not in ('d1', 'd2')", transaction)).isTrue();
+    }
+
+    @Test
+    void missingNumbersMatchOnlyInequality() {
+        Transactions transaction = transaction("A", "1", 0);
+
+        assertThat(matches("mlScore > 0.5", transaction)).isFalse();
+        assertThat(matches("mlScore <= 0.5", transaction)).isFalse();
+        assertThat(matches("mlScore == mlScore", transaction)).isFalse();
+        assertThat(matches("mlScore != 0.5", transaction)).isTrue();
+    }
+
+    @Test
+    void rejectsIllTypedExpressions() {
+        assertThatThrownBy(() -> ExpressionCompiler.compile("amount == 'x'"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("cannot compare number with string at position 7");
+        assertThatThrownBy(() -> ExpressionCompiler.compile("type > 'A'"))
+                .hasMessage("operator > needs numbers at position 5");
+        assertThatThrownBy(() -> ExpressionCompiler.compile("amount + 1"))
+                .hasMessage("expression must be a condition, not a number value at position 7");
+        assertThatThrownBy(() -> ExpressionCompiler.compile("amount > 1 and type"))
+                .hasMessage("expected a boolean but found a string at position 15");
+        assertThatThrownBy(() -> ExpressionCompiler.compile("type + 1 > 2"))
+                .hasMessage("expected a number but found a string at position 0");
+        assertThatThrownBy(() -> ExpressionCompiler.compile("amount in (1, mlScore)"))
+                .hasMessage("'in' list must hold constants at position 14");
+        assertThatThrownBy(() -> ExpressionCompiler.compile("type in ('A', deviceId)"))
+                .hasMessage("'in' list must hold constants at position 14");
+        assertThatThrownBy(() -> ExpressionCompiler.compile("type in ('A', 1)"))
+                .hasMessage("expected a string but found a number at position 14");
+        assertThatThrownBy(() -> ExpressionCompiler.compile("(amount > 1) in (true)"))
+                .hasMessage("'in' needs a number or string at position 13");
+    }
+
+    @Test
+    void guardCollectsTypeAmountAndHourConstraints() {
+        RuleGuard guard = guard("type == 'TRANSFER' and amount > 1000 and hour < 6");
+
+        assertThat(guard.types()).containsExactly("TRANSFER");
+        assertThat(guard.minAmount()).isEqualTo(1000);
+        assertThat(guard.maxAmount()).isEqualTo(Double.POSITIVE_INFINITY);
+        assertThat(guard.hours()).isEqualTo(0b111111);
+    }
+
+    @Test
+    void guardMirrorsConstantsOnTheLeft() {
+        assertThat(guard("1000 < amount")).isEqualTo(RuleGuard.amountBetween(1000, Double.POSITIVE_INFINITY));
+        assertThat(guard("2 * 500 >= amount")).isEqualTo(RuleGuard.amountBetween(Double.NEGATIVE_INFINITY, 1000));
+        assertThat(guard("'TRANSFER' == type").types()).containsExactly("TRANSFER");
+        assertThat(guard("22 <= hour").hours()).isEqualTo((1 << 22) | (1 << 23));
+    }
+
+    @Test
+    void guardWidensAcrossOr() {
+        RuleGuard guard = guard("type == 'A' and amount > 100 or type == 'B' and amount < 10");
+
+        assertThat(guard.types()).containsExactlyInAnyOrder("A", "B");
+        assertThat(guard.minAmount()).isEqualTo(Double.NEGATIVE_INFINITY);
+        assertThat(guard.maxAmount()).isEqualTo(Double.POSITIVE_INFINITY);
+        assertThat(guard("hour >= 22 or hour < 2").hours()).isEqualTo((1 << 22) | (1 << 23) | 0b11);
+        assertThat(guard("type == 'A' or amount > 5").types()).isNull();
+    }
+
+    @Test
+    void guardUsesInLists() {
+        assertThat(guard("type in ('A', 'B')").types()).isEqualTo(Set.of("A", "B"));
+        assertThat(guard("amount in (30, 10, 20)")).isEqualTo(RuleGuard.amountBetween(10, 30));
+        assertThat(guard("hour in (1, 3)").hours()).isEqualTo(0b1010);
+    }
+
+    @Test
+    void guardIgnoresWhatItCannotSeeThrough() {
+        assertThat(guard("not amount > 100").isAny()).isTrue();
+        assertThat(guard("amount != 100").isAny()).isTrue();
+        assertThat(guard("type != 'A'").isAny()).isTrue();
+        assertThat(guard("type not in ('A')").isAny()).isTrue();
+        assertThat(guard("amount not in (1, 2)").isAny()).isTrue();
+        assertThat(guard("amount + 1 > 100").isAny()).isTrue();
+        assertThat(guard("amount > mlScore").isAny()).isTrue();
+        assertThat(guard("deviceId == 'd1'").isAny()).isTrue();
+    }
+
+    private static boolean matches(String expression, Transactions transaction) {
+        return ExpressionCompiler.compile(expression).predicate().matches(transaction);
+    }
+
+    private static RuleGuard guard(String expression) {
+        return ExpressionCompiler.compile(expression).guard();
+    }
+
+    private static Transactions transaction(String type, String amount, int hour) {
+        Transactions transaction = new Transactions();
+        transaction.setType(type);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setTimestamp(LocalDateTime.of(2026, 3, 2, hour, 15));
+        transaction.setFrom("acc-1");
+        transaction.setTo("acc-2");
+        return transaction;
+    }
+}
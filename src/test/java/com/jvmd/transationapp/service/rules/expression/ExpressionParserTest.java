@@ -0,0 +1,111 @@
+package com.jvmd.transationapp.service.rules.expression;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExpressionParserTest {
+
+    @Test
+    void andBindsTighterThanOr() {
+        assertThat(shape("amount > 1 or amount > 2 and amount > 3"))
+                .isEqualTo("((amount > 1.0) or ((amount > 2.0) and (amount > 3.0)))");
+        assertThat(shape("amount > 1 and amount > 2 or amount > 3"))
+                .isEqualTo("(((amount > 1.0) and (amount > 2.0)) or (amount > 3.0))");
+    }
+
+    @Test
+    void notAppliesToTheNextConditionOnly() {
+        assertThat(shape("!amount > 1 && hour < 3")).isEqualTo("((not (amount > 1.0)) and (hour < 3.0))");
+        assertThat(shape("not not hour = 1")).isEqualTo("(not (not (hour = 1.0)))");
+    }
+
+    @Test
+    void productBindsTighterThanSumAndSumTighterThanComparison() {
+        assertThat(shape("amount + 2 * 3 >= 4 - 1 / 2"))
+                .isEqualTo("((amount + (2.0 * 3.0)) >= (4.0 - (1.0 / 2.0)))");
+    }
+
+    @Test
+    void arithmeticIsLeftAssociative() {
+        assertThat(shape("10 - 4 - 3 == amount / 2 / 5"))
+                .isEqualTo("(((10.0 - 4.0) - 3.0) = ((amount / 2.0) / 5.0))");
+    }
+
+    @Test
+    void parenthesesOverridePrecedence() {
+        assertThat(shape("(amount > 1 or amount > 2) and amount > 3"))
+                .isEqualTo("(((amount > 1.0) or (amount > 2.0)) and (amount > 3.0))");
+        assertThat(shape("(amount + 2) * 3 > 0")).isEqualTo("(((amount + 2.0) * 3.0) > 0.0)");
+    }
+
+    @Test
+    void keywordAndSymbolFormsAreEquivalent() {
+        assertThat(shape("not amount = 1 and hour > 2 or type == 'A'"))
+                .isEqualTo(shape("!amount == 1 && hour > 2 || type == \"A\""))
+                .isEqualTo("(((not (amount = 1.0)) and (hour > 2.0)) or (type = 'A'))");
+    }
+
+    @Test
+    void parsesInAndNotIn() {
+        assertThat(shape("type in ('A', 'B')")).isEqualTo("(type in ['A', 'B'])");
+        assertThat(shape("hour not in (1, 2 + 1)")).isEqualTo("(hour not in [1.0, (2.0 + 1.0)])");
+        assertThat(shape("not type in ('A')")).isEqualTo("(not (type in ['A']))");
+    }
+
+    @Test
+    void negativeNumbersAndDecimals() {
+        assertThat(shape("amount > -.5 * 2")).isEqualTo("(amount > ((-0.5) * 2.0))");
+        assertThat(shape("amount - -1 > 0")).isEqualTo("((amount - (-1.0)) > 0.0)");
+    }
+
+    @Test
+    void errorsCarryThePositionOfTheOffendingToken() {
+        assertThatThrownBy(() -> ExpressionParser.parse("amount > 1 )"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessage("unexpected ')' at position 11");
+        assertThatThrownBy(() -> ExpressionParser.parse("balance > 1"))
+                .hasMessage("unknown field 'balance' at position 0");
+        assertThatThrownBy(() -> ExpressionParser.parse("amount > "))
+                .hasMessage("unexpected end of expression at position 9");
+        assertThatThrownBy(() -> ExpressionParser.parse("type == 'A"))
+                .hasMessage("unterminated string at position 8");
+        assertThatThrownBy(() -> ExpressionParser.parse("amount > 1.2.3"))
+                .hasMessage("malformed number '1.2.3' at position 9");
+        assertThatThrownBy(() -> ExpressionParser.parse("amount > 1 # 2"))
+                .hasMessage("unexpected character '#' at position 11");
+        assertThatThrownBy(() -> ExpressionParser.parse("type in ('A' 'B')"))
+                .hasMessage("expected ')' but found 'B' at position 13");
+        assertThatThrownBy(() -> ExpressionParser.parse("(amount > 1"))
+                .hasMessage("expected ')' but found end of expression at position 11");
+    }
+
+    private static String shape(String source) {
+        return shape(ExpressionParser.parse(source));
+    }
+
+    /**
+     * The tree fully parenthesised, without positions.
+     */
+    private static String shape(ExpressionNode node) {
+        return switch (node) {
+            case ExpressionNode.Field field -> field.field().fieldName();
+            case ExpressionNode.NumberLiteral literal -> String.valueOf(literal.value());
+            case ExpressionNode.StringLiteral literal -> "'" + literal.value() + "'";
+            case ExpressionNode.BooleanLiteral literal -> String.valueOf(literal.value());
+            case ExpressionNode.Arithmetic arithmetic ->
+                    "(" + shape(arithmetic.left()) + " " + arithmetic.operator() + " " + shape(arithmetic.right()) + ")";
+            case ExpressionNode.Negate negate -> "(-" + shape(negate.operand()) + ")";
+            case ExpressionNode.Comparison comparison -> "(" + shape(comparison.left()) + " "
+                    + comparison.operator().symbol() + " " + shape(comparison.right()) + ")";
+            case ExpressionNode.In in -> "(" + shape(in.value()) + (in.negated() ? " not in " : " in ")
+                    + in.candidates().stream().map(ExpressionParserTest::shape)
+                    .collect(Collectors.joining(", ", "[", "]")) + ")";
+            case ExpressionNode.Not not -> "(not " + shape(not.operand()) + ")";
+            case ExpressionNode.And and -> "(" + shape(and.left()) + " and " + shape(and.right()) + ")";
+            case ExpressionNode.Or or -> "(" + shape(or.left()) + " or " + shape(or.right()) + ")";
+        };
+    }
+}
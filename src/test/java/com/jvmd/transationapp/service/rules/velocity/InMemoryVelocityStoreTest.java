@@ -0,0 +1,122 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.queue.QueuePartitionManager;
+import com.jvmd.transationapp.service.rules.AccountField;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InMemoryVelocityStoreTest {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 12, 0);
+    private static final WindowSpec HOUR_UNDER_100 =
+            new WindowSpec(AccountField.FROM, Duration.ofHours(1), new BigDecimal("100"));
+
+    private RepositoryVelocityStore repositoryStore;
+    private InMemoryVelocityStore store;
+
+    @BeforeEach
+    void setUp() {
+        repositoryStore = mock(RepositoryVelocityStore.class);
+        when(repositoryStore.findInRange(eq(AccountField.FROM), any(), any(), any())).thenReturn(List.of());
+        store = new InMemoryVelocityStore(repositoryStore, mock(QueuePartitionManager.class));
+        ReflectionTestUtils.setField(store, "buckets", 60);
+        ReflectionTestUtils.setField(store, "maxAccounts", 100);
+        store.register(List.of(HOUR_UNDER_100));
+    }
+
+    @Test
+    void countsTransactionsInsideTheWindow() {
+        record("acc-1", "5", START);
+        record("acc-1", "50", START.plusMinutes(10));
+        Transactions last = record("acc-1", "500", START.plusMinutes(30));
+
+        assertThat(store.count(HOUR_UNDER_100, last, EvaluationContext.NONE)).isEqualTo(new WindowCounts(3, 2));
+        verify(repositoryStore, never()).count(any(), any(), any());
+    }
+
+    @Test
+    void bucketsOlderThanTheWindowExpire() {
+        record("acc-1", "5", START);
+        Transactions late = record("acc-1", "5", START.plusHours(1).plusMinutes(2));
+
+        assertThat(store.count(HOUR_UNDER_100, late, EvaluationContext.NONE)).isEqualTo(new WindowCounts(1, 1));
+    }
+
+    @Test
+    void outOfOrderTransactionsCountInTheirOwnBucket() {
+        Transactions newest = record("acc-1", "5", START.plusMinutes(50));
+        record("acc-1", "500", START.plusMinutes(5));
+        record("acc-1", "500", START.plusMinutes(5).plusSeconds(1));
+
+        assertThat(store.count(HOUR_UNDER_100, newest, EvaluationContext.NONE)).isEqualTo(new WindowCounts(3, 1));
+    }
+
+    @Test
+    void windowsOlderThanTheRingAreCountedFromTheRepository() {
+        record("acc-1", "5", START);
+        record("acc-1", "5", START.plusHours(3));
+        Transactions redriven = transaction("acc-1", "5", START.plusMinutes(90));
+        when(repositoryStore.count(HOUR_UNDER_100, redriven, EvaluationContext.NONE)).thenReturn(new WindowCounts(7, 7));
+
+        assertThat(store.count(HOUR_UNDER_100, redriven, EvaluationContext.NONE)).isEqualTo(new WindowCounts(7, 7));
+    }
+
+    @Test
+    void countingDoesNotRecord() {
+        Transactions first = transaction("acc-1", "5", START);
+        record("acc-1", "5", START.plusMinutes(1));
+
+        store.count(HOUR_UNDER_100, first, EvaluationContext.NONE);
+
+        assertThat(store.count(HOUR_UNDER_100, transaction("acc-1", "5", START.plusMinutes(2)), EvaluationContext.NONE))
+                .isEqualTo(new WindowCounts(1, 1));
+    }
+
+    @Test
+    void accountCapEvictsTheLeastRecentlyUsed() throws InterruptedException {
+        ReflectionTestUtils.setField(store, "maxAccounts", 2);
+        Transactions first = record("acc-1", "5", START);
+        Thread.sleep(5);
+        Transactions second = record("acc-2", "5", START);
+        Thread.sleep(5);
+        store.count(HOUR_UNDER_100, first, EvaluationContext.NONE);
+        Thread.sleep(5);
+        record("acc-3", "5", START);
+        when(repositoryStore.count(HOUR_UNDER_100, second, EvaluationContext.NONE)).thenReturn(new WindowCounts(9, 9));
+
+        assertThat(store.count(HOUR_UNDER_100, second, EvaluationContext.NONE)).isEqualTo(new WindowCounts(9, 9));
+        assertThat(store.count(HOUR_UNDER_100, first, EvaluationContext.NONE)).isEqualTo(new WindowCounts(1, 1));
+    }
+
+    private Transactions record(String account, String amount, LocalDateTime timestamp) {
+        Transactions transaction = transaction(account, amount, timestamp);
+        store.record(transaction);
+        return transaction;
+    }
+
+    private static Transactions transaction(String account, String amount, LocalDateTime timestamp) {
+        Transactions transaction = new Transactions();
+        transaction.setId(UUID.randomUUID());
+        transaction.setFrom(account);
+        transaction.setTo("acc-9");
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+}
@@ -0,0 +1,161 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.service.rules.AccountField;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Testcontainers(disabledWithoutDocker = true)
+class RedisVelocityStoreTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 12, 0);
+    private static final WindowSpec HOUR_UNDER_100 =
+            new WindowSpec(AccountField.FROM, Duration.ofHours(1), new BigDecimal("100"));
+    private static final WindowSpec HOUR_UNDER_10 =
+            new WindowSpec(AccountField.FROM, Duration.ofHours(1), new BigDecimal("10.00"));
+    private static final WindowSpec MINUTE = new WindowSpec(AccountField.FROM, Duration.ofMinutes(1), null);
+
+    private LettuceConnectionFactory connectionFactory;
+    private RepositoryVelocityStore repositoryStore;
+    private RedisVelocityStore store;
+    private final List<Transactions> history = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        repositoryStore = mock(RepositoryVelocityStore.class);
+        when(repositoryStore.findInRange(eq(AccountField.FROM), eq("acc-1"), any(), any()))
+                .thenAnswer(invocation -> List.copyOf(history));
+        store = new RedisVelocityStore(redisTemplate, repositoryStore);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void countsEveryWindowAndThreshold() {
+        store.register(List.of(HOUR_UNDER_100, HOUR_UNDER_10, MINUTE));
+
+        record("5", START);
+        record("50", START.plusMinutes(10));
+        record("10", START.plusMinutes(30));
+        Transactions last = record("500", START.plusMinutes(30).plusSeconds(20));
+
+        assertThat(store.count(HOUR_UNDER_100, last, EvaluationContext.NONE)).isEqualTo(new WindowCounts(4, 3));
+        assertThat(store.count(HOUR_UNDER_10, last, EvaluationContext.NONE)).isEqualTo(new WindowCounts(4, 2));
+        assertThat(store.count(MINUTE, last, EvaluationContext.NONE)).isEqualTo(new WindowCounts(2, 0));
+    }
+
+    @Test
+    void transactionsOutsideTheWindowAreNotCounted() {
+        store.register(List.of(HOUR_UNDER_100));
+
+        record("5", START);
+        Transactions late = record("5", START.plusHours(1).plusSeconds(1));
+
+        assertThat(store.count(HOUR_UNDER_100, late, EvaluationContext.NONE)).isEqualTo(new WindowCounts(1, 1));
+    }
+
+    @Test
+    void newThresholdReseedsAccountsSeededBeforeIt() {
+        store.register(List.of(HOUR_UNDER_100));
+        history.add(record("5", START));
+
+        store.register(List.of(HOUR_UNDER_100, HOUR_UNDER_10));
+        Transactions next = record("7", START.plusMinutes(1));
+
+        assertThat(store.count(HOUR_UNDER_10, next, EvaluationContext.NONE)).isEqualTo(new WindowCounts(2, 2));
+        assertThat(store.count(HOUR_UNDER_100, next, EvaluationContext.NONE)).isEqualTo(new WindowCounts(2, 2));
+    }
+
+    @Test
+    void countingDoesNotRecord() {
+        store.register(List.of(HOUR_UNDER_100));
+        record("5", START);
+        Transactions first = transaction("5", START.plusMinutes(1));
+        Transactions second = transaction("5", START.plusMinutes(2));
+
+        store.count(HOUR_UNDER_100, first, EvaluationContext.NONE);
+
+        assertThat(store.count(HOUR_UNDER_100, second, EvaluationContext.NONE)).isEqualTo(new WindowCounts(1, 1));
+    }
+
+    @Test
+    void unrecordedAccountsAreCountedFromTheRepository() {
+        store.register(List.of(HOUR_UNDER_100));
+        Transactions transaction = transaction("5", START);
+        when(repositoryStore.count(HOUR_UNDER_100, transaction, EvaluationContext.NONE))
+                .thenReturn(new WindowCounts(3, 1));
+
+        assertThat(store.count(HOUR_UNDER_100, transaction, EvaluationContext.NONE)).isEqualTo(new WindowCounts(3, 1));
+    }
+
+    @Test
+    void redisFailuresFallBackToTheRepository() {
+        StringRedisTemplate failing = mock(StringRedisTemplate.class, invocation -> {
+            throw new RedisConnectionFailureException("down");
+        });
+        RedisVelocityStore unavailable = new RedisVelocityStore(failing, repositoryStore);
+        unavailable.register(List.of(HOUR_UNDER_100));
+        Transactions transaction = transaction("5", START);
+        when(repositoryStore.count(HOUR_UNDER_100, transaction, EvaluationContext.NONE))
+                .thenReturn(new WindowCounts(2, 2));
+
+        unavailable.record(transaction);
+
+        assertThat(unavailable.count(HOUR_UNDER_100, transaction, EvaluationContext.NONE))
+                .isEqualTo(new WindowCounts(2, 2));
+    }
+
+    private Transactions record(String amount, LocalDateTime timestamp) {
+        Transactions transaction = transaction(amount, timestamp);
+        store.record(transaction);
+        return transaction;
+    }
+
+    private static Transactions transaction(String amount, LocalDateTime timestamp) {
+        Transactions transaction = new Transactions();
+        transaction.setId(UUID.randomUUID());
+        transaction.setFrom("acc-1");
+        transaction.setTo("acc-2");
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+}
@@ -0,0 +1,85 @@
+package com.jvmd.transationapp.service.rules.velocity;
+
+import com.jvmd.transationapp.model.Transactions;
+import com.jvmd.transationapp.repository.TransactionRepository;
+import com.jvmd.transationapp.repository.TransactionRepository.WindowEntry;
+import com.jvmd.transationapp.service.rules.AccountField;
+import com.jvmd.transationapp.service.rules.EvaluationContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RepositoryVelocityStoreTest {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 12, 0);
+    private static final WindowSpec HOUR_UNDER_100 =
+            new WindowSpec(AccountField.FROM, Duration.ofHours(1), new BigDecimal("100"));
+
+    private TransactionRepository transactionRepository;
+    private RepositoryVelocityStore store;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository = mock(TransactionRepository.class);
+        store = new RepositoryVelocityStore(transactionRepository);
+        store.register(List.of(HOUR_UNDER_100));
+    }
+
+    @Test
+    void batchPrefetchReadsTimestampsAndAmountsOnly() {
+        Transactions first = transaction("acc-1", START.plusMinutes(30));
+        Transactions second = transaction("acc-1", START.plusMinutes(70));
+        when(transactionRepository.findWindowEntriesByFromAndTimestampBetween(eq("acc-1"), any(), any()))
+                .thenReturn(List.of(
+                        new WindowEntry(START, new BigDecimal("5")),
+                        new WindowEntry(START.plusMinutes(30), new BigDecimal("500")),
+                        new WindowEntry(START.plusMinutes(70), new BigDecimal("100"))));
+
+        EvaluationContext context = store.prepareBatch(List.of(first, second));
+
+        assertThat(store.count(HOUR_UNDER_100, first, context)).isEqualTo(new WindowCounts(2, 1));
+        assertThat(store.count(HOUR_UNDER_100, second, context)).isEqualTo(new WindowCounts(2, 1));
+        verify(transactionRepository).findWindowEntriesByFromAndTimestampBetween(
+                "acc-1", START.plusMinutes(30).minusHours(1), START.plusMinutes(70));
+        verify(transactionRepository, never()).findByFromAndTimestampBetween(any(), any(), any());
+        verify(transactionRepository, never()).countFromWindow(any(), any(), any(), any());
+    }
+
+    @Test
+    void accountsSeenOnceAreCountedWithTheAggregateQuery() {
+        Transactions only = transaction("acc-1", START);
+        Transactions other = transaction("acc-2", START);
+        TransactionRepository.WindowCountView view = mock(TransactionRepository.WindowCountView.class);
+        when(view.getTotal()).thenReturn(4L);
+        when(view.getSmall()).thenReturn(3L);
+        when(transactionRepository.countFromWindow("acc-1", START.minusHours(1), START, HOUR_UNDER_100.maxAmount()))
+                .thenReturn(view);
+
+        EvaluationContext context = store.prepareBatch(List.of(only, other));
+
+        assertThat(store.count(HOUR_UNDER_100, only, context)).isEqualTo(new WindowCounts(4, 3));
+        verify(transactionRepository, never()).findWindowEntriesByFromAndTimestampBetween(any(), any(), any());
+    }
+
+    private static Transactions transaction(String account, LocalDateTime timestamp) {
+        Transactions transaction = new Transactions();
+        transaction.setId(UUID.randomUUID());
+        transaction.setFrom(account);
+        transaction.setTo("acc-9");
+        transaction.setAmount(BigDecimal.TEN);
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+}